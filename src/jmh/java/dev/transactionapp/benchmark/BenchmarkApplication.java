@@ -0,0 +1,78 @@
+package dev.transactionapp.benchmark;
+
+import dev.transactionapp.Application;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.repository.UserRepository;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts the application without a web server, on its own in-memory H2 database, for the component benchmarks.
+ * Logging is kept at WARN so the console doesn't dominate the measurement; any property can be overridden
+ * with a system property, e.g. `-Djmh.args="-jvmArgsAppend -Dlogging.level.root=INFO"`.
+ */
+final class BenchmarkApplication {
+
+    private static final AtomicLong MESSAGE_IDS = new AtomicLong();
+
+    private BenchmarkApplication() {
+    }
+
+    static ConfigurableApplicationContext start(String engineMode) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("spring.datasource.url", "jdbc:h2:mem:benchmark-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1");
+        properties.put("logging.level.root", "WARN");
+        properties.put("logging.level.dev.transactionapp", "WARN");
+        properties.put("transaction.engine.mode", engineMode);
+        // passed as command line arguments so they win over the active profile's properties files
+        String[] args = properties.entrySet().stream()
+                .filter(property -> System.getProperty(property.getKey()) == null)
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                .run(args);
+    }
+
+    /**
+     * Creates `count` USD users with a balance large enough for any benchmark run.
+     */
+    static List<UUID> createUsers(ConfigurableApplicationContext context, int count) {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        List<UUID> userIds = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            User user = new User("USD", Long.MAX_VALUE / 4);
+            user.setCreatedAt(LocalDateTime.now());
+            userIds.add(userRepository.save(user).getId());
+        }
+        return userIds;
+    }
+
+    /**
+     * Every request gets a new messageId, a reused one would only measure the idempotent replay.
+     */
+    static String nextMessageId() {
+        return "bench-" + MESSAGE_IDS.incrementAndGet();
+    }
+
+    static AuthorizationRequest authorizationRequest(UUID userId, String messageId) {
+        return new AuthorizationRequest(userId.toString(), messageId, new Amount("0.01", "USD", DebitCredit.DEBIT.toString()));
+    }
+
+    static LoadRequest loadRequest(UUID userId, String messageId) {
+        return new LoadRequest(userId.toString(), messageId, new Amount("0.01", "USD", DebitCredit.CREDIT.toString()));
+    }
+}
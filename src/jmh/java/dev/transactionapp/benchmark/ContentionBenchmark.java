@@ -0,0 +1,54 @@
+package dev.transactionapp.benchmark;
+
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.service.AuthorizeTransactionService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention benchmark: 8 threads authorizing against a single hot user or spread over many users,
+ * for both balance engines. Reported as throughput, so one-user and many-user runs compare directly.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+    @Param({"jpa", "sharded"})
+    public String engineMode;
+
+    @Param({"1", "1024"})
+    public int users;
+
+    private ConfigurableApplicationContext context;
+    private AuthorizeTransactionService authorizeTransactionService;
+    private List<UUID> userIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(engineMode);
+        authorizeTransactionService = context.getBean(AuthorizeTransactionService.class);
+        userIds = BenchmarkApplication.createUsers(context, users);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AuthorizationResponse authorizeTransaction() {
+        UUID userId = userIds.get(ThreadLocalRandom.current().nextInt(userIds.size()));
+        String messageId = BenchmarkApplication.nextMessageId();
+        return authorizeTransactionService.authorizeTransactionAndGetResponse(messageId, BenchmarkApplication.authorizationRequest(userId, messageId));
+    }
+}
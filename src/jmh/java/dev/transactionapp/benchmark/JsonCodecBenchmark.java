@@ -0,0 +1,71 @@
+package dev.transactionapp.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import dev.transactionapp.codec.TransactionJsonCodec;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.enums.DebitCredit;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmark of the JSON bodies of `/authorization`: reading an `AuthorizationRequest` from a stream and writing
+ * an `AuthorizationResponse` to one, with an `ObjectMapper` configured like the application's and with the
+ * `TransactionJsonCodec`. Run with `-prof gc` for the bytes allocated per operation (`gc.alloc.rate.norm`).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonCodecBenchmark {
+
+    private ObjectMapper objectMapper;
+    private byte[] requestBody;
+    private AuthorizationResponse response;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule()).build();
+        String userId = UUID.randomUUID().toString();
+        requestBody = objectMapper.writeValueAsBytes(new AuthorizationRequest(userId, UUID.randomUUID().toString(),
+                new Amount("123.45", "USD", DebitCredit.DEBIT.toString())));
+        response = new AuthorizationResponse(UUID.randomUUID().toString(), userId, "APPROVED",
+                new Amount("9876.55", "USD", DebitCredit.DEBIT.toString()));
+        out = new ByteArrayOutputStream(1024);
+    }
+
+    @Benchmark
+    public AuthorizationRequest readJackson() throws IOException {
+        return objectMapper.readValue(new ByteArrayInputStream(requestBody), AuthorizationRequest.class);
+    }
+
+    @Benchmark
+    public AuthorizationRequest readCodec() throws IOException {
+        return TransactionJsonCodec.read(AuthorizationRequest.class, new ByteArrayInputStream(requestBody));
+    }
+
+    @Benchmark
+    public int writeJackson() throws IOException {
+        out.reset();
+        objectMapper.writeValue(out, response);
+        return out.size();
+    }
+
+    @Benchmark
+    public int writeCodec() throws IOException {
+        out.reset();
+        TransactionJsonCodec.write(response, out);
+        return out.size();
+    }
+}
@@ -0,0 +1,38 @@
+package dev.transactionapp.benchmark;
+
+import dev.transactionapp.money.Money;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmark of the amount parsing and formatting done on every request.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoneyBenchmark {
+
+    @Param({"20", "123.45", "999999999.99"})
+    public String amount;
+
+    private long minor;
+
+    @Setup
+    public void setUp() {
+        minor = Money.parse(amount);
+    }
+
+    @Benchmark
+    public long parse() {
+        return Money.parse(amount);
+    }
+
+    @Benchmark
+    public String format() {
+        return Money.format(minor);
+    }
+}
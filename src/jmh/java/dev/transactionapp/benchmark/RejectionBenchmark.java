@@ -0,0 +1,84 @@
+package dev.transactionapp.benchmark;
+
+import dev.transactionapp.codec.TransactionJsonCodec;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.Error;
+import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.validator.Rejection;
+import dev.transactionapp.validator.RequestsValidator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmark of answering `/authorization` requests that mostly fail validation: 9 requests out of 10 are
+ * rejected (malformed user ID, mismatched messageId, CREDIT type), the 10th is valid. `throwing` goes through the
+ * exception path of the `RestExceptionHandler`, building and serializing an `Error`; `screened` goes through the
+ * `Rejection` path of the `TransactionalController`, rendering the pre-built error body.
+ * Run with `-prof gc` for the bytes allocated per request (`gc.alloc.rate.norm`).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RejectionBenchmark {
+
+    private static final int REQUESTS = 100;
+
+    private RequestsValidator requestsValidator;
+    private String[] messageIds;
+    private AuthorizationRequest[] requests;
+
+    @Setup
+    public void setUp() {
+        requestsValidator = new RequestsValidator();
+        messageIds = new String[REQUESTS];
+        requests = new AuthorizationRequest[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            String messageId = UUID.randomUUID().toString();
+            String userId = UUID.randomUUID().toString();
+            String bodyMessageId = messageId;
+            String debitOrCredit = DebitCredit.DEBIT.toString();
+            switch (i % 10) {
+                case 0, 1, 2 -> userId = "not-a-uuid-" + i;
+                case 3, 4, 5 -> bodyMessageId = "other-" + i;
+                case 6, 7, 8 -> debitOrCredit = DebitCredit.CREDIT.toString();
+                default -> { }
+            }
+            messageIds[i] = messageId;
+            requests[i] = new AuthorizationRequest(userId, bodyMessageId, new Amount("12.34", "USD", debitOrCredit));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void throwing(Blackhole blackhole) {
+        for (int i = 0; i < REQUESTS; i++) {
+            try {
+                blackhole.consume(requestsValidator.checkAuthorizationRequestValidity(messageIds[i], requests[i]));
+            } catch (RuntimeException ex) {
+                Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
+                blackhole.consume(new ResponseEntity<>(TransactionJsonCodec.toBytes(error), HttpStatus.BAD_REQUEST));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(REQUESTS)
+    public void screened(Blackhole blackhole) {
+        for (int i = 0; i < REQUESTS; i++) {
+            Rejection rejection = requestsValidator.screenAuthorizationRequest(messageIds[i], requests[i]);
+            if (rejection == null)
+                blackhole.consume(requests[i]);
+            else
+                blackhole.consume(ResponseEntity.status(rejection.status()).body(rejection.body()));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package dev.transactionapp.benchmark;
+
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.service.AuthorizeTransactionService;
+import dev.transactionapp.service.LoadFundsService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Component benchmark of one authorization and one load, through the service against in-memory H2,
+ * for both balance engines. Single threaded, so it measures the cost of the path without contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+    @Param({"jpa", "sharded"})
+    public String engineMode;
+
+    private ConfigurableApplicationContext context;
+    private AuthorizeTransactionService authorizeTransactionService;
+    private LoadFundsService loadFundsService;
+    private UUID userId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(engineMode);
+        authorizeTransactionService = context.getBean(AuthorizeTransactionService.class);
+        loadFundsService = context.getBean(LoadFundsService.class);
+        userId = BenchmarkApplication.createUsers(context, 1).get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AuthorizationResponse authorizeTransaction() {
+        String messageId = BenchmarkApplication.nextMessageId();
+        return authorizeTransactionService.authorizeTransactionAndGetResponse(messageId, BenchmarkApplication.authorizationRequest(userId, messageId));
+    }
+
+    @Benchmark
+    public LoadResponse loadFunds() {
+        String messageId = BenchmarkApplication.nextMessageId();
+        return loadFundsService.loadFundsAndGetResponse(messageId, BenchmarkApplication.loadRequest(userId, messageId));
+    }
+}
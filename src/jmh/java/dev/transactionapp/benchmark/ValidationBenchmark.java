@@ -0,0 +1,57 @@
+package dev.transactionapp.benchmark;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.validator.ObjectsValidator;
+import dev.transactionapp.validator.RequestsValidator;
+import dev.transactionapp.validator.ValueOfEnum;
+import dev.transactionapp.validator.ValueOfEnumValidator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micro benchmark of the request validation: the `@ValueOfEnum` check on its own, the whole Bean Validation
+ * of an `AuthorizationRequest` and the stateless checks of the `RequestsValidator`.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ValidationBenchmark {
+
+    private ValueOfEnumValidator valueOfEnumValidator;
+    private ObjectsValidator<AuthorizationRequest> objectsValidator;
+    private RequestsValidator requestsValidator;
+    private AuthorizationRequest authorizationRequest;
+
+    @Setup
+    public void setUp() throws NoSuchFieldException {
+        valueOfEnumValidator = new ValueOfEnumValidator();
+        valueOfEnumValidator.initialize(Amount.class.getDeclaredField("debitOrCredit").getAnnotation(ValueOfEnum.class));
+        objectsValidator = new ObjectsValidator<>();
+        requestsValidator = new RequestsValidator();
+        authorizationRequest = new AuthorizationRequest(UUID.randomUUID().toString(), "messageId",
+                new Amount("123.45", "USD", DebitCredit.DEBIT.toString()));
+    }
+
+    @Benchmark
+    public boolean enumValidation() {
+        return valueOfEnumValidator.isValid(authorizationRequest.getTransactionAmount().getDebitOrCredit(), null);
+    }
+
+    @Benchmark
+    public Set<String> beanValidation() {
+        return objectsValidator.validate(authorizationRequest);
+    }
+
+    @Benchmark
+    public UUID requestChecks() {
+        return requestsValidator.checkAuthorizationRequestValidity(authorizationRequest.getMessageId(), authorizationRequest);
+    }
+}
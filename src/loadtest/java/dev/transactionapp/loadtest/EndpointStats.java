@@ -0,0 +1,86 @@
+package dev.transactionapp.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies (in microseconds) and outcomes of the measured requests of one endpoint.
+ *
+ * **Coordinated Omission:**
+ *  - `responseTime` is measured from the time the request was *scheduled* to be sent, not from when it was actually sent.
+ *  - When the application stalls, requests queued behind the stall are charged for the time they waited to be sent,
+ *    instead of silently being sent later (which would hide the stall from the percentiles).
+ *  - `serviceTime` is measured from the actual send; the gap between both shows how far the sender fell behind.
+ */
+final class EndpointStats {
+
+    final String name;
+    final Histogram responseTime = new ConcurrentHistogram(3);
+    final Histogram serviceTime = new ConcurrentHistogram(3);
+    final LongAdder approved = new LongAdder();
+    final LongAdder declined = new LongAdder();
+    final LongAdder serverErrors = new LongAdder();
+    final LongAdder failures = new LongAdder();
+    final ConcurrentMap<String, LongAdder> clientErrors = new ConcurrentHashMap<>();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    void record(long scheduledNanos, long sentNanos, long completedNanos, int status, String body) {
+        responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completedNanos - scheduledNanos));
+        serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completedNanos - sentNanos));
+        if (status >= 500)
+            serverErrors.increment();
+        else if (status >= 400)
+            clientErrors.computeIfAbsent(ErrorClassifier.classify(status, body), type -> new LongAdder()).increment();
+        else if (body.contains("\"DECLINED\""))
+            declined.increment();
+        else
+            approved.increment();
+    }
+
+    void recordFailure(long scheduledNanos, long completedNanos) {
+        responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(completedNanos - scheduledNanos));
+        failures.increment();
+    }
+
+    void report(PrintStream out, int durationSeconds) {
+        long count = responseTime.getTotalCount();
+        out.printf("%-15s %9d %12.1f %9.2f %9.2f %9.2f %9.2f %14.2f%n", name, count, (double) count / durationSeconds,
+                millis(responseTime, 50), millis(responseTime, 99), millis(responseTime, 99.9),
+                responseTime.getMaxValue() / 1000.0, millis(serviceTime, 99));
+    }
+
+    void reportOutcomes(PrintStream out) {
+        Map<String, Long> errors = new TreeMap<>();
+        clientErrors.forEach((type, counter) -> errors.put(type, counter.sum()));
+        out.printf("%-15s 2xx approved=%d declined=%d | 4xx %s | 5xx=%d | failed=%d%n", name, approved.sum(), declined.sum(),
+                errors.isEmpty() ? "none" : errors, serverErrors.sum(), failures.sum());
+    }
+
+    /**
+     * Writes the response time percentile distribution (in milliseconds), which can be plotted with HdrHistogram's plotter.
+     */
+    void writeDistribution(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        try (PrintStream out = new PrintStream(Files.newOutputStream(directory.resolve(name.replace("/", "") + ".hgrm")))) {
+            responseTime.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
@@ -0,0 +1,37 @@
+package dev.transactionapp.loadtest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Tells which exception a 4xx response comes from. The `Error` body written by `RestExceptionHandler` only carries
+ * the exception message and the status, so the exception is recognized by the format of its message.
+ */
+final class ErrorClassifier {
+
+    private static final Map<String, Pattern> MESSAGE_PATTERNS = new LinkedHashMap<>();
+
+    static {
+        MESSAGE_PATTERNS.put("UserNotFoundException", Pattern.compile("User with ID: .* not found"));
+        MESSAGE_PATTERNS.put("CurrencyNotMatchException", Pattern.compile("User currency: .* doesn't match with request body currency"));
+        MESSAGE_PATTERNS.put("MessageIdAlreadyExistsException", Pattern.compile("message id: .* already exists"));
+        MESSAGE_PATTERNS.put("MessageIdNotMatchException", Pattern.compile("path variable message: .* doesn't match request body message"));
+        MESSAGE_PATTERNS.put("InvalidTransactionTypeException", Pattern.compile("Supported transaction type: "));
+        MESSAGE_PATTERNS.put("InvalidUUIDException", Pattern.compile("is not A valid UUID format"));
+        MESSAGE_PATTERNS.put("InvalidBatchException", Pattern.compile("Batch (body must|can have|must have)"));
+        // field errors are written as a map, e.g. {amount=Amount must be a positive number}
+        MESSAGE_PATTERNS.put("MethodArgumentNotValidException", Pattern.compile("\"message\"\\s*:\\s*\"\\{"));
+    }
+
+    private ErrorClassifier() {
+    }
+
+    static String classify(int status, String body) {
+        for (Map.Entry<String, Pattern> entry : MESSAGE_PATTERNS.entrySet()) {
+            if (entry.getValue().matcher(body).find())
+                return entry.getKey();
+        }
+        return "HTTP " + status;
+    }
+}
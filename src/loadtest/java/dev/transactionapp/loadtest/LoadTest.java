@@ -0,0 +1,234 @@
+package dev.transactionapp.loadtest;
+
+import dev.transactionapp.Application;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.ingress.BinaryIngressServer;
+import dev.transactionapp.ingress.BinaryResponse;
+import dev.transactionapp.ingress.BinaryStatus;
+import dev.transactionapp.ingress.BinaryTransactionClient;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.UserRepository;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator for `PUT /authorization/{messageId}` and `PUT /load/{messageId}`, or for the same requests
+ * sent to the binary ingress with `--protocol=binary`, to compare both paths under the same schedule.
+ *
+ * Here's a breakdown of the steps involved:
+ *  1. Boots the application on a random port with its own in-memory database, so it runs offline anywhere.
+ *  2. Creates `--users` users, all in USD with `--initial-balance`.
+ *  3. Sends `--rate` requests per second on a fixed schedule for `--warmup` + `--duration` seconds. The schedule doesn't wait
+ *     for responses (open model), so a slow application faces the same arrival rate as in production.
+ *  4. Picks the user of every request with a Zipf distribution (`--skew`), and sends a load with probability `--load-ratio`.
+ *  5. Records the latency of the measured requests per endpoint in HdrHistograms, corrected for coordinated omission
+ *     (see `EndpointStats`), and prints percentiles, throughput and the 4xx responses by exception.
+ *
+ * With `--protocol=binary` the requests are spread over `--connections` `BinaryTransactionClient`s, and their statuses
+ * are counted as the equivalent HTTP statuses (BAD_REQUEST as 400, UNAVAILABLE as 503...).
+ */
+public final class LoadTest {
+
+    private static final String REQUEST_BODY = "{\"messageId\":\"%s\",\"userId\":\"%s\",\"transactionAmount\":{\"amount\":\"%s\",\"currency\":\"%s\",\"debitOrCredit\":\"%s\"}}";
+
+    private final LoadTestOptions options;
+    private final URI baseUri;
+    private final List<UUID> userIds;
+    private final ZipfSampler userSampler;
+    private final long maxAmount;
+    private final EndpointStats authorizations = new EndpointStats("/authorization");
+    private final EndpointStats loads = new EndpointStats("/load");
+    private final Semaphore inFlight;
+    private final HttpClient httpClient;
+    private final List<BinaryTransactionClient> binaryClients;
+
+    private LoadTest(LoadTestOptions options, URI baseUri, List<BinaryTransactionClient> binaryClients, List<UUID> userIds) {
+        this.options = options;
+        this.baseUri = baseUri;
+        this.binaryClients = binaryClients;
+        this.userIds = userIds;
+        this.userSampler = new ZipfSampler(userIds.size(), options.skew);
+        this.maxAmount = Money.parse(options.maxAmount);
+        this.inFlight = new Semaphore(options.maxInFlight);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "loadtest-http");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        try (ConfigurableApplicationContext context = startApplication(options)) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            List<BinaryTransactionClient> binaryClients = connectBinaryClients(context, options);
+            LoadTest loadTest = new LoadTest(options, URI.create("http://localhost:" + port), binaryClients, createUsers(context, options));
+            loadTest.run();
+            loadTest.report(System.out);
+            for (BinaryTransactionClient client : binaryClients)
+                client.close();
+        }
+        System.exit(0);
+    }
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options) {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("server.port", "0");
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1");
+        defaults.put("logging.level.root", "WARN");
+        defaults.put("logging.level.dev.transactionapp", "WARN");
+        if (options.protocol.equals("binary")) {
+            defaults.put("transaction.ingress.binary.enabled", "true");
+            defaults.put("transaction.ingress.binary.port", "0");
+        }
+        List<String> args = new ArrayList<>(options.applicationArgs);
+        // passed as command line arguments so they win over the active profile's properties files, unless given explicitly
+        defaults.forEach((name, value) -> {
+            if (options.applicationArgs.stream().noneMatch(arg -> arg.startsWith("--" + name + "=")))
+                args.add("--" + name + "=" + value);
+        });
+        return new SpringApplicationBuilder(Application.class).run(args.toArray(String[]::new));
+    }
+
+    private static List<BinaryTransactionClient> connectBinaryClients(ConfigurableApplicationContext context, LoadTestOptions options) throws IOException {
+        if (!options.protocol.equals("binary"))
+            return List.of();
+        int port = context.getBean(BinaryIngressServer.class).getPort();
+        List<BinaryTransactionClient> clients = new ArrayList<>();
+        for (int i = 0; i < options.connections; i++)
+            clients.add(BinaryTransactionClient.connect("localhost", port));
+        return clients;
+    }
+
+    private static List<UUID> createUsers(ConfigurableApplicationContext context, LoadTestOptions options) {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < options.users; i++) {
+            User user = new User("USD", Money.parse(options.initialBalance));
+            user.setCreatedAt(LocalDateTime.now());
+            users.add(user);
+        }
+        return context.getBean(UserRepository.class).saveAll(users).stream().map(User::getId).toList();
+    }
+
+    private void run() throws InterruptedException {
+        System.out.println("Load test: " + options);
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(options.warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * TimeUnit.SECONDS.toNanos(1) / options.rate;
+            if (scheduled >= end)
+                break;
+            long wait;
+            while ((wait = scheduled - System.nanoTime()) > 0)
+                LockSupport.parkNanos(wait);
+            inFlight.acquire();
+            if (binaryClients.isEmpty())
+                send(scheduled, scheduled >= measureStart);
+            else
+                sendBinary(binaryClients.get((int) (i % binaryClients.size())), scheduled, scheduled >= measureStart);
+        }
+        if (!inFlight.tryAcquire(options.maxInFlight, 60, TimeUnit.SECONDS))
+            System.out.println("Gave up waiting for " + (options.maxInFlight - inFlight.availablePermits()) + " outstanding requests");
+    }
+
+    private void send(long scheduled, boolean measured) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean load = random.nextDouble() < options.loadRatio;
+        boolean invalid = random.nextDouble() < options.errorRatio;
+        // invalid requests are split between an unknown user and a currency mismatch
+        boolean unknownUser = invalid && random.nextBoolean();
+        UUID userId = unknownUser ? UUID.randomUUID() : userIds.get(userSampler.next());
+        String currency = invalid && !unknownUser ? "INR" : "USD";
+        String messageId = UUID.randomUUID().toString();
+        String amount = Money.format(random.nextLong(1, maxAmount + 1));
+        String body = String.format(REQUEST_BODY, messageId, userId, amount, currency, load ? "CREDIT" : "DEBIT");
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve((load ? "/load/" : "/authorization/") + messageId))
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        EndpointStats stats = load ? loads : authorizations;
+        long sent = System.nanoTime();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, ex) -> {
+            long completed = System.nanoTime();
+            inFlight.release();
+            if (!measured)
+                return;
+            if (ex != null)
+                stats.recordFailure(scheduled, completed);
+            else
+                stats.record(scheduled, sent, completed, response.statusCode(), response.body());
+        });
+    }
+
+    private void sendBinary(BinaryTransactionClient client, long scheduled, boolean measured) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        boolean load = random.nextDouble() < options.loadRatio;
+        boolean invalid = random.nextDouble() < options.errorRatio;
+        boolean unknownUser = invalid && random.nextBoolean();
+        UUID userId = unknownUser ? UUID.randomUUID() : userIds.get(userSampler.next());
+        String currency = invalid && !unknownUser ? "INR" : "USD";
+        String messageId = UUID.randomUUID().toString();
+        long amount = random.nextLong(1, maxAmount + 1);
+        EndpointStats stats = load ? loads : authorizations;
+        long sent = System.nanoTime();
+        CompletableFuture<BinaryResponse> response = load
+                ? client.load(userId, messageId, amount, currency)
+                : client.authorize(userId, messageId, amount, currency);
+        response.whenComplete((binaryResponse, ex) -> {
+            long completed = System.nanoTime();
+            inFlight.release();
+            if (!measured)
+                return;
+            if (ex != null)
+                stats.recordFailure(scheduled, completed);
+            else
+                stats.record(scheduled, sent, completed, httpStatus(binaryResponse.status()),
+                        binaryResponse.status() == BinaryStatus.DECLINED ? "\"DECLINED\"" : String.valueOf(binaryResponse.message()));
+        });
+    }
+
+    /**
+     * The HTTP status the same outcome gets on the HTTP path, so both protocols are reported alike.
+     */
+    private static int httpStatus(BinaryStatus status) {
+        return switch (status) {
+            case APPROVED, DECLINED -> 201;
+            case BAD_REQUEST -> 400;
+            case NOT_OWNER -> 421;
+            case UNAVAILABLE -> 503;
+            case INTERNAL_ERROR -> 500;
+        };
+    }
+
+    private void report(PrintStream out) throws Exception {
+        out.println();
+        out.printf("%-15s %9s %12s %9s %9s %9s %9s %14s%n", "Endpoint", "Requests", "Throughput/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "service p99 ms");
+        for (EndpointStats stats : List.of(authorizations, loads))
+            stats.report(out, options.durationSeconds);
+        out.println();
+        for (EndpointStats stats : List.of(authorizations, loads)) {
+            stats.reportOutcomes(out);
+            stats.writeDistribution(options.reportDir);
+        }
+        out.println();
+        out.println("Latency is measured from the scheduled send time (coordinated omission corrected); distributions written to " + options.reportDir);
+    }
+}
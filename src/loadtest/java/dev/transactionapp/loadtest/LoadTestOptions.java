@@ -0,0 +1,89 @@
+package dev.transactionapp.loadtest;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Arguments of the load test, all given as `--name=value`:
+ *
+ *  --rate=200             requests per second, sent on schedule whether earlier requests completed or not (open model)
+ *  --duration=30          seconds measured, after the warmup
+ *  --warmup=5             seconds of traffic sent before measuring
+ *  --users=1000           number of users created before the run
+ *  --skew=1.0             Zipf exponent of the user choice: 0 is uniform, higher values concentrate traffic on fewer users
+ *  --load-ratio=0.3       share of loads, the rest are authorizations
+ *  --error-ratio=0.0      share of requests sent for an unknown user or in the wrong currency, to exercise the 4xx paths
+ *  --initial-balance=1000 balance of every user, in USD
+ *  --max-amount=100       amounts are drawn uniformly between 0.01 and this, in USD
+ *  --max-in-flight=10000  requests outstanding at once before the sender waits (the wait still counts as latency)
+ *  --report-dir=...       where the HdrHistogram percentile distributions (.hgrm) are written
+ *  --protocol=http        "http" (JSON over HTTP/1.1) or "binary" (`BinaryFrames` over TCP, the binary ingress is enabled)
+ *  --connections=8        binary protocol: connections the requests are spread over, each pipelining its requests
+ *
+ * Any `--spring.*`, `--server.*`, `--logging.*` or `--transaction.*` argument is passed on to the application,
+ * e.g. `--transaction.engine.mode=sharded`.
+ */
+final class LoadTestOptions {
+
+    private static final List<String> APPLICATION_PREFIXES = List.of("--spring.", "--server.", "--logging.", "--transaction.");
+
+    int rate = 200;
+    int durationSeconds = 30;
+    int warmupSeconds = 5;
+    int users = 1000;
+    double skew = 1.0;
+    double loadRatio = 0.3;
+    double errorRatio = 0.0;
+    String initialBalance = "1000";
+    String maxAmount = "100";
+    int maxInFlight = 10000;
+    Path reportDir = Path.of("target", "loadtest");
+    String protocol = "http";
+    int connections = 8;
+    final List<String> applicationArgs = new ArrayList<>();
+
+    static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (APPLICATION_PREFIXES.stream().anyMatch(arg::startsWith)) {
+                options.applicationArgs.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0)
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            switch (name) {
+                case "rate" -> options.rate = Integer.parseInt(value);
+                case "duration" -> options.durationSeconds = Integer.parseInt(value);
+                case "warmup" -> options.warmupSeconds = Integer.parseInt(value);
+                case "users" -> options.users = Integer.parseInt(value);
+                case "skew" -> options.skew = Double.parseDouble(value);
+                case "load-ratio" -> options.loadRatio = Double.parseDouble(value);
+                case "error-ratio" -> options.errorRatio = Double.parseDouble(value);
+                case "initial-balance" -> options.initialBalance = value;
+                case "max-amount" -> options.maxAmount = value;
+                case "max-in-flight" -> options.maxInFlight = Integer.parseInt(value);
+                case "report-dir" -> options.reportDir = Path.of(value);
+                case "protocol" -> options.protocol = value;
+                case "connections" -> options.connections = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.rate < 1 || options.durationSeconds < 1 || options.users < 1 || options.maxInFlight < 1)
+            throw new IllegalArgumentException("rate, duration, users and max-in-flight must be at least 1");
+        if (!options.protocol.equals("http") && !options.protocol.equals("binary"))
+            throw new IllegalArgumentException("protocol must be http or binary");
+        if (options.connections < 1)
+            throw new IllegalArgumentException("connections must be at least 1");
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("protocol=%s rate=%d/s duration=%ds warmup=%ds users=%d skew=%.2f load-ratio=%.2f error-ratio=%.2f %s",
+                protocol, rate, durationSeconds, warmupSeconds, users, skew, loadRatio, errorRatio, String.join(" ", applicationArgs));
+    }
+}
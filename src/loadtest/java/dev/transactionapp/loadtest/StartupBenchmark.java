@@ -0,0 +1,243 @@
+package dev.transactionapp.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the time to first successful authorization of a freshly launched application: from the start of its JVM
+ * until a `PUT /authorization/{messageId}` is answered with 201, the user it debits created with `POST /user` first.
+ * Both requests are retried every few milliseconds until the application answers them.
+ *
+ * Here's a breakdown of the steps involved:
+ *  1. Lays the jar (`--jar`) out like `Dockerfile.fast-startup` does: the application classes in `application.jar`,
+ *     the dependencies in `lib/`, so the classes are loaded from plain jars and can be archived by AppCDS.
+ *  2. Runs `--runs` launches of each configuration, one after the other, every one with its own in-memory database:
+ *      - `default`: the `dev` profile, as the application runs today;
+ *      - `fast-startup`: the `dev,fast-startup` profiles, the AOT-generated bean definitions (`-Dspring.aot.enabled=true`,
+ *        when the jar was built with `mvn -Pfast-startup package`) and an AppCDS archive, dumped first by a training run.
+ *  3. Prints the minimum, median and maximum time to first authorization of each configuration, and the application's
+ *     own "Started Application in" time.
+ *
+ * Arguments, given as `--name=value`: `--runs=5`, `--jar=target/transaction-app-1.0.0.jar`, `--report-dir=target/startup`
+ * (the extracted jar, the archive and the logs of every launch). Any `--spring.*`, `--server.*`, `--logging.*` or
+ * `--transaction.*` argument is passed on to the application, in both configurations.
+ */
+public final class StartupBenchmark {
+
+    private static final List<String> APPLICATION_PREFIXES = List.of("--spring.", "--server.", "--logging.", "--transaction.");
+    private static final String MAIN_CLASS = "dev.transactionapp.Application";
+    private static final String AOT_INITIALIZER = "dev/transactionapp/Application__ApplicationContextInitializer.class";
+    private static final Pattern STARTED = Pattern.compile("Started Application in ([0-9.]+) seconds");
+    private static final Pattern USER_ID = Pattern.compile("\"id\":\"([^\"]+)\"");
+    private static final long TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(3);
+    private static final long POLL_INTERVAL_MILLIS = 5;
+
+    private final int runs;
+    private final Path jar;
+    private final Path reportDir;
+    private final List<String> applicationArgs;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    private StartupBenchmark(int runs, Path jar, Path reportDir, List<String> applicationArgs) {
+        this.runs = runs;
+        this.jar = jar;
+        this.reportDir = reportDir;
+        this.applicationArgs = applicationArgs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int runs = 5;
+        Path jar = Path.of("target", "transaction-app-1.0.0.jar");
+        Path reportDir = Path.of("target", "startup");
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (APPLICATION_PREFIXES.stream().anyMatch(arg::startsWith)) {
+                applicationArgs.add(arg);
+                continue;
+            }
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0)
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            String value = arg.substring(separator + 1);
+            switch (arg.substring(2, separator)) {
+                case "runs" -> runs = Integer.parseInt(value);
+                case "jar" -> jar = Path.of(value);
+                // the load test's report directory, when run from the loadtest Maven profile
+                case "report-dir" -> reportDir = Path.of(value).resolveSibling("startup");
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (runs < 1)
+            throw new IllegalArgumentException("runs must be at least 1");
+        new StartupBenchmark(runs, jar, reportDir, applicationArgs).run();
+        System.exit(0);
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Path appDir = reportDir.resolve("app");
+        boolean aot = extract(appDir);
+        Path archive = reportDir.resolve("app.jsa").toAbsolutePath();
+        Files.deleteIfExists(archive);
+
+        List<String> fastStartupOptions = new ArrayList<>();
+        if (aot)
+            fastStartupOptions.add("-Dspring.aot.enabled=true");
+        else
+            System.out.println("No AOT-generated classes in " + jar + ", build it with: mvn -Pfast-startup -DskipTests package");
+
+        // training run: boots and exits, the JVM dumps the classes it loaded
+        List<String> training = new ArrayList<>(fastStartupOptions);
+        training.add("-XX:ArchiveClassesAtExit=" + archive);
+        launch(appDir, "training", training, "dev,fast-startup", List.of("--transaction.startup.exit-when-ready=true")).waitFor(3, TimeUnit.MINUTES);
+        if (Files.exists(archive))
+            fastStartupOptions.add("-XX:SharedArchiveFile=" + archive);
+        else
+            System.out.println("No AppCDS archive was dumped, see " + reportDir.resolve("training.log"));
+
+        System.out.printf("Startup benchmark: %d runs, %s, fast-startup JVM options: %s%n", runs, String.join(" ", applicationArgs), fastStartupOptions);
+        report("default", measure(appDir, "default", List.of(), "dev"));
+        report("fast-startup", measure(appDir, "fast-startup", fastStartupOptions, "dev,fast-startup"));
+    }
+
+    private List<long[]> measure(Path appDir, String name, List<String> jvmOptions, String profiles) throws IOException, InterruptedException {
+        List<long[]> results = new ArrayList<>();
+        for (int i = 0; i < runs; i++) {
+            int port = freePort();
+            long launched = System.nanoTime();
+            Process process = launch(appDir, name + "-" + i, jvmOptions, profiles, List.of("--server.port=" + port));
+            try {
+                long firstAuthorization = firstAuthorization(URI.create("http://localhost:" + port), process) - launched;
+                results.add(new long[]{TimeUnit.NANOSECONDS.toMillis(firstAuthorization), startedMillis(reportDir.resolve(name + "-" + i + ".log"))});
+            } finally {
+                process.destroy();
+                process.waitFor(30, TimeUnit.SECONDS);
+            }
+        }
+        return results;
+    }
+
+    private Process launch(Path appDir, String name, List<String> jvmOptions, String profiles, List<String> args) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmOptions);
+        command.add("-cp");
+        command.add("application.jar" + File.pathSeparator + "lib/*");
+        command.add(MAIN_CLASS);
+        command.add("--spring.profiles.active=" + profiles);
+        command.add("--spring.datasource.url=jdbc:h2:mem:startup;DB_CLOSE_ON_EXIT=FALSE");
+        command.addAll(args);
+        command.addAll(applicationArgs);
+        Path log = reportDir.resolve(name + ".log");
+        return new ProcessBuilder(command)
+                .directory(appDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log.toFile())
+                .start();
+    }
+
+    private long firstAuthorization(URI baseUri, Process process) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        String userId = null;
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive())
+                throw new IllegalStateException("The application exited with " + process.exitValue());
+            try {
+                if (userId == null) {
+                    HttpResponse<String> response = send(HttpRequest.newBuilder(baseUri.resolve("/user"))
+                            .POST(HttpRequest.BodyPublishers.ofString("{\"currency\":\"USD\",\"balance\":\"100.00\"}")));
+                    Matcher matcher = USER_ID.matcher(response.body());
+                    if (response.statusCode() == 201 && matcher.find())
+                        userId = matcher.group(1);
+                }
+                if (userId != null) {
+                    String messageId = UUID.randomUUID().toString();
+                    HttpResponse<String> response = send(HttpRequest.newBuilder(baseUri.resolve("/authorization/" + messageId))
+                            .PUT(HttpRequest.BodyPublishers.ofString("{\"messageId\":\"" + messageId + "\",\"userId\":\"" + userId
+                                    + "\",\"transactionAmount\":{\"amount\":\"1.00\",\"currency\":\"USD\",\"debitOrCredit\":\"DEBIT\"}}")));
+                    if (response.statusCode() == 201)
+                        return System.nanoTime();
+                }
+            } catch (IOException ex) {
+                // not listening yet
+            }
+            Thread.sleep(POLL_INTERVAL_MILLIS);
+        }
+        throw new IllegalStateException("No successful authorization after " + TimeUnit.NANOSECONDS.toSeconds(TIMEOUT_NANOS) + "s");
+    }
+
+    private HttpResponse<String> send(HttpRequest.Builder request) throws IOException, InterruptedException {
+        return httpClient.send(request.header("Content-Type", "application/json").timeout(Duration.ofSeconds(10)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    /**
+     * Extracts the Spring Boot jar into `application.jar` (BOOT-INF/classes) and `lib/` (BOOT-INF/lib).
+     *
+     * @return Whether the jar holds AOT-generated bean definitions.
+     */
+    private boolean extract(Path appDir) throws IOException {
+        Path lib = appDir.resolve("lib");
+        Files.createDirectories(lib);
+        boolean aot = false;
+        try (JarFile jarFile = new JarFile(jar.toFile());
+             JarOutputStream application = new JarOutputStream(Files.newOutputStream(appDir.resolve("application.jar")))) {
+            for (JarEntry entry : Collections.list(jarFile.entries())) {
+                String name = entry.getName();
+                if (name.startsWith("BOOT-INF/lib/") && !entry.isDirectory()) {
+                    try (InputStream in = jarFile.getInputStream(entry)) {
+                        Files.copy(in, lib.resolve(name.substring("BOOT-INF/lib/".length())), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } else if (name.startsWith("BOOT-INF/classes/") && name.length() > "BOOT-INF/classes/".length()) {
+                    String className = name.substring("BOOT-INF/classes/".length());
+                    aot |= className.equals(AOT_INITIALIZER);
+                    application.putNextEntry(new JarEntry(className));
+                    if (!entry.isDirectory())
+                        try (InputStream in = jarFile.getInputStream(entry)) {
+                            in.transferTo(application);
+                        }
+                    application.closeEntry();
+                }
+            }
+        }
+        return aot;
+    }
+
+    private static long startedMillis(Path log) throws IOException {
+        Matcher matcher = STARTED.matcher(Files.readString(log));
+        return matcher.find() ? Math.round(Double.parseDouble(matcher.group(1)) * 1000) : -1;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private void report(String name, List<long[]> results) {
+        long[] firstAuthorization = results.stream().mapToLong(result -> result[0]).sorted().toArray();
+        long[] started = results.stream().mapToLong(result -> result[1]).sorted().toArray();
+        System.out.printf("%-13s first authorization: min %6d ms  median %6d ms  max %6d ms | started in: median %6d ms%n", name,
+                firstAuthorization[0], firstAuthorization[firstAuthorization.length / 2], firstAuthorization[firstAuthorization.length - 1],
+                started[started.length / 2]);
+    }
+}
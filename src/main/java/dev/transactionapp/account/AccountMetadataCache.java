@@ -0,0 +1,98 @@
+package dev.transactionapp.account;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the metadata of user accounts that never changes once the user is created, so requests are checked against it
+ * without a database round trip, before a lock or a connection is taken.
+ *
+ * Entries live in two bounded in-memory caches, read through from the `users` table on a miss:
+ *  - the currency of known users (`transaction.account-cache.size` entries, LRU eviction, reloaded after `transaction.account-cache.ttl`);
+ *  - the IDs found unknown (`transaction.account-cache.unknown-size` entries, kept for `transaction.account-cache.unknown-ttl`),
+ *    so a client retrying with a wrong ID doesn't hit the database every time.
+ *
+ * A user created on this node is `invalidate`d right away; one created on another node is seen once its unknown entry expires.
+ * Hits, misses and evictions of both caches are exposed as the `cache.*` metrics, tagged `cache=account.metadata`
+ * and `cache=account.unknown`.
+ */
+@Slf4j
+@Component
+public class AccountMetadataCache {
+
+    private final UserRepository userRepository;
+    private final Cache<UUID, String> currencies;
+    private final Cache<UUID, Boolean> unknownUsers;
+
+    public AccountMetadataCache(UserRepository userRepository,
+                                TransactionMetrics transactionMetrics,
+                                @Value("${transaction.account-cache.size:100000}") long size,
+                                @Value("${transaction.account-cache.ttl:1h}") Duration ttl,
+                                @Value("${transaction.account-cache.unknown-size:10000}") long unknownSize,
+                                @Value("${transaction.account-cache.unknown-ttl:10s}") Duration unknownTtl) {
+        this.userRepository = userRepository;
+        this.currencies = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        this.unknownUsers = CacheBuilder.newBuilder()
+                .maximumSize(unknownSize)
+                .expireAfterWrite(unknownTtl.toMillis(), TimeUnit.MILLISECONDS)
+                .recordStats()
+                .build();
+        transactionMetrics.cache("account.metadata", currencies);
+        transactionMetrics.cache("account.unknown", unknownUsers);
+    }
+
+    /**
+     * @param userId The user a request applies to.
+     * @return The user's currency.
+     * @throws UserNotFoundException if there is no user with that ID.
+     */
+    public String currencyOf(UUID userId) throws UserNotFoundException {
+        String currency = findCurrency(userId);
+        if (currency == null)
+            throw new UserNotFoundException(String.format("User with ID: %s not found", userId));
+        return currency;
+    }
+
+    /**
+     * Same as `currencyOf`, without throwing, for the request paths that answer an unknown user directly.
+     *
+     * @param userId The user a request applies to.
+     * @return The user's currency, or null if there is no user with that ID.
+     */
+    public String findCurrency(UUID userId) {
+        String currency = currencies.getIfPresent(userId);
+        if (currency != null)
+            return currency;
+        if (unknownUsers.getIfPresent(userId) != null)
+            return null;
+        currency = userRepository.findCurrencyById(userId).orElse(null);
+        if (currency == null) {
+            unknownUsers.put(userId, Boolean.TRUE);
+            return null;
+        }
+        currencies.put(userId, currency);
+        return currency;
+    }
+
+    /**
+     * Forgets what is known of the user, to be called once the user is created.
+     */
+    public void invalidate(UUID userId) {
+        currencies.invalidate(userId);
+        unknownUsers.invalidate(userId);
+    }
+}
@@ -0,0 +1,73 @@
+package dev.transactionapp.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Pre-serialized JSON body of an `Error` whose message follows a fixed format, e.g. "User with ID: %s not found".
+ * The constant parts of the body are escaped once, up front, so rendering one only escapes its values in between:
+ * the message isn't formatted, and no `Error` is created or serialized. A format without placeholders renders the
+ * same canned bytes every time.
+ *
+ * The bytes are the same as `TransactionJsonCodec.toBytes(new Error(String.format(format, values), code))`.
+ * Only `%s` placeholders are supported.
+ */
+public final class ErrorBody {
+
+    private static final String PLACEHOLDER = "%s";
+    private static final byte[] MESSAGE = "{\"message\":\"".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] CODE = "\",\"code\":".getBytes(StandardCharsets.UTF_8);
+
+    // the constant parts of the body, a value goes between each two
+    private final byte[][] parts;
+    private final int constantLength;
+
+    public ErrorBody(String format, String code) {
+        String[] segments = format.split(PLACEHOLDER, -1);
+        this.parts = new byte[segments.length][];
+        int length = 0;
+        for (int i = 0; i < segments.length; i++) {
+            JsonWriter writer = new JsonWriter(new byte[64]);
+            if (i == 0)
+                writer.raw(MESSAGE);
+            writer.escaped(segments[i]);
+            if (i == segments.length - 1) {
+                writer.raw(CODE);
+                writer.string(code);
+                writer.raw('}');
+            }
+            parts[i] = Arrays.copyOf(writer.buffer(), writer.size());
+            length += parts[i].length;
+        }
+        this.constantLength = length;
+    }
+
+    /**
+     * @return The number of values `render` takes.
+     */
+    public int placeholders() {
+        return parts.length - 1;
+    }
+
+    /**
+     * @param values One value per placeholder, in order; null is rendered as "null", like `String.format` does.
+     * @return The UTF-8 JSON body.
+     */
+    public byte[] render(String... values) {
+        if (values.length != parts.length - 1)
+            throw new IllegalArgumentException("Expected " + (parts.length - 1) + " values, got " + values.length);
+        if (values.length == 0)
+            return parts[0].clone();
+        int length = constantLength;
+        for (String value : values)
+            // room for the worst case of JsonWriter.escaped, so the buffer never grows
+            length += 6 * (value == null ? 4 : value.length());
+        JsonWriter writer = new JsonWriter(new byte[length]);
+        for (int i = 0; i < values.length; i++) {
+            writer.raw(parts[i]);
+            writer.escaped(String.valueOf(values[i]));
+        }
+        writer.raw(parts[values.length]);
+        return Arrays.copyOf(writer.buffer(), writer.size());
+    }
+}
@@ -0,0 +1,315 @@
+package dev.transactionapp.codec;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Cursor over a UTF-8 JSON document held in a byte array, for the hand-written readers of `TransactionJsonCodec`.
+ * Follows the same grammar as Jackson's default parser: no comments, no single quotes, no unquoted control characters,
+ * no leading zeros.
+ *
+ * Field names are matched against the expected names as raw bytes, so only the values kept by the caller become Strings.
+ */
+final class JsonReader {
+
+    static final int END_OF_OBJECT = -2;
+    static final int UNKNOWN_FIELD = -1;
+
+    private final byte[] json;
+    private final int end;
+    private int pos;
+
+    JsonReader(byte[] json, int length) {
+        this.json = json;
+        this.end = length;
+    }
+
+    /**
+     * Moves past the `{` of an object.
+     */
+    void beginObject() throws IOException {
+        expect('{');
+    }
+
+    /**
+     * @return true if the next value is `null`, which is then consumed.
+     */
+    boolean nextIsNull() throws IOException {
+        skipWhitespace();
+        if (peek() != 'n')
+            return false;
+        literal("null");
+        return true;
+    }
+
+    /**
+     * Reads the first field name of the object just begun.
+     *
+     * @return The index of the name in `names`, `UNKNOWN_FIELD`, or `END_OF_OBJECT` for an empty object.
+     */
+    int firstField(byte[][] names) throws IOException {
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return END_OF_OBJECT;
+        }
+        return fieldName(names);
+    }
+
+    /**
+     * Reads the name of the field after the value just read.
+     *
+     * @return The index of the name in `names`, `UNKNOWN_FIELD`, or `END_OF_OBJECT` once the object ends.
+     */
+    int nextField(byte[][] names) throws IOException {
+        skipWhitespace();
+        byte next = peek();
+        pos++;
+        if (next == '}')
+            return END_OF_OBJECT;
+        if (next != ',')
+            throw error("Expected ',' or '}'");
+        skipWhitespace();
+        return fieldName(names);
+    }
+
+    /**
+     * Reads a value into a String field. Numbers and booleans are taken as their text, like Jackson coerces scalars.
+     *
+     * @return The text of the value, or null for `null`.
+     */
+    String readString() throws IOException {
+        skipWhitespace();
+        byte next = peek();
+        switch (next) {
+            case '"':
+                return string();
+            case 'n':
+                literal("null");
+                return null;
+            case 't':
+                literal("true");
+                return "true";
+            case 'f':
+                literal("false");
+                return "false";
+            case '{':
+            case '[':
+                throw error("Expected a string");
+            default:
+                int start = pos;
+                number();
+                return new String(json, start, pos - start, StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Skips the value of a field that isn't mapped, whatever its type.
+     */
+    void skipValue() throws IOException {
+        skipWhitespace();
+        switch (peek()) {
+            case '"' -> string();
+            case 'n' -> literal("null");
+            case 't' -> literal("true");
+            case 'f' -> literal("false");
+            case '{' -> {
+                pos++;
+                for (int field = firstField(null); field != END_OF_OBJECT; field = nextField(null))
+                    skipValue();
+            }
+            case '[' -> {
+                pos++;
+                skipWhitespace();
+                if (peek() == ']') {
+                    pos++;
+                    return;
+                }
+                while (true) {
+                    skipValue();
+                    skipWhitespace();
+                    if (peek() != ',')
+                        break;
+                    pos++;
+                }
+                expect(']');
+            }
+            default -> number();
+        }
+    }
+
+    private int fieldName(byte[][] names) throws IOException {
+        if (peek() != '"')
+            throw error("Expected a field name");
+        int start = pos + 1;
+        int rawEnd = rawStringEnd(start);
+        int index = UNKNOWN_FIELD;
+        if (rawEnd >= 0) {
+            int length = rawEnd - start;
+            for (int i = 0; names != null && i < names.length && index == UNKNOWN_FIELD; i++) {
+                if (names[i].length == length && Arrays.equals(json, start, rawEnd, names[i], 0, length))
+                    index = i;
+            }
+            pos = rawEnd + 1;
+        } else {
+            String name = string();
+            for (int i = 0; names != null && i < names.length && index == UNKNOWN_FIELD; i++) {
+                if (name.equals(new String(names[i], StandardCharsets.UTF_8)))
+                    index = i;
+            }
+        }
+        expect(':');
+        return index;
+    }
+
+    /**
+     * @return The position of the closing quote of a string without escapes starting at `start`, or -1 if it has escapes.
+     */
+    private int rawStringEnd(int start) throws IOException {
+        for (int i = start; i < end; i++) {
+            byte b = json[i];
+            if (b == '"')
+                return i;
+            if (b == '\\')
+                return -1;
+            if (b >= 0 && b < 0x20)
+                throw error("Unquoted control character in string");
+        }
+        throw error("Unterminated string");
+    }
+
+    private String string() throws IOException {
+        int start = pos + 1;
+        int rawEnd = rawStringEnd(start);
+        if (rawEnd >= 0) {
+            pos = rawEnd + 1;
+            return new String(json, start, rawEnd - start, StandardCharsets.UTF_8);
+        }
+        StringBuilder sb = new StringBuilder();
+        int segment = start;
+        int i = start;
+        while (true) {
+            if (i >= end)
+                throw error("Unterminated string");
+            byte b = json[i];
+            if (b == '"')
+                break;
+            if (b >= 0 && b < 0x20)
+                throw error("Unquoted control character in string");
+            if (b != '\\') {
+                i++;
+                continue;
+            }
+            sb.append(new String(json, segment, i - segment, StandardCharsets.UTF_8));
+            if (i + 1 >= end)
+                throw error("Unterminated string");
+            byte escaped = json[i + 1];
+            i += 2;
+            switch (escaped) {
+                case '"' -> sb.append('"');
+                case '\\' -> sb.append('\\');
+                case '/' -> sb.append('/');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'n' -> sb.append('\n');
+                case 'r' -> sb.append('\r');
+                case 't' -> sb.append('\t');
+                case 'u' -> {
+                    if (i + 4 > end)
+                        throw error("Unterminated escape");
+                    int code = 0;
+                    for (int escapeEnd = i + 4; i < escapeEnd; i++) {
+                        int digit = Character.digit(json[i], 16);
+                        if (digit < 0)
+                            throw error("Invalid escape");
+                        code = code * 16 + digit;
+                    }
+                    sb.append((char) code);
+                }
+                default -> throw error("Invalid escape");
+            }
+            segment = i;
+        }
+        sb.append(new String(json, segment, i - segment, StandardCharsets.UTF_8));
+        pos = i + 1;
+        return sb.toString();
+    }
+
+    private void number() throws IOException {
+        int start = pos;
+        if (pos < end && json[pos] == '-')
+            pos++;
+        int integerStart = pos;
+        int integerDigits = digits();
+        if (integerDigits == 0)
+            throw error("Unexpected character");
+        if (integerDigits > 1 && json[integerStart] == '0')
+            throw error("Leading zeroes not allowed");
+        if (pos < end && json[pos] == '.') {
+            pos++;
+            if (digits() == 0)
+                throw error("Decimal point not followed by a digit");
+        }
+        if (pos < end && (json[pos] == 'e' || json[pos] == 'E')) {
+            pos++;
+            if (pos < end && (json[pos] == '+' || json[pos] == '-'))
+                pos++;
+            if (digits() == 0)
+                throw error("Exponent not followed by a digit");
+        }
+        if (pos == start)
+            throw error("Unexpected character");
+    }
+
+    private int digits() {
+        int start = pos;
+        while (pos < end && json[pos] >= '0' && json[pos] <= '9')
+            pos++;
+        return pos - start;
+    }
+
+    private void literal(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            if (pos >= end || json[pos] != literal.charAt(i))
+                throw error("Unrecognized token");
+            pos++;
+        }
+    }
+
+    private void expect(char c) throws IOException {
+        skipWhitespace();
+        if (peek() != c)
+            throw error("Expected '" + c + "'");
+        pos++;
+    }
+
+    private byte peek() throws IOException {
+        if (pos >= end)
+            throw error("Unexpected end of input");
+        return json[pos];
+    }
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            byte b = json[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t')
+                return;
+            pos++;
+        }
+    }
+
+    private MalformedJsonException error(String message) {
+        return new MalformedJsonException(String.format("Malformed JSON at offset %d: %s", pos, message));
+    }
+
+    /**
+     * Thrown for a body that isn't valid JSON or doesn't have the expected shape, as opposed to a failure to read it.
+     */
+    static final class MalformedJsonException extends IOException {
+
+        MalformedJsonException(String message) {
+            super(message);
+        }
+    }
+}
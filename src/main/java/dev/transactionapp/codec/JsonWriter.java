@@ -0,0 +1,120 @@
+package dev.transactionapp.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Appends UTF-8 JSON to a growable byte array, for the hand-written writers of `TransactionJsonCodec`.
+ * Strings are escaped exactly like Jackson does by default (`\"`, `\\`, the short escapes of `\b \t \n \f \r`,
+ * `\\uXXXX` for the other control characters and for every surrogate, paired or not, everything else as is), so both
+ * produce the same bytes.
+ */
+final class JsonWriter {
+
+    private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+    private int size;
+
+    JsonWriter(byte[] buffer) {
+        this.buffer = buffer;
+    }
+
+    byte[] buffer() {
+        return buffer;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Appends bytes known to be valid JSON, e.g. a precomputed `"name":`.
+     */
+    void raw(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+    }
+
+    void raw(char c) {
+        ensureCapacity(1);
+        buffer[size++] = (byte) c;
+    }
+
+    /**
+     * Appends a quoted and escaped string, or `null`.
+     */
+    void string(String value) {
+        if (value == null) {
+            raw(NULL);
+            return;
+        }
+        raw('"');
+        escaped(value);
+        raw('"');
+    }
+
+    /**
+     * Appends the escaped characters of a string, without quotes.
+     */
+    void escaped(String value) {
+        int length = value.length();
+        // worst case: every char is a \\uXXXX escape or 3 UTF-8 bytes
+        ensureCapacity(length * 6);
+        byte[] out = buffer;
+        int pos = size;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                out[pos++] = (byte) c;
+            } else if (c < 0x80) {
+                pos = escape(out, pos, c);
+            } else if (c < 0x800) {
+                out[pos++] = (byte) (0xC0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                pos = unicodeEscape(out, pos, c);
+            } else {
+                out[pos++] = (byte) (0xE0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                out[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        size = pos;
+    }
+
+    private static int escape(byte[] out, int pos, char c) {
+        char shortEscape = switch (c) {
+            case '"' -> '"';
+            case '\\' -> '\\';
+            case '\b' -> 'b';
+            case '\t' -> 't';
+            case '\n' -> 'n';
+            case '\f' -> 'f';
+            case '\r' -> 'r';
+            default -> 0;
+        };
+        if (shortEscape == 0)
+            return unicodeEscape(out, pos, c);
+        out[pos++] = '\\';
+        out[pos++] = (byte) shortEscape;
+        return pos;
+    }
+
+    private static int unicodeEscape(byte[] out, int pos, char c) {
+        out[pos++] = '\\';
+        out[pos++] = 'u';
+        out[pos++] = HEX[c >> 12];
+        out[pos++] = HEX[(c >> 8) & 0xF];
+        out[pos++] = HEX[(c >> 4) & 0xF];
+        out[pos++] = HEX[c & 0xF];
+        return pos;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+    }
+}
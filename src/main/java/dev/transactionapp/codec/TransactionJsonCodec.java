@@ -0,0 +1,228 @@
+package dev.transactionapp.codec;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.Error;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hand-written JSON reading and writing of the fixed-shape DTOs of the transaction endpoints, in place of Jackson's
+ * reflective databind: `AuthorizationRequest` and `LoadRequest` are read, `AuthorizationResponse`, `LoadResponse` and
+ * `Error` are written.
+ *
+ * **Reading:**
+ *  - The body is read once into a pooled byte array and parsed in place by a `JsonReader`. Field names are matched as
+ *    raw bytes; the only objects created are the DTOs and their String values.
+ *  - The same documents are accepted as by the application's `ObjectMapper`: unknown fields are ignored, missing ones
+ *    are null, and numbers or booleans given for a String field are taken as their text (e.g. `"amount": 10.5`).
+ *
+ * **Writing:**
+ *  - Field names are precomputed bytes and values are escaped straight into a pooled byte array, which is written to
+ *    the output with one call.
+ *  - The bytes are identical to Jackson's (same field order, nulls included), so a response written here and its
+ *    replay from the `IdempotencyStore` can't differ.
+ *
+ * Pooled arrays start at `INITIAL_BUFFER_SIZE` bytes; arrays grown past `MAX_POOLED_BUFFER_SIZE` by a large body
+ * aren't pooled again.
+ */
+public final class TransactionJsonCodec {
+
+    static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+    static final int MAX_POOLED_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte[][] REQUEST_FIELDS = names("userId", "messageId", "transactionAmount");
+    private static final byte[][] AMOUNT_FIELDS = names("amount", "currency", "debitOrCredit");
+
+    private static final byte[] MESSAGE_ID = field("{\"messageId\":");
+    private static final byte[] USER_ID = field(",\"userId\":");
+    private static final byte[] RESPONSE_CODE = field(",\"responseCode\":");
+    private static final byte[] BALANCE = field(",\"balance\":");
+    private static final byte[] FIRST_USER_ID = field("{\"userId\":");
+    private static final byte[] NEXT_MESSAGE_ID = field(",\"messageId\":");
+    private static final byte[] AMOUNT = field("{\"amount\":");
+    private static final byte[] CURRENCY = field(",\"currency\":");
+    private static final byte[] DEBIT_OR_CREDIT = field(",\"debitOrCredit\":");
+    private static final byte[] MESSAGE = field("{\"message\":");
+    private static final byte[] CODE = field(",\"code\":");
+    private static final byte[] NULL = field("null");
+
+    private static final ConcurrentLinkedQueue<byte[]> BUFFERS = new ConcurrentLinkedQueue<>();
+
+    private TransactionJsonCodec() {
+    }
+
+    /**
+     * @return true for the request types read by `read`.
+     */
+    public static boolean canRead(Class<?> type) {
+        return type == AuthorizationRequest.class || type == LoadRequest.class;
+    }
+
+    /**
+     * @return true for the response types written by `write` and `toBytes`.
+     */
+    public static boolean canWrite(Class<?> type) {
+        return type == AuthorizationResponse.class || type == LoadResponse.class || type == Error.class;
+    }
+
+    /**
+     * Reads a whole UTF-8 JSON body into an `AuthorizationRequest` or a `LoadRequest`.
+     *
+     * @param type `AuthorizationRequest.class` or `LoadRequest.class`.
+     * @param body The body; not closed.
+     * @return The request, never null.
+     * @throws IOException if the body can't be read or isn't a valid JSON object of that shape.
+     */
+    public static <T> T read(Class<T> type, InputStream body) throws IOException {
+        byte[] buffer = acquire();
+        try {
+            int length = 0;
+            int read;
+            while ((read = body.read(buffer, length, buffer.length - length)) >= 0) {
+                length += read;
+                if (length == buffer.length)
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            return type.cast(read(type, buffer, length));
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Same as `read(Class, InputStream)`, for a body already in memory.
+     */
+    public static Object read(Class<?> type, byte[] json, int length) throws IOException {
+        JsonReader reader = new JsonReader(json, length);
+        reader.beginObject();
+        String userId = null;
+        String messageId = null;
+        Amount amount = null;
+        for (int field = reader.firstField(REQUEST_FIELDS); field != JsonReader.END_OF_OBJECT; field = reader.nextField(REQUEST_FIELDS)) {
+            switch (field) {
+                case 0 -> userId = reader.readString();
+                case 1 -> messageId = reader.readString();
+                case 2 -> amount = readAmount(reader);
+                default -> reader.skipValue();
+            }
+        }
+        if (type == AuthorizationRequest.class)
+            return new AuthorizationRequest(userId, messageId, amount);
+        if (type == LoadRequest.class)
+            return new LoadRequest(userId, messageId, amount);
+        throw new IllegalArgumentException("Unsupported type: " + type.getName());
+    }
+
+    /**
+     * Writes a response as UTF-8 JSON to `out`, with a single write.
+     *
+     * @param response An `AuthorizationResponse`, `LoadResponse` or `Error`.
+     */
+    public static void write(Object response, OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(acquire());
+        try {
+            write(response, writer);
+            out.write(writer.buffer(), 0, writer.size());
+        } finally {
+            release(writer.buffer());
+        }
+    }
+
+    /**
+     * @return The response as UTF-8 JSON, the same bytes as `ObjectMapper.writeValueAsBytes`.
+     */
+    public static byte[] toBytes(Object response) {
+        JsonWriter writer = new JsonWriter(acquire());
+        try {
+            write(response, writer);
+            return Arrays.copyOf(writer.buffer(), writer.size());
+        } finally {
+            release(writer.buffer());
+        }
+    }
+
+    private static Amount readAmount(JsonReader reader) throws IOException {
+        if (reader.nextIsNull())
+            return null;
+        reader.beginObject();
+        Amount amount = new Amount();
+        for (int field = reader.firstField(AMOUNT_FIELDS); field != JsonReader.END_OF_OBJECT; field = reader.nextField(AMOUNT_FIELDS)) {
+            switch (field) {
+                case 0 -> amount.setAmount(reader.readString());
+                case 1 -> amount.setCurrency(reader.readString());
+                case 2 -> amount.setDebitOrCredit(reader.readString());
+                default -> reader.skipValue();
+            }
+        }
+        return amount;
+    }
+
+    static void write(Object response, JsonWriter writer) {
+        if (response instanceof AuthorizationResponse authorizationResponse) {
+            writer.raw(MESSAGE_ID);
+            writer.string(authorizationResponse.getMessageId());
+            writer.raw(USER_ID);
+            writer.string(authorizationResponse.getUserId());
+            writer.raw(RESPONSE_CODE);
+            writer.string(authorizationResponse.getResponseCode());
+            writer.raw(BALANCE);
+            writeAmount(authorizationResponse.getBalance(), writer);
+        } else if (response instanceof LoadResponse loadResponse) {
+            writer.raw(FIRST_USER_ID);
+            writer.string(loadResponse.getUserId());
+            writer.raw(NEXT_MESSAGE_ID);
+            writer.string(loadResponse.getMessageId());
+            writer.raw(BALANCE);
+            writeAmount(loadResponse.getBalance(), writer);
+        } else if (response instanceof Error error) {
+            writer.raw(MESSAGE);
+            writer.string(error.getMessage());
+            writer.raw(CODE);
+            writer.string(error.getCode());
+        } else {
+            throw new IllegalArgumentException("Unsupported type: " + response.getClass().getName());
+        }
+        writer.raw('}');
+    }
+
+    private static void writeAmount(Amount amount, JsonWriter writer) {
+        if (amount == null) {
+            writer.raw(NULL);
+            return;
+        }
+        writer.raw(AMOUNT);
+        writer.string(amount.getAmount());
+        writer.raw(CURRENCY);
+        writer.string(amount.getCurrency());
+        writer.raw(DEBIT_OR_CREDIT);
+        writer.string(amount.getDebitOrCredit());
+        writer.raw('}');
+    }
+
+    private static byte[] acquire() {
+        byte[] buffer = BUFFERS.poll();
+        return buffer != null ? buffer : new byte[INITIAL_BUFFER_SIZE];
+    }
+
+    private static void release(byte[] buffer) {
+        if (buffer.length <= MAX_POOLED_BUFFER_SIZE)
+            BUFFERS.offer(buffer);
+    }
+
+    private static byte[][] names(String... names) {
+        return Arrays.stream(names).map(TransactionJsonCodec::field).toArray(byte[][]::new);
+    }
+
+    private static byte[] field(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package dev.transactionapp.codec;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads and writes the DTOs of the transaction endpoints with the `TransactionJsonCodec`, ahead of Jackson's converter.
+ * Every other type, and bodies declaring a charset other than UTF-8, are left to Jackson.
+ *
+ * Spring Boot puts converter beans in front of its defaults. Disabled with `transaction.json.specialized-codec=false`,
+ * which leaves every body to Jackson again.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "transaction.json.specialized-codec", havingValue = "true", matchIfMissing = true)
+public class TransactionJsonHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    public TransactionJsonHttpMessageConverter() {
+        // no default charset: Content-Type stays `application/json`, as written by Jackson's converter
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return TransactionJsonCodec.canRead(clazz) || TransactionJsonCodec.canWrite(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return TransactionJsonCodec.canRead(clazz) && canRead(mediaType) && isUtf8(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return TransactionJsonCodec.canWrite(clazz) && canWrite(mediaType) && isUtf8(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+        try {
+            return TransactionJsonCodec.read(clazz, inputMessage.getBody());
+        } catch (JsonReader.MalformedJsonException ex) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + ex.getMessage(), ex, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object response, HttpOutputMessage outputMessage) throws IOException {
+        TransactionJsonCodec.write(response, outputMessage.getBody());
+    }
+
+    private static boolean isUtf8(MediaType mediaType) {
+        return mediaType == null || mediaType.getCharset() == null || StandardCharsets.UTF_8.equals(mediaType.getCharset());
+    }
+}
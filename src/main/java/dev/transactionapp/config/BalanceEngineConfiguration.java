@@ -0,0 +1,65 @@
+package dev.transactionapp.config;
+
+import dev.transactionapp.engine.BalancePersister;
+import dev.transactionapp.engine.ShardedBalanceEngine;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.repository.AuthorizationResponseRepository;
+import dev.transactionapp.repository.IdempotencyRecordRepository;
+import dev.transactionapp.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+/**
+ * This configuration class wires the in-memory sharded balance engine.
+ * It is only active with `transaction.engine.mode=sharded`; by default the JPA services with
+ * pessimistic row locks handle every balance change.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "sharded")
+public class BalanceEngineConfiguration {
+
+    /**
+     * This bean writes the engine's decisions (balances, declined authorizations and idempotency records) back to the database
+     * on a background thread, every `transaction.engine.flush-interval-ms` milliseconds.
+     *
+     * @return A started BalancePersister bean, stopped (and flushed one last time) on shutdown.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public BalancePersister balancePersister(JdbcTemplate jdbcTemplate,
+                                             AuthorizationResponseRepository authorizationResponseRepository,
+                                             IdempotencyRecordRepository idempotencyRecordRepository,
+                                             TransactionTemplate transactionTemplate,
+                                             @Value("${transaction.engine.flush-interval-ms:5}") long flushIntervalMillis){
+        return new BalancePersister(jdbcTemplate, authorizationResponseRepository, idempotencyRecordRepository, transactionTemplate, flushIntervalMillis);
+    }
+
+    /**
+     * This bean owns the balances in memory, partitioned over `transaction.engine.shards` single-writer shards
+     * (defaults to the number of available processors).
+     * Accounts are loaded from the UserRepository the first time their shard sees them,
+     * and every decision is appended to the TransactionJournal (a no-op unless `transaction.journal.enabled=true`).
+     *
+     * @return A started ShardedBalanceEngine bean.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public ShardedBalanceEngine shardedBalanceEngine(UserRepository userRepository,
+                                                     TransactionTemplate transactionTemplate,
+                                                     BalancePersister balancePersister,
+                                                     TransactionJournal transactionJournal,
+                                                     @Value("${transaction.engine.shards:0}") int shards){
+        int shardCount = shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        log.info("Using sharded balance engine instead of database row locks");
+        return new ShardedBalanceEngine(shardCount,
+                userId -> transactionTemplate.execute(status -> userRepository.findById(userId)),
+                balancePersister,
+                transactionJournal);
+    }
+
+}
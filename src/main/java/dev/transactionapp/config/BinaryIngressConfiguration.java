@@ -0,0 +1,59 @@
+package dev.transactionapp.config;
+
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.ingress.BinaryIngressServer;
+import dev.transactionapp.ingress.BinaryRequestHandler;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.routing.UserRouter;
+import dev.transactionapp.service.AuthorizeTransactionService;
+import dev.transactionapp.service.LoadFundsService;
+import dev.transactionapp.validator.ObjectsValidator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetSocketAddress;
+
+
+/**
+ * This configuration class starts the binary ingress with `transaction.ingress.binary.enabled=true`: authorizations and
+ * loads sent as fixed-layout binary frames over plain TCP, next to the HTTP endpoints, see `BinaryFrames`.
+ */
+@Configuration
+@ConditionalOnProperty(name = "transaction.ingress.binary.enabled", havingValue = "true")
+public class BinaryIngressConfiguration {
+
+    /**
+     * This bean processes the binary requests with the same services, idempotency store and routing as the HTTP endpoints.
+     */
+    @Bean
+    public BinaryRequestHandler binaryRequestHandler(AuthorizeTransactionService authorizeTransactionService,
+                                                     LoadFundsService loadFundsService,
+                                                     IdempotencyStore idempotencyStore,
+                                                     UserRouter userRouter,
+                                                     ObjectsValidator<AuthorizationRequest> authorizationRequestValidator,
+                                                     ObjectsValidator<LoadRequest> loadRequestValidator,
+                                                     TransactionMetrics transactionMetrics){
+        return new BinaryRequestHandler(authorizeTransactionService, loadFundsService, idempotencyStore, userRouter,
+                authorizationRequestValidator, loadRequestValidator, transactionMetrics);
+    }
+
+    /**
+     * This bean listens on `transaction.ingress.binary.port` and runs the requests on `transaction.ingress.binary.workers`
+     * threads, reading at most `transaction.ingress.binary.max-in-flight` unanswered requests per connection.
+     *
+     * @return A started BinaryIngressServer bean, stopped with the application context.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public BinaryIngressServer binaryIngressServer(BinaryRequestHandler binaryRequestHandler,
+                                                   @Value("${transaction.ingress.binary.port:9090}") int port,
+                                                   @Value("${transaction.ingress.binary.workers:32}") int workers,
+                                                   @Value("${transaction.ingress.binary.max-in-flight:1024}") int maxInFlight,
+                                                   @Value("${transaction.ingress.binary.buffer-size:65536}") int bufferSize){
+        return new BinaryIngressServer(binaryRequestHandler, new InetSocketAddress(port), workers, maxInFlight, bufferSize);
+    }
+
+}
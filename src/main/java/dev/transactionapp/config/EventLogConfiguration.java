@@ -0,0 +1,32 @@
+package dev.transactionapp.config;
+
+import dev.transactionapp.logging.TransactionEventLog;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * This configuration class wires the asynchronous log of processed transactions, shared by every engine and web stack.
+ */
+@Configuration
+public class EventLogConfiguration {
+
+    /**
+     * This bean writes approvals, declines and loads as JSON lines to the `dev.transactionapp.events` logger, from a
+     * background thread fed by a ring buffer of `transaction.events.queue-capacity` events. Approvals and loads are
+     * sampled at `transaction.events.sample-rate` and limited to `transaction.events.max-per-second`, neither of which
+     * drops anything by default (1.0 and 0, no limit); declines are all kept.
+     *
+     * @return A started TransactionEventLog bean, stopped (after writing the queued events) on shutdown.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public TransactionEventLog transactionEventLog(@Value("${transaction.events.queue-capacity:65536}") int queueCapacity,
+                                                   @Value("${transaction.events.sample-rate:1.0}") double sampleRate,
+                                                   @Value("${transaction.events.max-per-second:0}") int maxPerSecond,
+                                                   @Value("${transaction.events.flush-interval-ms:5}") long flushIntervalMillis){
+        return new TransactionEventLog(LoggerFactory.getLogger(TransactionEventLog.EVENTS_LOGGER), queueCapacity, sampleRate, maxPerSecond, flushIntervalMillis);
+    }
+
+}
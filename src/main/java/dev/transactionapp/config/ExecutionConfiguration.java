@@ -0,0 +1,63 @@
+package dev.transactionapp.config;
+
+import dev.transactionapp.execution.PinnedThreadMonitor;
+import dev.transactionapp.execution.VirtualThreads;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+
+import java.time.Duration;
+
+
+/**
+ * This configuration class runs request handling on virtual threads, with `transaction.execution.mode=virtual`.
+ * The default `platform` mode keeps Tomcat's pool of `server.tomcat.threads.max` platform threads.
+ *
+ * A request blocked on the user's row lock or on the database then parks a virtual thread instead of holding
+ * an OS thread, so thousands of waiters on a hot account don't starve requests for other users.
+ * Concurrent transactions are still bounded by the connection pool (`spring.datasource.hikari.maximum-pool-size`),
+ * the extra requests wait cheaply for a connection.
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "transaction.execution.mode", havingValue = "virtual")
+public class ExecutionConfiguration {
+
+    /**
+     * This bean makes Tomcat handle every request on a new virtual thread, which runs the controller and the service call.
+     *
+     * @return A TomcatProtocolHandlerCustomizer replacing the connector's thread pool. Fails on JVMs older than Java 21.
+     */
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer(){
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(VirtualThreads.newVirtualThreadPerTaskExecutor("http-virtual-"));
+    }
+
+    /**
+     * This bean runs the asynchronous MVC work (the NDJSON streams of `GET /user` and `GET /responses`) on virtual threads.
+     *
+     * @return An AsyncTaskExecutor replacing Spring Boot's `applicationTaskExecutor` pool.
+     */
+    @Bean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    public AsyncTaskExecutor applicationTaskExecutor(){
+        return new TaskExecutorAdapter(VirtualThreads.newVirtualThreadPerTaskExecutor("task-virtual-"));
+    }
+
+    /**
+     * This bean reports virtual threads pinned to their carrier for longer than `transaction.execution.pinned-threshold-ms`.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    public PinnedThreadMonitor pinnedThreadMonitor(MeterRegistry meterRegistry,
+                                                   @Value("${transaction.execution.pinned-threshold-ms:20}") long pinnedThresholdMillis){
+        return new PinnedThreadMonitor(meterRegistry, Duration.ofMillis(pinnedThresholdMillis));
+    }
+
+}
@@ -0,0 +1,69 @@
+package dev.transactionapp.config;
+
+import dev.transactionapp.journal.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+
+
+/**
+ * This configuration class wires the transaction journal.
+ * With `transaction.journal.enabled=true` every balance decision is appended to a memory-mapped journal and the
+ * balances are snapshotted periodically; otherwise a journal that discards everything is used.
+ */
+@Configuration
+public class JournalConfiguration {
+
+    /**
+     * This bean appends every load, approval and decline to the segment files in `transaction.journal.directory`.
+     * Segments are `transaction.journal.segment-size-mb` megabytes and forced to disk every
+     * `transaction.journal.fsync-interval-ms` milliseconds (0 forces every append).
+     *
+     * @return A started MappedTransactionJournal bean, with the balances recovered from the latest snapshot and the journal after it.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "true")
+    public MappedTransactionJournal transactionJournal(@Value("${transaction.journal.directory:./journal}") Path directory,
+                                                       @Value("${transaction.journal.segment-size-mb:64}") int segmentSizeMegabytes,
+                                                       @Value("${transaction.journal.fsync-interval-ms:10}") long fsyncIntervalMillis){
+        return new MappedTransactionJournal(directory, segmentSizeMegabytes * 1024 * 1024, fsyncIntervalMillis);
+    }
+
+    /**
+     * This bean snapshots the journal every `transaction.journal.snapshot-interval-ms` milliseconds, and moves the
+     * database's journal checkpoint along unless the sharded engine writes the database behind the journal.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "true")
+    public BalanceSnapshotter balanceSnapshotter(MappedTransactionJournal transactionJournal, JournalRecovery journalRecovery,
+                                                 @Value("${transaction.engine.mode:jpa}") String engineMode){
+        return new BalanceSnapshotter(transactionJournal, "sharded".equals(engineMode) ? null : journalRecovery);
+    }
+
+    /**
+     * This bean writes the recovered balances back to the `users` table once the schema exists, where the database is
+     * behind the journal (see `JournalRecovery`).
+     */
+    @Bean(initMethod = "restore")
+    @DependsOn("entityManagerFactory")
+    @ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "true")
+    public JournalRecovery journalRecovery(MappedTransactionJournal transactionJournal, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate){
+        return new JournalRecovery(transactionJournal, jdbcTemplate, transactionTemplate);
+    }
+
+    /**
+     * This bean is used when the journal is disabled (the default).
+     */
+    @Bean
+    @ConditionalOnProperty(name = "transaction.journal.enabled", havingValue = "false", matchIfMissing = true)
+    public TransactionJournal disabledTransactionJournal(){
+        return new DisabledTransactionJournal();
+    }
+
+}
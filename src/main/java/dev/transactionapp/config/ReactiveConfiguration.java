@@ -0,0 +1,116 @@
+package dev.transactionapp.config;
+
+import dev.transactionapp.repository.ReactiveUserRepository;
+import io.r2dbc.h2.H2ConnectionConfiguration;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.config.AbstractR2dbcConfiguration;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.ReactiveTransactionManager;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+
+/**
+ * This configuration class wires the reactive stack, selected with `spring.main.web-application-type=reactive`.
+ * Spring Boot's R2DBC auto-configuration is excluded (see `application.properties`), so the servlet stack doesn't open
+ * a second connection pool it never uses.
+ *
+ * R2DBC connects to the very database of the JDBC `DataSource` (`spring.datasource.url` and credentials), so both
+ * stacks share the schema created by JPA, the users and the background components (journal, idempotency purge).
+ *
+ * The embedded H2 R2DBC driver runs every statement, and waits for row locks, on the thread that subscribes, so the
+ * reactive services run their database work on the `reactiveDatabaseScheduler` rather than on Netty's event loop.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableR2dbcRepositories(basePackageClasses = ReactiveUserRepository.class)
+public class ReactiveConfiguration extends AbstractR2dbcConfiguration implements DisposableBean {
+
+    private static final String H2_JDBC_PREFIX = "jdbc:h2:";
+
+    private final DataSourceProperties dataSourceProperties;
+    private final int poolSize;
+    private ConnectionPool connectionPool;
+
+    public ReactiveConfiguration(DataSourceProperties dataSourceProperties,
+                                 @Value("${transaction.reactive.pool-size:20}") int poolSize) {
+        this.dataSourceProperties = dataSourceProperties;
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Opens pooled R2DBC connections, up to `transaction.reactive.pool-size`, to the H2 database of `spring.datasource.url`.
+     * Deliberately not a bean: Spring Boot drops the JDBC `DataSource` when a `ConnectionFactory` bean exists,
+     * and JPA keeps serving the other components.
+     *
+     * @return The ConnectionPool over the H2 R2DBC driver, created on first use.
+     */
+    @Override
+    public synchronized ConnectionFactory connectionFactory(){
+        if (connectionPool == null)
+            connectionPool = createConnectionPool();
+        return connectionPool;
+    }
+
+    @Override
+    public void destroy(){
+        if (connectionPool != null)
+            connectionPool.dispose();
+    }
+
+    private ConnectionPool createConnectionPool(){
+        String jdbcUrl = dataSourceProperties.determineUrl();
+        if (jdbcUrl == null || !jdbcUrl.startsWith(H2_JDBC_PREFIX))
+            throw new IllegalStateException("The reactive stack needs an H2 spring.datasource.url but got: " + jdbcUrl);
+        H2ConnectionConfiguration configuration = H2ConnectionConfiguration.builder()
+                .url(jdbcUrl.substring(H2_JDBC_PREFIX.length()))
+                .username(dataSourceProperties.determineUsername())
+                .password(dataSourceProperties.determinePassword())
+                .build();
+        return new ConnectionPool(ConnectionPoolConfiguration.builder(new H2ConnectionFactory(configuration))
+                .maxSize(poolSize)
+                .build());
+    }
+
+    /**
+     * This bean runs the database work of the reactive stack: one thread per pooled connection
+     * (`transaction.reactive.pool-size`), as a thread is blocked for as long as H2 executes a statement or waits for a
+     * row lock, and at most `transaction.reactive.max-queued` requests waiting for a thread, beyond which a request
+     * fails right away instead of queueing without bound.
+     *
+     * @return A bounded elastic Scheduler, disposed on shutdown.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler reactiveDatabaseScheduler(@Value("${transaction.reactive.max-queued:10000}") int maxQueued){
+        return Schedulers.newBoundedElastic(poolSize, maxQueued, "reactive-db");
+    }
+
+    /**
+     * This bean runs the reactive transactions (`TransactionalOperator`) of the reactive services.
+     */
+    @Bean
+    public ReactiveTransactionManager reactiveTransactionManager(){
+        return new R2dbcTransactionManager(connectionFactory());
+    }
+
+    /**
+     * This bean serves the reactive stack with Netty's event loop. Without it, Spring Boot would pick Tomcat,
+     * which is on the classpath for the servlet stack.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory(){
+        return new NettyReactiveWebServerFactory();
+    }
+
+}
@@ -0,0 +1,42 @@
+package dev.transactionapp.config;
+
+import dev.transactionapp.routing.ForwardSignature;
+import dev.transactionapp.routing.ForwardedRequestFilter;
+import dev.transactionapp.routing.UserRouter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+
+/**
+ * This configuration class authenticates the requests forwarded between the nodes of the cluster, see `ForwardSignature`.
+ */
+@Configuration
+public class RoutingConfiguration {
+
+    /**
+     * This bean signs the requests forwarded by this node and verifies the ones forwarded to it, with the
+     * `transaction.cluster.secret` shared by every node.
+     *
+     * @throws IllegalArgumentException if clustering is enabled without a secret.
+     */
+    @Bean
+    public ForwardSignature forwardSignature(UserRouter userRouter,
+                                             @Value("${transaction.cluster.secret:}") String secret,
+                                             @Value("${transaction.cluster.signature-max-age:30s}") Duration maxAge){
+        if (userRouter.isEnabled() && secret.isBlank())
+            throw new IllegalArgumentException("transaction.cluster.secret is required with transaction.cluster.enabled=true");
+        return new ForwardSignature(secret, maxAge, System::currentTimeMillis);
+    }
+
+    /**
+     * This bean strips the forwarded header of the requests not signed by a node of the cluster.
+     */
+    @Bean
+    public ForwardedRequestFilter forwardedRequestFilter(ForwardSignature forwardSignature){
+        return new ForwardedRequestFilter(forwardSignature);
+    }
+
+}
@@ -7,6 +7,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
 
 
 /**
@@ -33,4 +34,17 @@ public class TransactionalConfiguration {
         return transactionManager;
     }
 
+    /**
+     * This bean lets the services open a transaction programmatically.
+     * The transaction services run their stateless request checks first and only then open the transaction,
+     * so no database connection is held for requests that are rejected up front.
+     *
+     * @param transactionManager The PlatformTransactionManager bean used to manage the transactions.
+     * @return A TransactionTemplate bean bound to the given transaction manager.
+     */
+    @Bean
+    public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager){
+        return new TransactionTemplate(transactionManager);
+    }
+
 }
@@ -0,0 +1,54 @@
+package dev.transactionapp.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.persistence.AuthorizationResponseWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+
+/**
+ * This configuration class wires the write-behind stage of the JPA services.
+ * The sharded balance engine persists its declines with the `BalancePersister` instead.
+ */
+@Configuration
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class WriteBehindConfiguration {
+
+    /**
+     * This bean saves declined authorizations on a background thread, in JDBC batches of up to
+     * `transaction.declines.batch-size` rows, at least every `transaction.declines.flush-interval-ms` milliseconds.
+     * Rows that can't be saved are appended to `transaction.declines.dead-letter-file`, and the declines lost with a
+     * crash are recovered from the idempotency records of the last `transaction.declines.recovery-window` on startup,
+     * once JPA has created the schema.
+     *
+     * @return A started AuthorizationResponseWriter bean, stopped (after saving the queued declines) on shutdown.
+     */
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @DependsOn("entityManagerFactory")
+    public AuthorizationResponseWriter authorizationResponseWriter(JdbcTemplate jdbcTemplate,
+                                                                   PlatformTransactionManager transactionManager,
+                                                                   TransactionMetrics transactionMetrics,
+                                                                   ObjectMapper objectMapper,
+                                                                   @Value("${transaction.declines.queue-capacity:10000}") int queueCapacity,
+                                                                   @Value("${transaction.declines.flush-interval-ms:10}") long flushIntervalMillis,
+                                                                   @Value("${transaction.declines.batch-size:500}") int batchSize,
+                                                                   @Value("${transaction.declines.dead-letter-file:./dead-letter/declined-authorizations.jsonl}") String deadLetterFile,
+                                                                   @Value("${transaction.declines.recovery-window:5m}") Duration recoveryWindow){
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return new AuthorizationResponseWriter(jdbcTemplate, transactionTemplate, transactionMetrics, objectMapper,
+                queueCapacity, flushIntervalMillis, batchSize, Path.of(deadLetterFile), recoveryWindow);
+    }
+
+}
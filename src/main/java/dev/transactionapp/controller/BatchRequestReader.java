@@ -0,0 +1,53 @@
+package dev.transactionapp.controller;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.transactionapp.exception.InvalidBatchException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the body of a batch request, either a JSON array of requests or NDJSON (one request per line).
+ * Both formats go through the same streaming `MappingIterator`, which unwraps a root-level array
+ * and otherwise reads whitespace separated values, so the body is never buffered as a whole.
+ */
+@Slf4j
+@Component
+public class BatchRequestReader {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${transaction.batch.max-size:10000}")
+    private int maxBatchSize;
+
+    /**
+     * @param body The request body.
+     * @param requestType The type of the batch entries.
+     * @return The entries in the order they were sent.
+     * @throws InvalidBatchException if the body can't be parsed, is empty or has more than `transaction.batch.max-size` entries.
+     */
+    public <T> List<T> read(InputStream body, Class<T> requestType) throws InvalidBatchException {
+        List<T> requests = new ArrayList<>();
+        try (MappingIterator<T> iterator = objectMapper.readerFor(requestType).readValues(body)) {
+            while (iterator.hasNextValue()) {
+                if (requests.size() == maxBatchSize)
+                    throw new InvalidBatchException(String.format("Batch can have at most %d entries", maxBatchSize));
+                requests.add(iterator.nextValue());
+            }
+        } catch (IOException ex) {
+            log.warn("Failed to read batch of {}: {}", requestType.getSimpleName(), ex.getMessage());
+            throw new InvalidBatchException("Batch body must be a JSON array or NDJSON of requests");
+        }
+        if (requests.isEmpty())
+            throw new InvalidBatchException("Batch must have at least 1 entry");
+        return requests;
+    }
+}
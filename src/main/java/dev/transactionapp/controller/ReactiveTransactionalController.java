@@ -0,0 +1,85 @@
+package dev.transactionapp.controller;
+
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.Ping;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.idempotency.ReactiveIdempotencyStore;
+import dev.transactionapp.service.ReactiveAuthorizeTransactionService;
+import dev.transactionapp.service.ReactiveLoadFundsService;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+
+/**
+ * The transaction endpoints of the reactive stack (`spring.main.web-application-type=reactive`), served by WebFlux on Netty.
+ * Same paths, payloads, status codes and replays as the `TransactionalController`, but the validation, the row lock
+ * and the balance update are composed on R2DBC instead of blocking a request thread.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveTransactionalController {
+
+    @Autowired
+    private ReactiveAuthorizeTransactionService reactiveAuthorizeTransactionServiceImpl;
+
+    @Autowired
+    private ReactiveLoadFundsService reactiveLoadFundsServiceImpl;
+
+    @Autowired
+    private ReactiveIdempotencyStore reactiveIdempotencyStore;
+
+    /**
+     * Handles a GET request to "/ping".
+     * Responds with a simple "Ping" object and HTTP status code OK (200).
+     *
+     * @return ResponseEntity containing a Ping object and HttpStatus.OK
+     */
+    @GetMapping("/ping")
+    public ResponseEntity<?> healthCheck(){
+        return new ResponseEntity<>(new Ping(), HttpStatus.OK);
+    }
+
+    /**
+     * Handles a PUT request to "/authorization/{messageId}", see `TransactionalController.authorizeTransaction`.
+     * A retried messageId gets the original response replayed byte-for-byte from the `reactiveIdempotencyStore`.
+     *
+     * @param messageId The message ID from the path variable.
+     * @param authorizationRequest The Authorization Request object containing user and transaction details.
+     * @return A Mono of the ResponseEntity containing the Authorization Response object and HttpStatus.CREATED
+     */
+    @PutMapping("/authorization/{messageId}")
+    public Mono<ResponseEntity<?>> authorizeTransaction(@PathVariable String messageId, @Valid @RequestBody AuthorizationRequest authorizationRequest){
+        return reactiveIdempotencyStore.findResponse(MessageType.AUTHORIZATION, messageId, authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount())
+                .<ResponseEntity<?>>map(this::replayResponse)
+                .switchIfEmpty(Mono.defer(() -> reactiveAuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse(messageId, authorizationRequest)
+                        .map(authorizationResponse -> new ResponseEntity<>(authorizationResponse, HttpStatus.CREATED))));
+    }
+
+    /**
+     * Handles a PUT request to "/load/{messageId}", see `TransactionalController.loadFunds`.
+     * A retried messageId gets the original response replayed byte-for-byte from the `reactiveIdempotencyStore`.
+     *
+     * @param messageId The message ID from the path variable.
+     * @param loadRequest The Load Request object containing user and transaction details.
+     * @return A Mono of the ResponseEntity containing the Load Response object and HttpStatus.CREATED
+     */
+    @PutMapping("/load/{messageId}")
+    public Mono<ResponseEntity<?>> loadFunds(@PathVariable String messageId, @Valid @RequestBody LoadRequest loadRequest){
+        return reactiveIdempotencyStore.findResponse(MessageType.LOAD, messageId, loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount())
+                .<ResponseEntity<?>>map(this::replayResponse)
+                .switchIfEmpty(Mono.defer(() -> reactiveLoadFundsServiceImpl.loadFundsAndGetResponse(messageId, loadRequest)
+                        .map(loadResponse -> new ResponseEntity<>(loadResponse, HttpStatus.CREATED))));
+    }
+
+    private ResponseEntity<byte[]> replayResponse(byte[] response) {
+        return ResponseEntity.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+
+}
@@ -3,16 +3,31 @@ package dev.transactionapp.controller;
 import dev.transactionapp.entity.AuthorizationRequest;
 import dev.transactionapp.entity.LoadRequest;
 import dev.transactionapp.entity.Ping;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.routing.RequestForwarder;
+import dev.transactionapp.routing.UserRouter;
 import dev.transactionapp.service.AuthorizeTransactionService;
 import dev.transactionapp.service.LoadFundsService;
+import dev.transactionapp.validator.Rejection;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriUtils;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
 
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class TransactionalController {
 
     @Autowired
@@ -21,6 +36,21 @@ public class TransactionalController {
     @Autowired
     private LoadFundsService loadFundsServiceImpl;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private BatchRequestReader batchRequestReader;
+
+    @Autowired
+    private UserRouter userRouter;
+
+    @Autowired
+    private RequestForwarder requestForwarder;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
     /**
      * Handles a GET request to "/ping".
      * Responds with a simple "Ping" object and HTTP status code OK (200).
@@ -38,32 +68,127 @@ public class TransactionalController {
      * Handles a PUT request to "/authorization/{messageId}".
      * Expects a valid AuthorizationRequest object in the request body.
      * Delegates processing to the `authorizeTransactionServiceImpl` and returns the response.
+     * A request for a user owned by another node of the cluster is forwarded to it by the `requestForwarder`, unless it was forwarded already by a member of the cluster.
+     * A retried messageId gets the original response replayed byte-for-byte from the `idempotencyStore`, without reaching the service,
+     * as long as the retry is for the same user and amount; a messageId reused by another request is refused.
+     * A request failing a validation check is answered with its pre-built error body, see `rejectionResponse`.
+     * A request passing them is handed to the service as screened, so the checks don't run twice.
      * Responds with HTTP status code CREATED (201) upon successful authorization.
      *
      * @param messageId The message ID from the path variable.
      * @param authorizationRequest The Authorization Request object containing user and transaction details.
+     * @param forwardedBy The node that forwarded the request, if any.
      * @return ResponseEntity containing the Authorization Response object and HttpStatus.CREATED
      * @throws Exception if any error occurs during processing
      */
     @PutMapping("/authorization/{messageId}")
-    public ResponseEntity<?> authorizeTransaction(@PathVariable String messageId, @Valid @RequestBody AuthorizationRequest authorizationRequest){
-        return new ResponseEntity<>(authorizeTransactionServiceImpl.authorizeTransactionAndGetResponse(messageId, authorizationRequest), HttpStatus.CREATED);
+    public ResponseEntity<?> authorizeTransaction(@PathVariable String messageId, @Valid @RequestBody AuthorizationRequest authorizationRequest,
+                                                  @RequestHeader(name = RequestForwarder.FORWARDED_HEADER, required = false) String forwardedBy){
+        Optional<String> owner = remoteOwner(authorizationRequest.getUserId(), forwardedBy);
+        if (owner.isPresent())
+            return requestForwarder.forward(owner.get(), "/authorization/" + UriUtils.encodePathSegment(messageId, StandardCharsets.UTF_8), authorizationRequest);
+        Optional<byte[]> replay = idempotencyStore.findResponse(MessageType.AUTHORIZATION, messageId, authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount());
+        if (replay.isPresent())
+            return replayResponse(replay.get());
+        Rejection rejection = authorizeTransactionServiceImpl.screen(messageId, authorizationRequest);
+        if (rejection != null)
+            return rejectionResponse(rejection);
+        return new ResponseEntity<>(authorizeTransactionServiceImpl.authorizeScreenedTransactionAndGetResponse(messageId, authorizationRequest), HttpStatus.CREATED);
     }
 
     /**
      * Handles a PUT request to "/load/{messageId}".
      * Expects a valid LoadRequest object in the request body.
      * Delegates processing to the `loadFundsServiceImpl` and returns the response.
+     * A request for a user owned by another node of the cluster is forwarded to it by the `requestForwarder`, unless it was forwarded already by a member of the cluster.
+     * A retried messageId gets the original response replayed byte-for-byte from the `idempotencyStore`, without reaching the service,
+     * as long as the retry is for the same user and amount; a messageId reused by another request is refused.
+     * A request failing a validation check is answered with its pre-built error body, see `rejectionResponse`.
+     * A request passing them is handed to the service as screened, so the checks don't run twice.
      * Responds with HTTP status code CREATED (201) upon successful load funds operation.
      *
      * @param messageId The message ID from the path variable.
      * @param loadRequest The Load Request object containing user and transaction details.
+     * @param forwardedBy The node that forwarded the request, if any.
      * @return ResponseEntity containing the Load Response object and HttpStatus.CREATED
      * @throws Exception if any error occurs during processing
      */
     @PutMapping("/load/{messageId}")
-    public ResponseEntity<?> loadFunds(@PathVariable String messageId, @Valid @RequestBody LoadRequest loadRequest){
-        return new ResponseEntity<>(loadFundsServiceImpl.loadFundsAndGetResponse(messageId, loadRequest), HttpStatus.CREATED);
+    public ResponseEntity<?> loadFunds(@PathVariable String messageId, @Valid @RequestBody LoadRequest loadRequest,
+                                       @RequestHeader(name = RequestForwarder.FORWARDED_HEADER, required = false) String forwardedBy){
+        Optional<String> owner = remoteOwner(loadRequest.getUserId(), forwardedBy);
+        if (owner.isPresent())
+            return requestForwarder.forward(owner.get(), "/load/" + UriUtils.encodePathSegment(messageId, StandardCharsets.UTF_8), loadRequest);
+        Optional<byte[]> replay = idempotencyStore.findResponse(MessageType.LOAD, messageId, loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount());
+        if (replay.isPresent())
+            return replayResponse(replay.get());
+        Rejection rejection = loadFundsServiceImpl.screen(messageId, loadRequest);
+        if (rejection != null)
+            return rejectionResponse(rejection);
+        return new ResponseEntity<>(loadFundsServiceImpl.loadScreenedFundsAndGetResponse(messageId, loadRequest), HttpStatus.CREATED);
+    }
+
+    /**
+     * Handles a POST request to "/authorization/batch".
+     * Expects a JSON array or NDJSON (one request per line) of AuthorizationRequest objects.
+     * Delegates processing to the `authorizeTransactionServiceImpl`, which locks every user once for all of its entries.
+     * The entries of users owned by other nodes of the cluster are forwarded to them by the `requestForwarder`, unless the batch was forwarded already by a member of the cluster.
+     * Responds with HTTP status code OK (200) and one result per entry, in the order of the batch, even if some entries failed.
+     *
+     * @param body The request body, read as a stream by the `batchRequestReader`.
+     * @param forwardedBy The node that forwarded the batch, if any.
+     * @return ResponseEntity containing the AuthorizationResponse or BatchItemError of every entry and HttpStatus.OK
+     */
+    @PostMapping(value = "/authorization/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<List<Object>> authorizeTransactions(InputStream body,
+                                                              @RequestHeader(name = RequestForwarder.FORWARDED_HEADER, required = false) String forwardedBy){
+        List<AuthorizationRequest> authorizationRequests = batchRequestReader.read(body, AuthorizationRequest.class);
+        if (userRouter.isMember(forwardedBy))
+            return new ResponseEntity<>(authorizeTransactionServiceImpl.authorizeTransactionsAndGetResponses(authorizationRequests), HttpStatus.OK);
+        return new ResponseEntity<>(requestForwarder.processBatch(authorizationRequests, AuthorizationRequest::getUserId, AuthorizationRequest::getMessageId,
+                "/authorization/batch", authorizeTransactionServiceImpl::authorizeTransactionsAndGetResponses), HttpStatus.OK);
+    }
+
+    /**
+     * Handles a POST request to "/load/batch".
+     * Expects a JSON array or NDJSON (one request per line) of LoadRequest objects.
+     * Delegates processing to the `loadFundsServiceImpl`, which locks every user once for all of its entries.
+     * The entries of users owned by other nodes of the cluster are forwarded to them by the `requestForwarder`, unless the batch was forwarded already by a member of the cluster.
+     * Responds with HTTP status code OK (200) and one result per entry, in the order of the batch, even if some entries failed.
+     *
+     * @param body The request body, read as a stream by the `batchRequestReader`.
+     * @param forwardedBy The node that forwarded the batch, if any.
+     * @return ResponseEntity containing the LoadResponse or BatchItemError of every entry and HttpStatus.OK
+     */
+    @PostMapping(value = "/load/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<List<Object>> loadFunds(InputStream body,
+                                                  @RequestHeader(name = RequestForwarder.FORWARDED_HEADER, required = false) String forwardedBy){
+        List<LoadRequest> loadRequests = batchRequestReader.read(body, LoadRequest.class);
+        if (userRouter.isMember(forwardedBy))
+            return new ResponseEntity<>(loadFundsServiceImpl.loadFundsAndGetResponses(loadRequests), HttpStatus.OK);
+        return new ResponseEntity<>(requestForwarder.processBatch(loadRequests, LoadRequest::getUserId, LoadRequest::getMessageId,
+                "/load/batch", loadFundsServiceImpl::loadFundsAndGetResponses), HttpStatus.OK);
+    }
+
+    /**
+     * The forwarded header is only trusted from a member of the cluster; sent by anyone else (e.g. a client trying to
+     * skip routing) it's ignored and the request routed like any other.
+     */
+    private Optional<String> remoteOwner(String userId, String forwardedBy) {
+        return userRouter.isMember(forwardedBy) ? Optional.empty() : userRouter.remoteOwner(userId);
+    }
+
+    private ResponseEntity<byte[]> replayResponse(byte[] response) {
+        return ResponseEntity.status(HttpStatus.CREATED).contentType(MediaType.APPLICATION_JSON).body(response);
+    }
+
+    /**
+     * Answers a request rejected by the service's `screen` with the same status and body the `RestExceptionHandler`
+     * would for the exception, counted alike in `transaction.errors`, without that exception being thrown.
+     */
+    private ResponseEntity<byte[]> rejectionResponse(Rejection rejection) {
+        transactionMetrics.error(rejection.exceptionType());
+        return ResponseEntity.status(rejection.status()).contentType(MediaType.APPLICATION_JSON).body(rejection.body());
     }
 
 }
@@ -1,18 +1,42 @@
 package dev.transactionapp.controller;
 
+import dev.transactionapp.account.AccountMetadataCache;
 import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.BulkUserSummary;
 import dev.transactionapp.entity.User;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.persistence.TableStreamer;
+import dev.transactionapp.persistence.UserBulkLoader;
 import dev.transactionapp.repository.AuthorizationResponseRepository;
 import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.routing.UserRouter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.UUID;
 
+/**
+ * Development and onboarding endpoints to create and list users and stored responses, off the transaction path: the
+ * controller (and its `TableStreamer` and `UserBulkLoader`) is created on its first request rather than at startup.
+ */
+@Lazy
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UtilityController {
 
     @Autowired
@@ -21,10 +45,34 @@ public class UtilityController {
     @Autowired
     AuthorizationResponseRepository authorizationResponseRepository;
 
+    @Autowired
+    TableStreamer tableStreamer;
+
+    @Autowired
+    UserBulkLoader userBulkLoader;
+
+    @Autowired
+    AccountMetadataCache accountMetadataCache;
+
+    @Autowired
+    UserRouter userRouter;
+
+    @Autowired
+    TransactionJournal transactionJournal;
+
+    @Value("${transaction.listing.default-limit:100}")
+    int defaultLimit;
+
+    @Value("${transaction.listing.max-limit:1000}")
+    int maxLimit;
+
     /**
      * Handles a POST request to "/user".
      * Expects a User object in the request body containing user information.
      * Sets the user's creation date to the current timestamp before saving it to the database using the UserRepository.
+     * The user's ID is picked by the `userRouter` among the IDs owned by this node, so its requests are routed to this node's database.
+     * The user is then invalidated in the `accountMetadataCache`, which may have cached its ID as unknown, and its creation
+     * is appended to the `transactionJournal`, so a journal recovery recreates it even if it never transacts.
      * Responds with HTTP status code CREATED (201) upon successful user creation.
      *
      * Created for development process
@@ -34,35 +82,145 @@ public class UtilityController {
      */
     @PostMapping("/user")
     public ResponseEntity<User> addUser(@RequestBody User user){
+        user.setId(userRouter.newUserId());
         user.setCreatedAt(LocalDateTime.now());
-        return new ResponseEntity<>(userRepository.save(user), HttpStatus.CREATED);
+        User savedUser = userRepository.save(user);
+        accountMetadataCache.invalidate(savedUser.getId());
+        transactionJournal.appendCreated(savedUser.getId(), savedUser.getCurrency(), savedUser.getBalance(), savedUser.getCreatedAt());
+        return new ResponseEntity<>(savedUser, HttpStatus.CREATED);
+    }
+
+    /**
+     * Handles a POST request to "/user/bulk" with a CSV body (`text/csv`).
+     * Expects one user per line as `currency,balance`, optionally after a `currency,balance` header line.
+     * Delegates to the `userBulkLoader`, which streams the body and inserts the users in JDBC batches, see `UserBulkLoader`.
+     * Responds with HTTP status code CREATED (201) and the summary of the load, even if some rows were rejected,
+     * or INTERNAL_SERVER_ERROR (500) and the summary if the load stopped because users couldn't be inserted.
+     *
+     * @param body The request body, read as a stream.
+     * @return ResponseEntity containing the BulkUserSummary
+     */
+    @PostMapping(value = "/user/bulk", consumes = "text/csv", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkUserSummary> addUsersFromCsv(InputStream body){
+        return bulkLoadResponse(userBulkLoader.load(body, UserBulkLoader.Format.CSV));
+    }
+
+    /**
+     * Handles a POST request to "/user/bulk" with an NDJSON body (`application/x-ndjson`).
+     * Expects one JSON object per line, with the same `currency` and `balance` attributes as `POST /user`.
+     * Otherwise the same as the CSV variant.
+     *
+     * @param body The request body, read as a stream.
+     * @return ResponseEntity containing the BulkUserSummary
+     */
+    @PostMapping(value = "/user/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BulkUserSummary> addUsersFromNdjson(InputStream body){
+        return bulkLoadResponse(userBulkLoader.load(body, UserBulkLoader.Format.NDJSON));
+    }
+
+    /**
+     * Handles a GET request to "/user/bulk/{batchId}/ids".
+     * Responds with the IDs of the users created by a bulk load on this node, in the order of their rows, as 16 bytes
+     * per ID (most significant bits first, big-endian), and HTTP status code OK (200), or NOT_FOUND (404) if there's none.
+     *
+     * @param batchId The batchId of the load's summary.
+     * @return ResponseEntity containing the IDs file
+     */
+    @GetMapping(value = "/user/bulk/{batchId}/ids", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Resource> findBulkUserIds(@PathVariable UUID batchId){
+        Path idsFile = userBulkLoader.idsFile(batchId);
+        if (idsFile == null)
+            return ResponseEntity.notFound().build();
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(idsFile));
     }
 
     /**
      * Handles a GET request to "/user".
-     * Retrieves all users from the database using the UserRepository.
+     * Retrieves one page of users from the database using the UserRepository, ordered by user ID.
      * Responds with HTTP status code OK (200) and a list of User objects.
      *
+     * **Keyset Pagination:**
+     *  - `after` is the ID of the last user of the previous page; the page starts right after it, so the database
+     *    seeks to it through the primary key index instead of skipping rows like an offset would.
+     *  - `limit` is the page size, `transaction.listing.default-limit` if absent and at most `transaction.listing.max-limit`.
+     *  - An empty list means there are no more users.
+     *
      * Created for development process
      *
+     * @param after The ID of the last user already read, or none for the first page.
+     * @param limit The maximum number of users to return.
      * @return ResponseEntity containing a list of User objects and HttpStatus.OK
      */
-    @GetMapping("/user")
-    public ResponseEntity<List<User>> findAllUsers(){
-        return new ResponseEntity<>(userRepository.findAll(), HttpStatus.OK);
+    @GetMapping(value = "/user", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<User>> findAllUsers(@RequestParam(required = false) UUID after,
+                                                   @RequestParam(required = false) Integer limit){
+        Pageable page = page(limit);
+        List<User> users = after == null
+                ? userRepository.findAllByOrderByIdAsc(page)
+                : userRepository.findByIdGreaterThanOrderByIdAsc(after, page);
+        return new ResponseEntity<>(users, HttpStatus.OK);
+    }
+
+    /**
+     * Handles a GET request to "/user" accepting `application/x-ndjson`.
+     * Streams every user after `after` (all users if absent), one JSON object per line, straight from a database cursor
+     * using the TableStreamer, so memory use doesn't grow with the number of users.
+     *
+     * @param after The ID of the last user already read, or none to stream all of them.
+     * @return ResponseEntity streaming the users and HttpStatus.OK
+     */
+    @GetMapping(value = "/user", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers(@RequestParam(required = false) UUID after){
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> tableStreamer.streamUsers(after, outputStream));
     }
 
 
     /**
      * Handles a GET request to "/responses".
-     * Retrieves all failed authorization responses from the database using the AuthorizationResponseRepository.
+     * Retrieves one page of failed authorization responses from the database using the AuthorizationResponseRepository, ordered by messageId.
      * Responds with HTTP status code OK (200) and a list of AuthorizationResponse objects.
+     * Pages the same way as `GET /user`, with `after` being the messageId of the last response already read.
      *
+     * @param after The messageId of the last response already read, or none for the first page.
+     * @param limit The maximum number of responses to return.
      * @return ResponseEntity containing a list of AuthorizationResponse objects and HttpStatus.OK
      */
-    @GetMapping("/responses")
-    public ResponseEntity<List<AuthorizationResponse>> findAllAuthorizationResponses(){
-        return new ResponseEntity<>(authorizationResponseRepository.findAll(), HttpStatus.OK);
+    @GetMapping(value = "/responses", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<AuthorizationResponse>> findAllAuthorizationResponses(@RequestParam(required = false) String after,
+                                                                                     @RequestParam(required = false) Integer limit){
+        Pageable page = page(limit);
+        List<AuthorizationResponse> authorizationResponses = after == null
+                ? authorizationResponseRepository.findAllByOrderByMessageIdAsc(page)
+                : authorizationResponseRepository.findByMessageIdGreaterThanOrderByMessageIdAsc(after, page);
+        return new ResponseEntity<>(authorizationResponses, HttpStatus.OK);
+    }
+
+    /**
+     * Handles a GET request to "/responses" accepting `application/x-ndjson`.
+     * Streams every failed authorization response after `after` (all of them if absent), one JSON object per line,
+     * straight from a database cursor using the TableStreamer.
+     *
+     * @param after The messageId of the last response already read, or none to stream all of them.
+     * @return ResponseEntity streaming the responses and HttpStatus.OK
+     */
+    @GetMapping(value = "/responses", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllAuthorizationResponses(@RequestParam(required = false) String after){
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(outputStream -> tableStreamer.streamAuthorizationResponses(after, outputStream));
+    }
+
+    private static ResponseEntity<BulkUserSummary> bulkLoadResponse(BulkUserSummary summary) {
+        return new ResponseEntity<>(summary, summary.getAborted() == null ? HttpStatus.CREATED : HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    private Pageable page(Integer limit) {
+        int size = limit == null ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+        return PageRequest.ofSize(size);
     }
 
 }
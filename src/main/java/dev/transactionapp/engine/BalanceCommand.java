@@ -0,0 +1,28 @@
+package dev.transactionapp.engine;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single debit or credit queued on the shard owning the account.
+ * The caller waits on `result`, which the shard completes once the decision is made.
+ */
+final class BalanceCommand {
+
+    enum Type { DEBIT, CREDIT }
+
+    final Type type;
+    final String messageId;
+    final UUID userId;
+    final String currency;
+    final long amount;
+    final CompletableFuture<BalanceDecision> result = new CompletableFuture<>();
+
+    BalanceCommand(Type type, String messageId, UUID userId, String currency, long amount) {
+        this.type = type;
+        this.messageId = messageId;
+        this.userId = userId;
+        this.currency = currency;
+        this.amount = amount;
+    }
+}
@@ -0,0 +1,18 @@
+package dev.transactionapp.engine;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of a balance command processed by a shard of the `ShardedBalanceEngine`, or by the `ConditionalBalanceUpdates`,
+ * balance in minor units.
+ * For an approved debit or a credit `balance` is the account balance after the command,
+ * for a declined debit it is the untouched balance.
+ */
+@Data
+@AllArgsConstructor
+public class BalanceDecision {
+
+    private boolean approved;
+    private long balance;
+}
@@ -0,0 +1,138 @@
+package dev.transactionapp.engine;
+
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.IdempotencyRecord;
+import dev.transactionapp.repository.AuthorizationResponseRepository;
+import dev.transactionapp.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Persists the decisions of the `ShardedBalanceEngine` after they've been made.
+ * Balances are coalesced per user, so a hot account is written once per flush no matter how many
+ * commands it processed, and declined authorizations and idempotency records are saved in one batch per flush.
+ */
+@Slf4j
+public class BalancePersister implements Runnable {
+
+    private static final String UPDATE_BALANCE_SQL = "UPDATE users SET balance_minor = ?, version = version + 1 WHERE id = ?";
+
+    private final Map<UUID, Long> dirtyBalances = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<AuthorizationResponse> declineQueue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<IdempotencyRecord> recordQueue = new ConcurrentLinkedQueue<>();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuthorizationResponseRepository authorizationResponseRepository;
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final long flushIntervalNanos;
+
+    private volatile boolean running = true;
+    private Thread thread;
+
+    public BalancePersister(JdbcTemplate jdbcTemplate, AuthorizationResponseRepository authorizationResponseRepository,
+                            IdempotencyRecordRepository idempotencyRecordRepository,
+                            TransactionTemplate transactionTemplate, long flushIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.authorizationResponseRepository = authorizationResponseRepository;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    }
+
+    public void start() {
+        thread = new Thread(this, "balance-persister");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records the latest balance of a user. Only the most recent value is written on the next flush.
+     */
+    public void balanceChanged(UUID userId, long balance) {
+        dirtyBalances.put(userId, balance);
+    }
+
+    /**
+     * Queues a declined authorization for saving on the next flush.
+     */
+    public void declined(AuthorizationResponse authorizationResponse) {
+        declineQueue.offer(authorizationResponse);
+    }
+
+    /**
+     * Queues the stored response of a processed message for saving on the next flush.
+     */
+    public void processed(IdempotencyRecord idempotencyRecord) {
+        recordQueue.offer(idempotencyRecord);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            LockSupport.parkNanos(this, flushIntervalNanos);
+            flushQuietly();
+        }
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException ex) {
+            log.error("Failed to persist balance engine state, will retry on next flush", ex);
+        }
+    }
+
+    void flush() {
+        Map<UUID, Long> balances = new HashMap<>(dirtyBalances);
+        List<AuthorizationResponse> declines = new ArrayList<>();
+        AuthorizationResponse decline;
+        while ((decline = declineQueue.poll()) != null)
+            declines.add(decline);
+        List<IdempotencyRecord> records = new ArrayList<>();
+        IdempotencyRecord record;
+        while ((record = recordQueue.poll()) != null)
+            records.add(record);
+        if (balances.isEmpty() && declines.isEmpty() && records.isEmpty())
+            return;
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!balances.isEmpty()) {
+                    List<Object[]> batchArgs = new ArrayList<>(balances.size());
+                    balances.forEach((userId, balance) -> batchArgs.add(new Object[]{balance, userId}));
+                    jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, batchArgs);
+                }
+                if (!declines.isEmpty())
+                    authorizationResponseRepository.saveAll(declines);
+                if (!records.isEmpty())
+                    idempotencyRecordRepository.saveAll(records);
+            });
+        } catch (RuntimeException ex) {
+            declineQueue.addAll(declines);
+            recordQueue.addAll(records);
+            throw ex;
+        }
+        // a newer balance may have been recorded meanwhile, keep it for the next flush
+        balances.forEach(dirtyBalances::remove);
+        log.debug("Persisted {} balances, {} declined authorizations and {} idempotency records", balances.size(), declines.size(), records.size());
+    }
+}
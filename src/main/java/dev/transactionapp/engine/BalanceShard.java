@@ -0,0 +1,141 @@
+package dev.transactionapp.engine;
+
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.journal.TransactionJournal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * One single-writer partition of the `ShardedBalanceEngine`.
+ * Only the shard thread reads or writes `accounts`, so no locking is needed around the balances.
+ * Producers hand commands over through a lock-free queue and wake the thread up if it is parked.
+ */
+@Slf4j
+final class BalanceShard implements Runnable {
+
+    private static final int SPINS_BEFORE_PARK = 100;
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final int index;
+    private final ConcurrentLinkedQueue<BalanceCommand> queue = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, Account> accounts = new HashMap<>();
+    private final Function<UUID, Optional<User>> accountLoader;
+    private final BalancePersister balancePersister;
+    private final TransactionJournal transactionJournal;
+
+    private volatile boolean running = true;
+    private volatile boolean parked;
+    private volatile Thread thread;
+
+    BalanceShard(int index, Function<UUID, Optional<User>> accountLoader, BalancePersister balancePersister, TransactionJournal transactionJournal) {
+        this.index = index;
+        this.accountLoader = accountLoader;
+        this.balancePersister = balancePersister;
+        this.transactionJournal = transactionJournal;
+    }
+
+    void start() {
+        thread = new Thread(this, "balance-shard-" + index);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+    }
+
+    void enqueue(BalanceCommand command) {
+        queue.offer(command);
+        if (parked)
+            LockSupport.unpark(thread);
+    }
+
+    @Override
+    public void run() {
+        int idleSpins = 0;
+        while (running) {
+            BalanceCommand command = queue.poll();
+            if (command != null) {
+                idleSpins = 0;
+                process(command);
+            } else if (++idleSpins < SPINS_BEFORE_PARK) {
+                Thread.onSpinWait();
+            } else {
+                parked = true;
+                if (queue.isEmpty())
+                    LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                parked = false;
+            }
+        }
+        BalanceCommand command;
+        while ((command = queue.poll()) != null)
+            command.result.completeExceptionally(new IllegalStateException("Balance engine is shutting down"));
+    }
+
+    private void process(BalanceCommand command) {
+        try {
+            Account account = findAccount(command.userId);
+            if (!account.currency.equals(command.currency))
+                throw new CurrencyNotMatchException(String.format("User currency: %s doesn't match with request body currency: %s", account.currency, command.currency));
+            BalanceDecision decision = apply(account, command);
+            transactionJournal.append(journalRecordType(command, decision), command.messageId, command.userId, account.currency, command.amount, account.balance);
+            if (decision.isApproved())
+                balancePersister.balanceChanged(command.userId, account.balance);
+            command.result.complete(decision);
+        } catch (RuntimeException ex) {
+            command.result.completeExceptionally(ex);
+        }
+    }
+
+    private BalanceDecision apply(Account account, BalanceCommand command) {
+        if (command.type == BalanceCommand.Type.CREDIT) {
+            account.balance = Math.addExact(account.balance, command.amount);
+            return new BalanceDecision(true, account.balance);
+        }
+        if (account.balance >= command.amount) {
+            account.balance -= command.amount;
+            return new BalanceDecision(true, account.balance);
+        }
+        return new BalanceDecision(false, account.balance);
+    }
+
+    private static JournalRecordType journalRecordType(BalanceCommand command, BalanceDecision decision) {
+        if (command.type == BalanceCommand.Type.CREDIT)
+            return JournalRecordType.LOAD;
+        return decision.isApproved() ? JournalRecordType.APPROVED : JournalRecordType.DECLINED;
+    }
+
+    private Account findAccount(UUID userId) {
+        Account account = accounts.get(userId);
+        if (account == null) {
+            User user = accountLoader.apply(userId)
+                    .orElseThrow(() -> new UserNotFoundException(String.format("User with ID: %s not found", userId)));
+            account = new Account(user.getCurrency(), user.getBalance());
+            accounts.put(userId, account);
+            log.debug("Shard {} took ownership of user {}", index, userId);
+        }
+        return account;
+    }
+
+    private static final class Account {
+        private final String currency;
+        private long balance;
+
+        private Account(String currency, long balance) {
+            this.currency = currency;
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package dev.transactionapp.engine;
+
+import dev.transactionapp.entity.User;
+import dev.transactionapp.journal.TransactionJournal;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * In-memory balance engine used instead of database row locks when `transaction.engine.mode=sharded`.
+ *
+ * Accounts are hash-partitioned by user ID onto a fixed number of `BalanceShard`s.
+ * Each shard is a single thread that owns the balances of its accounts, so commands for one account
+ * are applied strictly one after the other without any lock, and different accounts proceed in parallel.
+ * An account is loaded from the database the first time its shard sees it; after that the shard's copy
+ * is the source of truth and the `BalancePersister` writes it back asynchronously.
+ * Every decision is also appended to the `TransactionJournal` by the shard thread that made it.
+ *
+ * **Note:** the engine assumes it is the only writer of balances, so it must not be combined with
+ * the JPA services or with other replicas sharing the same database.
+ */
+@Slf4j
+public class ShardedBalanceEngine {
+
+    private final BalanceShard[] shards;
+
+    public ShardedBalanceEngine(int shardCount, Function<UUID, Optional<User>> accountLoader, BalancePersister balancePersister, TransactionJournal transactionJournal) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("Balance engine needs at least one shard");
+        shards = new BalanceShard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            shards[i] = new BalanceShard(i, accountLoader, balancePersister, transactionJournal);
+    }
+
+    public void start() {
+        for (BalanceShard shard : shards)
+            shard.start();
+        log.info("Started sharded balance engine with {} shards", shards.length);
+    }
+
+    public void stop() {
+        for (BalanceShard shard : shards)
+            shard.stop();
+    }
+
+    /**
+     * Debits the account if its balance covers the amount (in minor units).
+     *
+     * @return A future completed with the decision, or exceptionally with `UserNotFoundException`/`CurrencyNotMatchException`.
+     */
+    public CompletableFuture<BalanceDecision> debit(String messageId, UUID userId, String currency, long amount) {
+        return submit(new BalanceCommand(BalanceCommand.Type.DEBIT, messageId, userId, currency, amount));
+    }
+
+    /**
+     * Credits the account unconditionally with the amount (in minor units).
+     *
+     * @return A future completed with the decision, or exceptionally with `UserNotFoundException`/`CurrencyNotMatchException`.
+     */
+    public CompletableFuture<BalanceDecision> credit(String messageId, UUID userId, String currency, long amount) {
+        return submit(new BalanceCommand(BalanceCommand.Type.CREDIT, messageId, userId, currency, amount));
+    }
+
+    int shardOf(UUID userId) {
+        return Math.floorMod(userId.hashCode(), shards.length);
+    }
+
+    private CompletableFuture<BalanceDecision> submit(BalanceCommand command) {
+        shards[shardOf(command.userId)].enqueue(command);
+        return command.result;
+    }
+}
@@ -2,6 +2,7 @@ package dev.transactionapp.entity;
 
 import dev.transactionapp.enums.Currency;
 import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.validator.ValidAmount;
 import dev.transactionapp.validator.ValueOfEnum;
 import jakarta.persistence.Column;
 import jakarta.persistence.Embeddable;
@@ -18,9 +19,7 @@ public class Amount {
 
     @NotNull
     @NotBlank(message = "Amount required")
-    @DecimalMin(value = "0.0", inclusive = false, message = "Amount must be a positive number")
-    @Pattern(regexp = "\\d+(\\.\\d{1,2})?", message = "Amount can have optional 2 decimal")
-    @DecimalMax(value = "1000000000.0", inclusive = false, message = "Amount must be a less than 1 Billion")
+    @ValidAmount
     @Column(nullable = false)
     private String amount;
 
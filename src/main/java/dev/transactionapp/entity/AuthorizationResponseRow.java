@@ -0,0 +1,12 @@
+package dev.transactionapp.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+/**
+ * A row of the `authorization_responses` table as seen by R2DBC in the reactive stack.
+ * The table itself is mapped and created by JPA (`AuthorizationResponse`).
+ */
+@Table("authorization_responses")
+public record AuthorizationResponseRow(@Id String messageId, String userId, String responseCode, String amount, String currency, String debitOrCredit) {
+}
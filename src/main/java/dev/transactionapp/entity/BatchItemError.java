@@ -0,0 +1,19 @@
+package dev.transactionapp.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of a batch entry that couldn't be processed.
+ * Same fields as `Error`, plus the messageId of the entry it belongs to.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BatchItemError {
+
+    private String messageId;
+    private String message;
+    private String code;
+}
@@ -0,0 +1,17 @@
+package dev.transactionapp.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A row of a `POST /user/bulk` body that was rejected, by its line number in the body (1 for the first line).
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkUserError {
+
+    private long line;
+    private String message;
+}
@@ -0,0 +1,39 @@
+package dev.transactionapp.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The outcome of a `POST /user/bulk`: how many users were created and rejected, and where the IDs of the created users
+ * can be downloaded, in the order of their rows.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkUserSummary {
+
+    private UUID batchId;
+    private long created;
+    private long rejected;
+    private long elapsedMillis;
+    private long usersPerSecond;
+
+    /**
+     * Path of the created IDs, 16 bytes per ID (most significant bits first), see `GET /user/bulk/{batchId}/ids`.
+     */
+    private String ids;
+
+    /**
+     * The first rejected rows, at most `transaction.provisioning.max-reported-errors`.
+     */
+    private List<BulkUserError> errors;
+
+    /**
+     * Why the load stopped before the end of the body, null if it didn't. Users committed before are kept.
+     */
+    private String aborted;
+}
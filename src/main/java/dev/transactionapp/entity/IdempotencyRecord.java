@@ -0,0 +1,69 @@
+package dev.transactionapp.entity;
+
+import dev.transactionapp.enums.MessageType;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * The serialized response originally returned for a messageId, replayed as-is when the message is retried.
+ * The userId and amount (in minor units) of the original request are kept so only a retry of the same request gets
+ * the response, not another request reusing the messageId.
+ * Implements `Persistable` so saving a new record is a plain insert instead of a select followed by an insert.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = "idempotency_records", indexes = @Index(name = "idx_idempotency_records_created_at", columnList = "createdAt"))
+public class IdempotencyRecord implements Persistable<String> {
+
+    @Id
+    private String messageId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private MessageType messageType;
+
+    @Column(nullable = false)
+    private String userId;
+
+    @Column(nullable = false)
+    private long amount;
+
+    @Column(nullable = false, length = 4096)
+    private byte[] response;
+
+    @Column(nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public IdempotencyRecord(String messageId, MessageType messageType, String userId, long amount, byte[] response){
+        this.messageId = messageId;
+        this.messageType = messageType;
+        this.userId = userId;
+        this.amount = amount;
+        this.response = response;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @Override
+    public String getId() {
+        return messageId;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+}
@@ -0,0 +1,22 @@
+package dev.transactionapp.entity;
+
+import dev.transactionapp.enums.MessageType;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A row of the `idempotency_records` table as read by R2DBC in the reactive stack.
+ * The table itself is mapped and created by JPA (`IdempotencyRecord`).
+ */
+@Table("idempotency_records")
+public record IdempotencyRecordRow(@Id String messageId, MessageType messageType, String userId, long amount, byte[] response, LocalDateTime createdAt) {
+
+    public IdempotencyRecord toIdempotencyRecord() {
+        IdempotencyRecord record = new IdempotencyRecord(messageId, messageType, userId, amount, response);
+        record.setCreatedAt(createdAt);
+        record.setNew(false);
+        return record;
+    }
+}
@@ -2,12 +2,14 @@ package dev.transactionapp.entity;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.NotBlank;
 
 
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public class LoadResponse {
 
     @NotNull
@@ -1,9 +1,14 @@
 package dev.transactionapp.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import dev.transactionapp.money.MoneyJsonDeserializer;
+import dev.transactionapp.money.MoneyJsonSerializer;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.data.annotation.CreatedDate;
 import jakarta.persistence.Id;
 import java.time.LocalDateTime;
@@ -15,30 +20,48 @@ import java.util.UUID;
 @Table(name = "users")
 public class User {
 
+    /**
+     * Assigned by the node creating the user, see `UserRouter.newUserId`, or a random UUID if not set when inserted.
+     */
     @Id
-    @GeneratedValue(generator = "UUID")
-    @GenericGenerator(
-            name = "UUID",
-            strategy = "org.hibernate.id.UUIDGenerator"
-    )
     private UUID id;
 
     @Column(nullable = false)
     private String currency;
 
-    @Column(nullable = false)
-    private double balance;
+    /**
+     * Balance in minor units (cents, paise), see `Money`. Serialized to JSON with two decimals.
+     */
+    @Column(name = "balance_minor", nullable = false)
+    @JsonSerialize(using = MoneyJsonSerializer.class)
+    @JsonDeserialize(using = MoneyJsonDeserializer.class)
+    private long balance;
 
     @CreatedDate
     @Column(nullable = false, updatable = false)
     private LocalDateTime createdAt;
 
+    /**
+     * Incremented by every balance update, so an update based on a stale read fails instead of overwriting it.
+     * Defaults to 0 for rows inserted with SQL.
+     */
+    @Version
+    @JsonIgnore
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
 
-    public User(String currency, double balance){
+    public User(String currency, long balance){
         this.currency = currency;
         this.balance = balance;
         this.createdAt = LocalDateTime.now();
     }
 
+    @PrePersist
+    void assignId() {
+        if (id == null)
+            id = UUID.randomUUID();
+    }
+
 
 }
@@ -0,0 +1,22 @@
+package dev.transactionapp.entity;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A row of the `users` table as read by R2DBC in the reactive stack. The table itself is mapped and created by JPA (`User`).
+ */
+@Table("users")
+public record UserRow(@Id UUID id, String currency, @Column("balance_minor") long balance, LocalDateTime createdAt) {
+
+    public User toUser() {
+        User user = new User(currency, balance);
+        user.setId(id);
+        user.setCreatedAt(createdAt);
+        return user;
+    }
+}
@@ -0,0 +1,15 @@
+package dev.transactionapp.enums;
+
+/**
+ * Stored by ordinal in the transaction journal, so new values must only ever be appended.
+ * COMMITTED and ABORTED are markers settling a record appended inside a transaction, once the transaction completes.
+ * CREATED records a new user with its initial balance, so recovery can recreate a user that never transacted.
+ */
+public enum JournalRecordType {
+    LOAD,
+    APPROVED,
+    DECLINED,
+    COMMITTED,
+    ABORTED,
+    CREATED
+}
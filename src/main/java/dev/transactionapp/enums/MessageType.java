@@ -0,0 +1,6 @@
+package dev.transactionapp.enums;
+
+public enum MessageType {
+    AUTHORIZATION,
+    LOAD
+}
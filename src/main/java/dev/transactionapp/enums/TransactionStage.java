@@ -0,0 +1,8 @@
+package dev.transactionapp.enums;
+
+public enum TransactionStage {
+    VALIDATION,
+    USER_LOCK,
+    BALANCE_UPDATE,
+    DECLINE_PERSISTENCE
+}
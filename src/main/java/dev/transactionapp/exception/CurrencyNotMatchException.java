@@ -1,6 +1,6 @@
 package dev.transactionapp.exception;
 
-public class CurrencyNotMatchException extends RuntimeException{
+public class CurrencyNotMatchException extends RequestRejectedException{
 
     public CurrencyNotMatchException(String msg){
         super(msg);
@@ -0,0 +1,8 @@
+package dev.transactionapp.exception;
+
+public class InvalidBatchException extends RuntimeException{
+
+    public InvalidBatchException(String msg){
+        super(msg);
+    }
+}
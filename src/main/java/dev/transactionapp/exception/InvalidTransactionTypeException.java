@@ -1,6 +1,6 @@
 package dev.transactionapp.exception;
 
-public class InvalidTransactionTypeException extends RuntimeException{
+public class InvalidTransactionTypeException extends RequestRejectedException{
 
     public InvalidTransactionTypeException(String msg){
         super(msg);
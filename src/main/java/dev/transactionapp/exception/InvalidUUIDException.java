@@ -1,6 +1,6 @@
 package dev.transactionapp.exception;
 
-public class InvalidUUIDException extends RuntimeException{
+public class InvalidUUIDException extends RequestRejectedException{
 
     public InvalidUUIDException(String msg){
         super(msg);
@@ -1,6 +1,6 @@
 package dev.transactionapp.exception;
 
-public class MessageIdAlreadyExistsException extends RuntimeException{
+public class MessageIdAlreadyExistsException extends RequestRejectedException{
 
     public MessageIdAlreadyExistsException(String msg){
         super(msg);
@@ -1,6 +1,6 @@
 package dev.transactionapp.exception;
 
-public class MessageIdNotMatchException extends RuntimeException{
+public class MessageIdNotMatchException extends RequestRejectedException{
 
     public MessageIdNotMatchException(String msg){
         super(msg);
@@ -0,0 +1,8 @@
+package dev.transactionapp.exception;
+
+public class NodeUnavailableException extends RuntimeException{
+
+    public NodeUnavailableException(String msg){
+        super(msg);
+    }
+}
@@ -0,0 +1,15 @@
+package dev.transactionapp.exception;
+
+/**
+ * Base class of the exceptions rejecting a request that can't be processed as sent (unknown user, malformed ID,
+ * mismatched messageId, currency or transaction type), all answered with a 400 by the `RestExceptionHandler`.
+ *
+ * These are expected outcomes rather than failures, so they don't capture a stack trace: filling it in dominated
+ * the cost of a rejection, and it only ever pointed at the validation check that threw.
+ */
+public abstract class RequestRejectedException extends RuntimeException{
+
+    protected RequestRejectedException(String msg) {
+        super(msg, null, false, false);
+    }
+}
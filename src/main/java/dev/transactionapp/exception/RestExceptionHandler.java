@@ -1,12 +1,15 @@
 package dev.transactionapp.exception;
 
 import dev.transactionapp.entity.Error;
+import dev.transactionapp.metrics.TransactionMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -18,11 +21,15 @@ import java.util.Map;
  * It defines methods annotated with @ExceptionHandler to handle specific exceptions thrown by the application.
  * Each handler method takes the exception object as input and returns a ResponseEntity containing an Error object
  * with appropriate error message and HTTP status code.
+ * Every handled exception is counted in the `transaction.errors` metric, tagged by the exception class.
  */
 @Component
 @ControllerAdvice
 public class RestExceptionHandler {
 
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
     /**
      * Handles MessageIdNotMatchException.
      * This exception is likely thrown when message IDs don't match between request and processing.
@@ -33,6 +40,7 @@ public class RestExceptionHandler {
      */
     @ExceptionHandler(MessageIdNotMatchException.class)
     public ResponseEntity<Error> messageIdNotMatchExceptionHandler(MessageIdNotMatchException ex){
+        transactionMetrics.error(ex);
         Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
@@ -47,6 +55,7 @@ public class RestExceptionHandler {
      */
     @ExceptionHandler(MessageIdAlreadyExistsException.class)
     public ResponseEntity<Error> messageIdAlreadyExistsExceptionHandler(MessageIdAlreadyExistsException ex){
+        transactionMetrics.error(ex);
         Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
@@ -61,6 +70,7 @@ public class RestExceptionHandler {
      */
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<Error> userNotFoundExceptionHandler(UserNotFoundException ex){
+        transactionMetrics.error(ex);
         Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
@@ -75,6 +85,7 @@ public class RestExceptionHandler {
      */
     @ExceptionHandler(CurrencyNotMatchException.class)
     public ResponseEntity<Error> currencyNotMatchExceptionHandler(CurrencyNotMatchException ex){
+        transactionMetrics.error(ex);
         Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
@@ -90,6 +101,7 @@ public class RestExceptionHandler {
      */
     @ExceptionHandler(InvalidTransactionTypeException.class)
     public ResponseEntity<Error> invalidTransactionTypeExceptionHandler(InvalidTransactionTypeException ex){
+        transactionMetrics.error(ex);
         Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
@@ -104,10 +116,56 @@ public class RestExceptionHandler {
      */
     @ExceptionHandler(InvalidUUIDException.class)
     public ResponseEntity<Error> invalidUUIDExceptionHandler(InvalidUUIDException ex){
+        transactionMetrics.error(ex);
+        Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
+        return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles InvalidBatchException.
+     * This exception is likely thrown when a batch body isn't a JSON array or NDJSON, or has too many entries
+     * The handler creates an Error object with the exception message and a BAD_REQUEST (400) status code.
+     *
+     * @param ex The InvalidBatchException object.
+     * @return ResponseEntity containing an Error object and HttpStatus.BAD_REQUEST
+     */
+    @ExceptionHandler(InvalidBatchException.class)
+    public ResponseEntity<Error> invalidBatchExceptionHandler(InvalidBatchException ex){
+        transactionMetrics.error(ex);
         Error error = new Error(ex.getLocalizedMessage(), HttpStatus.BAD_REQUEST.toString());
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * Handles UserLockTimeoutException.
+     * This exception is likely thrown when too many requests for the same user are waiting for its lock on this node
+     * The handler creates an Error object with the exception message and a SERVICE_UNAVAILABLE (503) status code, as a retry may succeed.
+     *
+     * @param ex The UserLockTimeoutException object.
+     * @return ResponseEntity containing an Error object and HttpStatus.SERVICE_UNAVAILABLE
+     */
+    @ExceptionHandler(UserLockTimeoutException.class)
+    public ResponseEntity<Error> userLockTimeoutExceptionHandler(UserLockTimeoutException ex){
+        transactionMetrics.error(ex);
+        Error error = new Error(ex.getLocalizedMessage(), HttpStatus.SERVICE_UNAVAILABLE.toString());
+        return new ResponseEntity<>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * Handles NodeUnavailableException.
+     * This exception is likely thrown when a request was forwarded to the node owning its user, and that node didn't answer in time
+     * The handler creates an Error object with the exception message and a SERVICE_UNAVAILABLE (503) status code, as a retry may succeed.
+     *
+     * @param ex The NodeUnavailableException object.
+     * @return ResponseEntity containing an Error object and HttpStatus.SERVICE_UNAVAILABLE
+     */
+    @ExceptionHandler(NodeUnavailableException.class)
+    public ResponseEntity<Error> nodeUnavailableExceptionHandler(NodeUnavailableException ex){
+        transactionMetrics.error(ex);
+        Error error = new Error(ex.getLocalizedMessage(), HttpStatus.SERVICE_UNAVAILABLE.toString());
+        return new ResponseEntity<>(error, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     /**
      * Handles MethodArgumentNotValidException.
      * This exception is typically thrown when request body validation fails (e.g., missing fields, invalid formats).
@@ -120,6 +178,25 @@ public class RestExceptionHandler {
      */
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Error> methodArgumentNotValidException(MethodArgumentNotValidException ex){
+        transactionMetrics.error(ex);
+        Map<String, String> errorMap = new HashMap<>();
+        ex.getFieldErrors().forEach(fieldError ->
+                errorMap.put(fieldError.getField(), fieldError.getDefaultMessage())
+        );
+        Error error = new Error(errorMap.toString(), HttpStatus.BAD_REQUEST.toString());
+        return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+    }
+
+    /**
+     * Handles WebExchangeBindException, the reactive stack's counterpart of MethodArgumentNotValidException.
+     * The handler creates the same Error object as `methodArgumentNotValidException`, with a BAD_REQUEST (400) status code.
+     *
+     * @param ex The WebExchangeBindException object.
+     * @return ResponseEntity containing an Error object with validation errors and HttpStatus.BAD_REQUEST
+     */
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<Error> webExchangeBindException(WebExchangeBindException ex){
+        transactionMetrics.error(ex);
         Map<String, String> errorMap = new HashMap<>();
         ex.getFieldErrors().forEach(fieldError ->
                 errorMap.put(fieldError.getField(), fieldError.getDefaultMessage())
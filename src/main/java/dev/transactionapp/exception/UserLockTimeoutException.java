@@ -0,0 +1,8 @@
+package dev.transactionapp.exception;
+
+public class UserLockTimeoutException extends RuntimeException{
+
+    public UserLockTimeoutException(String msg){
+        super(msg);
+    }
+}
@@ -1,6 +1,6 @@
 package dev.transactionapp.exception;
 
-public class UserNotFoundException extends RuntimeException{
+public class UserNotFoundException extends RequestRejectedException{
 
     public UserNotFoundException(String msg){
         super(msg);
@@ -0,0 +1,73 @@
+package dev.transactionapp.execution;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.stream.Collectors;
+
+/**
+ * Reports virtual threads pinning their carrier thread, i.e. blocking inside a `synchronized` block or a native frame
+ * (typically in a JDBC driver) for longer than `threshold`. A pinned virtual thread holds an OS thread for the whole
+ * wait, so a few of them can stall every other request.
+ *
+ * Here's a breakdown of the steps involved:
+ *  1. A JFR recording stream is started in-process, listening to `jdk.VirtualThreadPinned` events over `threshold`.
+ *  2. Every event increments the `transaction.virtual.pinned` counter and is logged with the top frames of its stack,
+ *     which shows the monitor to replace with a `ReentrantLock`.
+ *
+ * On JVMs without virtual threads the event doesn't exist and nothing is ever reported.
+ */
+@Slf4j
+public class PinnedThreadMonitor {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+    private static final int LOGGED_FRAMES = 8;
+
+    private final Duration threshold;
+    private final Counter pinnedCounter;
+    private RecordingStream recordingStream;
+
+    public PinnedThreadMonitor(MeterRegistry meterRegistry, Duration threshold) {
+        this.threshold = threshold;
+        this.pinnedCounter = Counter.builder("transaction.virtual.pinned")
+                .description("Virtual threads that pinned their carrier thread for longer than the threshold")
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        recordingStream = new RecordingStream();
+        recordingStream.enable(PINNED_EVENT).withThreshold(threshold).withStackTrace();
+        recordingStream.onEvent(PINNED_EVENT, this::onPinned);
+        recordingStream.startAsync();
+        log.info("Reporting virtual threads pinned for longer than {} ms", threshold.toMillis());
+    }
+
+    public void stop() {
+        if (recordingStream != null)
+            recordingStream.close();
+    }
+
+    void onPinned(RecordedEvent event) {
+        pinnedCounter.increment();
+        log.warn("Virtual thread pinned its carrier for {} ms at {}", event.getDuration().toMillis(), topFrames(event.getStackTrace()));
+    }
+
+    private static String topFrames(RecordedStackTrace stackTrace) {
+        if (stackTrace == null)
+            return "unknown location";
+        return stackTrace.getFrames().stream()
+                .limit(LOGGED_FRAMES)
+                .map(PinnedThreadMonitor::format)
+                .collect(Collectors.joining(" <- "));
+    }
+
+    private static String format(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,52 @@
+package dev.transactionapp.execution;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates executors that run every task on a new virtual thread.
+ *
+ * The build targets Java 17, where virtual threads don't exist, so the Java 21 API
+ * (`Thread.ofVirtual().name(prefix, 0).factory()` and `Executors.newThreadPerTaskExecutor`) is looked up reflectively.
+ * The same jar then runs in the platform thread mode on Java 17 and can switch to virtual threads on Java 21.
+ */
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return Whether the running JVM supports virtual threads (Java 21 or later).
+     */
+    public static boolean isSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return Runtime.version().feature() >= 21;
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Creates an executor starting one virtual thread per task, named `namePrefix` followed by a counter.
+     *
+     * @throws IllegalStateException if the running JVM doesn't support virtual threads.
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        if (!isSupported())
+            throw new IllegalStateException("Virtual threads need Java 21 or later but running on Java " + Runtime.version().feature());
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (ClassNotFoundException | NoSuchMethodException | IllegalAccessException | InvocationTargetException ex) {
+            throw new IllegalStateException("Failed to create a virtual thread executor", ex);
+        }
+    }
+}
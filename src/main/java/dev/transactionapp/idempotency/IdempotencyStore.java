@@ -0,0 +1,250 @@
+package dev.transactionapp.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import dev.transactionapp.codec.TransactionJsonCodec;
+import dev.transactionapp.entity.IdempotencyRecord;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the response originally returned for every messageId, approved and declined authorizations as well as loads,
+ * so a retried message gets the very same response back instead of being applied twice.
+ *
+ * Records live in two tiers:
+ *  - a bounded in-memory cache (`transaction.idempotency.cache-size` entries, LRU eviction), checked first;
+ *  - the `idempotency_records` table, holding the serialized response and purged once older than `transaction.idempotency.ttl`.
+ *
+ * A messageId already used by the other message type (e.g. a load reusing an authorization's messageId), or by a
+ * request of another user or for another amount, is rejected with `MessageIdAlreadyExistsException`: only a retry of
+ * the very same request gets the stored response.
+ */
+@Slf4j
+@Component
+public class IdempotencyStore {
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final boolean specializedCodec;
+    private final Cache<String, IdempotencyRecord> recentRecords;
+    private final ConcurrentMap<String, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository,
+                            ObjectMapper objectMapper,
+                            @Value("${transaction.idempotency.cache-size:100000}") long cacheSize,
+                            @Value("${transaction.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${transaction.json.specialized-codec:true}") boolean specializedCodec) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.objectMapper = objectMapper;
+        this.ttl = ttl;
+        this.specializedCodec = specializedCodec;
+        this.recentRecords = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Looks up the serialized response of a message that was already processed.
+     * Doesn't take any lock, so it's safe to call before the transaction is opened.
+     *
+     * @param messageType The type of the incoming message.
+     * @param messageId The messageId of the incoming message.
+     * @param userId The userId of the incoming message.
+     * @param amount The transaction amount of the incoming message, as sent.
+     * @return The response bytes exactly as originally serialized, or empty for a new message.
+     * @throws MessageIdAlreadyExistsException if the messageId was used by the other message type, another user or another amount.
+     */
+    public Optional<byte[]> findResponse(MessageType messageType, String messageId, String userId, String amount) throws MessageIdAlreadyExistsException {
+        IdempotencyRecord record = recentRecords.getIfPresent(messageId);
+        if (record == null) {
+            record = idempotencyRecordRepository.findById(messageId).orElse(null);
+            if (record == null)
+                return Optional.empty();
+            recentRecords.put(messageId, record);
+        }
+        return Optional.of(replay(record, messageType, messageId, userId, amount));
+    }
+
+    /**
+     * Same as `findResponse(MessageType, String, String, String)` but only looks at the in-memory tier, so it never blocks on the database.
+     * Used by the reactive stack, which looks up the `idempotency_records` table itself.
+     */
+    Optional<byte[]> findRecentResponse(MessageType messageType, String messageId, String userId, String amount) throws MessageIdAlreadyExistsException {
+        IdempotencyRecord record = recentRecords.getIfPresent(messageId);
+        return record == null ? Optional.empty() : Optional.of(replay(record, messageType, messageId, userId, amount));
+    }
+
+    /**
+     * Checks a stored record against the type, user and amount of the incoming message and returns its response.
+     *
+     * @throws MessageIdAlreadyExistsException if the messageId was used by the other message type, another user or another amount.
+     */
+    byte[] replay(IdempotencyRecord record, MessageType messageType, String messageId, String userId, String amount) throws MessageIdAlreadyExistsException {
+        if (record.getMessageType() != messageType || !sameRequest(record.getUserId(), record.getAmount(), userId, amount))
+            throw new MessageIdAlreadyExistsException(String.format("message id: %s already exists", messageId));
+        log.debug("Replaying stored {} response for messageId {}", messageType, messageId);
+        return record.getResponse();
+    }
+
+    /**
+     * Same as `findResponse(MessageType, String, String, String)` but deserializes the stored response.
+     */
+    public <T> Optional<T> findResponse(MessageType messageType, String messageId, String userId, String amount, Class<T> responseType) throws MessageIdAlreadyExistsException {
+        return findResponse(messageType, messageId, userId, amount).map(response -> read(response, responseType));
+    }
+
+    /**
+     * Deserializes a stored response.
+     */
+    <T> T read(byte[] response, Class<T> responseType) {
+        try {
+            return objectMapper.readValue(response, responseType);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to deserialize stored response", ex);
+        }
+    }
+
+    /**
+     * Saves the response of a processed message as part of the current transaction.
+     * The in-memory tier is only updated once the transaction commits, so a rolled back message is never replayed.
+     */
+    public void save(MessageType messageType, String messageId, String userId, String amount, Object response) {
+        IdempotencyRecord record = record(messageType, messageId, userId, amount, response);
+        idempotencyRecordRepository.save(record);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recentRecords.put(messageId, record);
+                }
+            });
+        } else {
+            recentRecords.put(messageId, record);
+        }
+    }
+
+    /**
+     * Makes the response of a processed message replayable right away from memory, leaving it to the caller
+     * to persist the returned record (used by the sharded engine, which persists asynchronously).
+     */
+    public IdempotencyRecord remember(MessageType messageType, String messageId, String userId, String amount, Object response) {
+        IdempotencyRecord record = record(messageType, messageId, userId, amount, response);
+        remember(record);
+        return record;
+    }
+
+    /**
+     * Makes an already persisted record replayable from memory.
+     */
+    void remember(IdempotencyRecord record) {
+        recentRecords.put(record.getMessageId(), record);
+    }
+
+    /**
+     * Serializes a response the way it's stored and replayed, without storing it.
+     */
+    IdempotencyRecord record(MessageType messageType, String messageId, String userId, String amount, Object response) {
+        return new IdempotencyRecord(messageId, messageType, userId, Money.tryParse(amount), write(response));
+    }
+
+    /**
+     * Runs `action` at most once per messageId on this node: a replayed message returns the stored response,
+     * and a retry arriving while the original is still being processed waits for the original's response.
+     * Used where no database lock serializes concurrent retries of the same message.
+     */
+    public <T> T processOnce(MessageType messageType, String messageId, String userId, String amount, Class<T> responseType, Supplier<T> action) {
+        Optional<T> replay = findResponse(messageType, messageId, userId, amount, responseType);
+        if (replay.isPresent())
+            return replay.get();
+        InFlight current = new InFlight(messageType, userId, Money.tryParse(amount));
+        InFlight original = inFlight.putIfAbsent(messageId, current);
+        if (original != null)
+            return awaitOriginal(original, messageType, messageId, userId, amount, responseType);
+        try {
+            T response = action.get();
+            current.response.complete(response);
+            return response;
+        } catch (RuntimeException ex) {
+            current.response.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(messageId, current);
+        }
+    }
+
+    /**
+     * Deletes the persisted records older than the TTL, every `transaction.idempotency.purge-interval-ms` milliseconds.
+     */
+    @Scheduled(fixedDelayString = "${transaction.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        int purged = idempotencyRecordRepository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        if (purged > 0)
+            log.info("Purged {} idempotency records older than {}", purged, ttl);
+    }
+
+    private <T> T awaitOriginal(InFlight original, MessageType messageType, String messageId, String userId, String amount, Class<T> responseType) {
+        if (original.messageType != messageType || !sameRequest(original.userId, original.amount, userId, amount))
+            throw new MessageIdAlreadyExistsException(String.format("message id: %s already exists", messageId));
+        try {
+            return responseType.cast(original.response.join());
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw ex;
+        }
+    }
+
+    /**
+     * UUIDs are compared ignoring case, amounts in minor units so "20" and "20.00" are the same amount.
+     */
+    private static boolean sameRequest(String storedUserId, long storedAmount, String userId, String amount) {
+        return storedUserId.equalsIgnoreCase(userId) && storedAmount == Money.tryParse(amount);
+    }
+
+    private byte[] write(Object response) {
+        if (specializedCodec && TransactionJsonCodec.canWrite(response.getClass()))
+            return TransactionJsonCodec.toBytes(response);
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Failed to serialize response for idempotency store", ex);
+        }
+    }
+
+    private static final class InFlight {
+        private final MessageType messageType;
+        private final String userId;
+        private final long amount;
+        private final CompletableFuture<Object> response = new CompletableFuture<>();
+
+        private InFlight(MessageType messageType, String userId, long amount) {
+            this.messageType = messageType;
+            this.userId = userId;
+            this.amount = amount;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package dev.transactionapp.idempotency;
+
+import dev.transactionapp.entity.IdempotencyRecord;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.repository.ReactiveIdempotencyRecordRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * The `IdempotencyStore` of the reactive stack: the same in-memory tier, in front of the `idempotency_records` table
+ * read and written through R2DBC instead of JPA, so replay lookups never block the event loop on JDBC.
+ * A lookup missing the in-memory tier reads the table on the `reactiveDatabaseScheduler`, the H2 driver blocking while it executes.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveIdempotencyStore {
+
+    private final IdempotencyStore idempotencyStore;
+    private final ReactiveIdempotencyRecordRepository reactiveIdempotencyRecordRepository;
+    private final Scheduler reactiveDatabaseScheduler;
+
+    public ReactiveIdempotencyStore(IdempotencyStore idempotencyStore, ReactiveIdempotencyRecordRepository reactiveIdempotencyRecordRepository,
+                                    Scheduler reactiveDatabaseScheduler) {
+        this.idempotencyStore = idempotencyStore;
+        this.reactiveIdempotencyRecordRepository = reactiveIdempotencyRecordRepository;
+        this.reactiveDatabaseScheduler = reactiveDatabaseScheduler;
+    }
+
+    /**
+     * Looks up the serialized response of a message that was already processed, in memory first.
+     *
+     * @return The response bytes exactly as originally serialized, or an empty Mono for a new message.
+     *         Errors with `MessageIdAlreadyExistsException` if the messageId was used by the other message type, another user or another amount.
+     */
+    public Mono<byte[]> findResponse(MessageType messageType, String messageId, String userId, String amount) {
+        return Mono.defer(() -> Mono.justOrEmpty(idempotencyStore.findRecentResponse(messageType, messageId, userId, amount)))
+                .switchIfEmpty(Mono.defer(() -> findStoredResponse(messageType, messageId, userId, amount)).subscribeOn(reactiveDatabaseScheduler));
+    }
+
+    /**
+     * Same as `findResponse(MessageType, String, String, String)` but deserializes the stored response. Meant for the
+     * reactive transactions, which already run on the `reactiveDatabaseScheduler`.
+     */
+    public <T> Mono<T> findResponse(MessageType messageType, String messageId, String userId, String amount, Class<T> responseType) {
+        return Mono.defer(() -> Mono.justOrEmpty(idempotencyStore.findRecentResponse(messageType, messageId, userId, amount)))
+                .switchIfEmpty(Mono.defer(() -> findStoredResponse(messageType, messageId, userId, amount)))
+                .map(response -> idempotencyStore.read(response, responseType));
+    }
+
+    private Mono<byte[]> findStoredResponse(MessageType messageType, String messageId, String userId, String amount) {
+        return reactiveIdempotencyRecordRepository.findByMessageId(messageId)
+                .doOnNext(idempotencyStore::remember)
+                .map(record -> idempotencyStore.replay(record, messageType, messageId, userId, amount));
+    }
+
+    /**
+     * Inserts the response of a processed message as part of the current reactive transaction.
+     * The in-memory tier is only updated once the transaction commits, so a rolled back message is never replayed.
+     */
+    public Mono<Void> save(MessageType messageType, String messageId, String userId, String amount, Object response) {
+        return Mono.fromCallable(() -> idempotencyStore.record(messageType, messageId, userId, amount, response))
+                .flatMap(record -> reactiveIdempotencyRecordRepository.insert(record).then(rememberAfterCommit(record)));
+    }
+
+    private Mono<Void> rememberAfterCommit(IdempotencyRecord record) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(synchronizationManager -> synchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public Mono<Void> afterCommit() {
+                        return Mono.fromRunnable(() -> idempotencyStore.remember(record));
+                    }
+                }))
+                .switchIfEmpty(Mono.fromRunnable(() -> idempotencyStore.remember(record)))
+                .onErrorResume(NoTransactionException.class, ex -> Mono.fromRunnable(() -> idempotencyStore.remember(record)))
+                .then();
+    }
+}
@@ -0,0 +1,179 @@
+package dev.transactionapp.ingress;
+
+import dev.transactionapp.enums.Currency;
+import dev.transactionapp.enums.MessageType;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Encodes and decodes the fixed-layout frames of the binary ingress. All numbers are big-endian.
+ *
+ * **Request frame:**
+ *  - int32 length of the rest of the frame
+ *  - int32 correlationId
+ *  - byte type: 1 AUTHORIZATION (debit), 2 LOAD (credit)
+ *  - byte currency: 1 USD, 2 INR
+ *  - 16 bytes userId (most then least significant bits)
+ *  - int64 amount in minor units
+ *  - int16 length and UTF-8 bytes of the messageId
+ *
+ * **Response frame:**
+ *  - int32 length of the rest of the frame
+ *  - int32 correlationId of the request
+ *  - byte status, see `BinaryStatus`
+ *  - byte currency, 0 if none
+ *  - int64 balance in minor units
+ *  - int16 length and UTF-8 bytes of the message, 0 if none
+ *
+ * Texts are at most `MAX_TEXT_LENGTH` bytes, so no frame is longer than `MAX_FRAME_LENGTH` and always fits in a
+ * connection's buffer. Frames are read and written in place, in the caller's buffers, without intermediate arrays
+ * other than the texts.
+ */
+public final class BinaryFrames {
+
+    public static final int MAX_TEXT_LENGTH = 1024;
+    public static final int REQUEST_FIXED_LENGTH = 4 + 1 + 1 + 16 + 8 + 2;
+    public static final int RESPONSE_FIXED_LENGTH = 4 + 1 + 1 + 8 + 2;
+    public static final int MAX_FRAME_LENGTH = Integer.BYTES + REQUEST_FIXED_LENGTH + MAX_TEXT_LENGTH;
+
+    private static final byte AUTHORIZATION = 1;
+    private static final byte LOAD = 2;
+
+    private BinaryFrames() {
+    }
+
+    /**
+     * @param buffer A buffer in read mode, positioned at the start of a frame.
+     * @param fixedLength The fixed part of the expected frame, `REQUEST_FIXED_LENGTH` or `RESPONSE_FIXED_LENGTH`.
+     * @return true if the whole frame is in the buffer.
+     * @throws ProtocolException if the frame's length is out of bounds, the connection can't be trusted anymore.
+     */
+    public static boolean hasFrame(ByteBuffer buffer, int fixedLength) throws ProtocolException {
+        if (buffer.remaining() < Integer.BYTES)
+            return false;
+        int length = buffer.getInt(buffer.position());
+        if (length < fixedLength || length > fixedLength + MAX_TEXT_LENGTH)
+            throw new ProtocolException(String.format("Invalid frame length: %d", length));
+        return buffer.remaining() >= Integer.BYTES + length;
+    }
+
+    /**
+     * Reads the request frame at the buffer's position, which `hasFrame` found complete, and moves past it.
+     *
+     * @throws ProtocolException if the messageId doesn't end with the frame.
+     */
+    public static BinaryRequest readRequest(ByteBuffer buffer) throws ProtocolException {
+        int length = buffer.getInt();
+        int correlationId = buffer.getInt();
+        MessageType type = messageType(buffer.get());
+        String currency = currency(buffer.get());
+        UUID userId = new UUID(buffer.getLong(), buffer.getLong());
+        long amount = buffer.getLong();
+        String messageId = readText(buffer, length - REQUEST_FIXED_LENGTH);
+        return new BinaryRequest(correlationId, type, userId, messageId, amount, currency);
+    }
+
+    /**
+     * Appends the request frame to a buffer in write mode.
+     *
+     * @return false, leaving the buffer untouched, if the frame doesn't fit in the buffer's remaining space.
+     * @throws IllegalArgumentException if the request has no type, no currency, or a messageId over `MAX_TEXT_LENGTH` bytes.
+     */
+    public static boolean writeRequest(ByteBuffer buffer, BinaryRequest request) throws IllegalArgumentException {
+        if (request.type() == null || request.currency() == null)
+            throw new IllegalArgumentException("Request type and currency are required");
+        byte[] messageId = request.messageId().getBytes(StandardCharsets.UTF_8);
+        if (messageId.length > MAX_TEXT_LENGTH)
+            throw new IllegalArgumentException(String.format("messageId is longer than %d bytes", MAX_TEXT_LENGTH));
+        if (buffer.remaining() < Integer.BYTES + REQUEST_FIXED_LENGTH + messageId.length)
+            return false;
+        buffer.putInt(REQUEST_FIXED_LENGTH + messageId.length)
+                .putInt(request.correlationId())
+                .put(request.type() == MessageType.AUTHORIZATION ? AUTHORIZATION : LOAD)
+                .put(currencyCode(request.currency()))
+                .putLong(request.userId().getMostSignificantBits())
+                .putLong(request.userId().getLeastSignificantBits())
+                .putLong(request.amount())
+                .putShort((short) messageId.length)
+                .put(messageId);
+        return true;
+    }
+
+    /**
+     * Reads the response frame at the buffer's position, which `hasFrame` found complete, and moves past it.
+     *
+     * @throws ProtocolException if the status is unknown or the message doesn't end with the frame.
+     */
+    public static BinaryResponse readResponse(ByteBuffer buffer) throws ProtocolException {
+        int length = buffer.getInt();
+        int correlationId = buffer.getInt();
+        BinaryStatus status = BinaryStatus.of(buffer.get());
+        if (status == null)
+            throw new ProtocolException("Unknown response status");
+        String currency = currency(buffer.get());
+        long balance = buffer.getLong();
+        String message = readText(buffer, length - RESPONSE_FIXED_LENGTH);
+        return new BinaryResponse(correlationId, status, balance, currency, message.isEmpty() ? null : message);
+    }
+
+    /**
+     * Appends the response frame to a buffer in write mode. A message over `MAX_TEXT_LENGTH` bytes is truncated.
+     *
+     * @return false, leaving the buffer untouched, if the frame doesn't fit in the buffer's remaining space.
+     */
+    public static boolean writeResponse(ByteBuffer buffer, BinaryResponse response) {
+        byte[] message = response.message() == null ? new byte[0] : response.message().getBytes(StandardCharsets.UTF_8);
+        int messageLength = truncatedLength(message);
+        if (buffer.remaining() < Integer.BYTES + RESPONSE_FIXED_LENGTH + messageLength)
+            return false;
+        buffer.putInt(RESPONSE_FIXED_LENGTH + messageLength)
+                .putInt(response.correlationId())
+                .put(response.status().code())
+                .put(response.currency() == null ? 0 : currencyCode(response.currency()))
+                .putLong(response.balance())
+                .putShort((short) messageLength)
+                .put(message, 0, messageLength);
+        return true;
+    }
+
+    private static String readText(ByteBuffer buffer, int remainingLength) throws ProtocolException {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (length != remainingLength)
+            throw new ProtocolException(String.format("Text of %d bytes doesn't match the frame length", length));
+        String text = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return text;
+    }
+
+    /**
+     * Cuts at `MAX_TEXT_LENGTH` bytes, before the UTF-8 character running over the limit.
+     */
+    private static int truncatedLength(byte[] text) {
+        if (text.length <= MAX_TEXT_LENGTH)
+            return text.length;
+        int length = MAX_TEXT_LENGTH;
+        while (length > 0 && (text[length] & 0xC0) == 0x80)
+            length--;
+        return length;
+    }
+
+    private static MessageType messageType(byte code) {
+        return switch (code) {
+            case AUTHORIZATION -> MessageType.AUTHORIZATION;
+            case LOAD -> MessageType.LOAD;
+            default -> null;
+        };
+    }
+
+    private static String currency(byte code) {
+        Currency[] currencies = Currency.values();
+        return code > 0 && code <= currencies.length ? currencies[code - 1].name() : null;
+    }
+
+    private static byte currencyCode(String currency) {
+        return (byte) (Currency.valueOf(currency).ordinal() + 1);
+    }
+}
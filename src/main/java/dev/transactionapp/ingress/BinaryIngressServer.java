@@ -0,0 +1,308 @@
+package dev.transactionapp.ingress;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking TCP server of the binary ingress: authorizations and loads sent as `BinaryFrames` instead of JSON over HTTP.
+ *
+ * **Connections:**
+ *  - One selector thread accepts the connections, reads the request frames and writes the response frames of all of them,
+ *    so thousands of client connections cost no thread each.
+ *  - Every connection has a direct read buffer and a direct write buffer of `bufferSize` bytes, taken from a pool when it
+ *    opens and given back when it closes, so the socket I/O never copies through heap arrays nor allocates per request.
+ *  - A connection sending a malformed frame is closed; a frame can't be resynchronized without its length.
+ *
+ * **Pipelining:**
+ *  - A client may send any number of requests without waiting for their responses. Every complete frame read is handed
+ *    to the `workers`, so the requests of one connection run concurrently, and are answered in completion order with
+ *    their correlationId.
+ *  - Workers queue the responses on their connection and wake the selector up once per batch of responses, which
+ *    encodes as many as fit in the write buffer and writes them with one system call.
+ *  - Once a connection has `maxInFlight` requests unanswered, it isn't read anymore until some are answered, so a client
+ *    outpacing the application fills its own TCP window instead of the application's memory.
+ */
+@Slf4j
+public class BinaryIngressServer {
+
+    private static final int MAX_POOLED_BUFFERS = 256;
+
+    private final BinaryRequestHandler requestHandler;
+    private final InetSocketAddress address;
+    private final int workers;
+    private final int maxInFlight;
+    private final int bufferSize;
+    // only used by the selector thread
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();
+    private final ConcurrentLinkedQueue<Connection> pendingWrites = new ConcurrentLinkedQueue<>();
+    private ExecutorService executor;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private int port;
+
+    public BinaryIngressServer(BinaryRequestHandler requestHandler, InetSocketAddress address, int workers, int maxInFlight, int bufferSize) {
+        if (workers < 1 || maxInFlight < 1)
+            throw new IllegalArgumentException("transaction.ingress.binary.workers and max-in-flight must be at least 1");
+        if (bufferSize < BinaryFrames.MAX_FRAME_LENGTH)
+            throw new IllegalArgumentException(String.format("transaction.ingress.binary.buffer-size must be at least %d", BinaryFrames.MAX_FRAME_LENGTH));
+        this.requestHandler = requestHandler;
+        this.address = address;
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+        this.bufferSize = bufferSize;
+    }
+
+    public void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(address);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        port = serverChannel.socket().getLocalPort();
+        AtomicInteger workerCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "binary-ingress-worker-" + workerCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        selectorThread = new Thread(this::run, "binary-ingress-selector");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("Binary ingress listening on port {} with {} workers", port, workers);
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        if (selector != null)
+            selector.wakeup();
+        if (selectorThread != null)
+            selectorThread.join(TimeUnit.SECONDS.toMillis(5));
+        if (executor != null) {
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * @return The port listened on, the actual one if `transaction.ingress.binary.port` was 0.
+     */
+    public int getPort() {
+        return port;
+    }
+
+    private void run() {
+        try {
+            while (running) {
+                selector.select();
+                flushPendingWrites();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isAcceptable())
+                        accept();
+                    else if (key.isValid())
+                        process((Connection) key.attachment(), key);
+                }
+            }
+        } catch (IOException ex) {
+            log.error("Binary ingress stopped", ex);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof Connection connection)
+                    close(connection);
+            }
+            closeQuietly();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel, acquireBuffer(), acquireBuffer());
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+    }
+
+    private void process(Connection connection, SelectionKey key) {
+        try {
+            if (key.isReadable()) {
+                if (connection.channel.read(connection.readBuffer) < 0) {
+                    close(connection);
+                    return;
+                }
+                dispatchFrames(connection);
+            }
+            if (key.isValid() && key.isWritable())
+                flush(connection);
+        } catch (IOException ex) {
+            log.debug("Closing binary connection {}", connection.channel, ex);
+            close(connection);
+        }
+    }
+
+    /**
+     * Hands every complete frame in the read buffer to the workers, while the connection is under `maxInFlight`.
+     */
+    private void dispatchFrames(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer.flip();
+        try {
+            while (connection.inFlight < maxInFlight && BinaryFrames.hasFrame(buffer, BinaryFrames.REQUEST_FIXED_LENGTH)) {
+                BinaryRequest request = BinaryFrames.readRequest(buffer);
+                executor.execute(() -> handle(connection, request));
+                connection.inFlight++;
+            }
+        } catch (RejectedExecutionException ex) {
+            throw new IOException("Binary ingress is stopping", ex);
+        } finally {
+            buffer.compact();
+        }
+        updateInterest(connection);
+    }
+
+    /**
+     * Runs on a worker. A response is queued in `finally`, even if the handler threw (e.g. an `Error`), since the request
+     * only leaves `inFlight` once its response is written: a lost response would hold its slot for good and, after
+     * `maxInFlight` of them, stop the connection from being read.
+     */
+    private void handle(Connection connection, BinaryRequest request) {
+        BinaryResponse response = null;
+        try {
+            response = requestHandler.handle(request);
+        } finally {
+            respond(connection, response != null ? response : BinaryResponse.error(request.correlationId(), BinaryStatus.INTERNAL_ERROR, "Internal error"));
+        }
+    }
+
+    /**
+     * Called by the workers. Only the first response queued since the connection was last flushed wakes the selector up.
+     */
+    private void respond(Connection connection, BinaryResponse response) {
+        connection.responses.add(response);
+        if (connection.flushScheduled.compareAndSet(false, true)) {
+            pendingWrites.add(connection);
+            selector.wakeup();
+        }
+    }
+
+    private void flushPendingWrites() {
+        Connection connection;
+        while ((connection = pendingWrites.poll()) != null) {
+            connection.flushScheduled.set(false);
+            if (connection.closed)
+                continue;
+            try {
+                flush(connection);
+                // frames left in the read buffer while the connection was at maxInFlight
+                dispatchFrames(connection);
+            } catch (IOException ex) {
+                log.debug("Closing binary connection {}", connection.channel, ex);
+                close(connection);
+            }
+        }
+    }
+
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer buffer = connection.writeBuffer;
+        while (true) {
+            BinaryResponse response;
+            while ((response = connection.responses.peek()) != null && BinaryFrames.writeResponse(buffer, response)) {
+                connection.responses.poll();
+                connection.inFlight--;
+            }
+            buffer.flip();
+            connection.channel.write(buffer);
+            boolean written = !buffer.hasRemaining();
+            buffer.compact();
+            if (!written || connection.responses.isEmpty())
+                break;
+        }
+        updateInterest(connection);
+    }
+
+    private void updateInterest(Connection connection) {
+        if (connection.closed)
+            return;
+        int ops = connection.inFlight < maxInFlight ? SelectionKey.OP_READ : 0;
+        if (connection.writeBuffer.position() > 0 || !connection.responses.isEmpty())
+            ops |= SelectionKey.OP_WRITE;
+        connection.key.interestOps(ops);
+    }
+
+    private void close(Connection connection) {
+        if (connection.closed)
+            return;
+        connection.closed = true;
+        if (connection.key != null)
+            connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException ex) {
+            log.debug("Failed to close binary connection", ex);
+        }
+        releaseBuffer(connection.readBuffer);
+        releaseBuffer(connection.writeBuffer);
+    }
+
+    private void closeQuietly() {
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException ex) {
+            log.debug("Failed to close the binary ingress", ex);
+        }
+    }
+
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        if (bufferPool.size() < MAX_POOLED_BUFFERS)
+            bufferPool.push(buffer.clear());
+    }
+
+    /**
+     * One client connection. Its buffers and counters are only touched by the selector thread, the workers only add
+     * to `responses`.
+     */
+    private static final class Connection {
+
+        private final SocketChannel channel;
+        private final ByteBuffer readBuffer;
+        private final ByteBuffer writeBuffer;
+        private final ConcurrentLinkedQueue<BinaryResponse> responses = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private SelectionKey key;
+        private int inFlight;
+        private boolean closed;
+
+        Connection(SocketChannel channel, ByteBuffer readBuffer, ByteBuffer writeBuffer) {
+            this.channel = channel;
+            this.readBuffer = readBuffer;
+            this.writeBuffer = writeBuffer;
+        }
+    }
+}
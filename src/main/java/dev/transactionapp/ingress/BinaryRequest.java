@@ -0,0 +1,16 @@
+package dev.transactionapp.ingress;
+
+import dev.transactionapp.enums.MessageType;
+
+import java.util.UUID;
+
+/**
+ * An authorization or load received as a binary frame, see `BinaryFrames`.
+ *
+ * @param correlationId Chosen by the client and echoed in the response, so pipelined responses can be matched.
+ * @param type The message type, null if the frame had an unknown type code.
+ * @param currency The currency, null if the frame had an unknown currency code.
+ * @param amount The amount in minor units.
+ */
+public record BinaryRequest(int correlationId, MessageType type, UUID userId, String messageId, long amount, String currency) {
+}
@@ -0,0 +1,125 @@
+package dev.transactionapp.ingress;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.exception.*;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.routing.UserRouter;
+import dev.transactionapp.service.AuthorizeTransactionService;
+import dev.transactionapp.service.LoadFundsService;
+import dev.transactionapp.validator.ObjectsValidator;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Processes the requests of the binary ingress with the same services as `TransactionalController`.
+ * Here's a breakdown of the steps involved:
+ *  1. Turns the frame into the `AuthorizationRequest` or `LoadRequest` the HTTP path would have received, and runs
+ *     the same bean validation on it (amount, currency...).
+ *  2. Answers NOT_OWNER with the owner's URL for a user owned by another node; the client is expected to send the
+ *     user's requests to its owner, binary requests aren't forwarded.
+ *  3. Replays the stored response of a retried messageId from the `idempotencyStore`, else calls the service.
+ *  4. Maps the exceptions the `RestExceptionHandler` maps to BAD_REQUEST (400) and SERVICE_UNAVAILABLE (503) to the
+ *     BAD_REQUEST and UNAVAILABLE statuses, and counts them in the same `transaction.errors` counters.
+ */
+@Slf4j
+public class BinaryRequestHandler {
+
+    private final AuthorizeTransactionService authorizeTransactionService;
+    private final LoadFundsService loadFundsService;
+    private final IdempotencyStore idempotencyStore;
+    private final UserRouter userRouter;
+    private final ObjectsValidator<AuthorizationRequest> authorizationRequestValidator;
+    private final ObjectsValidator<LoadRequest> loadRequestValidator;
+    private final TransactionMetrics transactionMetrics;
+
+    public BinaryRequestHandler(AuthorizeTransactionService authorizeTransactionService,
+                                LoadFundsService loadFundsService,
+                                IdempotencyStore idempotencyStore,
+                                UserRouter userRouter,
+                                ObjectsValidator<AuthorizationRequest> authorizationRequestValidator,
+                                ObjectsValidator<LoadRequest> loadRequestValidator,
+                                TransactionMetrics transactionMetrics) {
+        this.authorizeTransactionService = authorizeTransactionService;
+        this.loadFundsService = loadFundsService;
+        this.idempotencyStore = idempotencyStore;
+        this.userRouter = userRouter;
+        this.authorizationRequestValidator = authorizationRequestValidator;
+        this.loadRequestValidator = loadRequestValidator;
+        this.transactionMetrics = transactionMetrics;
+    }
+
+    /**
+     * @param request A decoded request frame.
+     * @return The response frame to send back, never null.
+     */
+    public BinaryResponse handle(BinaryRequest request) {
+        int correlationId = request.correlationId();
+        try {
+            if (request.type() == null)
+                return BinaryResponse.error(correlationId, BinaryStatus.BAD_REQUEST, "Unknown message type");
+            String userId = request.userId().toString();
+            if (request.type() == MessageType.AUTHORIZATION)
+                return authorize(correlationId, new AuthorizationRequest(userId, request.messageId(), amount(request, DebitCredit.DEBIT)));
+            return load(correlationId, new LoadRequest(userId, request.messageId(), amount(request, DebitCredit.CREDIT)));
+        } catch (MessageIdNotMatchException | MessageIdAlreadyExistsException | UserNotFoundException | CurrencyNotMatchException
+                 | InvalidTransactionTypeException | InvalidUUIDException ex) {
+            transactionMetrics.error(ex);
+            return BinaryResponse.error(correlationId, BinaryStatus.BAD_REQUEST, ex.getLocalizedMessage());
+        } catch (UserLockTimeoutException | NodeUnavailableException ex) {
+            transactionMetrics.error(ex);
+            return BinaryResponse.error(correlationId, BinaryStatus.UNAVAILABLE, ex.getLocalizedMessage());
+        } catch (RuntimeException ex) {
+            log.error("Binary request with messageId {} failed", request.messageId(), ex);
+            return BinaryResponse.error(correlationId, BinaryStatus.INTERNAL_ERROR, "Internal error");
+        }
+    }
+
+    private BinaryResponse authorize(int correlationId, AuthorizationRequest authorizationRequest) {
+        Optional<BinaryResponse> rejection = rejection(correlationId, authorizationRequestValidator.validate(authorizationRequest), authorizationRequest.getUserId());
+        if (rejection.isPresent())
+            return rejection.get();
+        String messageId = authorizationRequest.getMessageId();
+        AuthorizationResponse response = idempotencyStore.findResponse(MessageType.AUTHORIZATION, messageId, authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class)
+                .orElseGet(() -> authorizeTransactionService.authorizeTransactionAndGetResponse(messageId, authorizationRequest));
+        BinaryStatus status = ResponseCode.APPROVED.toString().equals(response.getResponseCode()) ? BinaryStatus.APPROVED : BinaryStatus.DECLINED;
+        return balance(correlationId, status, response.getBalance());
+    }
+
+    private BinaryResponse load(int correlationId, LoadRequest loadRequest) {
+        Optional<BinaryResponse> rejection = rejection(correlationId, loadRequestValidator.validate(loadRequest), loadRequest.getUserId());
+        if (rejection.isPresent())
+            return rejection.get();
+        String messageId = loadRequest.getMessageId();
+        LoadResponse response = idempotencyStore.findResponse(MessageType.LOAD, messageId, loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), LoadResponse.class)
+                .orElseGet(() -> loadFundsService.loadFundsAndGetResponse(messageId, loadRequest));
+        return balance(correlationId, BinaryStatus.APPROVED, response.getBalance());
+    }
+
+    /**
+     * @return BAD_REQUEST with the bean validation violations, NOT_OWNER if another node owns the user, else empty.
+     */
+    private Optional<BinaryResponse> rejection(int correlationId, Set<String> violations, String userId) {
+        if (!violations.isEmpty())
+            return Optional.of(BinaryResponse.error(correlationId, BinaryStatus.BAD_REQUEST, violations.toString()));
+        return userRouter.remoteOwner(userId).map(owner -> BinaryResponse.error(correlationId, BinaryStatus.NOT_OWNER, owner));
+    }
+
+    private static Amount amount(BinaryRequest request, DebitCredit debitOrCredit) {
+        return new Amount(Money.format(request.amount()), request.currency(), debitOrCredit.toString());
+    }
+
+    private static BinaryResponse balance(int correlationId, BinaryStatus status, Amount balance) {
+        return new BinaryResponse(correlationId, status, Money.parse(balance.getAmount()), balance.getCurrency(), null);
+    }
+}
@@ -0,0 +1,16 @@
+package dev.transactionapp.ingress;
+
+/**
+ * The outcome of a `BinaryRequest`, sent back as a binary frame, see `BinaryFrames`.
+ *
+ * @param correlationId The correlationId of the request.
+ * @param balance The user's balance in minor units, 0 unless APPROVED or DECLINED.
+ * @param currency The user's currency, null unless APPROVED or DECLINED.
+ * @param message The error message, or the owner's URL for NOT_OWNER; null otherwise.
+ */
+public record BinaryResponse(int correlationId, BinaryStatus status, long balance, String currency, String message) {
+
+    public static BinaryResponse error(int correlationId, BinaryStatus status, String message) {
+        return new BinaryResponse(correlationId, status, 0, null, message);
+    }
+}
@@ -0,0 +1,52 @@
+package dev.transactionapp.ingress;
+
+/**
+ * Outcome of a binary request, as sent in the status byte of its response frame.
+ */
+public enum BinaryStatus {
+    /**
+     * The authorization was approved or the load applied; the frame carries the new balance.
+     */
+    APPROVED(1),
+    /**
+     * The authorization was declined for insufficient funds; the frame carries the unchanged balance.
+     */
+    DECLINED(2),
+    /**
+     * The request was rejected, as the HTTP path would with BAD_REQUEST (400); the frame carries the error message.
+     */
+    BAD_REQUEST(3),
+    /**
+     * The user's lock or owner wasn't available in time, as with SERVICE_UNAVAILABLE (503).
+     */
+    UNAVAILABLE(4),
+    /**
+     * The user is owned by another node of the cluster, whose URL is the message; binary requests aren't forwarded.
+     */
+    NOT_OWNER(5),
+    /**
+     * The request failed unexpectedly.
+     */
+    INTERNAL_ERROR(6);
+
+    private final byte code;
+
+    BinaryStatus(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    /**
+     * @return The status of a wire code, or null for an unknown code.
+     */
+    public static BinaryStatus of(byte code) {
+        for (BinaryStatus status : values()) {
+            if (status.code == code)
+                return status;
+        }
+        return null;
+    }
+}
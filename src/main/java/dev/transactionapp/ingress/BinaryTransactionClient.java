@@ -0,0 +1,141 @@
+package dev.transactionapp.ingress;
+
+import dev.transactionapp.enums.MessageType;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Java client of the binary ingress, over a single TCP connection.
+ *
+ * **Pipelining:**
+ *  - `authorize` and `load` send their frame right away and return a future, without waiting for earlier responses,
+ *    so any number of threads can share the connection with many requests in flight.
+ *  - Every request gets a new correlationId; a reader thread decodes the responses as they arrive, in any order, and
+ *    completes the future of their correlationId.
+ *  - If the connection fails, every request in flight completes exceptionally; the client must be connected again.
+ *
+ * Requests for users owned by another node complete with NOT_OWNER and the owner's URL, which a client of a cluster
+ * keeps one connection to.
+ */
+@Slf4j
+public class BinaryTransactionClient implements AutoCloseable {
+
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BinaryFrames.MAX_FRAME_LENGTH);
+    private final ConcurrentMap<Integer, CompletableFuture<BinaryResponse>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicInteger correlationIds = new AtomicInteger();
+    private final Thread reader;
+    private volatile boolean closed;
+
+    private BinaryTransactionClient(SocketChannel channel) {
+        this.channel = channel;
+        this.reader = new Thread(this::readResponses, "binary-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    public static BinaryTransactionClient connect(String host, int port) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+        channel.socket().setTcpNoDelay(true);
+        return new BinaryTransactionClient(channel);
+    }
+
+    /**
+     * Sends a debit of `amount` minor units.
+     *
+     * @return The response, APPROVED or DECLINED with the user's balance, or an error status with its message.
+     */
+    public CompletableFuture<BinaryResponse> authorize(UUID userId, String messageId, long amount, String currency) {
+        return send(MessageType.AUTHORIZATION, userId, messageId, amount, currency);
+    }
+
+    /**
+     * Sends a credit of `amount` minor units.
+     *
+     * @return The response, APPROVED with the user's balance, or an error status with its message.
+     */
+    public CompletableFuture<BinaryResponse> load(UUID userId, String messageId, long amount, String currency) {
+        return send(MessageType.LOAD, userId, messageId, amount, currency);
+    }
+
+    /**
+     * @return The number of requests sent and not answered yet.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private CompletableFuture<BinaryResponse> send(MessageType type, UUID userId, String messageId, long amount, String currency) {
+        int correlationId = correlationIds.incrementAndGet();
+        CompletableFuture<BinaryResponse> response = new CompletableFuture<>();
+        inFlight.put(correlationId, response);
+        writeLock.lock();
+        try {
+            if (closed)
+                throw new IOException("Binary connection is closed");
+            writeBuffer.clear();
+            BinaryFrames.writeRequest(writeBuffer, new BinaryRequest(correlationId, type, userId, messageId, amount, currency));
+            writeBuffer.flip();
+            while (writeBuffer.hasRemaining())
+                channel.write(writeBuffer);
+        } catch (IOException | RuntimeException ex) {
+            inFlight.remove(correlationId);
+            response.completeExceptionally(ex);
+        } finally {
+            writeLock.unlock();
+        }
+        return response;
+    }
+
+    private void readResponses() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        try {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (BinaryFrames.hasFrame(buffer, BinaryFrames.RESPONSE_FIXED_LENGTH)) {
+                    BinaryResponse response = BinaryFrames.readResponse(buffer);
+                    CompletableFuture<BinaryResponse> pending = inFlight.remove(response.correlationId());
+                    if (pending != null)
+                        pending.complete(response);
+                }
+                buffer.compact();
+            }
+            failInFlight(new IOException("Binary connection closed by the server"));
+        } catch (IOException ex) {
+            if (!closed)
+                log.warn("Binary connection failed", ex);
+            failInFlight(ex);
+        }
+    }
+
+    private void failInFlight(IOException ex) {
+        closed = true;
+        inFlight.keySet().forEach(correlationId -> {
+            CompletableFuture<BinaryResponse> pending = inFlight.remove(correlationId);
+            if (pending != null)
+                pending.completeExceptionally(ex);
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+        try {
+            reader.join(1000);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
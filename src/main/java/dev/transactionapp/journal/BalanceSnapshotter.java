@@ -0,0 +1,33 @@
+package dev.transactionapp.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Takes a snapshot of the journal every `transaction.journal.snapshot-interval-ms` milliseconds,
+ * which bounds how much of the journal has to be replayed on restart.
+ * With a `journalRecovery` (null when the database is written behind the journal), the snapshot's sequence is also
+ * recorded as the database's checkpoint, which bounds how many balances the next startup writes back.
+ */
+@Slf4j
+public class BalanceSnapshotter {
+
+    private final MappedTransactionJournal transactionJournal;
+    private final JournalRecovery journalRecovery;
+
+    public BalanceSnapshotter(MappedTransactionJournal transactionJournal, JournalRecovery journalRecovery) {
+        this.transactionJournal = transactionJournal;
+        this.journalRecovery = journalRecovery;
+    }
+
+    @Scheduled(initialDelayString = "${transaction.journal.snapshot-interval-ms:60000}", fixedDelayString = "${transaction.journal.snapshot-interval-ms:60000}")
+    public void snapshot() {
+        try {
+            long sequence = transactionJournal.snapshot();
+            if (journalRecovery != null)
+                journalRecovery.checkpoint(sequence);
+        } catch (RuntimeException ex) {
+            log.error("Failed to snapshot the transaction journal, will retry on next interval", ex);
+        }
+    }
+}
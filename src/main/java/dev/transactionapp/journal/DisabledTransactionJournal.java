@@ -0,0 +1,32 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Used when `transaction.journal.enabled` is false: nothing is written and nothing is recovered.
+ */
+public class DisabledTransactionJournal implements TransactionJournal {
+
+    @Override
+    public long append(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balanceAfter) {
+        return 0;
+    }
+
+    @Override
+    public long appendPending(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balanceAfter) {
+        return 0;
+    }
+
+    @Override
+    public void settle(long sequence, boolean committed) {
+    }
+
+    @Override
+    public Map<UUID, JournalAccount> accounts() {
+        return Collections.emptyMap();
+    }
+}
@@ -0,0 +1,20 @@
+package dev.transactionapp.journal;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * The currency and latest balance (in minor units) of a user, as known by the journal.
+ * `createdAt` is the user's creation time (epoch millis) if the journal saw it created, otherwise the time of its first
+ * record (0 if recovered from a snapshot older than `CREATED` records). `sequence` is the sequence of the record that
+ * set the balance.
+ */
+@Data
+@AllArgsConstructor
+public class JournalAccount {
+
+    private String currency;
+    private long balance;
+    private long createdAt;
+    private long sequence;
+}
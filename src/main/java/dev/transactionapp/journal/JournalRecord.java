@@ -0,0 +1,30 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * One balance decision in the transaction journal.
+ * `balanceAfter` is the user's balance once the record is applied (unchanged for a decline), so replaying a record
+ * sets the balance instead of adding to it and replaying it twice is harmless.
+ * A `pending` record was appended inside a transaction and only counts once a COMMITTED marker settles it. For the
+ * COMMITTED and ABORTED markers, `amount` holds the sequence of the record they settle, and for a CREATED record the
+ * user's creation time (epoch millis).
+ */
+@Data
+@AllArgsConstructor
+public class JournalRecord {
+
+    private long sequence;
+    private long timestamp;
+    private JournalRecordType type;
+    private boolean pending;
+    private String messageId;
+    private UUID userId;
+    private String currency;
+    private long amount;
+    private long balanceAfter;
+}
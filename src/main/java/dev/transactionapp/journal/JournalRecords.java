@@ -0,0 +1,112 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Binary format of a journal record:
+ *
+ *  int    payload length (0 marks the end of the written part of a segment)
+ *  long   sequence
+ *  long   timestamp (epoch millis)
+ *  byte   type (`JournalRecordType` ordinal)
+ *  byte   1 if the record is pending until a COMMITTED marker, 0 otherwise
+ *  long   userId most significant bits
+ *  long   userId least significant bits
+ *  long   amount (minor units), or the sequence of the settled record for a COMMITTED or ABORTED marker,
+ *         or the creation time (epoch millis) for a CREATED record
+ *  long   balance after (minor units)
+ *  3      currency (ASCII)
+ *  short  messageId length, followed by the messageId (UTF-8)
+ *  int    CRC32 of the payload
+ *
+ * A record whose length or CRC doesn't check out is a torn write at the tail of the journal and ends the replay.
+ */
+final class JournalRecords {
+
+    static final int MAX_MESSAGE_ID_BYTES = 1024;
+    private static final int FIXED_PAYLOAD_BYTES = 8 + 8 + 1 + 1 + 8 + 8 + 8 + 8 + 3 + 2;
+    private static final int CURRENCY_BYTES = 3;
+
+    private JournalRecords() {
+    }
+
+    static int encodedSize(byte[] messageId) {
+        return Integer.BYTES + FIXED_PAYLOAD_BYTES + messageId.length + Integer.BYTES;
+    }
+
+    static byte[] messageIdBytes(String messageId) {
+        byte[] bytes = messageId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_MESSAGE_ID_BYTES)
+            throw new IllegalArgumentException("messageId is too long for the journal: " + messageId);
+        return bytes;
+    }
+
+    static void encode(ByteBuffer buffer, JournalRecord record, byte[] messageId) {
+        byte[] currency = record.getCurrency().getBytes(StandardCharsets.US_ASCII);
+        if (currency.length != CURRENCY_BYTES)
+            throw new IllegalArgumentException("Currency must have 3 letters: " + record.getCurrency());
+        int payloadLength = FIXED_PAYLOAD_BYTES + messageId.length;
+        buffer.putInt(payloadLength);
+        int payloadStart = buffer.position();
+        buffer.putLong(record.getSequence())
+                .putLong(record.getTimestamp())
+                .put((byte) record.getType().ordinal())
+                .put((byte) (record.isPending() ? 1 : 0))
+                .putLong(record.getUserId().getMostSignificantBits())
+                .putLong(record.getUserId().getLeastSignificantBits())
+                .putLong(record.getAmount())
+                .putLong(record.getBalanceAfter())
+                .put(currency)
+                .putShort((short) messageId.length)
+                .put(messageId);
+        buffer.putInt(crc(buffer, payloadStart, payloadLength));
+    }
+
+    /**
+     * Reads the record at the buffer's position and moves past it.
+     *
+     * @return The record, or null at the end of the written data or at a torn record (the position is then left unchanged).
+     */
+    static JournalRecord decode(ByteBuffer buffer) {
+        int start = buffer.position();
+        if (buffer.remaining() < Integer.BYTES)
+            return null;
+        int payloadLength = buffer.getInt();
+        if (payloadLength < FIXED_PAYLOAD_BYTES || payloadLength > FIXED_PAYLOAD_BYTES + MAX_MESSAGE_ID_BYTES
+                || buffer.remaining() < payloadLength + Integer.BYTES) {
+            buffer.position(start);
+            return null;
+        }
+        int payloadStart = buffer.position();
+        int expectedCrc = crc(buffer, payloadStart, payloadLength);
+        if (buffer.getInt(payloadStart + payloadLength) != expectedCrc) {
+            buffer.position(start);
+            return null;
+        }
+        long sequence = buffer.getLong();
+        long timestamp = buffer.getLong();
+        JournalRecordType type = JournalRecordType.values()[buffer.get()];
+        boolean pending = buffer.get() != 0;
+        UUID userId = new UUID(buffer.getLong(), buffer.getLong());
+        long amount = buffer.getLong();
+        long balanceAfter = buffer.getLong();
+        byte[] currency = new byte[CURRENCY_BYTES];
+        buffer.get(currency);
+        byte[] messageId = new byte[buffer.getShort()];
+        buffer.get(messageId);
+        buffer.getInt();
+        return new JournalRecord(sequence, timestamp, type, pending, new String(messageId, StandardCharsets.UTF_8), userId,
+                new String(currency, StandardCharsets.US_ASCII), amount, balanceAfter);
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(offset).limit(offset + length));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,115 @@
+package dev.transactionapp.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Restores the balances recovered by the journal (snapshot + replayed tail) into the `users` table on startup, where the
+ * database is behind the journal. Here's a breakdown of the steps involved:
+ *
+ *  1. Reads the checkpoint from the `journal_checkpoint` table: the journal sequence up to which the database is known
+ *     to hold every balance, written by the previous restore and by every snapshot since (see `checkpoint`). An empty
+ *     `users` table (the schema was recreated, or the in-memory database lost) has no checkpoint.
+ *  2. Sets the balance of every account whose last record is after the checkpoint; the others are left as they are,
+ *     the database held them already and may have moved past a journal that lost its unsynced tail in a crash.
+ *     `created_at` is never touched.
+ *  3. Creates the users missing from the database (every account if it's empty) with the creation time the journal
+ *     holds for them (their `CREATED` record), so a user that never transacted comes back as it was created.
+ *  4. Moves the checkpoint to the journal's latest record, all in one transaction.
+ *
+ * With the JPA and reactive services, which commit before their record is settled, only the accounts changed since the
+ * last snapshot are written back. The sharded engine writes the database behind the journal, so its snapshots don't
+ * move the checkpoint and every account changed since the previous startup is restored.
+ */
+@Slf4j
+public class JournalRecovery {
+
+    private static final String CREATE_CHECKPOINT_SQL = "CREATE TABLE IF NOT EXISTS journal_checkpoint (id INT PRIMARY KEY, sequence BIGINT NOT NULL)";
+    private static final String SELECT_CHECKPOINT_SQL = "SELECT sequence FROM journal_checkpoint WHERE id = 1";
+    private static final String UPDATE_CHECKPOINT_SQL = "UPDATE journal_checkpoint SET sequence = ? WHERE id = 1";
+    private static final String INSERT_CHECKPOINT_SQL = "INSERT INTO journal_checkpoint (id, sequence) VALUES (1, ?)";
+    private static final String ANY_USER_SQL = "SELECT 1 FROM users LIMIT 1";
+    private static final String UPDATE_BALANCE_SQL = "UPDATE users SET balance_minor = ?, version = version + 1 WHERE id = ?";
+    private static final String INSERT_USER_SQL = "INSERT INTO users (id, currency, balance_minor, created_at, version) VALUES (?, ?, ?, ?, 0)";
+
+    private final TransactionJournal transactionJournal;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public JournalRecovery(TransactionJournal transactionJournal, JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.transactionJournal = transactionJournal;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void restore() {
+        Map<UUID, JournalAccount> accounts = transactionJournal.accounts();
+        // the database holds every account once restored, whatever the sequence of the records to come
+        long latest = accounts.values().stream().mapToLong(JournalAccount::getSequence).max().orElse(0);
+        jdbcTemplate.execute(CREATE_CHECKPOINT_SQL);
+        int[] counts = transactionTemplate.execute(status -> {
+            boolean empty = jdbcTemplate.queryForList(ANY_USER_SQL, Integer.class).isEmpty();
+            long checkpoint = empty ? 0 : checkpoint();
+            if (checkpoint > latest)
+                log.warn("The database's journal checkpoint {} is ahead of the journal ({}), was the journal directory replaced?", checkpoint, latest);
+
+            List<Map.Entry<UUID, JournalAccount>> behind = new ArrayList<>();
+            List<Map.Entry<UUID, JournalAccount>> missing = new ArrayList<>();
+            for (Map.Entry<UUID, JournalAccount> entry : accounts.entrySet()) {
+                if (empty)
+                    missing.add(entry);
+                else if (entry.getValue().getSequence() > checkpoint)
+                    behind.add(entry);
+            }
+            int[][] updated = jdbcTemplate.batchUpdate(UPDATE_BALANCE_SQL, behind, 1000,
+                    (ps, entry) -> {
+                        ps.setLong(1, entry.getValue().getBalance());
+                        ps.setObject(2, entry.getKey());
+                    });
+            int restored = 0;
+            int index = 0;
+            for (int[] batch : updated)
+                for (int rows : batch) {
+                    if (rows == 0)
+                        missing.add(behind.get(index));
+                    else
+                        restored++;
+                    index++;
+                }
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(INSERT_USER_SQL, missing, 1000,
+                    (ps, entry) -> {
+                        long createdAt = entry.getValue().getCreatedAt();
+                        ps.setObject(1, entry.getKey());
+                        ps.setString(2, entry.getValue().getCurrency());
+                        ps.setLong(3, entry.getValue().getBalance());
+                        ps.setTimestamp(4, createdAt > 0 ? new Timestamp(createdAt) : now);
+                    });
+            checkpoint(latest);
+            return new int[]{restored, missing.size()};
+        });
+        log.info("Restored {} balances from the transaction journal ({} users created), checkpoint at sequence {}", counts[0], counts[1], latest);
+    }
+
+    /**
+     * Records that the database holds every balance up to the given journal sequence, e.g. a snapshot's: every record
+     * it covers is settled, and a committed one was committed to the database first.
+     */
+    public void checkpoint(long sequence) {
+        if (jdbcTemplate.update(UPDATE_CHECKPOINT_SQL, sequence) == 0)
+            jdbcTemplate.update(INSERT_CHECKPOINT_SQL, sequence);
+    }
+
+    private long checkpoint() {
+        List<Long> sequences = jdbcTemplate.queryForList(SELECT_CHECKPOINT_SQL, Long.class);
+        return sequences.isEmpty() ? 0 : sequences.get(0);
+    }
+}
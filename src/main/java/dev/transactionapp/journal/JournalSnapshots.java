@@ -0,0 +1,127 @@
+package dev.transactionapp.journal;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Reads and writes the balance snapshots of the journal, one file per snapshot named after its sequence number.
+ *
+ * Format: magic, sequence, account count, then per account the userId, currency (3 ASCII bytes), balance, creation time
+ * and sequence (see `JournalAccount`), followed by the CRC32 of everything before it. Snapshots written before the
+ * creation time and sequence were added (`LEGACY_MAGIC`) are still read, with the snapshot's sequence for every account. A snapshot is written to a temporary file and moved in place,
+ * so a crash while snapshotting leaves the previous snapshot untouched.
+ */
+@Slf4j
+final class JournalSnapshots {
+
+    private static final int LEGACY_MAGIC = 0x534E4150; // "SNAP"
+    private static final int MAGIC = 0x534E5032; // "SNP2"
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    private JournalSnapshots() {
+    }
+
+    static Path write(Path directory, long sequence, Map<UUID, JournalAccount> accounts) throws IOException {
+        Path target = directory.resolve(fileName(sequence));
+        Path temporary = directory.resolve(fileName(sequence) + ".tmp");
+        CRC32 crc = new CRC32();
+        try (DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16), crc))) {
+            out.writeInt(MAGIC);
+            out.writeLong(sequence);
+            out.writeInt(accounts.size());
+            for (Map.Entry<UUID, JournalAccount> account : accounts.entrySet()) {
+                out.writeLong(account.getKey().getMostSignificantBits());
+                out.writeLong(account.getKey().getLeastSignificantBits());
+                out.write(account.getValue().getCurrency().getBytes(StandardCharsets.US_ASCII));
+                out.writeLong(account.getValue().getBalance());
+                out.writeLong(account.getValue().getCreatedAt());
+                out.writeLong(account.getValue().getSequence());
+            }
+            out.flush();
+            out.writeInt((int) crc.getValue());
+        }
+        try (FileOutputStream sync = new FileOutputStream(temporary.toFile(), true)) {
+            sync.getFD().sync();
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return target;
+    }
+
+    /**
+     * @return The sequence and accounts of the most recent readable snapshot, or empty if there's none.
+     */
+    static Optional<Map.Entry<Long, Map<UUID, JournalAccount>>> readLatest(Path directory) throws IOException {
+        for (Path snapshot : list(directory, Comparator.reverseOrder())) {
+            try {
+                return Optional.of(read(snapshot));
+            } catch (IOException ex) {
+                log.warn("Skipping unreadable journal snapshot {}: {}", snapshot, ex.getMessage());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Deletes every snapshot older than the one with the given sequence.
+     */
+    static void deleteOlderThan(Path directory, long sequence) throws IOException {
+        for (Path snapshot : list(directory, Comparator.naturalOrder())) {
+            if (sequenceOf(snapshot) < sequence)
+                Files.deleteIfExists(snapshot);
+        }
+    }
+
+    private static Map.Entry<Long, Map<UUID, JournalAccount>> read(Path snapshot) throws IOException {
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new CheckedInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot), 1 << 16), crc))) {
+            int magic = in.readInt();
+            if (magic != MAGIC && magic != LEGACY_MAGIC)
+                throw new IOException("not a journal snapshot");
+            long sequence = in.readLong();
+            int count = in.readInt();
+            Map<UUID, JournalAccount> accounts = new HashMap<>(Math.max(16, count * 4 / 3 + 1));
+            byte[] currency = new byte[3];
+            for (int i = 0; i < count; i++) {
+                UUID userId = new UUID(in.readLong(), in.readLong());
+                in.readFully(currency);
+                long balance = in.readLong();
+                JournalAccount account = magic == MAGIC
+                        ? new JournalAccount(new String(currency, StandardCharsets.US_ASCII), balance, in.readLong(), in.readLong())
+                        : new JournalAccount(new String(currency, StandardCharsets.US_ASCII), balance, 0, sequence);
+                accounts.put(userId, account);
+            }
+            int expectedCrc = (int) crc.getValue();
+            if (in.readInt() != expectedCrc)
+                throw new IOException("checksum mismatch");
+            return Map.entry(sequence, accounts);
+        }
+    }
+
+    private static List<Path> list(Path directory, Comparator<Long> order) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(PREFIX) && file.getFileName().toString().endsWith(SUFFIX))
+                    .sorted(Comparator.comparing(JournalSnapshots::sequenceOf, order))
+                    .toList();
+        }
+    }
+
+    private static long sequenceOf(Path snapshot) {
+        String name = snapshot.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static String fileName(long sequence) {
+        return String.format("%s%020d%s", PREFIX, sequence, SUFFIX);
+    }
+}
@@ -0,0 +1,347 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * The transaction journal, written sequentially through memory-mapped segment files in `directory`.
+ *
+ * Here's a breakdown of how it works:
+ *  1. **Appending:** records are encoded by `JournalRecords` straight into the mapped segment. A segment is named after
+ *     the sequence of its first record and a new one is mapped once `segmentSize` bytes are used.
+ *  2. **Fsync batching:** with `fsyncIntervalMillis` > 0 a background thread forces the written range to disk every
+ *     interval, so many appends share one fsync. With 0, every append is forced before it returns.
+ *  3. **Snapshots:** the journal keeps the latest balance of every user it has seen (created or transacting). `snapshot()` writes them to a
+ *     snapshot file and deletes the segments the snapshot covers, so the journal doesn't grow forever.
+ *  4. **Recovery:** `start()` loads the latest snapshot and replays only the records after it.
+ *     A torn record at the tail (crash mid-write) ends the replay.
+ *  5. **Transactions:** a record appended inside a transaction is pending: it's written right away, so the records of
+ *     a user keep the order of the decisions, but it only sets the user's balance once the transaction commits and a
+ *     COMMITTED marker is appended. A rolled back transaction appends an ABORTED marker instead, and a record left
+ *     without a marker by a crash is ignored. A snapshot never covers a pending record, so its marker is always replayed.
+ *
+ * The journal is guarded by a `ReentrantLock` rather than `synchronized`: an append may fsync while holding it,
+ * and a virtual thread blocked inside a monitor would pin its carrier thread for the whole fsync.
+ */
+@Slf4j
+public class MappedTransactionJournal implements TransactionJournal, Runnable {
+
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long fsyncIntervalMillis;
+    private final Map<UUID, JournalAccount> accounts = new HashMap<>();
+    private final NavigableMap<Long, JournalRecord> pending = new TreeMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int syncedPosition;
+    private long sequence;
+
+    private volatile boolean running = true;
+    private Thread syncThread;
+
+    public MappedTransactionJournal(Path directory, int segmentSize, long fsyncIntervalMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+    }
+
+    public void start() {
+        lock.lock();
+        try {
+            Files.createDirectories(directory);
+            JournalSnapshots.readLatest(directory).ifPresent(snapshot -> {
+                sequence = snapshot.getKey();
+                accounts.putAll(snapshot.getValue());
+            });
+            long snapshotSequence = sequence;
+            int replayed = replay(snapshotSequence);
+            openSegment(sequence + 1);
+            log.info("Recovered {} accounts from journal snapshot at sequence {} and {} records after it",
+                    accounts.size(), snapshotSequence, replayed);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open transaction journal in " + directory, ex);
+        } finally {
+            lock.unlock();
+        }
+        if (fsyncIntervalMillis > 0) {
+            syncThread = new Thread(this, "journal-sync");
+            syncThread.setDaemon(true);
+            syncThread.start();
+        }
+    }
+
+    public void stop() {
+        running = false;
+        if (syncThread != null) {
+            syncThread.interrupt();
+            try {
+                syncThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        lock.lock();
+        try {
+            sync();
+            closeSegment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long append(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balanceAfter) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive())
+            return write(type, false, messageId, userId, currency, amount, balanceAfter);
+        long pendingSequence = write(type, true, messageId, userId, currency, amount, balanceAfter);
+        TransactionSynchronizationManager.registerSynchronization(new Settlement(pendingSequence));
+        return pendingSequence;
+    }
+
+    @Override
+    public long appendPending(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balanceAfter) {
+        return write(type, true, messageId, userId, currency, amount, balanceAfter);
+    }
+
+    @Override
+    public void settle(long pendingSequence, boolean committed) {
+        lock.lock();
+        try {
+            JournalRecord record = pending.remove(pendingSequence);
+            if (record == null)
+                return;
+            JournalRecord marker = new JournalRecord(sequence + 1, System.currentTimeMillis(), committed ? JournalRecordType.COMMITTED : JournalRecordType.ABORTED,
+                    false, record.getMessageId(), record.getUserId(), record.getCurrency(), pendingSequence, record.getBalanceAfter());
+            encode(marker, JournalRecords.messageIdBytes(record.getMessageId()));
+            if (committed)
+                apply(record);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Map<UUID, JournalAccount> accounts() {
+        lock.lock();
+        try {
+            return new HashMap<>(accounts);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot of every known balance and deletes the segments and snapshots it makes obsolete.
+     * Only copying the balances holds the journal's lock, the file is written while appends go on.
+     *
+     * @return The sequence the snapshot was taken at.
+     */
+    public long snapshot() {
+        long snapshotSequence;
+        Map<UUID, JournalAccount> balances;
+        lock.lock();
+        try {
+            // the records still pending must be replayed after a restart, so that their markers find them
+            snapshotSequence = pending.isEmpty() ? sequence : pending.firstKey() - 1;
+            balances = new HashMap<>(accounts);
+        } finally {
+            lock.unlock();
+        }
+        try {
+            Path snapshot = JournalSnapshots.write(directory, snapshotSequence, balances);
+            JournalSnapshots.deleteOlderThan(directory, snapshotSequence);
+            int deleted = deleteSegmentsCoveredBy(snapshotSequence);
+            log.info("Wrote journal snapshot {} with {} accounts, deleted {} segments", snapshot.getFileName(), balances.size(), deleted);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to write journal snapshot", ex);
+        }
+        return snapshotSequence;
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                Thread.sleep(fsyncIntervalMillis);
+            } catch (InterruptedException ex) {
+                return;
+            }
+            lock.lock();
+            try {
+                sync();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private long write(JournalRecordType type, boolean isPending, String messageId, UUID userId, String currency, long amount, long balanceAfter) {
+        byte[] messageIdBytes = JournalRecords.messageIdBytes(messageId);
+        lock.lock();
+        try {
+            JournalRecord record = new JournalRecord(sequence + 1, System.currentTimeMillis(), type, isPending, messageId, userId, currency, amount, balanceAfter);
+            encode(record, messageIdBytes);
+            if (isPending)
+                pending.put(record.getSequence(), record);
+            else
+                apply(record);
+            return record.getSequence();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void encode(JournalRecord record, byte[] messageIdBytes) {
+        // keep room for the zero length marking the end of the segment
+        if (segment.remaining() < JournalRecords.encodedSize(messageIdBytes) + Integer.BYTES)
+            rollSegment();
+        JournalRecords.encode(segment, record, messageIdBytes);
+        sequence = record.getSequence();
+        if (fsyncIntervalMillis == 0)
+            sync();
+    }
+
+    /**
+     * Sets the user's balance from a committed record, unless a later record of the user was committed first
+     * (the transactions of a user commit in sequence order, but their completion callbacks may run in any order).
+     */
+    private void apply(JournalRecord record) {
+        JournalAccount account = accounts.get(record.getUserId());
+        if (account != null && account.getSequence() > record.getSequence())
+            return;
+        long createdAt = record.getType() == JournalRecordType.CREATED ? record.getAmount()
+                : account != null ? account.getCreatedAt() : record.getTimestamp();
+        accounts.put(record.getUserId(), new JournalAccount(record.getCurrency(), record.getBalanceAfter(), createdAt, record.getSequence()));
+    }
+
+    private int replay(long afterSequence) throws IOException {
+        int replayed = 0;
+        for (Path file : segments()) {
+            try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+                JournalRecord record;
+                while ((record = JournalRecords.decode(buffer)) != null) {
+                    if (record.getSequence() <= afterSequence)
+                        continue;
+                    if (record.getType() == JournalRecordType.COMMITTED || record.getType() == JournalRecordType.ABORTED) {
+                        JournalRecord settled = pending.remove(record.getAmount());
+                        if (settled != null && record.getType() == JournalRecordType.COMMITTED)
+                            apply(settled);
+                    } else if (record.isPending()) {
+                        pending.put(record.getSequence(), record);
+                    } else {
+                        apply(record);
+                    }
+                    sequence = record.getSequence();
+                    replayed++;
+                }
+            }
+        }
+        // the transactions of the records never settled died with the process, they didn't commit
+        if (!pending.isEmpty())
+            log.warn("Ignoring {} journal records whose transaction never completed", pending.size());
+        pending.clear();
+        return replayed;
+    }
+
+    private void rollSegment() {
+        sync();
+        closeSegment();
+        try {
+            openSegment(sequence + 1);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Failed to open a new journal segment", ex);
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        // a segment reused after a restart at the same sequence may hold a torn record, start from a clean slate
+        if (segment.getInt(0) != 0) {
+            segment.put(new byte[segmentSize]);
+            segment.clear();
+        }
+        syncedPosition = 0;
+    }
+
+    private void closeSegment() {
+        try {
+            if (channel != null)
+                channel.close();
+        } catch (IOException ex) {
+            log.warn("Failed to close journal segment", ex);
+        }
+    }
+
+    private void sync() {
+        int position = segment.position();
+        if (position > syncedPosition) {
+            segment.force(syncedPosition, position - syncedPosition);
+            syncedPosition = position;
+        }
+    }
+
+    private int deleteSegmentsCoveredBy(long snapshotSequence) throws IOException {
+        List<Path> files = segments();
+        int deleted = 0;
+        // a segment is covered once the next one starts at or before the record right after the snapshot
+        for (int i = 0; i + 1 < files.size(); i++) {
+            if (firstSequenceOf(files.get(i + 1)) > snapshotSequence + 1)
+                break;
+            Files.deleteIfExists(files.get(i));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(SEGMENT_PREFIX) && file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(MappedTransactionJournal::firstSequenceOf))
+                    .toList();
+        }
+    }
+
+    private static long firstSequenceOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /**
+     * Settles a record appended inside a JPA or JDBC transaction once the transaction completes.
+     */
+    private class Settlement implements TransactionSynchronization {
+
+        private final long pendingSequence;
+
+        Settlement(long pendingSequence) {
+            this.pendingSequence = pendingSequence;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            settle(pendingSequence, status == STATUS_COMMITTED);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+import org.springframework.transaction.NoTransactionException;
+import org.springframework.transaction.reactive.TransactionSynchronization;
+import org.springframework.transaction.reactive.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * Appends journal records from inside a reactive (R2DBC) transaction, where the thread-bound synchronization
+ * `TransactionJournal.append` relies on isn't available: the record is pending and settled once the reactive
+ * transaction completes.
+ */
+public final class ReactiveJournalAppends {
+
+    private ReactiveJournalAppends() {
+    }
+
+    /**
+     * @param onCommit Runs once the transaction commits (e.g. the event log), or right away outside a transaction.
+     * @return A Mono completing once the pending record is appended.
+     */
+    public static Mono<Void> append(TransactionJournal transactionJournal, JournalRecordType type, String messageId, UUID userId,
+                                    String currency, long amount, long balanceAfter, Runnable onCommit) {
+        return TransactionSynchronizationManager.forCurrentTransaction()
+                .filter(TransactionSynchronizationManager::isSynchronizationActive)
+                .doOnNext(synchronizationManager -> {
+                    long pendingSequence = transactionJournal.appendPending(type, messageId, userId, currency, amount, balanceAfter);
+                    synchronizationManager.registerSynchronization(new Settlement(transactionJournal, pendingSequence, onCommit));
+                })
+                .switchIfEmpty(Mono.fromRunnable(() -> appendCommitted(transactionJournal, type, messageId, userId, currency, amount, balanceAfter, onCommit)))
+                .onErrorResume(NoTransactionException.class, ex -> Mono.fromRunnable(() -> appendCommitted(transactionJournal, type, messageId, userId, currency, amount, balanceAfter, onCommit)))
+                .then();
+    }
+
+    private static void appendCommitted(TransactionJournal transactionJournal, JournalRecordType type, String messageId, UUID userId,
+                                        String currency, long amount, long balanceAfter, Runnable onCommit) {
+        transactionJournal.append(type, messageId, userId, currency, amount, balanceAfter);
+        onCommit.run();
+    }
+
+    private static class Settlement implements TransactionSynchronization {
+
+        private final TransactionJournal transactionJournal;
+        private final long pendingSequence;
+        private final Runnable onCommit;
+
+        Settlement(TransactionJournal transactionJournal, long pendingSequence, Runnable onCommit) {
+            this.transactionJournal = transactionJournal;
+            this.pendingSequence = pendingSequence;
+            this.onCommit = onCommit;
+        }
+
+        @Override
+        public Mono<Void> afterCompletion(int status) {
+            return Mono.fromRunnable(() -> {
+                transactionJournal.settle(pendingSequence, status == STATUS_COMMITTED);
+                if (status == STATUS_COMMITTED)
+                    onCommit.run();
+            });
+        }
+    }
+}
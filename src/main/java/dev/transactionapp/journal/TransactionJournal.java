@@ -0,0 +1,60 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Append-only log of every balance decision (loads, approvals and declines).
+ * Callers must append the records of one user in the order the decisions were made, i.e. while holding
+ * the user's row lock (JPA services) or from the shard owning the user (sharded engine).
+ *
+ * A decision made inside a transaction only counts once the transaction commits: its record is appended as pending
+ * and settled by a COMMITTED or ABORTED marker when the transaction completes, and recovery ignores every record
+ * that wasn't committed.
+ */
+public interface TransactionJournal {
+
+    /**
+     * Appends a decision to the journal.
+     * Inside a transaction with synchronization active (JPA, JDBC), the record is pending and settled by the
+     * transaction's completion; otherwise it counts right away.
+     *
+     * @return The sequence number given to the record.
+     */
+    long append(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balanceAfter);
+
+    /**
+     * Appends the creation of a user, so recovery can recreate it with its initial balance and creation time even if it
+     * never transacted. Inside a transaction the record is pending, like `append`.
+     *
+     * @return The sequence number given to the record.
+     */
+    default long appendCreated(UUID userId, String currency, long balance, LocalDateTime createdAt) {
+        return append(JournalRecordType.CREATED, "", userId, currency, createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(), balance);
+    }
+
+    /**
+     * Appends a decision that only counts once `settle` commits it, for callers completing the transaction
+     * themselves (see `ReactiveJournalAppends`).
+     *
+     * @return The sequence number given to the record, to pass to `settle`.
+     */
+    long appendPending(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balanceAfter);
+
+    /**
+     * Settles a pending record with a COMMITTED or ABORTED marker. Settling a record twice is a no-op.
+     *
+     * @param sequence The sequence returned by `appendPending`.
+     * @param committed Whether the transaction that made the decision committed.
+     */
+    void settle(long sequence, boolean committed);
+
+    /**
+     * @return The latest committed balance of every user recovered from, or appended to, the journal.
+     */
+    Map<UUID, JournalAccount> accounts();
+}
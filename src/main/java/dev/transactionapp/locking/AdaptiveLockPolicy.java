@@ -0,0 +1,178 @@
+package dev.transactionapp.locking;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import dev.transactionapp.enums.LockStrategy;
+import dev.transactionapp.metrics.TransactionMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Decides, per user account, how a transaction protects the user's balance: an optimistic versioned update, retried on
+ * conflict, or the row lock taken up front (`SELECT ... FOR UPDATE`).
+ *
+ * With `transaction.locking.strategy=pessimistic`, the default, every account takes the row lock and the policy tracks
+ * nothing. `adaptive` is opt-in for replicas sharing one database, where optimistic updates spare quiet accounts the
+ * lock round trip.
+ *
+ * **Promotion And Demotion (adaptive):**
+ *  - Every account starts optimistic: a quiet account never pays for a lock round trip.
+ *  - An account seeing `transaction.locking.promotion-threshold` version conflicts within `transaction.locking.conflict-window`
+ *    is promoted to pessimistic locking, since retries would cost more than waiting on the lock.
+ *  - A promoted account is demoted once it has been pessimistic for `transaction.locking.cooldown`. If it is still hot,
+ *    its conflicts promote it again right away.
+ *  - Only accounts that had a conflict are tracked, up to `transaction.locking.tracked-accounts` of them (least recently used evicted first).
+ *    An evicted account is optimistic again.
+ *
+ * Promotions and demotions are counted in `transaction.lock.transitions`, and the number of pessimistic accounts is
+ * exposed as the `transaction.lock.pessimistic.accounts` gauge.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class AdaptiveLockPolicy {
+
+    private final TransactionMetrics transactionMetrics;
+    private final LockStrategy defaultStrategy;
+    private final int promotionThreshold;
+    private final long conflictWindowNanos;
+    private final long cooldownNanos;
+    private final LongSupplier nanoClock;
+    private final Cache<UUID, Contention> contentions;
+    private final AtomicInteger pessimisticAccounts = new AtomicInteger();
+
+    @Autowired
+    public AdaptiveLockPolicy(TransactionMetrics transactionMetrics,
+                              @Value("${transaction.locking.strategy:pessimistic}") String strategy,
+                              @Value("${transaction.locking.promotion-threshold:5}") int promotionThreshold,
+                              @Value("${transaction.locking.conflict-window:10s}") Duration conflictWindow,
+                              @Value("${transaction.locking.cooldown:30s}") Duration cooldown,
+                              @Value("${transaction.locking.tracked-accounts:100000}") long trackedAccounts) {
+        this(transactionMetrics, defaultStrategy(strategy), promotionThreshold, conflictWindow, cooldown, trackedAccounts, System::nanoTime);
+    }
+
+    AdaptiveLockPolicy(TransactionMetrics transactionMetrics, LockStrategy defaultStrategy, int promotionThreshold,
+                       Duration conflictWindow, Duration cooldown, long trackedAccounts, LongSupplier nanoClock) {
+        if (promotionThreshold < 1)
+            throw new IllegalArgumentException("transaction.locking.promotion-threshold must be at least 1");
+        this.transactionMetrics = transactionMetrics;
+        this.defaultStrategy = defaultStrategy;
+        this.promotionThreshold = promotionThreshold;
+        this.conflictWindowNanos = conflictWindow.toNanos();
+        this.cooldownNanos = cooldown.toNanos();
+        this.nanoClock = nanoClock;
+        this.contentions = CacheBuilder.newBuilder()
+                .maximumSize(trackedAccounts)
+                .expireAfterAccess(conflictWindow.plus(cooldown).toMillis(), TimeUnit.MILLISECONDS)
+                .removalListener(this::evicted)
+                .build();
+        transactionMetrics.pessimisticAccounts(pessimisticAccounts::get);
+    }
+
+    /**
+     * @param userId The account the transaction applies to.
+     * @return How the next transaction of the account should protect its balance.
+     */
+    public LockStrategy strategyFor(UUID userId) {
+        if (defaultStrategy == LockStrategy.PESSIMISTIC)
+            return LockStrategy.PESSIMISTIC;
+        Contention contention = contentions.getIfPresent(userId);
+        if (contention == null)
+            return LockStrategy.OPTIMISTIC;
+        LockStrategy strategy = contention.strategy(nanoClock.getAsLong());
+        if (contention.takeDemotion()) {
+            pessimisticAccounts.decrementAndGet();
+            transactionMetrics.lockTransition(LockStrategy.OPTIMISTIC);
+            log.info("User with ID: {} demoted to optimistic locking", userId);
+        }
+        return strategy;
+    }
+
+    /**
+     * Records a version conflict of an optimistic transaction of the account, which may promote it to pessimistic locking.
+     *
+     * @param userId The account whose versioned update failed.
+     */
+    public void conflict(UUID userId) {
+        Contention contention = contentions.asMap().computeIfAbsent(userId, id -> new Contention());
+        if (contention.conflict(nanoClock.getAsLong())) {
+            pessimisticAccounts.incrementAndGet();
+            transactionMetrics.lockTransition(LockStrategy.PESSIMISTIC);
+            log.info("User with ID: {} promoted to pessimistic locking after {} conflicts", userId, promotionThreshold);
+        }
+    }
+
+    int pessimisticAccounts() {
+        return pessimisticAccounts.get();
+    }
+
+    private void evicted(RemovalNotification<UUID, Contention> notification) {
+        if (notification.wasEvicted() && notification.getValue().evict())
+            pessimisticAccounts.decrementAndGet();
+    }
+
+    private static LockStrategy defaultStrategy(String strategy) {
+        return switch (strategy) {
+            case "adaptive" -> LockStrategy.OPTIMISTIC;
+            case "pessimistic" -> LockStrategy.PESSIMISTIC;
+            default -> throw new IllegalArgumentException("transaction.locking.strategy must be adaptive or pessimistic, got: " + strategy);
+        };
+    }
+
+    /**
+     * The recent conflicts of one account. Conflicts are counted in fixed windows of `conflictWindowNanos`.
+     */
+    private final class Contention {
+
+        private long windowStart;
+        private int conflicts;
+        private long promotedAt;
+        private boolean pessimistic;
+        private boolean demoted;
+
+        synchronized boolean conflict(long now) {
+            if (pessimistic)
+                return false;
+            if (conflicts == 0 || now - windowStart > conflictWindowNanos) {
+                windowStart = now;
+                conflicts = 0;
+            }
+            if (++conflicts < promotionThreshold)
+                return false;
+            pessimistic = true;
+            promotedAt = now;
+            return true;
+        }
+
+        synchronized LockStrategy strategy(long now) {
+            if (pessimistic && now - promotedAt >= cooldownNanos) {
+                pessimistic = false;
+                conflicts = 0;
+                demoted = true;
+            }
+            return pessimistic ? LockStrategy.PESSIMISTIC : LockStrategy.OPTIMISTIC;
+        }
+
+        synchronized boolean takeDemotion() {
+            boolean wasDemoted = demoted;
+            demoted = false;
+            return wasDemoted;
+        }
+
+        synchronized boolean evict() {
+            boolean wasPessimistic = pessimistic;
+            pessimistic = false;
+            return wasPessimistic;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.engine.BalanceDecision;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.exception.UserNotFoundException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.DatabaseMetaData;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Changes a user's balance with one conditional SQL statement, as an alternative to `UserLocking` that never reads the
+ * user before writing it: the database decides and applies the change atomically, and the decision comes back with it.
+ *
+ * **Statements:**
+ *  - A debit is one `UPDATE` matching the user's row whatever its balance: the new balance is
+ *    `CASE WHEN currency = ? AND balance_minor >= ? THEN balance_minor - ? ELSE balance_minor END`.
+ *    A credit is the same with an overflow check instead of the funds check.
+ *  - The update is read through `OLD TABLE`, so the currency and the balance before the update come back in the same
+ *    round trip: an approval, a decline, an unknown user (no row) and a currency mismatch cost one statement each.
+ *  - Both increment the user's `@Version`, a decline included (like `UserLocking.confirmUnchanged`), so the
+ *    entity-based paths (batches, `UserLocking`) still detect the change.
+ *
+ * **Locking:**
+ *  - There's no lock before the update, no Hibernate entity and no retry. The row is held from the update until the
+ *    transaction of `inTransaction` commits, which only adds the idempotency record and the journal append, so a
+ *    decline isn't overtaken by a concurrent update either.
+ *  - Enabled with `transaction.locking.conditional-sql=true`, for the single-request endpoints. Requests aren't
+ *    coalesced nor queued on the `StripedUserLocks` then, as they never wait on the row before their update.
+ *  - Data change delta tables (`OLD TABLE`) are H2 syntax: enabling the mode on another database fails at startup.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class ConditionalBalanceUpdates {
+
+    private static final String H2 = "H2";
+    private static final String DEBIT_SQL = "SELECT currency, balance_minor FROM OLD TABLE ("
+            + "UPDATE users SET balance_minor = CASE WHEN currency = ? AND balance_minor >= ? THEN balance_minor - ? ELSE balance_minor END, "
+            + "version = version + 1 WHERE id = ?)";
+    private static final String CREDIT_SQL = "SELECT currency, balance_minor FROM OLD TABLE ("
+            + "UPDATE users SET balance_minor = CASE WHEN currency = ? AND balance_minor <= ? THEN balance_minor + ? ELSE balance_minor END, "
+            + "version = version + 1 WHERE id = ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+
+    public ConditionalBalanceUpdates(JdbcTemplate jdbcTemplate,
+                                     TransactionTemplate transactionTemplate,
+                                     @Value("${transaction.locking.conditional-sql:false}") boolean enabled) {
+        if (enabled)
+            checkDatabase(jdbcTemplate);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Runs `work` in a transaction, once. The updates of `work` commit or roll back together.
+     */
+    public <T> T inTransaction(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    /**
+     * Debits the user if it has at least `amount` on its balance, and holds the row until commit either way.
+     *
+     * @return Approved with the balance after the debit, or declined with the untouched balance.
+     * @throws UserNotFoundException if there is no user with that ID.
+     * @throws CurrencyNotMatchException if the user has another currency (the transaction must then roll back).
+     */
+    public BalanceDecision debit(UUID userId, String currency, long amount) throws UserNotFoundException, CurrencyNotMatchException {
+        long balance = jdbcTemplate.query(DEBIT_SQL, balanceBefore(userId, currency), currency, amount, amount, userId);
+        return balance >= amount ? new BalanceDecision(true, balance - amount) : new BalanceDecision(false, balance);
+    }
+
+    /**
+     * Credits the user.
+     *
+     * @return The balance after the credit.
+     * @throws UserNotFoundException if there is no user with that ID.
+     * @throws CurrencyNotMatchException if the user has another currency.
+     * @throws ArithmeticException if the balance would overflow.
+     */
+    public long credit(UUID userId, String currency, long amount) throws UserNotFoundException, CurrencyNotMatchException, ArithmeticException {
+        long balance = jdbcTemplate.query(CREDIT_SQL, balanceBefore(userId, currency), currency, Long.MAX_VALUE - amount, amount, userId);
+        return Math.addExact(balance, amount);
+    }
+
+    /**
+     * Reads the row returned through `OLD TABLE`: the user's currency and balance before the update.
+     */
+    private static ResultSetExtractor<Long> balanceBefore(UUID userId, String currency) {
+        return rs -> {
+            if (!rs.next())
+                throw new UserNotFoundException(String.format("User with ID: %s not found", userId));
+            String userCurrency = rs.getString(1);
+            if (!userCurrency.equals(currency))
+                throw new CurrencyNotMatchException(String.format("User currency: %s doesn't match with request body currency: %s", userCurrency, currency));
+            return rs.getLong(2);
+        };
+    }
+
+    private static void checkDatabase(JdbcTemplate jdbcTemplate) {
+        String database;
+        try {
+            database = JdbcUtils.extractDatabaseMetaData(jdbcTemplate.getDataSource(), DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException ex) {
+            throw new IllegalStateException("Can't check the database of transaction.locking.conditional-sql", ex);
+        }
+        if (!H2.equals(database))
+            throw new IllegalStateException("transaction.locking.conditional-sql uses H2's OLD TABLE and needs an H2 database but got: " + database);
+    }
+}
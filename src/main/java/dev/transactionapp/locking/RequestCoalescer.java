@@ -0,0 +1,273 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.exception.UserLockTimeoutException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Applies the concurrent requests of one account together, in one transaction, instead of queueing each of them
+ * on the user's row lock with a transaction of its own.
+ *
+ * **Coalescing:**
+ *  - Requests of the same user are queued in arrival order. The first one becomes the account's leader and applies the
+ *    queued requests on its own thread, up to `transaction.coalescing.max-batch-size` at a time; the callers wait for
+ *    their own outcome.
+ *  - Requests arriving while a batch is being applied make up the next batch, so a quiet account never waits and a hot
+ *    one gets bigger batches as its commits slow down. With a positive `transaction.coalescing.window` the leader also
+ *    waits up to that long (or until the batch is full) before applying a batch.
+ *  - Once its own request is done, the leader hands the account over to the first queued request, so no caller keeps
+ *    serving other callers' requests for long.
+ *
+ * **Transaction:**
+ *  - A single request goes through `UserLocking.inTransaction`, exactly as without coalescing.
+ *  - A batch loads and locks the user once and applies every request to it in order, so each request sees the balance
+ *    left by the previous one. The balance is written with one UPDATE and everything is committed once.
+ *  - A request failing a check (e.g. currency mismatch) fails on its own. If the transaction itself fails, nothing
+ *    was applied and the requests are applied again one by one, so each caller gets the outcome it would have had alone.
+ *  - The work of a request runs again after such a failure, so whatever it records beyond the database (outcome
+ *    metrics, events, journal records) is only recorded once the transaction commits, never for the failed batch.
+ *
+ * The sizes of the batches applied are recorded in the `transaction.coalesced.requests` summary: a failed batch counts
+ * as the single requests it's retried as.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class RequestCoalescer {
+
+    private final UserLocking userLocking;
+    private final TransactionMetrics transactionMetrics;
+    private final boolean enabled;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final ConcurrentMap<UUID, Lane> lanes = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(UserLocking userLocking,
+                            TransactionMetrics transactionMetrics,
+                            @Value("${transaction.coalescing.enabled:true}") boolean enabled,
+                            @Value("${transaction.coalescing.max-batch-size:100}") int maxBatchSize,
+                            @Value("${transaction.coalescing.window:0ms}") Duration window) {
+        if (maxBatchSize < 1)
+            throw new IllegalArgumentException("transaction.coalescing.max-batch-size must be at least 1");
+        this.userLocking = userLocking;
+        this.transactionMetrics = transactionMetrics;
+        this.enabled = enabled;
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = window.toNanos();
+    }
+
+    /**
+     * Applies `work` to the user in a transaction, possibly together with concurrent requests of the same user.
+     * The same contract as `UserLocking.inTransaction` applies: `work` may run more than once.
+     *
+     * @param messageType The type of the message being processed, for the metrics.
+     * @param userId The user the message applies to.
+     * @param work The stateful part of the request, given the loaded user.
+     * @return The result of `work`, from the transaction that committed.
+     * @throws UserNotFoundException if there is no user with that ID.
+     * @throws UserLockTimeoutException if the user's lock stripe wasn't available in time.
+     */
+    public <T> T inTransaction(MessageType messageType, UUID userId, Function<User, T> work) throws UserNotFoundException, UserLockTimeoutException {
+        if (!enabled)
+            return userLocking.inTransaction(messageType, userId, work);
+        Pending<T> pending = new Pending<>(messageType, work);
+        lanes.compute(userId, (id, lane) -> {
+            if (lane == null) {
+                lane = new Lane();
+                pending.promote();
+            }
+            lane.queue.add(pending);
+            lane.size = lane.queue.size();
+            if (lane.size >= maxBatchSize)
+                LockSupport.unpark(lane.leader);
+            return lane;
+        });
+        if (pending.awaitTurn())
+            lead(userId, pending);
+        return pending.outcome();
+    }
+
+    private void lead(UUID userId, Pending<?> self) {
+        Pending<?> next = self;
+        try {
+            while (next == self) {
+                List<Pending<?>> batch = drain(userId);
+                try {
+                    apply(userId, batch);
+                } finally {
+                    batch.forEach(Pending::abandon);
+                }
+                next = nextLeader(userId, self, false);
+            }
+        } finally {
+            if (next == self)
+                next = nextLeader(userId, self, true);
+        }
+        if (next != null)
+            next.promote();
+    }
+
+    private List<Pending<?>> drain(UUID userId) {
+        if (windowNanos > 0)
+            awaitWindow(lanes.get(userId));
+        List<Pending<?>> batch = new ArrayList<>();
+        lanes.computeIfPresent(userId, (id, lane) -> {
+            while (batch.size() < maxBatchSize && !lane.queue.isEmpty())
+                batch.add(lane.queue.poll());
+            lane.size = lane.queue.size();
+            return lane;
+        });
+        return batch;
+    }
+
+    private void awaitWindow(Lane lane) {
+        long deadline = System.nanoTime() + windowNanos;
+        lane.leader = Thread.currentThread();
+        try {
+            long remaining = windowNanos;
+            while (lane.size < maxBatchSize && remaining > 0) {
+                LockSupport.parkNanos(this, remaining);
+                remaining = deadline - System.nanoTime();
+            }
+        } finally {
+            lane.leader = null;
+        }
+    }
+
+    private void apply(UUID userId, List<Pending<?>> batch) {
+        if (batch.size() == 1) {
+            transactionMetrics.coalesced(1);
+            batch.get(0).applyAlone(userLocking, userId);
+            return;
+        }
+        try {
+            userLocking.inLockedTransaction(batch.get(0).messageType, userId, user -> batch.forEach(pending -> pending.applyTo(user)));
+            transactionMetrics.coalesced(batch.size());
+            batch.forEach(Pending::finish);
+        } catch (UserNotFoundException | UserLockTimeoutException ex) {
+            batch.forEach(pending -> pending.fail(ex));
+        } catch (RuntimeException ex) {
+            log.debug("Coalesced transaction of {} requests failed for user with ID: {}, applying them one by one", batch.size(), userId, ex);
+            batch.forEach(pending -> {
+                transactionMetrics.coalesced(1);
+                pending.applyAlone(userLocking, userId);
+            });
+        }
+    }
+
+    /**
+     * Picks who applies the next batch of the account: the leader itself while its own request is queued, else the first
+     * queued request. Returns null, and forgets the account, once its queue is empty.
+     */
+    private Pending<?> nextLeader(UUID userId, Pending<?> self, boolean aborted) {
+        List<Pending<?>> next = new ArrayList<>(1);
+        lanes.computeIfPresent(userId, (id, lane) -> {
+            if (aborted)
+                lane.queue.remove(self);
+            lane.size = lane.queue.size();
+            if (lane.queue.isEmpty())
+                return null;
+            next.add(self.resolved || aborted ? lane.queue.peek() : self);
+            return lane;
+        });
+        return next.isEmpty() ? null : next.get(0);
+    }
+
+    /**
+     * The queued requests of one account. Only changed within `lanes.compute`, which serializes the changes per account.
+     */
+    private static final class Lane {
+
+        private final ArrayDeque<Pending<?>> queue = new ArrayDeque<>();
+        private volatile int size;
+        private volatile Thread leader;
+    }
+
+    /**
+     * One caller's request. Its outcome is set by the leader of its batch, and is only final once the batch committed.
+     */
+    private static final class Pending<T> {
+
+        private final MessageType messageType;
+        private final Function<User, T> work;
+        private final CompletableFuture<Boolean> turn = new CompletableFuture<>();
+        private T result;
+        private RuntimeException failure;
+        private boolean resolved;
+
+        Pending(MessageType messageType, Function<User, T> work) {
+            this.messageType = messageType;
+            this.work = work;
+        }
+
+        void applyTo(User user) {
+            try {
+                result = work.apply(user);
+                failure = null;
+            } catch (CurrencyNotMatchException | MessageIdAlreadyExistsException ex) {
+                failure = ex;
+            }
+        }
+
+        void applyAlone(UserLocking userLocking, UUID userId) {
+            try {
+                result = userLocking.inTransaction(messageType, userId, work);
+                failure = null;
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+            finish();
+        }
+
+        void fail(RuntimeException ex) {
+            failure = ex;
+            finish();
+        }
+
+        void abandon() {
+            if (!resolved)
+                fail(new IllegalStateException("Coalesced transaction aborted"));
+        }
+
+        void finish() {
+            resolved = true;
+            turn.complete(false);
+        }
+
+        void promote() {
+            turn.complete(true);
+        }
+
+        /**
+         * @return true if the caller became the account's leader, false once its outcome is set.
+         */
+        boolean awaitTurn() {
+            return turn.join();
+        }
+
+        T outcome() {
+            if (failure != null)
+                throw failure;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.exception.UserLockTimeoutException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Serializes, on this node, the transactions of a user before they take a database connection, so concurrent requests
+ * of one account wait here instead of each holding a pooled connection while queueing on the user's row lock.
+ * At most one transaction per account and node waits on the database lock, held by another node.
+ *
+ * **Stripes:**
+ *  - Users are hashed onto a fixed array of `transaction.locking.stripes` fair locks: waiters are served in arrival order,
+ *    and the memory used doesn't grow with the number of accounts. Users sharing a stripe are serialized too, so there
+ *    should be more stripes than pooled connections.
+ *  - A waiter gives up after `transaction.locking.stripe-timeout` with a `UserLockTimeoutException`.
+ *  - The wait is timed in `transaction.lock.stripe.wait` and the waiters are counted in `transaction.lock.stripe.queue`,
+ *    both tagged by `stripe`.
+ */
+@Component
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class StripedUserLocks {
+
+    private final ReentrantLock[] stripes;
+    private final Timer[] waitTimers;
+    private final long timeoutNanos;
+
+    public StripedUserLocks(TransactionMetrics transactionMetrics,
+                            @Value("${transaction.locking.stripes:64}") int stripes,
+                            @Value("${transaction.locking.stripe-timeout:30s}") Duration timeout) {
+        if (stripes < 1)
+            throw new IllegalArgumentException("transaction.locking.stripes must be at least 1");
+        this.stripes = new ReentrantLock[stripes];
+        this.waitTimers = new Timer[stripes];
+        this.timeoutNanos = timeout.toNanos();
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            ReentrantLock lock = new ReentrantLock(true);
+            this.stripes[stripe] = lock;
+            this.waitTimers[stripe] = transactionMetrics.stripeWait(stripe);
+            transactionMetrics.stripeQueue(stripe, lock::getQueueLength);
+        }
+    }
+
+    /**
+     * Runs `action` holding the lock of the user's stripe. Reentrant, so `action` may lock the same user again.
+     *
+     * @param userId The user the action applies to.
+     * @param action The transaction of the user.
+     * @return The result of `action`.
+     * @throws UserLockTimeoutException if the stripe wasn't available within the timeout.
+     */
+    public <T> T withLock(UUID userId, Supplier<T> action) throws UserLockTimeoutException {
+        int stripe = stripe(userId);
+        ReentrantLock lock = stripes[stripe];
+        long waitStart = System.nanoTime();
+        boolean locked;
+        try {
+            locked = lock.tryLock(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UserLockTimeoutException(String.format("Interrupted while waiting for the lock of user with ID: %s", userId));
+        } finally {
+            waitTimers[stripe].record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+        if (!locked)
+            throw new UserLockTimeoutException(String.format("Timed out waiting for the lock of user with ID: %s", userId));
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int stripe(UUID userId) {
+        return Math.floorMod(userId.hashCode(), stripes.length);
+    }
+}
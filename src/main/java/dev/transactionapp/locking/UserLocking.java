@@ -0,0 +1,170 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.LockStrategy;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
+import dev.transactionapp.exception.UserLockTimeoutException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the stateful part of a transaction on a user, in a database transaction, protecting the user's balance the way
+ * the `AdaptiveLockPolicy` decides for the account: always pessimistic by default, optimistic first with
+ * `transaction.locking.strategy=adaptive`.
+ *
+ * **Optimistic:**
+ *  - The user is read without a lock. Writing the balance (`saveAndFlush`) checks and increments the user's `@Version`
+ *    right away, and a decision that leaves the balance unchanged (a decline) claims the version with `confirmUnchanged`.
+ *    Either way the row is held from that point until commit, so the journal still receives the changes in order.
+ *  - On a version conflict the whole transaction is rolled back and run again on a fresh read, up to
+ *    `transaction.locking.max-attempts` times. The last attempt takes the row lock, so a request never fails for contention alone.
+ *
+ * **Pessimistic:**
+ *  - The user is read with `SELECT ... FOR UPDATE` and the row lock is held until commit. Batches always lock this way.
+ *
+ * Either way the user's stripe of the `StripedUserLocks` is held first, for all the attempts, so the other requests of
+ * the user on this node wait without holding a database connection.
+ *
+ * **Where Conflicts Come From:**
+ *  - Since the stripe (and the `RequestCoalescer` in front of it) already serializes a user's transactions on this node,
+ *    a version conflict only happens when the row is written by another node sharing the database: replicas behind a
+ *    load balancer without user-affinity routing (`transaction.cluster.enabled=false`, the default).
+ *  - With user-affinity routing every user is written by its owner alone, so accounts stay optimistic and never pay
+ *    for a lock round trip; the `AdaptiveLockPolicy` only promotes accounts of replicas sharing one database.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class UserLocking {
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AdaptiveLockPolicy adaptiveLockPolicy;
+    private final StripedUserLocks stripedUserLocks;
+    private final TransactionMetrics transactionMetrics;
+    private final int maxAttempts;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public UserLocking(UserRepository userRepository,
+                       TransactionTemplate transactionTemplate,
+                       AdaptiveLockPolicy adaptiveLockPolicy,
+                       StripedUserLocks stripedUserLocks,
+                       TransactionMetrics transactionMetrics,
+                       @Value("${transaction.locking.max-attempts:3}") int maxAttempts) {
+        if (maxAttempts < 1)
+            throw new IllegalArgumentException("transaction.locking.max-attempts must be at least 1");
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.adaptiveLockPolicy = adaptiveLockPolicy;
+        this.stripedUserLocks = stripedUserLocks;
+        this.transactionMetrics = transactionMetrics;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Loads the user and applies `work` to it in one transaction, retried on version conflicts.
+     * `work` may run more than once, so it must only have effects that roll back with the transaction
+     * or are deferred until commit (journal records, events, outcome metrics) before it writes the balance or calls `confirmUnchanged`.
+     *
+     * @param messageType The type of the message being processed, for the metrics.
+     * @param userId The user the message applies to.
+     * @param work The stateful part of the request, given the loaded user.
+     * @return The result of `work`, from the attempt that committed.
+     * @throws UserNotFoundException if there is no user with that ID.
+     * @throws UserLockTimeoutException if the user's stripe wasn't available in time.
+     */
+    public <T> T inTransaction(MessageType messageType, UUID userId, Function<User, T> work) throws UserNotFoundException, UserLockTimeoutException {
+        return stripedUserLocks.withLock(userId, () -> attempt(messageType, userId, work));
+    }
+
+    private <T> T attempt(MessageType messageType, UUID userId, Function<User, T> work) throws UserNotFoundException {
+        LockStrategy strategy = adaptiveLockPolicy.strategyFor(userId);
+        transactionMetrics.lockStrategy(messageType, strategy);
+        if (strategy == LockStrategy.OPTIMISTIC) {
+            for (int attempt = 1; attempt < maxAttempts; attempt++) {
+                try {
+                    return transactionTemplate.execute(status -> work.apply(fetchUser(messageType, userId, LockStrategy.OPTIMISTIC)));
+                } catch (OptimisticLockingFailureException | OptimisticLockException ex) {
+                    log.debug("Version conflict on user with ID: {}, attempt {} of {}", userId, attempt, maxAttempts);
+                    transactionMetrics.lockConflict(messageType);
+                    adaptiveLockPolicy.conflict(userId);
+                }
+            }
+        }
+        return transactionTemplate.execute(status -> work.apply(fetchUser(messageType, userId, LockStrategy.PESSIMISTIC)));
+    }
+
+    /**
+     * Loads the user with the row lock and applies `work` to it in one transaction, whatever the account's strategy.
+     * Used when the work on the user is long enough (e.g. a batch of entries) that a retry would waste it.
+     *
+     * @param messageType The type of the message being processed, for the metrics.
+     * @param userId The user the message applies to.
+     * @param work The stateful part of the request, given the locked user.
+     * @throws UserNotFoundException if there is no user with that ID.
+     * @throws UserLockTimeoutException if the user's stripe wasn't available in time.
+     */
+    public void inLockedTransaction(MessageType messageType, UUID userId, Consumer<User> work) throws UserNotFoundException, UserLockTimeoutException {
+        stripedUserLocks.withLock(userId, () -> {
+            transactionTemplate.executeWithoutResult(status -> work.accept(fetchUser(messageType, userId, LockStrategy.PESSIMISTIC)));
+            return null;
+        });
+    }
+
+    /**
+     * Writes the user's new balance. An unlocked user is flushed right away, so its `@Version` is checked (and the row held)
+     * before the change is journaled. A user locked by this transaction is left to be written once, when the transaction
+     * commits, however many balance changes it applies.
+     *
+     * @param user The user loaded by `inTransaction` or `inLockedTransaction`, with its balance changed.
+     * @throws OptimisticLockingFailureException if the unlocked user was changed by another transaction since it was read.
+     */
+    public void saveBalance(User user) throws OptimisticLockingFailureException {
+        if (isLocked(user))
+            userRepository.save(user);
+        else
+            userRepository.saveAndFlush(user);
+    }
+
+    /**
+     * Makes sure the user read by this transaction is still current although its balance isn't changed, by incrementing
+     * its version with `PESSIMISTIC_FORCE_INCREMENT`. Does nothing if the row is already locked by this transaction.
+     *
+     * @param user The user loaded by `inTransaction`.
+     * @throws OptimisticLockException if the user was changed by another transaction since it was read.
+     */
+    public void confirmUnchanged(User user) throws OptimisticLockException {
+        if (!isLocked(user))
+            entityManager.lock(user, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+    }
+
+    private boolean isLocked(User user) {
+        LockModeType lockMode = entityManager.getLockMode(user);
+        return lockMode == LockModeType.PESSIMISTIC_WRITE || lockMode == LockModeType.PESSIMISTIC_FORCE_INCREMENT;
+    }
+
+    private User fetchUser(MessageType messageType, UUID userId, LockStrategy strategy) throws UserNotFoundException {
+        Optional<User> user = transactionMetrics.time(messageType, TransactionStage.USER_LOCK,
+                () -> strategy == LockStrategy.PESSIMISTIC ? userRepository.findByIdForUpdate(userId) : userRepository.findById(userId));
+        return user.orElseThrow(() -> new UserNotFoundException(String.format("User with ID: %s not found", userId)));
+    }
+}
@@ -0,0 +1,287 @@
+package dev.transactionapp.logging;
+
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.money.Money;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Logs every approval, decline and load as one compact JSON line, off the request thread, so a slow appender (a full
+ * disk, a blocked console) never holds a request or a user's lock.
+ *
+ * Here's a breakdown of the steps involved:
+ *  1. `record` copies the fields of the event, as they are (no formatting), into a preallocated slot of a lock-free
+ *     ring buffer of `capacity` events: producers claim a slot with a CAS on the claim sequence, then publish it by
+ *     advancing the slot's own sequence.
+ *  2. The writer thread takes the published events in order, encodes each one as a JSON line into a reused
+ *     StringBuilder and hands it to the `events` logger. It parks for `flushIntervalMillis` when the ring is empty.
+ *  3. Approvals and loads are kept with probability `sampleRate` and at most `maxPerSecond` per second (0: no limit),
+ *     and dropped if the ring is full. Declines are never sampled out: if the ring is full, the decline is written
+ *     on the caller's thread instead.
+ *  4. The numbers of events sampled out, rate limited and dropped are logged every `SUMMARY_INTERVAL_MILLIS`,
+ *     when any was.
+ *
+ * Nothing is recorded while the `events` logger is disabled for INFO.
+ */
+@Slf4j
+public class TransactionEventLog implements Runnable {
+
+    public static final String EVENTS_LOGGER = "dev.transactionapp.events";
+
+    static final long SUMMARY_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final Logger events;
+    private final Event[] ring;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private final double sampleRate;
+    private final int maxPerSecond;
+    // epoch second in the high 32 bits, events kept in that second in the low 32 bits
+    private final AtomicLong rateWindow = new AtomicLong();
+    private final long flushIntervalNanos;
+
+    private final LongAdder sampledOut = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    // owned by the writer thread
+    private final StringBuilder line = new StringBuilder(256);
+    private long consumed;
+    private long lastSummaryMillis = System.currentTimeMillis();
+
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /**
+     * @param events The logger the JSON lines are written to.
+     * @param capacity Size of the ring buffer, rounded up to a power of two.
+     * @param sampleRate Fraction of approvals and loads kept, from 0 to 1.
+     * @param maxPerSecond Maximum approvals and loads kept per second, 0 for no limit.
+     * @param flushIntervalMillis How long the writer thread parks when there's nothing to write.
+     */
+    public TransactionEventLog(Logger events, int capacity, double sampleRate, int maxPerSecond, long flushIntervalMillis) {
+        int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.events = events;
+        this.ring = new Event[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Event();
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.sampleRate = sampleRate;
+        this.maxPerSecond = maxPerSecond;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+    }
+
+    public void start() {
+        thread = new Thread(this, "transaction-event-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Records a processed transaction, with the same fields as its journal record.
+     * Inside a transaction with synchronization active, the event is only recorded once the transaction commits.
+     *
+     * @param type APPROVED or DECLINED for an authorization, LOAD for a load.
+     * @param amount The transaction amount, in minor units.
+     * @param balance The user's balance after the transaction, in minor units.
+     */
+    public void record(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balance) {
+        if (!events.isInfoEnabled())
+            return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    recordNow(type, messageId, userId, currency, amount, balance);
+                }
+            });
+            return;
+        }
+        recordNow(type, messageId, userId, currency, amount, balance);
+    }
+
+    private void recordNow(JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balance) {
+        boolean alwaysKept = type == JournalRecordType.DECLINED;
+        if (!alwaysKept && !sampled())
+            return;
+        long timestamp = System.currentTimeMillis();
+        if (offer(timestamp, type, messageId, userId, currency, amount, balance))
+            return;
+        if (alwaysKept)
+            events.info(encode(new StringBuilder(256), timestamp, type, messageId, userId, currency, amount, balance).toString());
+        else
+            dropped.increment();
+    }
+
+    private boolean sampled() {
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.increment();
+            return false;
+        }
+        if (maxPerSecond > 0 && !withinRateLimit()) {
+            rateLimited.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private boolean withinRateLimit() {
+        long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        while (true) {
+            long window = rateWindow.get();
+            long kept = (window >>> 32) == second ? window & 0xFFFFFFFFL : 0;
+            if (kept >= maxPerSecond)
+                return false;
+            if (rateWindow.compareAndSet(window, (second << 32) | (kept + 1)))
+                return true;
+        }
+    }
+
+    private boolean offer(long timestamp, JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balance) {
+        long position = claimed.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long sequence = sequences.get(index);
+            if (sequence == position) {
+                if (claimed.compareAndSet(position, position + 1)) {
+                    ring[index].set(timestamp, type, messageId, userId, currency, amount, balance);
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = claimed.get();
+            } else if (sequence < position) {
+                // the slot still holds the event of the previous lap: the ring is full
+                return false;
+            } else {
+                position = claimed.get();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (drain() == 0) {
+                summarize(false);
+                LockSupport.parkNanos(flushIntervalNanos);
+            }
+        }
+        drain();
+        summarize(true);
+    }
+
+    private int drain() {
+        int drained = 0;
+        while (true) {
+            int index = (int) (consumed & mask);
+            if (sequences.get(index) != consumed + 1)
+                return drained;
+            Event event = ring[index];
+            try {
+                line.setLength(0);
+                events.info(encode(line, event.timestamp, event.type, event.messageId, event.userId, event.currency, event.amount, event.balance).toString());
+            } catch (RuntimeException ex) {
+                log.warn("Failed to write transaction event {}", event.messageId, ex);
+            }
+            event.clear();
+            sequences.lazySet(index, consumed + ring.length);
+            consumed++;
+            drained++;
+        }
+    }
+
+    private void summarize(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && now - lastSummaryMillis < SUMMARY_INTERVAL_MILLIS)
+            return;
+        lastSummaryMillis = now;
+        long sampledOutCount = sampledOut.sumThenReset();
+        long rateLimitedCount = rateLimited.sumThenReset();
+        long droppedCount = dropped.sumThenReset();
+        if (sampledOutCount + rateLimitedCount + droppedCount > 0)
+            events.info("{\"ts\":" + now + ",\"event\":\"SUPPRESSED\",\"sampledOut\":" + sampledOutCount
+                    + ",\"rateLimited\":" + rateLimitedCount + ",\"dropped\":" + droppedCount + "}");
+    }
+
+    static StringBuilder encode(StringBuilder sb, long timestamp, JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balance) {
+        sb.append("{\"ts\":").append(timestamp)
+                .append(",\"event\":\"").append(type.name())
+                .append("\",\"messageId\":");
+        string(sb, messageId);
+        sb.append(",\"userId\":\"").append(userId)
+                .append("\",\"currency\":");
+        string(sb, currency);
+        sb.append(",\"amount\":\"");
+        Money.appendTo(sb, amount).append("\",\"balance\":\"");
+        return Money.appendTo(sb, balance).append("\"}");
+    }
+
+    private static void string(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\')
+                sb.append('\\').append(c);
+            else if (c < 0x20)
+                sb.append(String.format("\\u%04X", (int) c));
+            else
+                sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    private static final class Event {
+
+        private long timestamp;
+        private JournalRecordType type;
+        private String messageId;
+        private UUID userId;
+        private String currency;
+        private long amount;
+        private long balance;
+
+        void set(long timestamp, JournalRecordType type, String messageId, UUID userId, String currency, long amount, long balance) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.messageId = messageId;
+            this.userId = userId;
+            this.currency = currency;
+            this.amount = amount;
+            this.balance = balance;
+        }
+
+        void clear() {
+            this.messageId = null;
+            this.userId = null;
+            this.currency = null;
+        }
+    }
+}
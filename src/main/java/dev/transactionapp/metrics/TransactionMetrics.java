@@ -0,0 +1,216 @@
+package dev.transactionapp.metrics;
+
+import com.google.common.cache.Cache;
+import dev.transactionapp.enums.Currency;
+import dev.transactionapp.enums.LockStrategy;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records the transaction metrics exposed on `/actuator/prometheus`:
+ *  - `transaction.stage` timers, tagged by `type` (authorization, load) and `stage` (validation, user_lock, balance_update, decline_persistence).
+ *  - `transaction.outcomes` counters, tagged by `type`, `outcome` (approved, declined) and `currency`, counted once the
+ *    transaction commits: an attempt rolled back and retried (version conflict, failed coalesced batch) isn't counted.
+ *  - `transaction.errors` counters, tagged by the `exception` handled by the `RestExceptionHandler`.
+ *  - `transaction.lock.strategy` counters, tagged by `type` and the `strategy` (optimistic, pessimistic) chosen for a transaction,
+ *    `transaction.lock.conflicts` counters of optimistic transactions retried after a version conflict, and
+ *    `transaction.lock.transitions` counters of accounts promoted to or demoted from pessimistic locking, see `AdaptiveLockPolicy`.
+ *  - `transaction.lock.stripe.wait` timers and `transaction.lock.stripe.queue` gauges, tagged by the `stripe` of `StripedUserLocks`.
+ *  - `cache.gets`, `cache.evictions`, `cache.size`... of the in-memory caches, tagged by `cache`.
+ *  - `transaction.coalesced.requests`, the number of concurrent requests of one account applied in a single transaction, see `RequestCoalescer`.
+ *  - `transaction.routing.forward` timers of the requests forwarded to the node owning their user, tagged by `node`, see `RequestForwarder`.
+ *
+ * **Overhead:**
+ *  - Every timer and outcome counter of the hot path is registered up front, so recording is a lookup in an EnumMap
+ *    and an increment, without building tags or searching the registry.
+ *  - Stage timers keep count, total and max only; percentile histograms can be turned on with
+ *    `management.metrics.distribution.percentiles-histogram.transaction.stage=true`.
+ */
+@Component
+public class TransactionMetrics {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<MessageType, Map<TransactionStage, Timer>> stageTimers = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Map<Currency, Counter>> approvedCounters = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Map<Currency, Counter>> declinedCounters = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Map<LockStrategy, Counter>> lockStrategyCounters = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Counter> lockConflictCounters = new EnumMap<>(MessageType.class);
+    private final Map<LockStrategy, Counter> lockTransitionCounters = new EnumMap<>(LockStrategy.class);
+    private final DistributionSummary coalescedRequests;
+
+    public TransactionMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        for (MessageType type : MessageType.values()) {
+            Map<TransactionStage, Timer> timers = new EnumMap<>(TransactionStage.class);
+            for (TransactionStage stage : TransactionStage.values())
+                timers.put(stage, Timer.builder("transaction.stage")
+                        .description("Time spent in one stage of processing a transaction")
+                        .tag("type", tag(type))
+                        .tag("stage", tag(stage))
+                        .register(meterRegistry));
+            stageTimers.put(type, timers);
+            approvedCounters.put(type, outcomeCounters(type, "approved"));
+            declinedCounters.put(type, outcomeCounters(type, "declined"));
+            Map<LockStrategy, Counter> strategies = new EnumMap<>(LockStrategy.class);
+            for (LockStrategy strategy : LockStrategy.values())
+                strategies.put(strategy, Counter.builder("transaction.lock.strategy")
+                        .description("Transactions by the way they protected the user's balance")
+                        .tag("type", tag(type))
+                        .tag("strategy", tag(strategy))
+                        .register(meterRegistry));
+            lockStrategyCounters.put(type, strategies);
+            lockConflictCounters.put(type, Counter.builder("transaction.lock.conflicts")
+                    .description("Optimistic transactions retried after a version conflict")
+                    .tag("type", tag(type))
+                    .register(meterRegistry));
+        }
+        for (LockStrategy strategy : LockStrategy.values())
+            lockTransitionCounters.put(strategy, Counter.builder("transaction.lock.transitions")
+                    .description("Accounts switched to the tagged locking strategy")
+                    .tag("strategy", tag(strategy))
+                    .register(meterRegistry));
+        coalescedRequests = DistributionSummary.builder("transaction.coalesced.requests")
+                .description("Concurrent requests of one account applied in a single transaction")
+                .register(meterRegistry);
+    }
+
+    public <T> T time(MessageType type, TransactionStage stage, Supplier<T> supplier) {
+        return stageTimers.get(type).get(stage).record(supplier);
+    }
+
+    public void time(MessageType type, TransactionStage stage, Runnable runnable) {
+        stageTimers.get(type).get(stage).record(runnable);
+    }
+
+    /**
+     * Times a reactive stage, from subscription until it completes, errors or is cancelled.
+     */
+    public <T> Mono<T> time(MessageType type, TransactionStage stage, Mono<T> mono) {
+        Timer timer = stageTimers.get(type).get(stage);
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start();
+            return mono.doFinally(signal -> sample.stop(timer));
+        });
+    }
+
+    public void approved(MessageType type, String currency) {
+        afterCommit(() -> outcome(approvedCounters.get(type), type, "approved", currency));
+    }
+
+    public void declined(MessageType type, String currency) {
+        afterCommit(() -> outcome(declinedCounters.get(type), type, "declined", currency));
+    }
+
+    public void lockStrategy(MessageType type, LockStrategy strategy) {
+        lockStrategyCounters.get(type).get(strategy).increment();
+    }
+
+    public void lockConflict(MessageType type) {
+        lockConflictCounters.get(type).increment();
+    }
+
+    public void lockTransition(LockStrategy strategy) {
+        lockTransitionCounters.get(strategy).increment();
+    }
+
+    public void pessimisticAccounts(Supplier<Number> accounts) {
+        Gauge.builder("transaction.lock.pessimistic.accounts", accounts)
+                .description("Accounts currently promoted to pessimistic locking")
+                .register(meterRegistry);
+    }
+
+    public Timer stripeWait(int stripe) {
+        return Timer.builder("transaction.lock.stripe.wait")
+                .description("Time spent waiting for a user's lock stripe on this node")
+                .tag("stripe", String.valueOf(stripe))
+                .register(meterRegistry);
+    }
+
+    public void stripeQueue(int stripe, Supplier<Number> waiting) {
+        Gauge.builder("transaction.lock.stripe.queue", waiting)
+                .description("Threads waiting for a user's lock stripe on this node")
+                .tag("stripe", String.valueOf(stripe))
+                .register(meterRegistry);
+    }
+
+    public void cache(String name, Cache<?, ?> cache) {
+        GuavaCacheMetrics.monitor(meterRegistry, cache, name);
+    }
+
+    public void coalesced(int requests) {
+        coalescedRequests.record(requests);
+    }
+
+    public Timer forward(String node) {
+        return Timer.builder("transaction.routing.forward")
+                .description("Time spent forwarding requests to the node owning their user")
+                .tag("node", node)
+                .register(meterRegistry);
+    }
+
+    public void error(Exception ex) {
+        error(ex.getClass());
+    }
+
+    /**
+     * Counts an error answered without its exception being thrown, tagged like `error(Exception)` would tag it.
+     */
+    public void error(Class<? extends Exception> exceptionType) {
+        meterRegistry.counter("transaction.errors", "exception", exceptionType.getSimpleName()).increment();
+    }
+
+    private static void afterCommit(Runnable count) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    count.run();
+                }
+            });
+        } else {
+            count.run();
+        }
+    }
+
+    private void outcome(Map<Currency, Counter> counters, MessageType type, String outcome, String currency) {
+        Counter counter = null;
+        for (Currency known : Currency.values()) {
+            if (known.name().equals(currency))
+                counter = counters.get(known);
+        }
+        if (counter == null)
+            counter = meterRegistry.counter("transaction.outcomes", "type", tag(type), "outcome", outcome, "currency", String.valueOf(currency));
+        counter.increment();
+    }
+
+    private Map<Currency, Counter> outcomeCounters(MessageType type, String outcome) {
+        Map<Currency, Counter> counters = new EnumMap<>(Currency.class);
+        for (Currency currency : Currency.values())
+            counters.put(currency, Counter.builder("transaction.outcomes")
+                    .description("Processed transactions by outcome")
+                    .tag("type", tag(type))
+                    .tag("outcome", outcome)
+                    .tag("currency", currency.name())
+                    .register(meterRegistry));
+        return counters;
+    }
+
+    private static String tag(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,111 @@
+package dev.transactionapp.money;
+
+/**
+ * Fixed-point representation of money amounts as a `long` number of minor units (cents, paise).
+ * All supported currencies have two decimals, so "12.34" is held as 1234 and "12" as 1200.
+ *
+ * Amounts stay primitive longs all the way from request parsing to the `users` table, which avoids the
+ * floating-point drift of doubles and the boxing of BigDecimal. The parser walks the characters once,
+ * without regex or intermediate objects, and the formatter appends straight into a StringBuilder.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+    public static final long MINOR_UNITS_PER_UNIT = 100;
+
+    /**
+     * Exclusive upper bound of a single transaction amount: 1 billion.
+     */
+    public static final long MAX_TRANSACTION_AMOUNT = 1_000_000_000L * MINOR_UNITS_PER_UNIT;
+
+    /**
+     * Returned by `tryParse` for anything that isn't a valid wire amount.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    // 16 integer digits plus 2 decimals always fit in a long
+    private static final int MAX_INTEGER_DIGITS = 16;
+
+    private Money() {
+    }
+
+    /**
+     * Parses a wire amount with an optional fraction of one or two digits ("12", "12.3", "12.34").
+     * Signs, exponents, whitespace and more than two decimals are rejected.
+     *
+     * @param text The amount as sent on the wire.
+     * @return The amount in minor units, or `INVALID` if the text isn't a valid amount.
+     */
+    public static long tryParse(CharSequence text) {
+        if (text == null)
+            return INVALID;
+        int length = text.length();
+        int i = 0;
+        long units = 0;
+        while (i < length && isDigit(text.charAt(i))) {
+            if (i == MAX_INTEGER_DIGITS)
+                return INVALID;
+            units = units * 10 + (text.charAt(i) - '0');
+            i++;
+        }
+        if (i == 0)
+            return INVALID;
+        long minor = units * MINOR_UNITS_PER_UNIT;
+        if (i == length)
+            return minor;
+        if (text.charAt(i) != '.')
+            return INVALID;
+        int fractionDigits = length - i - 1;
+        if (fractionDigits < 1 || fractionDigits > SCALE)
+            return INVALID;
+        char tenths = text.charAt(i + 1);
+        if (!isDigit(tenths))
+            return INVALID;
+        minor += (tenths - '0') * 10L;
+        if (fractionDigits == SCALE) {
+            char hundredths = text.charAt(i + 2);
+            if (!isDigit(hundredths))
+                return INVALID;
+            minor += hundredths - '0';
+        }
+        return minor;
+    }
+
+    /**
+     * Same as `tryParse` but for callers that expect an already validated amount.
+     *
+     * @throws NumberFormatException if the text isn't a valid amount.
+     */
+    public static long parse(CharSequence text) throws NumberFormatException {
+        long minor = tryParse(text);
+        if (minor == INVALID)
+            throw new NumberFormatException(String.format("Invalid amount: %s", text));
+        return minor;
+    }
+
+    /**
+     * Appends the amount in the two-decimal wire format, e.g. 1234 as "12.34" and 1200 as "12.00".
+     */
+    public static StringBuilder appendTo(StringBuilder sb, long minor) {
+        if (minor < 0) {
+            sb.append('-');
+            minor = -minor;
+        }
+        long cents = minor % MINOR_UNITS_PER_UNIT;
+        sb.append(minor / MINOR_UNITS_PER_UNIT).append('.');
+        if (cents < 10)
+            sb.append('0');
+        return sb.append(cents);
+    }
+
+    /**
+     * @return The amount in the two-decimal wire format, e.g. "12.34".
+     */
+    public static String format(long minor) {
+        return appendTo(new StringBuilder(24), minor).toString();
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
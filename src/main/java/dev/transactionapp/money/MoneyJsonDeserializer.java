@@ -0,0 +1,22 @@
+package dev.transactionapp.money;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Reads a money amount given as a JSON number or string ("500", 500, 500.25) into minor units.
+ */
+public class MoneyJsonDeserializer extends JsonDeserializer<Long> {
+
+    @Override
+    public Long deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        String text = p.getText();
+        long minor = Money.tryParse(text);
+        if (minor == Money.INVALID)
+            return (Long) ctxt.handleWeirdStringValue(Long.class, text, "Amount can have optional 2 decimal");
+        return minor;
+    }
+}
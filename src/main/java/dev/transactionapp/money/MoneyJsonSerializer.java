@@ -0,0 +1,18 @@
+package dev.transactionapp.money;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+
+/**
+ * Writes a minor-units `long` as a JSON number with two decimals, e.g. 20000 as 200.00.
+ */
+public class MoneyJsonSerializer extends JsonSerializer<Long> {
+
+    @Override
+    public void serialize(Long minor, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeNumber(Money.format(minor));
+    }
+}
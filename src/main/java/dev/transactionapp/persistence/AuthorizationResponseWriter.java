@@ -0,0 +1,215 @@
+package dev.transactionapp.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.enums.TransactionStage;
+import dev.transactionapp.metrics.TransactionMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves declined authorizations behind the request: declines are queued and a background thread inserts them
+ * with JDBC batches, so a decline storm doesn't hold the user's row lock across an extra insert.
+ *
+ * Here's a breakdown of the steps involved:
+ *  1. `write` queues the decline once the caller's transaction commits (a rolled back decline is never saved).
+ *  2. The writer thread waits up to `flushIntervalMillis` for the first decline, then drains up to `batchSize`
+ *     declines and inserts all of them in one transaction (group commit).
+ *  3. If the queue is full, the committing thread inserts its decline itself instead of waiting for the writer.
+ *  4. A batch that fails is retried row by row; a row that still fails is appended as JSON to the `deadLetterFile`
+ *     (or logged in full if even that fails), never dropped silently.
+ *
+ * Retries of a decline are answered by the `IdempotencyStore`, which is written in the request's own transaction,
+ * so duplicate messageIds are detected even before the decline is flushed here.
+ *
+ * **Crash Recovery:**
+ *  - The declines still queued when the process dies are lost from the queue, but not from `idempotency_records`,
+ *    which holds every committed decline's response.
+ *  - `start` inserts the declined authorizations of `idempotency_records` missing from `authorization_responses`,
+ *    looking back `recoveryWindow` from the newest record, before the writer thread starts.
+ */
+@Slf4j
+public class AuthorizationResponseWriter implements Runnable {
+
+    private static final String INSERT_SQL = "INSERT INTO authorization_responses (message_id, user_id, response_code, amount, currency, debit_or_credit) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String NEWEST_RECORD_SQL = "SELECT MAX(created_at) FROM idempotency_records";
+    private static final String UNSAVED_RESPONSES_SQL = "SELECT r.response FROM idempotency_records r WHERE r.message_type = 'AUTHORIZATION' AND r.created_at >= ? "
+            + "AND NOT EXISTS (SELECT 1 FROM authorization_responses a WHERE a.message_id = r.message_id)";
+
+    private final BlockingQueue<AuthorizationResponse> queue;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionMetrics transactionMetrics;
+    private final ObjectMapper objectMapper;
+    private final long flushIntervalMillis;
+    private final int batchSize;
+    private final Path deadLetterFile;
+    private final Duration recoveryWindow;
+
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /**
+     * @param transactionTemplate Must start a new transaction (`PROPAGATION_REQUIRES_NEW`): a decline inserted by the
+     *                            committing thread runs in `afterCommit`, where the committed transaction is still bound.
+     */
+    public AuthorizationResponseWriter(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, TransactionMetrics transactionMetrics,
+                                       ObjectMapper objectMapper, int queueCapacity, long flushIntervalMillis, int batchSize,
+                                       Path deadLetterFile, Duration recoveryWindow) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.transactionMetrics = transactionMetrics;
+        this.objectMapper = objectMapper;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.batchSize = batchSize;
+        this.deadLetterFile = deadLetterFile;
+        this.recoveryWindow = recoveryWindow;
+    }
+
+    public void start() {
+        recover();
+        thread = new Thread(this, "authorization-response-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a declined authorization for saving, after the current transaction commits if there's one.
+     */
+    public void write(AuthorizationResponse authorizationResponse) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(authorizationResponse);
+                }
+            });
+        } else {
+            enqueue(authorizationResponse);
+        }
+    }
+
+    private void enqueue(AuthorizationResponse authorizationResponse) {
+        if (queue.offer(authorizationResponse))
+            return;
+        log.debug("Declined authorization queue is full, saving {} on the committing thread", authorizationResponse.getMessageId());
+        flushQuietly(List.of(authorizationResponse));
+    }
+
+    /**
+     * Inserts the committed declines that never reached `authorization_responses`, queued when the process stopped.
+     * Only looks back `recoveryWindow` from the newest `idempotency_records` row, the queue draining within milliseconds.
+     */
+    void recover() {
+        LocalDateTime newest = jdbcTemplate.queryForObject(NEWEST_RECORD_SQL, LocalDateTime.class);
+        if (newest == null)
+            return;
+        List<AuthorizationResponse> declines = new ArrayList<>();
+        for (byte[] response : jdbcTemplate.queryForList(UNSAVED_RESPONSES_SQL, byte[].class, newest.minus(recoveryWindow))) {
+            AuthorizationResponse authorizationResponse = read(response);
+            if (ResponseCode.DECLINED.toString().equals(authorizationResponse.getResponseCode()))
+                declines.add(authorizationResponse);
+        }
+        for (int from = 0; from < declines.size(); from += batchSize)
+            flushQuietly(declines.subList(from, Math.min(declines.size(), from + batchSize)));
+        if (!declines.isEmpty())
+            log.info("Recovered {} declined authorizations missing from authorization_responses", declines.size());
+    }
+
+    private AuthorizationResponse read(byte[] response) {
+        try {
+            return objectMapper.readValue(response, AuthorizationResponse.class);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Failed to read stored authorization response", ex);
+        }
+    }
+
+    @Override
+    public void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                AuthorizationResponse first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                List<AuthorizationResponse> batch = new ArrayList<>(batchSize);
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flushQuietly(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flushQuietly(List<AuthorizationResponse> batch) {
+        try {
+            flush(batch);
+        } catch (RuntimeException ex) {
+            // one bad row fails the whole batch, save the others one by one
+            log.warn("Failed to save batch of {} declined authorizations, saving them one by one", batch.size(), ex);
+            for (AuthorizationResponse authorizationResponse : batch) {
+                try {
+                    flush(List.of(authorizationResponse));
+                } catch (RuntimeException rowEx) {
+                    deadLetter(authorizationResponse, rowEx);
+                }
+            }
+        }
+    }
+
+    private synchronized void deadLetter(AuthorizationResponse authorizationResponse, RuntimeException cause) {
+        String line = null;
+        try {
+            line = objectMapper.writeValueAsString(authorizationResponse);
+            Files.createDirectories(deadLetterFile.toAbsolutePath().getParent());
+            Files.writeString(deadLetterFile, line + System.lineSeparator(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            log.error("Failed to save declined authorization {}, appended it to {}", authorizationResponse.getMessageId(), deadLetterFile, cause);
+        } catch (IOException ex) {
+            cause.addSuppressed(ex);
+            log.error("Failed to save declined authorization {} and to append it to {}: {}", authorizationResponse.getMessageId(), deadLetterFile,
+                    line != null ? line : authorizationResponse, cause);
+        }
+    }
+
+    void flush(List<AuthorizationResponse> batch) {
+        transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.DECLINE_PERSISTENCE, () ->
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, authorizationResponse) -> {
+                    ps.setString(1, authorizationResponse.getMessageId());
+                    ps.setString(2, authorizationResponse.getUserId());
+                    ps.setString(3, authorizationResponse.getResponseCode());
+                    ps.setString(4, authorizationResponse.getBalance().getAmount());
+                    ps.setString(5, authorizationResponse.getBalance().getCurrency());
+                    ps.setString(6, authorizationResponse.getBalance().getDebitOrCredit());
+                })));
+        log.debug("Saved {} declined authorizations", batch.size());
+    }
+}
@@ -0,0 +1,126 @@
+package dev.transactionapp.persistence;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.User;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Streams whole tables as NDJSON (one JSON object per line) straight from a JDBC cursor to an output stream.
+ *
+ * Here's a breakdown of the steps involved:
+ *  1. Opens a read-only transaction, so the driver can keep a server-side cursor open (PostgreSQL only uses
+ *     the fetch size with auto-commit off).
+ *  2. Runs a forward-only query ordered by the primary key, reading `fetchSize` rows per round trip.
+ *  3. Maps every row and writes it to the output stream as soon as it's read; the stream is flushed every `fetchSize` rows.
+ *
+ * Only the current row is held in memory, whatever the size of the table.
+ * Only used by the `UtilityController`, so it's created with it, on the first listing request.
+ */
+@Lazy
+@Component
+public class TableStreamer {
+
+    private static final String USERS_SQL = "SELECT id, currency, balance_minor, created_at FROM users";
+    private static final String AUTHORIZATION_RESPONSES_SQL = "SELECT message_id, user_id, response_code, amount, currency, debit_or_credit FROM authorization_responses";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter objectWriter;
+    private final int fetchSize;
+
+    public TableStreamer(DataSource dataSource,
+                         PlatformTransactionManager transactionManager,
+                         ObjectMapper objectMapper,
+                         @Value("${transaction.listing.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransactionTemplate.setReadOnly(true);
+        this.objectMapper = objectMapper;
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Writes every user with an ID greater than `after` (all users if null), in ID order.
+     */
+    public void streamUsers(UUID after, OutputStream outputStream) {
+        stream(USERS_SQL + (after == null ? "" : " WHERE id > ?") + " ORDER BY id", after, TableStreamer::mapUser, outputStream);
+    }
+
+    /**
+     * Writes every saved authorization response with a messageId greater than `after` (all of them if null), in messageId order.
+     */
+    public void streamAuthorizationResponses(String after, OutputStream outputStream) {
+        stream(AUTHORIZATION_RESPONSES_SQL + (after == null ? "" : " WHERE message_id > ?") + " ORDER BY message_id", after, TableStreamer::mapAuthorizationResponse, outputStream);
+    }
+
+    private <T> void stream(String sql, Object after, RowMapper<T> rowMapper, OutputStream outputStream) {
+        Object[] args = after == null ? new Object[0] : new Object[]{after};
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+            int[] rows = {0};
+            readOnlyTransactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(sql, resultSet -> {
+                write(generator, rowMapper.mapRow(resultSet, rows[0]));
+                if (++rows[0] % fetchSize == 0)
+                    flush(generator);
+            }, args));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void write(JsonGenerator generator, Object row) {
+        try {
+            objectWriter.writeValue(generator, row);
+            generator.writeRaw('\n');
+        } catch (IOException ex) {
+            // the client went away, stop reading the cursor
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void flush(JsonGenerator generator) {
+        try {
+            generator.flush();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static User mapUser(ResultSet resultSet, int rowNum) throws SQLException {
+        User user = new User();
+        user.setId(resultSet.getObject("id", UUID.class));
+        user.setCurrency(resultSet.getString("currency"));
+        user.setBalance(resultSet.getLong("balance_minor"));
+        user.setCreatedAt(resultSet.getObject("created_at", LocalDateTime.class));
+        return user;
+    }
+
+    private static AuthorizationResponse mapAuthorizationResponse(ResultSet resultSet, int rowNum) throws SQLException {
+        Amount balance = new Amount(resultSet.getString("amount"), resultSet.getString("currency"), resultSet.getString("debit_or_credit"));
+        return new AuthorizationResponse(resultSet.getString("message_id"), resultSet.getString("user_id"), resultSet.getString("response_code"), balance);
+    }
+}
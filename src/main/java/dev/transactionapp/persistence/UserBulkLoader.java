@@ -0,0 +1,352 @@
+package dev.transactionapp.persistence;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.transactionapp.entity.BulkUserError;
+import dev.transactionapp.entity.BulkUserSummary;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.Currency;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.routing.UserRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates users in bulk from a CSV or NDJSON body, streamed row by row, see `POST /user/bulk`.
+ *
+ * Here's a breakdown of the steps involved:
+ *  1. Reads the body one line at a time. A CSV line is `currency,balance` (a `currency,balance` header line is skipped),
+ *     an NDJSON line a JSON object with the same fields as `POST /user`. Blank lines are skipped.
+ *  2. Validates every row: the currency must be one of `Currency`, the balance a valid amount. A rejected row is
+ *     counted, the first `maxReportedErrors` with their line number and reason, and the load goes on.
+ *  3. Gives every valid row its ID up front, picked by the `userRouter` like `POST /user` does, and keeps it in a chunk
+ *     of at most `commitInterval` rows, held in plain arrays reused from one chunk to the next.
+ *  4. Inserts a full chunk with plain JDBC, in batches of `batchSize` rows, and appends the creation of every user to
+ *     the `transactionJournal`, like `POST /user` does. With the IDs assigned by the application, every insert is the
+ *     same statement and nothing is read back.
+ *  5. Appends the IDs of the chunk to the batch's IDs file, 16 bytes per ID, and flushes it before the chunk commits
+ *     in one transaction. The journal records are pending until then.
+ *
+ * **Memory:** Only the current line and one chunk are held, whatever the size of the body. The body isn't read while
+ * a chunk is inserted, so no connection is held while waiting for the client.
+ *
+ * **Failures:** If a chunk can't be inserted or committed, the load stops: its IDs are cut off the IDs file, the users of
+ * the previous chunks stay committed and listed in it, and the summary says why it stopped. If the process dies while
+ * a chunk commits, the IDs file may list users that were never created, but it never misses a created one.
+ *
+ * **Retention:** Every load first deletes the IDs files older than `transaction.provisioning.retention`, so the
+ * directory only holds the loads of that period.
+ *
+ * The `AccountMetadataCache` isn't invalidated: the IDs are new, so none of them can be cached as unknown.
+ */
+@Slf4j
+@Lazy
+@Component
+public class UserBulkLoader {
+
+    public enum Format {
+        CSV,
+        NDJSON
+    }
+
+    private static final String INSERT_SQL = "INSERT INTO users (id, currency, balance_minor, created_at, version) VALUES (?, ?, ?, ?, 0)";
+    private static final String CSV_HEADER = "currency,balance";
+    private static final String IDS_FILE_SUFFIX = ".ids";
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader userReader;
+    private final UserRouter userRouter;
+    private final TransactionJournal transactionJournal;
+    private final int batchSize;
+    private final int commitInterval;
+    private final int maxReportedErrors;
+    private final Path directory;
+    private final Duration retention;
+
+    public UserBulkLoader(DataSource dataSource,
+                          PlatformTransactionManager transactionManager,
+                          ObjectMapper objectMapper,
+                          UserRouter userRouter,
+                          TransactionJournal transactionJournal,
+                          @Value("${transaction.provisioning.batch-size:1000}") int batchSize,
+                          @Value("${transaction.provisioning.commit-interval:10000}") int commitInterval,
+                          @Value("${transaction.provisioning.max-reported-errors:100}") int maxReportedErrors,
+                          @Value("${transaction.provisioning.directory:./provisioning}") String directory,
+                          @Value("${transaction.provisioning.retention:7d}") Duration retention) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.userReader = objectMapper.readerFor(User.class);
+        this.userRouter = userRouter;
+        this.transactionJournal = transactionJournal;
+        this.batchSize = batchSize;
+        this.commitInterval = Math.max(batchSize, commitInterval);
+        this.maxReportedErrors = maxReportedErrors;
+        this.directory = Path.of(directory);
+        this.retention = retention;
+    }
+
+    /**
+     * Reads the whole body and creates a user for every valid row.
+     *
+     * @param body The request body, UTF-8.
+     * @param format How the rows are written.
+     * @return The counts, the first rejected rows and the path of the created IDs.
+     * @throws UncheckedIOException if the body can't be read (the client went away) or the IDs file can't be written.
+     */
+    public BulkUserSummary load(InputStream body, Format format) {
+        long started = System.nanoTime();
+        UUID batchId = UUID.randomUUID();
+        Chunk chunk = new Chunk(commitInterval);
+        List<BulkUserError> errors = new ArrayList<>();
+        long created = 0;
+        long rejected = 0;
+        String aborted = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8), 1 << 16);
+             FileChannel idsChannel = FileChannel.open(createIdsFile(batchId), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+             DataOutputStream ids = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(idsChannel), 1 << 16))) {
+            long lineNumber = 0;
+            boolean first = true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank())
+                    continue;
+                if (first && format == Format.CSV && line.replace(" ", "").equalsIgnoreCase(CSV_HEADER)) {
+                    first = false;
+                    continue;
+                }
+                first = false;
+                String error = format == Format.CSV ? parseCsv(line, chunk) : parseNdjson(line, chunk);
+                if (error != null) {
+                    if (rejected++ < maxReportedErrors)
+                        errors.add(new BulkUserError(lineNumber, error));
+                    continue;
+                }
+                if (chunk.size == commitInterval) {
+                    int inserted = chunk.size;
+                    aborted = insert(chunk, batchId, lineNumber, ids, idsChannel, created);
+                    if (aborted != null)
+                        break;
+                    created += inserted;
+                }
+            }
+            if (aborted == null && chunk.size > 0) {
+                int inserted = chunk.size;
+                aborted = insert(chunk, batchId, lineNumber, ids, idsChannel, created);
+                if (aborted == null)
+                    created += inserted;
+            }
+        } catch (IOException ex) {
+            log.warn("Bulk load {} stopped after {} users: {}", batchId, created, ex.getMessage());
+            throw new UncheckedIOException(ex);
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        long usersPerSecond = elapsedNanos == 0 ? 0 : created * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        log.info("Bulk load {}: {} users created, {} rows rejected in {} ms ({} users/s)", batchId, created, rejected,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), usersPerSecond);
+        return new BulkUserSummary(batchId, created, rejected, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), usersPerSecond,
+                "/user/bulk/" + batchId + "/ids", errors, aborted);
+    }
+
+    /**
+     * @return The IDs file of a bulk load run by this node, null if there's none.
+     */
+    public Path idsFile(UUID batchId) {
+        Path file = directory.resolve(batchId + IDS_FILE_SUFFIX);
+        return Files.isRegularFile(file) ? file : null;
+    }
+
+    private Path createIdsFile(UUID batchId) throws IOException {
+        Files.createDirectories(directory);
+        purgeExpiredIdsFiles();
+        return directory.resolve(batchId + IDS_FILE_SUFFIX);
+    }
+
+    /**
+     * Deletes the IDs files last written more than `retention` ago. A file that can't be deleted is left for the next load.
+     */
+    void purgeExpiredIdsFiles() throws IOException {
+        Instant expiry = Instant.now().minus(retention);
+        int purged = 0;
+        try (DirectoryStream<Path> idsFiles = Files.newDirectoryStream(directory, "*" + IDS_FILE_SUFFIX)) {
+            for (Path idsFile : idsFiles) {
+                try {
+                    if (Files.getLastModifiedTime(idsFile).toInstant().isBefore(expiry) && Files.deleteIfExists(idsFile))
+                        purged++;
+                } catch (IOException ex) {
+                    log.warn("Failed to purge the bulk load IDs file {}: {}", idsFile, ex.getMessage());
+                }
+            }
+        }
+        if (purged > 0)
+            log.info("Purged {} bulk load IDs files older than {}", purged, retention);
+    }
+
+    /**
+     * Inserts the chunk, in JDBC batches of `batchSize` rows, journals the created users and writes their IDs, then
+     * commits. The chunk is empty afterwards.
+     *
+     * @param committedIds The number of IDs of the previous chunks, where the IDs file is cut back to if the chunk fails.
+     * @return Null if the chunk was committed, otherwise why it wasn't.
+     */
+    private String insert(Chunk chunk, UUID batchId, long lineNumber, DataOutputStream ids, FileChannel idsChannel, long committedIds) throws IOException {
+        LocalDateTime createdAt = LocalDateTime.now();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int offset = 0; offset < chunk.size; offset += batchSize)
+                    jdbcTemplate.batchUpdate(INSERT_SQL, chunk.batch(offset, Math.min(batchSize, chunk.size - offset), Timestamp.valueOf(createdAt)));
+                chunk.appendCreatedTo(transactionJournal, createdAt);
+                try {
+                    chunk.writeIdsTo(ids);
+                    ids.flush();
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            return null;
+        } catch (DataAccessException ex) {
+            log.error("Bulk load {} failed to insert the {} users read up to line {}", batchId, chunk.size, lineNumber, ex);
+            idsChannel.truncate(committedIds * 16);
+            return String.format("Failed to insert the users read up to line %d: %s", lineNumber, ex.getMostSpecificCause().getMessage());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } finally {
+            chunk.size = 0;
+        }
+    }
+
+    private String parseCsv(String line, Chunk chunk) {
+        int comma = line.indexOf(',');
+        if (comma < 0 || line.indexOf(',', comma + 1) >= 0)
+            return "Expected 2 columns: currency,balance";
+        return add(chunk, unquote(line.substring(0, comma)), unquote(line.substring(comma + 1)));
+    }
+
+    private String parseNdjson(String line, Chunk chunk) {
+        User user;
+        try {
+            user = userReader.readValue(line);
+        } catch (JsonProcessingException ex) {
+            return "Not a JSON user: " + ex.getOriginalMessage();
+        }
+        if (user == null)
+            return "Not a JSON user";
+        Currency currency = currency(user.getCurrency());
+        if (currency == null)
+            return "Unsupported currency: " + user.getCurrency();
+        chunk.add(userRouter.newUserId(), currency.name(), user.getBalance());
+        return null;
+    }
+
+    private String add(Chunk chunk, String currencyText, String balanceText) {
+        Currency currency = currency(currencyText);
+        if (currency == null)
+            return "Unsupported currency: " + currencyText;
+        long balance = Money.tryParse(balanceText);
+        if (balance == Money.INVALID)
+            return "Invalid balance: " + balanceText;
+        chunk.add(userRouter.newUserId(), currency.name(), balance);
+        return null;
+    }
+
+    private static Currency currency(String text) {
+        if (text == null)
+            return null;
+        for (Currency currency : CURRENCIES)
+            if (currency.name().equals(text))
+                return currency;
+        return null;
+    }
+
+    private static String unquote(String field) {
+        String trimmed = field.trim();
+        if (trimmed.length() >= 2 && trimmed.charAt(0) == '"' && trimmed.charAt(trimmed.length() - 1) == '"')
+            return trimmed.substring(1, trimmed.length() - 1);
+        return trimmed;
+    }
+
+    /**
+     * The rows read since the last commit, as parallel arrays. The currencies are the `Currency` constants' names,
+     * so no row keeps its line alive.
+     */
+    private static final class Chunk {
+
+        private final UUID[] ids;
+        private final String[] currencies;
+        private final long[] balances;
+        private int size;
+
+        Chunk(int capacity) {
+            this.ids = new UUID[capacity];
+            this.currencies = new String[capacity];
+            this.balances = new long[capacity];
+        }
+
+        void add(UUID id, String currency, long balance) {
+            ids[size] = id;
+            currencies[size] = currency;
+            balances[size] = balance;
+            size++;
+        }
+
+        BatchPreparedStatementSetter batch(int offset, int length, Timestamp createdAt) {
+            return new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setObject(1, ids[offset + i]);
+                    ps.setString(2, currencies[offset + i]);
+                    ps.setLong(3, balances[offset + i]);
+                    ps.setTimestamp(4, createdAt);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return length;
+                }
+            };
+        }
+
+        void appendCreatedTo(TransactionJournal transactionJournal, LocalDateTime createdAt) {
+            for (int i = 0; i < size; i++)
+                transactionJournal.appendCreated(ids[i], currencies[i], balances[i], createdAt);
+        }
+
+        void writeIdsTo(DataOutputStream out) throws IOException {
+            for (int i = 0; i < size; i++) {
+                out.writeLong(ids[i].getMostSignificantBits());
+                out.writeLong(ids[i].getLeastSignificantBits());
+            }
+        }
+    }
+}
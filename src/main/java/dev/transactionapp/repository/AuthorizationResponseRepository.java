@@ -1,7 +1,14 @@
 package dev.transactionapp.repository;
 
 import dev.transactionapp.entity.AuthorizationResponse;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
+
 public interface AuthorizationResponseRepository extends JpaRepository<AuthorizationResponse, String> {
+
+    List<AuthorizationResponse> findAllByOrderByMessageIdAsc(Pageable pageable);
+
+    List<AuthorizationResponse> findByMessageIdGreaterThanOrderByMessageIdAsc(String after, Pageable pageable);
 }
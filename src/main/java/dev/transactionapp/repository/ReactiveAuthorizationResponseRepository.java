@@ -0,0 +1,27 @@
+package dev.transactionapp.repository;
+
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.AuthorizationResponseRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC access to the `authorization_responses` table for the reactive stack.
+ */
+public interface ReactiveAuthorizationResponseRepository extends R2dbcRepository<AuthorizationResponseRow, String> {
+
+    @Modifying
+    @Query("INSERT INTO authorization_responses (message_id, user_id, response_code, amount, currency, debit_or_credit) VALUES (:messageId, :userId, :responseCode, :amount, :currency, :debitOrCredit)")
+    Mono<Integer> insert(String messageId, String userId, String responseCode, String amount, String currency, String debitOrCredit);
+
+    default Mono<Integer> insert(AuthorizationResponse authorizationResponse) {
+        return insert(authorizationResponse.getMessageId(),
+                authorizationResponse.getUserId(),
+                authorizationResponse.getResponseCode(),
+                authorizationResponse.getBalance().getAmount(),
+                authorizationResponse.getBalance().getCurrency(),
+                authorizationResponse.getBalance().getDebitOrCredit());
+    }
+}
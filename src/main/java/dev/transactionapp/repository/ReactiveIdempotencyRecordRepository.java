@@ -0,0 +1,31 @@
+package dev.transactionapp.repository;
+
+import dev.transactionapp.entity.IdempotencyRecord;
+import dev.transactionapp.entity.IdempotencyRecordRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+
+/**
+ * R2DBC access to the `idempotency_records` table for the reactive stack.
+ */
+public interface ReactiveIdempotencyRecordRepository extends R2dbcRepository<IdempotencyRecordRow, String> {
+
+    default Mono<IdempotencyRecord> findByMessageId(String messageId) {
+        return findRowByMessageId(messageId).map(IdempotencyRecordRow::toIdempotencyRecord);
+    }
+
+    @Query("SELECT message_id, message_type, user_id, amount, response, created_at FROM idempotency_records WHERE message_id = :messageId")
+    Mono<IdempotencyRecordRow> findRowByMessageId(String messageId);
+
+    @Modifying
+    @Query("INSERT INTO idempotency_records (message_id, message_type, user_id, amount, response, created_at) VALUES (:messageId, :messageType, :userId, :amount, :response, :createdAt)")
+    Mono<Integer> insert(String messageId, String messageType, String userId, long amount, byte[] response, LocalDateTime createdAt);
+
+    default Mono<Integer> insert(IdempotencyRecord record) {
+        return insert(record.getMessageId(), record.getMessageType().name(), record.getUserId(), record.getAmount(), record.getResponse(), record.getCreatedAt());
+    }
+}
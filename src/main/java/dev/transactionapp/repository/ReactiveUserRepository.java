@@ -0,0 +1,32 @@
+package dev.transactionapp.repository;
+
+import dev.transactionapp.entity.User;
+import dev.transactionapp.entity.UserRow;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * R2DBC access to the `users` table for the reactive stack. The table is created and mapped by JPA,
+ * so the queries are written out against its columns and read into `UserRow`.
+ */
+public interface ReactiveUserRepository extends R2dbcRepository<UserRow, UUID> {
+
+    /**
+     * Loads the user with a write lock held until the surrounding reactive transaction ends,
+     * the counterpart of `UserRepository.findByIdForUpdate`.
+     */
+    default Mono<User> findByIdForUpdate(UUID userId) {
+        return lockById(userId).map(UserRow::toUser);
+    }
+
+    @Query("SELECT id, currency, balance_minor, created_at FROM users WHERE id = :userId FOR UPDATE")
+    Mono<UserRow> lockById(UUID userId);
+
+    @Modifying
+    @Query("UPDATE users SET balance_minor = :balance, version = version + 1 WHERE id = :userId")
+    Mono<Integer> updateBalance(UUID userId, long balance);
+}
@@ -2,15 +2,32 @@ package dev.transactionapp.repository;
 
 import dev.transactionapp.entity.User;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface UserRepository extends JpaRepository<User, UUID> {
 
-    @Override
+    /**
+     * Loads the user with a write lock held until the surrounding transaction ends. A plain `findById` reads the user
+     * without a lock, relying on its `@Version` for updates, see `UserLocking`.
+     */
     @Lock(LockModeType.PESSIMISTIC_WRITE)
-    Optional<User> findById(UUID userId);
+    @Query("SELECT u FROM User u WHERE u.id = :userId")
+    Optional<User> findByIdForUpdate(UUID userId);
+
+    /**
+     * Reads only the user's currency, without a lock, see `AccountMetadataCache`.
+     */
+    @Query("SELECT u.currency FROM User u WHERE u.id = :userId")
+    Optional<String> findCurrencyById(UUID userId);
+
+    List<User> findAllByOrderByIdAsc(Pageable pageable);
+
+    List<User> findByIdGreaterThanOrderByIdAsc(UUID after, Pageable pageable);
 }
@@ -0,0 +1,89 @@
+package dev.transactionapp.routing;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.function.LongSupplier;
+
+/**
+ * Authenticates the requests forwarded between the nodes of the cluster, so a client can't pass itself off as a node by
+ * sending the `X-Transaction-Forwarded-By` header with a member's URL (member URLs aren't secret).
+ *
+ * **Signature:**
+ *  - An HMAC-SHA256, keyed with the `transaction.cluster.secret` every node shares, over the method, the path, the
+ *    forwarding node, the time of the forward (epoch milliseconds) and the body of the request.
+ *  - A signature older (or further in the future) than `transaction.cluster.signature-max-age` is refused, so a
+ *    captured request can't be replayed later; within that window a replay is answered by the idempotency store.
+ *
+ * Without a secret (clustering disabled) nothing is ever verified.
+ */
+public class ForwardSignature {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final long maxAgeMillis;
+    private final LongSupplier clock;
+
+    public ForwardSignature(String secret, Duration maxAge, LongSupplier clock) {
+        this.key = secret.isBlank() ? null : new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        this.maxAgeMillis = maxAge.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * @return The current time, to send with the signature.
+     */
+    public long now() {
+        return clock.getAsLong();
+    }
+
+    /**
+     * @param method The HTTP method, e.g. `PUT`.
+     * @param path The raw (encoded) path of the request, as the receiving node sees it.
+     * @param forwardedBy The URL of the forwarding node.
+     * @param timestamp The time of the forward, see `now`.
+     * @param body The body sent.
+     * @return The signature, hex-encoded.
+     * @throws IllegalStateException if there is no secret.
+     */
+    public String sign(String method, String path, String forwardedBy, long timestamp, byte[] body) {
+        if (key == null)
+            throw new IllegalStateException("transaction.cluster.secret is required to forward requests");
+        return HexFormat.of().formatHex(mac(method, path, forwardedBy, timestamp, body));
+    }
+
+    /**
+     * @return Whether the signature was made with the cluster's secret over this very request, within the max age.
+     */
+    public boolean verify(String method, String path, String forwardedBy, String timestamp, byte[] body, String signature) {
+        if (key == null || forwardedBy == null || timestamp == null || signature == null)
+            return false;
+        long sentAt;
+        byte[] expected;
+        try {
+            sentAt = Long.parseLong(timestamp);
+            expected = HexFormat.of().parseHex(signature);
+        } catch (IllegalArgumentException ex) {
+            return false;
+        }
+        if (Math.abs(now() - sentAt) > maxAgeMillis)
+            return false;
+        return MessageDigest.isEqual(expected, mac(method, path, forwardedBy, sentAt, body));
+    }
+
+    private byte[] mac(String method, String path, String forwardedBy, long timestamp, byte[] body) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            mac.update((method + "\n" + path + "\n" + forwardedBy + "\n" + timestamp + "\n").getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal(body);
+        } catch (GeneralSecurityException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
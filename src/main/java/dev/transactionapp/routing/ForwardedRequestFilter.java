@@ -0,0 +1,130 @@
+package dev.transactionapp.routing;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Strips the `X-Transaction-Forwarded-By` header from every request whose `ForwardSignature` doesn't check out, before
+ * it reaches a controller: the request is then routed like any other client request instead of being processed by a
+ * node that may not own its user.
+ *
+ * Only requests carrying the header are filtered; their body is read once to be verified, and replayed to the controller.
+ */
+@Slf4j
+public class ForwardedRequestFilter extends OncePerRequestFilter {
+
+    private final ForwardSignature forwardSignature;
+
+    public ForwardedRequestFilter(ForwardSignature forwardSignature) {
+        this.forwardSignature = forwardSignature;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(RequestForwarder.FORWARDED_HEADER) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        byte[] body = request.getInputStream().readAllBytes();
+        String forwardedBy = request.getHeader(RequestForwarder.FORWARDED_HEADER);
+        boolean verified = forwardSignature.verify(request.getMethod(), request.getRequestURI(), forwardedBy,
+                request.getHeader(RequestForwarder.FORWARDED_AT_HEADER), body, request.getHeader(RequestForwarder.SIGNATURE_HEADER));
+        if (!verified)
+            log.warn("Ignoring {}: {} of a request to {} from {}, its signature doesn't match",
+                    RequestForwarder.FORWARDED_HEADER, forwardedBy, request.getRequestURI(), request.getRemoteAddr());
+        filterChain.doFilter(new ForwardedRequest(request, body, verified), response);
+    }
+
+    /**
+     * The request with its body read, without the forwarded header unless it was verified.
+     */
+    private static final class ForwardedRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+        private final boolean verified;
+
+        ForwardedRequest(HttpServletRequest request, byte[] body, boolean verified) {
+            super(request);
+            this.body = body;
+            this.verified = verified;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    return in.read(bytes, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding == null ? StandardCharsets.UTF_8 : Charset.forName(encoding);
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return stripped(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return stripped(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            List<String> names = Collections.list(super.getHeaderNames());
+            names.removeIf(this::stripped);
+            return Collections.enumeration(names);
+        }
+
+        private boolean stripped(String name) {
+            return !verified && RequestForwarder.FORWARDED_HEADER.equalsIgnoreCase(name);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package dev.transactionapp.routing;
+
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Maps user IDs onto the nodes of the cluster with consistent hashing.
+ *
+ * Every node is placed at `virtualNodes` points of a 64-bit ring (murmur3 of `node#i`), and a user belongs to the first
+ * point at or after the hash of its ID. Spreading a node over many points evens out the share of users each node owns,
+ * and adding or removing a node only moves the users of the points it takes or leaves, about 1/n of them.
+ * Immutable, built once from the membership the node starts with (see `UserRouter`).
+ */
+public final class HashRing {
+
+    private final List<String> nodes;
+    private final NavigableMap<Long, String> points = new TreeMap<>();
+
+    public HashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty())
+            throw new IllegalArgumentException("A hash ring needs at least one node");
+        if (virtualNodes < 1)
+            throw new IllegalArgumentException("transaction.cluster.virtual-nodes must be at least 1");
+        this.nodes = List.copyOf(nodes);
+        for (String node : this.nodes) {
+            for (int i = 0; i < virtualNodes; i++)
+                points.put(Hashing.murmur3_128().hashString(node + "#" + i, StandardCharsets.UTF_8).asLong(), node);
+        }
+    }
+
+    /**
+     * @param userId The user to look up.
+     * @return The node owning the user.
+     */
+    public String ownerOf(UUID userId) {
+        long hash = Hashing.murmur3_128().newHasher()
+                .putLong(userId.getMostSignificantBits())
+                .putLong(userId.getLeastSignificantBits())
+                .hash().asLong();
+        Map.Entry<Long, String> point = points.ceilingEntry(hash);
+        return (point == null ? points.firstEntry() : point).getValue();
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+}
@@ -0,0 +1,240 @@
+package dev.transactionapp.routing;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import dev.transactionapp.entity.BatchItemError;
+import dev.transactionapp.exception.NodeUnavailableException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Sends the requests of users owned by another node to their owner, and relays the owner's response to the client.
+ *
+ * **Forwarding:**
+ *  - One `HttpClient` (HTTP/1.1) is shared by all requests; it keeps the connections to the other nodes open and
+ *    reuses them, so a forwarded request doesn't pay for a new TCP connection.
+ *  - Forwarded requests carry the `X-Transaction-Forwarded-By` header with this node's URL, and are always processed by
+ *    the node receiving them, so nodes with different views of the membership can't bounce a request back and forth.
+ *  - They're signed with the cluster's secret (`X-Transaction-Forwarded-At`, `X-Transaction-Forward-Signature`, see
+ *    `ForwardSignature`): the header is only honored when the signature checks out (`ForwardedRequestFilter`) and
+ *    names a member (`UserRouter.isMember`), never when a client sets it.
+ *  - A node that can't be connected to fails the request with a `NodeUnavailableException`: it never saw the request.
+ *  - A node not answering within `transaction.cluster.forward-timeout` (or answering a batch with garbage) may have
+ *    processed the request already, so the `NodeUnavailableException` says its outcome is unknown: the client must retry
+ *    with the same messageId, which the owner replays from its idempotency store instead of applying it twice.
+ *  - Forwards are timed in `transaction.routing.forward`, tagged by the `node` they were sent to.
+ */
+@Slf4j
+@Component
+public class RequestForwarder {
+
+    public static final String FORWARDED_HEADER = "X-Transaction-Forwarded-By";
+    public static final String FORWARDED_AT_HEADER = "X-Transaction-Forwarded-At";
+    public static final String SIGNATURE_HEADER = "X-Transaction-Forward-Signature";
+
+    private final UserRouter userRouter;
+    private final ForwardSignature forwardSignature;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader batchResultsReader;
+    private final TransactionMetrics transactionMetrics;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    public RequestForwarder(UserRouter userRouter,
+                            ForwardSignature forwardSignature,
+                            ObjectMapper objectMapper,
+                            TransactionMetrics transactionMetrics,
+                            @Value("${transaction.cluster.connect-timeout:2s}") Duration connectTimeout,
+                            @Value("${transaction.cluster.forward-timeout:10s}") Duration timeout) {
+        this.userRouter = userRouter;
+        this.forwardSignature = forwardSignature;
+        this.objectMapper = objectMapper;
+        // amounts are relayed with their scale (100.00 stays 100.00)
+        this.batchResultsReader = objectMapper.readerFor(new TypeReference<List<Object>>() {})
+                .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+        this.transactionMetrics = transactionMetrics;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(connectTimeout)
+                .build();
+    }
+
+    /**
+     * Sends a PUT request to the node owning its user and returns the owner's response as is.
+     *
+     * @param owner The base URL of the owner.
+     * @param path The path of the request, e.g. `/load/{messageId}`.
+     * @param body The request, serialized to JSON again.
+     * @return ResponseEntity with the status and body of the owner's response.
+     * @throws NodeUnavailableException if the owner couldn't be reached, or didn't answer in time (outcome unknown).
+     */
+    public ResponseEntity<byte[]> forward(String owner, String path, Object body) throws NodeUnavailableException {
+        Timer.Sample sample = Timer.start();
+        try {
+            HttpResponse<byte[]> response = httpClient.send(request(owner, path, "PUT", body), HttpResponse.BodyHandlers.ofByteArray());
+            ResponseEntity.BodyBuilder relayed = ResponseEntity.status(response.statusCode());
+            response.headers().firstValue("Content-Type").map(MediaType::parseMediaType).ifPresent(relayed::contentType);
+            return relayed.body(response.body());
+        } catch (IOException ex) {
+            throw failed(owner, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw failed(owner, ex);
+        } finally {
+            sample.stop(transactionMetrics.forward(owner));
+        }
+    }
+
+    /**
+     * Processes a batch across the cluster. Here's a breakdown of the steps involved:
+     *
+     * **Routing:**
+     *  - The entries are grouped by the node owning their user. Each group owned by another node is posted to its owner's
+     *    batch endpoint, all of them concurrently.
+     *  - The entries owned by this node, in their original order, are processed by `local` meanwhile.
+     *
+     * **Results:**
+     *  - The results are merged back in the order of the batch.
+     *  - The entries of a node that couldn't be reached get a SERVICE_UNAVAILABLE (503) `BatchItemError` each, the rest
+     *    of the batch isn't affected. When the batch was sent but its results never came back (timeout, error status,
+     *    unreadable body) the owner may have committed the entries, so their error says the outcome is unknown and to
+     *    retry with the same messageId.
+     *
+     * @param entries The entries of the batch.
+     * @param userIdOf Gives the user ID of an entry.
+     * @param messageIdOf Gives the messageId of an entry, for its error.
+     * @param path The batch endpoint, e.g. `/load/batch`.
+     * @param local Processes the entries owned by this node, one result per entry.
+     * @return One result per entry, in the order of the batch.
+     */
+    public <T> List<Object> processBatch(List<T> entries, Function<T, String> userIdOf, Function<T, String> messageIdOf,
+                                         String path, Function<List<T>, List<Object>> local) {
+        Map<String, List<Integer>> remoteEntries = new LinkedHashMap<>();
+        List<Integer> localEntries = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            T entry = entries.get(i);
+            Optional<String> owner = userRouter.remoteOwner(entry == null ? null : userIdOf.apply(entry));
+            if (owner.isPresent())
+                remoteEntries.computeIfAbsent(owner.get(), node -> new ArrayList<>()).add(i);
+            else
+                localEntries.add(i);
+        }
+        if (remoteEntries.isEmpty())
+            return local.apply(entries);
+
+        Map<String, CompletableFuture<List<Object>>> forwarded = new LinkedHashMap<>();
+        remoteEntries.forEach((owner, indexes) -> forwarded.put(owner, forwardBatch(owner, path, indexes.stream().map(entries::get).toList())));
+        Object[] results = new Object[entries.size()];
+        if (!localEntries.isEmpty()) {
+            List<Object> localResults = local.apply(localEntries.stream().map(entries::get).toList());
+            for (int i = 0; i < localEntries.size(); i++)
+                results[localEntries.get(i)] = localResults.get(i);
+        }
+        remoteEntries.forEach((owner, indexes) -> {
+            List<Object> remoteResults = null;
+            String failure = null;
+            try {
+                remoteResults = forwarded.get(owner).join();
+                if (remoteResults == null || remoteResults.size() != indexes.size()) {
+                    log.warn("Batch of {} entries forwarded to {} got {} results", indexes.size(), owner, remoteResults == null ? 0 : remoteResults.size());
+                    failure = outcomeUnknownMessage(owner);
+                }
+            } catch (CompletionException ex) {
+                log.warn("Batch of {} entries forwarded to {} failed", indexes.size(), owner, ex.getCause());
+                failure = failureMessage(owner, ex.getCause());
+            }
+            for (int i = 0; i < indexes.size(); i++) {
+                int index = indexes.get(i);
+                results[index] = failure == null
+                        ? remoteResults.get(i)
+                        : new BatchItemError(messageIdOf.apply(entries.get(index)), failure, HttpStatus.SERVICE_UNAVAILABLE.toString());
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    private CompletableFuture<List<Object>> forwardBatch(String owner, String path, List<?> entries) {
+        Timer.Sample sample = Timer.start();
+        return httpClient.sendAsync(request(owner, path, "POST", entries), HttpResponse.BodyHandlers.ofByteArray())
+                .thenApply(response -> {
+                    if (response.statusCode() != HttpStatus.OK.value())
+                        throw new NodeUnavailableException(String.format("%s answered a forwarded batch with status %d", owner, response.statusCode()));
+                    try {
+                        return batchResultsReader.<List<Object>>readValue(response.body());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                })
+                .whenComplete((results, ex) -> sample.stop(transactionMetrics.forward(owner)));
+    }
+
+    private HttpRequest request(String owner, String path, String method, Object body) {
+        URI uri = URI.create(owner + path);
+        byte[] bytes = bodyOf(body);
+        long forwardedAt = forwardSignature.now();
+        return HttpRequest.newBuilder(uri)
+                .timeout(timeout)
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .header(FORWARDED_HEADER, userRouter.self())
+                .header(FORWARDED_AT_HEADER, Long.toString(forwardedAt))
+                .header(SIGNATURE_HEADER, forwardSignature.sign(method, uri.getRawPath(), userRouter.self(), forwardedAt, bytes))
+                .method(method, HttpRequest.BodyPublishers.ofByteArray(bytes))
+                .build();
+    }
+
+    private byte[] bodyOf(Object body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static NodeUnavailableException failed(String owner, Exception cause) {
+        log.warn("Request forwarded to {} failed", owner, cause);
+        return new NodeUnavailableException(failureMessage(owner, cause));
+    }
+
+    /**
+     * @return Unavailable if the request never reached the owner (no connection), outcome unknown otherwise.
+     */
+    private static String failureMessage(String owner, Throwable cause) {
+        for (Throwable ex = cause; ex != null; ex = ex.getCause())
+            if (ex instanceof ConnectException || ex instanceof HttpConnectTimeoutException)
+                return String.format("Node %s owning the user is unavailable", owner);
+        return outcomeUnknownMessage(owner);
+    }
+
+    private static String outcomeUnknownMessage(String owner) {
+        return String.format("Node %s owning the user didn't answer, the outcome is unknown: retry with the same messageId", owner);
+    }
+}
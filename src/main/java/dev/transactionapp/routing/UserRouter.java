@@ -0,0 +1,156 @@
+package dev.transactionapp.routing;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Knows the members of the cluster and which of them owns each user, so every user's balance lives in the database
+ * of exactly one node.
+ *
+ * **Membership:**
+ *  - The nodes are the base URLs listed in `transaction.cluster.nodes`, or one per line (`#` starts a comment) in
+ *    `transaction.cluster.members-file`, read once at startup.
+ *  - `transaction.cluster.self` is this node's own URL, and must be one of the members.
+ *  - Users are mapped to the members with a `HashRing` of `transaction.cluster.virtual-nodes` points per member.
+ *  - The membership is fixed while the node runs: a user's balance only lives in its owner's database, so moving users
+ *    to another node would leave them without their rows. Resizing the cluster means draining it, moving the balances
+ *    of the users changing owner, and restarting every node with the new membership. The members file is still
+ *    checked every `transaction.cluster.refresh-interval-ms`, to report a change that isn't applied.
+ *
+ * With `transaction.cluster.enabled=false` (the default) this node owns every user.
+ */
+@Slf4j
+@Component
+public class UserRouter {
+
+    private final boolean enabled;
+    private final String self;
+    private final List<String> configuredNodes;
+    private final Path membersFile;
+    private final int virtualNodes;
+    private volatile HashRing ring;
+    private volatile FileTime membersModified;
+
+    public UserRouter(@Value("${transaction.cluster.enabled:false}") boolean enabled,
+                      @Value("${transaction.cluster.self:}") String self,
+                      @Value("${transaction.cluster.nodes:}") List<String> nodes,
+                      @Value("${transaction.cluster.members-file:}") String membersFile,
+                      @Value("${transaction.cluster.virtual-nodes:160}") int virtualNodes) {
+        this.enabled = enabled;
+        this.self = normalize(self);
+        this.configuredNodes = nodes.stream().map(UserRouter::normalize).filter(node -> !node.isEmpty()).toList();
+        this.membersFile = membersFile.isBlank() ? null : Path.of(membersFile);
+        this.virtualNodes = virtualNodes;
+        if (!enabled)
+            return;
+        if (this.membersFile == null && configuredNodes.isEmpty())
+            throw new IllegalArgumentException("transaction.cluster.nodes or transaction.cluster.members-file is required");
+        ring = ring(members());
+        log.info("Cluster of {} nodes, this node is {}", ring.nodes().size(), this.self);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String self() {
+        return self;
+    }
+
+    /**
+     * @param userId The user ID of a request, as sent by the client.
+     * @return The node owning the user, if it's another node. Empty if this node owns it, clustering is disabled or
+     * the ID isn't a valid UUID (the request is then rejected locally).
+     */
+    public Optional<String> remoteOwner(String userId) {
+        if (!enabled || userId == null)
+            return Optional.empty();
+        UUID id;
+        try {
+            id = UUID.fromString(userId);
+        } catch (IllegalArgumentException ex) {
+            return Optional.empty();
+        }
+        String owner = ring.ownerOf(id);
+        return owner.equals(self) ? Optional.empty() : Optional.of(owner);
+    }
+
+    /**
+     * @param node A node URL, e.g. the `X-Transaction-Forwarded-By` header of a request.
+     * @return Whether clustering is enabled and the node is one of the members.
+     */
+    public boolean isMember(String node) {
+        return enabled && node != null && ring.nodes().contains(normalize(node));
+    }
+
+    /**
+     * Picks the ID of a new user created on this node, among the IDs this node owns, so the user's requests are routed here.
+     * Each try has a chance of 1/n to be owned, so n tries are needed on average.
+     *
+     * @return A random UUID owned by this node.
+     */
+    public UUID newUserId() {
+        UUID id = UUID.randomUUID();
+        while (enabled && !ring.ownerOf(id).equals(self))
+            id = UUID.randomUUID();
+        return id;
+    }
+
+    /**
+     * Reports a change of the members file, without applying it (see the class comment): the nodes keep routing with the
+     * membership they started with until they are restarted.
+     */
+    @Scheduled(fixedDelayString = "${transaction.cluster.refresh-interval-ms:5000}")
+    public void checkMembership() {
+        if (!enabled || membersFile == null)
+            return;
+        try {
+            if (Files.getLastModifiedTime(membersFile).equals(membersModified))
+                return;
+            List<String> members = members();
+            if (!members.equals(ring.nodes()))
+                log.error("Cluster membership {} in {} is not applied while running, the nodes keep routing to {}: drain the cluster, " +
+                        "move the balances of the users changing owner and restart every node", members, membersFile, ring.nodes());
+        } catch (IOException | UncheckedIOException ex) {
+            log.warn("Could not check the cluster membership in {}", membersFile, ex);
+        }
+    }
+
+    private List<String> members() {
+        if (membersFile == null)
+            return configuredNodes;
+        try {
+            membersModified = Files.getLastModifiedTime(membersFile);
+            return Files.readAllLines(membersFile).stream()
+                    .map(line -> line.replaceFirst("#.*", ""))
+                    .map(UserRouter::normalize)
+                    .filter(node -> !node.isEmpty())
+                    .distinct()
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private HashRing ring(List<String> members) {
+        if (!members.contains(self))
+            throw new IllegalArgumentException(String.format("transaction.cluster.self (%s) must be one of the cluster nodes %s", self, members));
+        return new HashRing(members, virtualNodes);
+    }
+
+    private static String normalize(String node) {
+        String trimmed = node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -3,7 +3,25 @@ package dev.transactionapp.service;
 import dev.transactionapp.entity.AuthorizationRequest;
 import dev.transactionapp.entity.AuthorizationResponse;
 
+import dev.transactionapp.validator.Rejection;
+
+import java.util.List;
+
 public interface AuthorizeTransactionService {
     
      AuthorizationResponse authorizeTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest) throws RuntimeException;
+
+     /**
+      * Runs the checks a request must pass before it's processed, without throwing.
+      *
+      * @return Why the request is rejected, or null if it can be processed.
+      */
+     Rejection screen(String messageId, AuthorizationRequest authorizationRequest);
+
+     /**
+      * Same as `authorizeTransactionAndGetResponse`, for a request that passed `screen`: its checks aren't run again.
+      */
+     AuthorizationResponse authorizeScreenedTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest) throws RuntimeException;
+
+     List<Object> authorizeTransactionsAndGetResponses(List<AuthorizationRequest> authorizationRequests) throws RuntimeException;
 }
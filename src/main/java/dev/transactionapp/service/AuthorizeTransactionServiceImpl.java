@@ -1,46 +1,99 @@
 package dev.transactionapp.service;
 
+import dev.transactionapp.account.AccountMetadataCache;
+import dev.transactionapp.engine.BalanceDecision;
 import dev.transactionapp.entity.*;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
 import dev.transactionapp.enums.ResponseCode;
 import dev.transactionapp.exception.*;
-import dev.transactionapp.repository.AuthorizationResponseRepository;
-import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.locking.ConditionalBalanceUpdates;
+import dev.transactionapp.locking.RequestCoalescer;
+import dev.transactionapp.locking.UserLocking;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.persistence.AuthorizationResponseWriter;
+import dev.transactionapp.validator.ObjectsValidator;
+import dev.transactionapp.validator.Rejection;
 import dev.transactionapp.validator.RequestsValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.UUID;
+import java.util.*;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
 public class AuthorizeTransactionServiceImpl implements AuthorizeTransactionService{
 
     @Autowired
-    private AuthorizationResponseRepository authorizationResponseRepository;
+    private AuthorizationResponseWriter authorizationResponseWriter;
 
     @Autowired
-    private UserRepository userRepository;
+    private RequestsValidator requestsValidator;
 
     @Autowired
-    private RequestsValidator requestsValidator;
+    private ObjectsValidator<AuthorizationRequest> authorizationRequestValidator;
+
+    @Autowired
+    private UserLocking userLocking;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private ConditionalBalanceUpdates conditionalBalanceUpdates;
+
+    @Autowired
+    private AccountMetadataCache accountMetadataCache;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private TransactionJournal transactionJournal;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Autowired
+    private TransactionEventLog transactionEventLog;
 
     /**
      * Processes a request to authorize a transaction and returns a corresponding response.
      * Expects a DEBIT transaction type.
      * Here's a breakdown of the steps involved:
-     *  1. Validates the `AuthorizationRequest` object using the `requestsValidator` to ensure data integrity.
-     *  2. Retrieves user information from the repository to access their current balance.
-     *  3. Extracts the transaction amount from the `authorizationRequest` object.
-     *  4. **Checks user's balance for sufficiency:**
+     *  1. Runs the stateless checks of the `AuthorizationRequest` (messageId match, DEBIT type, UUID format)
+     *     using the `requestsValidator`, and checks the user exists and has the transaction currency against the
+     *     `accountMetadataCache`, before any lock or database connection is taken.
+     *  2. Opens the transaction and loads the user once, through the `requestCoalescer`, which may apply concurrent
+     *     requests of the same user in the same transaction, one after the other.
+     *     If the messageId was processed meanwhile (a concurrent retry committed first), its stored response is returned as-is.
+     *  3. Checks the user's currency against the transaction currency again, on the loaded user.
+     *  4. Extracts the transaction amount from the `authorizationRequest` object.
+     *  5. **Checks user's balance for sufficiency:**
      *      - Verifies if the user has enough funds to cover the requested transaction amount.
-     *  5. Prepares an `AuthorizationResponse` object based on the authorization decision (approved/denied).
-     *  6. **Updates user's balance upon authorization (within a transaction):**
-     *      - If the transaction is authorized, the user's balance is updated within a database transaction.
+     *  6. Prepares an `AuthorizationResponse` object based on the authorization decision (approved/denied).
+     *  7. **Updates user's balance upon authorization (within a transaction):**
+     *      - If the transaction is authorized, the user's balance is updated within a database transaction through `userLocking.saveBalance`,
+     *        flushed right away unless the user is locked.
      *      - This ensures either the entire update happens (debiting the amount) or none at all, preventing inconsistencies.
-     *  7. **Saves authorization response (failure scenario):**
-     *      - If authorization fails, the `AuthorizationResponse` object is saved to the repository for record-keeping.
+     *  8. **Saves authorization response (failure scenario):**
+     *      - If authorization fails, the user's version is claimed with `userLocking.confirmUnchanged`, so the decision is
+     *        checked against concurrent updates just like a balance update.
+     *      - The `AuthorizationResponse` object is then handed to the `authorizationResponseWriter` for record-keeping.
+     *      - It's inserted in a batch by a background writer once the transaction commits, so the user's lock isn't held across the insert.
+     *  9. Appends the decision and the resulting balance to the `transactionJournal`, while the user's row is held,
+     *     so the journal holds the balance changes in the order they were applied. The record is pending until the
+     *     transaction commits (a rolled back decision is never recovered), and the `transactionEventLog` is only written on commit.
+     *  10. Saves the response (approved or declined) to the `idempotencyStore`, so a retry of the message gets it replayed.
      *
      * @param messageId The unique identifier of the message received.
      * @param authorizationRequest The object containing user and transaction details for authorization.
@@ -48,59 +101,214 @@ public class AuthorizeTransactionServiceImpl implements AuthorizeTransactionServ
      * @throws RuntimeException If any unexpected error occurs during processing.
      *
      * **Lock Mechanism:**
-     * Pessimistic-Locking
-     *  - Pessimistic locking is used to ensure exclusive access to user data during fund loading.
-     *  - When calling `userRepository.findById(userId)` with `@Lock(LockModeType.PESSIMISTIC_WRITE)`, the database acquires a write lock on the user row identified by `userId`.
-     *  - This lock prevents other threads from reading or updating the same user data until the current transaction releases the lock.
-     *  - This guarantees that only one request can process fund authorization for a specific user at a time, preventing race conditions and maintaining data consistency.
+     * Adaptive Locking
+     *  - By default every user is loaded with the row lock (`transaction.locking.strategy=pessimistic`).
+     *  - With `transaction.locking.strategy=adaptive`, most users are read without a lock, and the balance update (or the decline's version claim) is checked against the user's `@Version`.
+     *    A conflicting update rolls the transaction back and `userLocking` runs steps 2 to 10 again on a fresh read.
+     *  - Users with frequent conflicts are loaded with `@Lock(LockModeType.PESSIMISTIC_WRITE)` instead, see `AdaptiveLockPolicy`,
+     *    so only one request processes fund authorization for such a user at a time.
+     *  - The user is loaded exactly once per attempt, so a lock is taken late and held only for the stateful part.
+     *  - Concurrent requests of a user are coalesced by the `requestCoalescer`: they're applied in arrival order against one
+     *    locked load of the user, with one balance UPDATE and one commit for all of them.
      *
-     * **Transactional Annotation:**
-     *  - This annotation guarantees that updating the user's balance (if authorized) and sending the response are treated as a single unit.
+     * Conditional SQL
+     *  - With `transaction.locking.conditional-sql=true` (H2 only), steps 2 to 7 are replaced by one conditional debit of
+     *    the `conditionalBalanceUpdates`: the database decides by updating the row, no user is loaded.
+     *  - The same statement returns the balance, so a decline costs no more than an approval, and holds the row until
+     *    commit. Concurrent retries of the message are held off by `idempotencyStore.processOnce`.
+     *
+     * **Transaction:**
+     *  - Steps 2 to 10 run inside one transaction, so updating the user's balance (if authorized) and preparing the response are treated as a single unit.
      *  - If any step fails, the entire transaction is rolled back, preventing partial updates or inconsistencies.
      *  - This maintains data integrity by ensuring all changes happen together or none at all.
      */
     @Override
-    @Transactional
     public AuthorizationResponse authorizeTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest) throws RuntimeException {
         log.debug("AuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse() initiated for messageId {}", messageId);
-        requestsValidator.checkAuthorizationRequestValidity(messageId, authorizationRequest);
-        AuthorizationResponse authorizationResponse = getResponse(authorizationRequest);
+        UUID userId = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.VALIDATION, () -> validate(messageId, authorizationRequest));
+        AuthorizationResponse authorizationResponse = authorize(messageId, authorizationRequest, userId);
         log.debug("AuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse() completed for messageId {}", messageId);
         return authorizationResponse;
     }
 
-    private AuthorizationResponse getResponse(AuthorizationRequest authorizationRequest) throws UserNotFoundException{
-        User user = fetchUser(authorizationRequest.getUserId());
-        double transactionAmount = parseTransactionAmount(authorizationRequest);
-        double currentBalance = user.getBalance();
+    /**
+     * Processes a request that passed `screen` like `authorizeTransactionAndGetResponse`, from step 2: `screen` already
+     * ran the checks of step 1, against the same `accountMetadataCache`.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param authorizationRequest The object containing user and transaction details for authorization, accepted by `screen`.
+     * @return The `AuthorizationResponse` object containing the authorization decision and user balance (if applicable).
+     * @throws RuntimeException If any unexpected error occurs during processing.
+     */
+    @Override
+    public AuthorizationResponse authorizeScreenedTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest) throws RuntimeException {
+        log.debug("AuthorizeTransactionServiceImpl.authorizeScreenedTransactionAndGetResponse() initiated for messageId {}", messageId);
+        AuthorizationResponse authorizationResponse = authorize(messageId, authorizationRequest, UUID.fromString(authorizationRequest.getUserId()));
+        log.debug("AuthorizeTransactionServiceImpl.authorizeScreenedTransactionAndGetResponse() completed for messageId {}", messageId);
+        return authorizationResponse;
+    }
+
+    private AuthorizationResponse authorize(String messageId, AuthorizationRequest authorizationRequest, UUID userId) {
+        AuthorizationResponse authorizationResponse;
+        try {
+            authorizationResponse = conditionalBalanceUpdates.isEnabled()
+                    ? idempotencyStore.processOnce(MessageType.AUTHORIZATION, messageId, authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class,
+                            () -> conditionalBalanceUpdates.inTransaction(() -> getConditionalResponse(userId, authorizationRequest)))
+                    : requestCoalescer.inTransaction(MessageType.AUTHORIZATION, userId, user -> getResponse(user, authorizationRequest));
+        } catch (DataIntegrityViolationException ex) {
+            // the same messageId was committed by a concurrent request for another user
+            throw new MessageIdAlreadyExistsException(String.format("message id: %s already exists", messageId));
+        }
+        return authorizationResponse;
+    }
+
+    /**
+     * Runs the checks of step 1 of `authorizeTransactionAndGetResponse` without throwing: the stateless checks, see
+     * `RequestsValidator.screenAuthorizationRequest`, then the user's existence and currency against the `accountMetadataCache`.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param authorizationRequest The object containing user and transaction details.
+     * @return Why the request is rejected, or null if it can be processed.
+     */
+    @Override
+    public Rejection screen(String messageId, AuthorizationRequest authorizationRequest) {
+        return transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.VALIDATION, () -> {
+            Rejection rejection = requestsValidator.screenAuthorizationRequest(messageId, authorizationRequest);
+            if (rejection != null)
+                return rejection;
+            UUID userId = UUID.fromString(authorizationRequest.getUserId());
+            String userCurrency = accountMetadataCache.findCurrency(userId);
+            if (userCurrency == null)
+                return Rejection.of(Rejection.Reason.USER_NOT_FOUND, userId.toString());
+            return requestsValidator.screenCurrencyMatch(userCurrency, authorizationRequest.getTransactionAmount().getCurrency());
+        });
+    }
+
+    /**
+     * Processes a batch of authorizations, reporting the outcome of every entry on its own.
+     * Here's a breakdown of the steps involved:
+     *  1. Validates every entry (bean validation, the stateless checks of `requestsValidator` and the `accountMetadataCache`) and looks up
+     *     replayed messageIds in the `idempotencyStore`. Those entries get their result right away.
+     *  2. Groups the remaining entries by userId, keeping the order they were sent in.
+     *  3. For every user, opens one transaction, loads and locks the user once and applies the user's entries in order,
+     *     exactly like `authorizeTransactionAndGetResponse` does for a single entry.
+     *
+     * @param authorizationRequests The entries of the batch.
+     * @return One result per entry, in the order of the batch: the `AuthorizationResponse`, or a `BatchItemError` if the entry failed.
+     *
+     * **Partial Failures:**
+     *  - An entry failing a check (e.g. currency mismatch) gets a `BatchItemError` and the other entries of its user are still applied.
+     *  - If the user's transaction itself fails (e.g. user not found), none of the user's entries are applied and all of them get the error.
+     */
+    @Override
+    public List<Object> authorizeTransactionsAndGetResponses(List<AuthorizationRequest> authorizationRequests) throws RuntimeException {
+        log.debug("AuthorizeTransactionServiceImpl.authorizeTransactionsAndGetResponses() initiated for {} entries", authorizationRequests.size());
+        Object[] results = new Object[authorizationRequests.size()];
+        Map<UUID, List<Integer>> entriesByUser = new LinkedHashMap<>();
+        for (int i = 0; i < authorizationRequests.size(); i++) {
+            AuthorizationRequest authorizationRequest = authorizationRequests.get(i);
+            Set<String> violations = authorizationRequestValidator.validate(authorizationRequest);
+            if (!violations.isEmpty()) {
+                results[i] = BatchResults.invalid(authorizationRequest.getMessageId(), violations.toString());
+                continue;
+            }
+            try {
+                UUID userId = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.VALIDATION, () -> validate(authorizationRequest.getMessageId(), authorizationRequest));
+                Optional<AuthorizationResponse> replay = idempotencyStore.findResponse(MessageType.AUTHORIZATION, authorizationRequest.getMessageId(), authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class);
+                if (replay.isPresent())
+                    results[i] = replay.get();
+                else
+                    entriesByUser.computeIfAbsent(userId, id -> new ArrayList<>()).add(i);
+            } catch (RuntimeException ex) {
+                results[i] = BatchResults.error(authorizationRequest.getMessageId(), ex);
+            }
+        }
+        entriesByUser.forEach((userId, entries) -> applyUserEntries(userId, entries, authorizationRequests, results));
+        log.debug("AuthorizeTransactionServiceImpl.authorizeTransactionsAndGetResponses() completed for {} entries across {} users", authorizationRequests.size(), entriesByUser.size());
+        return Arrays.asList(results);
+    }
+
+    private void applyUserEntries(UUID userId, List<Integer> entries, List<AuthorizationRequest> authorizationRequests, Object[] results) {
+        try {
+            userLocking.inLockedTransaction(MessageType.AUTHORIZATION, userId, user -> {
+                for (int entry : entries) {
+                    try {
+                        results[entry] = getResponse(user, authorizationRequests.get(entry));
+                    } catch (CurrencyNotMatchException | MessageIdAlreadyExistsException ex) {
+                        results[entry] = BatchResults.error(authorizationRequests.get(entry).getMessageId(), ex);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            for (int entry : entries)
+                results[entry] = BatchResults.error(authorizationRequests.get(entry).getMessageId(), ex);
+        }
+    }
+
+    private UUID validate(String messageId, AuthorizationRequest authorizationRequest) {
+        UUID userId = requestsValidator.checkAuthorizationRequestValidity(messageId, authorizationRequest);
+        requestsValidator.checkCurrencyMatch(accountMetadataCache.currencyOf(userId), authorizationRequest.getTransactionAmount().getCurrency());
+        return userId;
+    }
+
+    private AuthorizationResponse getResponse(User user, AuthorizationRequest authorizationRequest) {
+        Optional<AuthorizationResponse> replay = idempotencyStore.findResponse(MessageType.AUTHORIZATION, authorizationRequest.getMessageId(), authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class);
+        if (replay.isPresent())
+            return replay.get();
+        requestsValidator.checkCurrencyMatch(user, authorizationRequest.getTransactionAmount().getCurrency());
+        long transactionAmount = parseTransactionAmount(authorizationRequest);
+        long currentBalance = user.getBalance();
         boolean isAuthorized = isAuthorized(transactionAmount, currentBalance);
         AuthorizationResponse authorizationResponse = prepareResponse(authorizationRequest, currentBalance, transactionAmount, isAuthorized);
         if (isAuthorized) {
-            log.info("User with ID: {} authorized for transaction of {} {}", user.getId(), transactionAmount, authorizationRequest.getTransactionAmount().getCurrency());
-            updateUserBalance(user, transactionAmount);
+            long updatedBalance = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.BALANCE_UPDATE, () -> updateUserBalance(user, transactionAmount));
+            transactionJournal.append(JournalRecordType.APPROVED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance);
+            transactionEventLog.record(JournalRecordType.APPROVED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance);
+            transactionMetrics.approved(MessageType.AUTHORIZATION, user.getCurrency());
         }
         else {
-            log.info("User with ID: {} declined for transaction due to insufficient balance", user.getId());
+            userLocking.confirmUnchanged(user);
             saveAuthorizationResponse(authorizationResponse);
+            transactionJournal.append(JournalRecordType.DECLINED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, currentBalance);
+            transactionEventLog.record(JournalRecordType.DECLINED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, currentBalance);
+            transactionMetrics.declined(MessageType.AUTHORIZATION, user.getCurrency());
         }
+        idempotencyStore.save(MessageType.AUTHORIZATION, authorizationRequest.getMessageId(), authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), authorizationResponse);
         return authorizationResponse;
     }
 
-    private User fetchUser(String userId) throws UserNotFoundException{
-        return userRepository.findById(UUID.fromString(userId))
-                .orElseThrow(() -> new UserNotFoundException(String.format("User with ID %s not found", userId)));
+    private AuthorizationResponse getConditionalResponse(UUID userId, AuthorizationRequest authorizationRequest) {
+        String currency = authorizationRequest.getTransactionAmount().getCurrency();
+        long transactionAmount = parseTransactionAmount(authorizationRequest);
+        BalanceDecision decision = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.BALANCE_UPDATE, () -> conditionalBalanceUpdates.debit(userId, currency, transactionAmount));
+        boolean isAuthorized = decision.isApproved();
+        long currentBalance = isAuthorized ? decision.getBalance() + transactionAmount : decision.getBalance();
+        AuthorizationResponse authorizationResponse = prepareResponse(authorizationRequest, currentBalance, transactionAmount, isAuthorized);
+        if (isAuthorized) {
+            transactionJournal.append(JournalRecordType.APPROVED, authorizationRequest.getMessageId(), userId, currency, transactionAmount, decision.getBalance());
+            transactionEventLog.record(JournalRecordType.APPROVED, authorizationRequest.getMessageId(), userId, currency, transactionAmount, decision.getBalance());
+            transactionMetrics.approved(MessageType.AUTHORIZATION, currency);
+        }
+        else {
+            saveAuthorizationResponse(authorizationResponse);
+            transactionJournal.append(JournalRecordType.DECLINED, authorizationRequest.getMessageId(), userId, currency, transactionAmount, currentBalance);
+            transactionEventLog.record(JournalRecordType.DECLINED, authorizationRequest.getMessageId(), userId, currency, transactionAmount, currentBalance);
+            transactionMetrics.declined(MessageType.AUTHORIZATION, currency);
+        }
+        idempotencyStore.save(MessageType.AUTHORIZATION, authorizationRequest.getMessageId(), authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), authorizationResponse);
+        return authorizationResponse;
     }
 
-    private double parseTransactionAmount(AuthorizationRequest authorizationRequest) {
-        return Double.parseDouble(authorizationRequest.getTransactionAmount().getAmount());
+    private long parseTransactionAmount(AuthorizationRequest authorizationRequest) {
+        return Money.parse(authorizationRequest.getTransactionAmount().getAmount());
     }
 
-    private boolean isAuthorized(double transactionAmount, double currentBalance) {
+    private boolean isAuthorized(long transactionAmount, long currentBalance) {
         return currentBalance >= transactionAmount;
     }
 
-    private AuthorizationResponse prepareResponse(AuthorizationRequest authorizationRequest, double currentBalance, double transactionAmount, boolean isAuthorized) {
-        Amount balance = new Amount(String.valueOf(isAuthorized ? currentBalance - transactionAmount : transactionAmount),
+    private AuthorizationResponse prepareResponse(AuthorizationRequest authorizationRequest, long currentBalance, long transactionAmount, boolean isAuthorized) {
+        Amount balance = new Amount(Money.format(isAuthorized ? currentBalance - transactionAmount : transactionAmount),
                 authorizationRequest.getTransactionAmount().getCurrency(),
                 authorizationRequest.getTransactionAmount().getDebitOrCredit());
 
@@ -110,14 +318,15 @@ public class AuthorizeTransactionServiceImpl implements AuthorizeTransactionServ
                 balance);
     }
 
-    private void updateUserBalance(User user, double transactionAmount) {
-        double updatedBalance = user.getBalance() - transactionAmount;
+    private long updateUserBalance(User user, long transactionAmount) {
+        long updatedBalance = user.getBalance() - transactionAmount;
         user.setBalance(updatedBalance);
-        userRepository.save(user);
+        userLocking.saveBalance(user);
+        return updatedBalance;
     }
 
     private void saveAuthorizationResponse(AuthorizationResponse authorizationResponse) {
-        authorizationResponseRepository.save(authorizationResponse);
+        authorizationResponseWriter.write(authorizationResponse);
     }
 
 }
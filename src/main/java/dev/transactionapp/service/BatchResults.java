@@ -0,0 +1,39 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.entity.BatchItemError;
+import dev.transactionapp.exception.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+
+import java.util.Set;
+
+/**
+ * Turns the exception of a single batch entry into its per-item result, so one bad entry doesn't fail the whole batch.
+ * The exceptions the `RestExceptionHandler` maps to BAD_REQUEST (400) keep their message, anything else is reported
+ * as INTERNAL_SERVER_ERROR (500) without exposing its details.
+ */
+@Slf4j
+final class BatchResults {
+
+    private static final Set<Class<? extends RuntimeException>> BAD_REQUEST_EXCEPTIONS = Set.of(
+            MessageIdNotMatchException.class,
+            MessageIdAlreadyExistsException.class,
+            UserNotFoundException.class,
+            CurrencyNotMatchException.class,
+            InvalidTransactionTypeException.class,
+            InvalidUUIDException.class);
+
+    private BatchResults() {
+    }
+
+    static BatchItemError error(String messageId, RuntimeException ex) {
+        if (BAD_REQUEST_EXCEPTIONS.contains(ex.getClass()))
+            return invalid(messageId, ex.getLocalizedMessage());
+        log.error("Failed to process batch entry with messageId {}", messageId, ex);
+        return new BatchItemError(messageId, "Failed to process entry", HttpStatus.INTERNAL_SERVER_ERROR.toString());
+    }
+
+    static BatchItemError invalid(String messageId, String message) {
+        return new BatchItemError(messageId, message, HttpStatus.BAD_REQUEST.toString());
+    }
+}
@@ -0,0 +1,24 @@
+package dev.transactionapp.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Waits for a decision of the balance engine on the request thread and rethrows the original exception
+ * (e.g. `UserNotFoundException`), so the `RestExceptionHandler` maps it exactly like on the JPA path.
+ */
+final class EngineResults {
+
+    private EngineResults() {
+    }
+
+    static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+            throw ex;
+        }
+    }
+}
@@ -3,7 +3,25 @@ package dev.transactionapp.service;
 import dev.transactionapp.entity.LoadRequest;
 import dev.transactionapp.entity.LoadResponse;
 
+import dev.transactionapp.validator.Rejection;
+
+import java.util.List;
+
 public interface LoadFundsService {
 
     LoadResponse loadFundsAndGetResponse(String messageId, LoadRequest loadRequest) throws RuntimeException;
+
+    /**
+     * Runs the checks a request must pass before it's processed, without throwing.
+     *
+     * @return Why the request is rejected, or null if it can be processed.
+     */
+    Rejection screen(String messageId, LoadRequest loadRequest);
+
+    /**
+     * Same as `loadFundsAndGetResponse`, for a request that passed `screen`: its checks aren't run again.
+     */
+    LoadResponse loadScreenedFundsAndGetResponse(String messageId, LoadRequest loadRequest) throws RuntimeException;
+
+    List<Object> loadFundsAndGetResponses(List<LoadRequest> loadRequests) throws RuntimeException;
 }
@@ -1,37 +1,85 @@
 package dev.transactionapp.service;
 
+import dev.transactionapp.account.AccountMetadataCache;
 import dev.transactionapp.entity.*;
 import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
 import dev.transactionapp.exception.*;
-import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.locking.ConditionalBalanceUpdates;
+import dev.transactionapp.locking.RequestCoalescer;
+import dev.transactionapp.locking.UserLocking;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.validator.ObjectsValidator;
+import dev.transactionapp.validator.Rejection;
 import dev.transactionapp.validator.RequestsValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.util.UUID;
+import java.util.*;
 
 @Slf4j
 @Service
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
 public class LoadFundsServiceImpl implements LoadFundsService{
 
     @Autowired
-    private UserRepository userRepository;
+    private RequestsValidator requestsValidator;
 
     @Autowired
-    private RequestsValidator requestsValidator;
+    private ObjectsValidator<LoadRequest> loadRequestValidator;
+
+    @Autowired
+    private UserLocking userLocking;
+
+    @Autowired
+    private RequestCoalescer requestCoalescer;
+
+    @Autowired
+    private ConditionalBalanceUpdates conditionalBalanceUpdates;
+
+    @Autowired
+    private AccountMetadataCache accountMetadataCache;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private TransactionJournal transactionJournal;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Autowired
+    private TransactionEventLog transactionEventLog;
 
     /**
      * Processes a request to load funds into a user's account and returns a response containing the updated balance.
      * Expects a CREDIT transaction type.
      * Here's a breakdown of the steps involved:
-     *  1. Validates the `LoadRequest` object using the `requestsValidator` to ensure data integrity.
-     *  2. Retrieves user information from the repository to access their current balance.
-     *  3. Extracts the transaction amount from the `loadRequest` object.
-     *  4. Updates the user's account balance with the loaded amount within a database transaction.
+     *  1. Runs the stateless checks of the `LoadRequest` (messageId match, CREDIT type, UUID format)
+     *     using the `requestsValidator`, and checks the user exists and has the transaction currency against the
+     *     `accountMetadataCache`, before any lock or database connection is taken.
+     *  2. Opens the transaction and loads the user once, through the `requestCoalescer`, which may apply concurrent
+     *     requests of the same user in the same transaction, one after the other.
+     *     If the messageId was processed meanwhile (a concurrent retry committed first), its stored response is returned as-is.
+     *  3. Checks the user's currency against the transaction currency again, on the loaded user.
+     *  4. Extracts the transaction amount from the `loadRequest` object.
+     *  5. Updates the user's account balance with the loaded amount within a database transaction.
      *      - This ensures either the entire update happens or none at all, preventing partial changes.
-     *  5. Prepares and returns a `LoadResponse` object containing the updated user balance information.
+     *      - The update goes through `userLocking.saveBalance`, flushed right away unless the user is locked, so the load and
+     *        the resulting balance are appended to the `transactionJournal` while the user's row is held.
+     *      - The journal record is pending until the transaction commits, and the `transactionEventLog` is only written on commit.
+     *  6. Prepares and returns a `LoadResponse` object containing the updated user balance information,
+     *     saved to the `idempotencyStore` so a retry of the message gets it replayed.
      *
      * @param messageId The unique identifier of the message received.
      * @param loadRequest The object containing user and transaction details for loading funds.
@@ -39,54 +87,195 @@ public class LoadFundsServiceImpl implements LoadFundsService{
      * @throws RuntimeException If any unexpected error occurs during processing.
      *
      * **Lock Mechanism:**
-     * Pessimistic-Locking
-     *  - Pessimistic locking is used to ensure exclusive access to user data during fund loading.
-     *  - When calling `userRepository.findById(userId)` with `@Lock(LockModeType.PESSIMISTIC_WRITE)`, the database acquires a write lock on the user row identified by `userId`.
-     *  - This lock prevents other threads from reading or updating the same user data until the current transaction releases the lock.
-     *  - This guarantees that only one request can process fund loading for a specific user at a time, preventing race conditions and maintaining data consistency.
+     * Adaptive Locking
+     *  - By default every user is loaded with the row lock (`transaction.locking.strategy=pessimistic`).
+     *  - With `transaction.locking.strategy=adaptive`, most users are read without a lock and the balance update is checked against the user's `@Version`.
+     *    A conflicting update rolls the transaction back and `userLocking` runs steps 2 to 6 again on a fresh read.
+     *  - Users with frequent conflicts are loaded with `@Lock(LockModeType.PESSIMISTIC_WRITE)` instead, see `AdaptiveLockPolicy`,
+     *    so only one request processes fund loading for such a user at a time.
+     *  - Concurrent requests of a user are coalesced by the `requestCoalescer`: they're applied in arrival order against one
+     *    locked load of the user, with one balance UPDATE and one commit for all of them.
      *
-     * **Transactional Annotation:**
-     *  - This annotation guarantees that updating the user's balance in the database and sending the response are treated as a single unit.
+     * Conditional SQL
+     *  - With `transaction.locking.conditional-sql=true` (H2 only), steps 2 to 5 are replaced by one increment of the balance by the
+     *    `conditionalBalanceUpdates`, returning the new balance, no user is loaded. Concurrent retries of the message are
+     *    held off by `idempotencyStore.processOnce`.
+     *
+     * **Transaction:**
+     *  - Steps 2 to 6 run inside one transaction, so updating the user's balance in the database and preparing the response are treated as a single unit.
      *  - If any step fails, the entire transaction is rolled back.
      */
     @Override
-    @Transactional
     public LoadResponse loadFundsAndGetResponse(String messageId, LoadRequest loadRequest) throws RuntimeException {
         log.debug("LoadFundsServiceImpl.loadFundsAndGetResponse() initiated for messageId {}", messageId);
-        requestsValidator.checkLoadRequestValidity(messageId, loadRequest);
-        LoadResponse loadResponse = getResponse(loadRequest);
+        UUID userId = transactionMetrics.time(MessageType.LOAD, TransactionStage.VALIDATION, () -> validate(messageId, loadRequest));
+        LoadResponse loadResponse = load(messageId, loadRequest, userId);
         log.debug("LoadFundsServiceImpl.loadFundsAndGetResponse() completed for messageId {}", messageId);
         return loadResponse;
     }
 
-    private LoadResponse getResponse(LoadRequest loadRequest) {
-        User user = fetchUser(loadRequest.getUserId());
-        double transactionAmount = parseTransactionAmount(loadRequest);
-        double updatedBalance = updateUserBalance(user, transactionAmount);
-        log.info("User with ID: {} successfully loaded funds. New balance: {} {}", user.getId(), updatedBalance, loadRequest.getTransactionAmount().getCurrency());
-        return prepareLoadResponse(loadRequest, updatedBalance);
+    /**
+     * Processes a request that passed `screen` like `loadFundsAndGetResponse`, from step 2: `screen` already ran the
+     * checks of step 1, against the same `accountMetadataCache`.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param loadRequest The object containing user and transaction details for loading funds, accepted by `screen`.
+     * @return The `LoadResponse` object containing the user's updated balance after loading funds.
+     * @throws RuntimeException If any unexpected error occurs during processing.
+     */
+    @Override
+    public LoadResponse loadScreenedFundsAndGetResponse(String messageId, LoadRequest loadRequest) throws RuntimeException {
+        log.debug("LoadFundsServiceImpl.loadScreenedFundsAndGetResponse() initiated for messageId {}", messageId);
+        LoadResponse loadResponse = load(messageId, loadRequest, UUID.fromString(loadRequest.getUserId()));
+        log.debug("LoadFundsServiceImpl.loadScreenedFundsAndGetResponse() completed for messageId {}", messageId);
+        return loadResponse;
     }
 
-    private User fetchUser(String userId) throws UserNotFoundException{
-        return userRepository.findById(UUID.fromString(userId))
-                .orElseThrow(() -> new UserNotFoundException(String.format("User with ID %s not found", userId)));
+    private LoadResponse load(String messageId, LoadRequest loadRequest, UUID userId) {
+        LoadResponse loadResponse;
+        try {
+            loadResponse = conditionalBalanceUpdates.isEnabled()
+                    ? idempotencyStore.processOnce(MessageType.LOAD, messageId, loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), LoadResponse.class,
+                            () -> conditionalBalanceUpdates.inTransaction(() -> getConditionalResponse(userId, loadRequest)))
+                    : requestCoalescer.inTransaction(MessageType.LOAD, userId, user -> getResponse(user, loadRequest));
+        } catch (DataIntegrityViolationException ex) {
+            // the same messageId was committed by a concurrent request for another user
+            throw new MessageIdAlreadyExistsException(String.format("message id: %s already exists", messageId));
+        }
+        return loadResponse;
+    }
+
+    /**
+     * Runs the checks of step 1 of `loadFundsAndGetResponse` without throwing: the stateless checks, see
+     * `RequestsValidator.screenLoadRequest`, then the user's existence and currency against the `accountMetadataCache`.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param loadRequest The object containing user and transaction details.
+     * @return Why the request is rejected, or null if it can be processed.
+     */
+    @Override
+    public Rejection screen(String messageId, LoadRequest loadRequest) {
+        return transactionMetrics.time(MessageType.LOAD, TransactionStage.VALIDATION, () -> {
+            Rejection rejection = requestsValidator.screenLoadRequest(messageId, loadRequest);
+            if (rejection != null)
+                return rejection;
+            UUID userId = UUID.fromString(loadRequest.getUserId());
+            String userCurrency = accountMetadataCache.findCurrency(userId);
+            if (userCurrency == null)
+                return Rejection.of(Rejection.Reason.USER_NOT_FOUND, userId.toString());
+            return requestsValidator.screenCurrencyMatch(userCurrency, loadRequest.getTransactionAmount().getCurrency());
+        });
+    }
+
+    /**
+     * Processes a batch of loads, reporting the outcome of every entry on its own.
+     * Here's a breakdown of the steps involved:
+     *  1. Validates every entry (bean validation, the stateless checks of `requestsValidator` and the `accountMetadataCache`) and looks up
+     *     replayed messageIds in the `idempotencyStore`. Those entries get their result right away.
+     *  2. Groups the remaining entries by userId, keeping the order they were sent in.
+     *  3. For every user, opens one transaction, loads and locks the user once and applies the user's entries in order,
+     *     exactly like `loadFundsAndGetResponse` does for a single entry.
+     *
+     * @param loadRequests The entries of the batch.
+     * @return One result per entry, in the order of the batch: the `LoadResponse`, or a `BatchItemError` if the entry failed.
+     *
+     * **Partial Failures:**
+     *  - An entry failing a check (e.g. currency mismatch) gets a `BatchItemError` and the other entries of its user are still applied.
+     *  - If the user's transaction itself fails (e.g. user not found), none of the user's entries are applied and all of them get the error.
+     */
+    @Override
+    public List<Object> loadFundsAndGetResponses(List<LoadRequest> loadRequests) throws RuntimeException {
+        log.debug("LoadFundsServiceImpl.loadFundsAndGetResponses() initiated for {} entries", loadRequests.size());
+        Object[] results = new Object[loadRequests.size()];
+        Map<UUID, List<Integer>> entriesByUser = new LinkedHashMap<>();
+        for (int i = 0; i < loadRequests.size(); i++) {
+            LoadRequest loadRequest = loadRequests.get(i);
+            Set<String> violations = loadRequestValidator.validate(loadRequest);
+            if (!violations.isEmpty()) {
+                results[i] = BatchResults.invalid(loadRequest.getMessageId(), violations.toString());
+                continue;
+            }
+            try {
+                UUID userId = transactionMetrics.time(MessageType.LOAD, TransactionStage.VALIDATION, () -> validate(loadRequest.getMessageId(), loadRequest));
+                Optional<LoadResponse> replay = idempotencyStore.findResponse(MessageType.LOAD, loadRequest.getMessageId(), loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), LoadResponse.class);
+                if (replay.isPresent())
+                    results[i] = replay.get();
+                else
+                    entriesByUser.computeIfAbsent(userId, id -> new ArrayList<>()).add(i);
+            } catch (RuntimeException ex) {
+                results[i] = BatchResults.error(loadRequest.getMessageId(), ex);
+            }
+        }
+        entriesByUser.forEach((userId, entries) -> applyUserEntries(userId, entries, loadRequests, results));
+        log.debug("LoadFundsServiceImpl.loadFundsAndGetResponses() completed for {} entries across {} users", loadRequests.size(), entriesByUser.size());
+        return Arrays.asList(results);
+    }
+
+    private void applyUserEntries(UUID userId, List<Integer> entries, List<LoadRequest> loadRequests, Object[] results) {
+        try {
+            userLocking.inLockedTransaction(MessageType.LOAD, userId, user -> {
+                for (int entry : entries) {
+                    try {
+                        results[entry] = getResponse(user, loadRequests.get(entry));
+                    } catch (CurrencyNotMatchException | MessageIdAlreadyExistsException ex) {
+                        results[entry] = BatchResults.error(loadRequests.get(entry).getMessageId(), ex);
+                    }
+                }
+            });
+        } catch (RuntimeException ex) {
+            for (int entry : entries)
+                results[entry] = BatchResults.error(loadRequests.get(entry).getMessageId(), ex);
+        }
+    }
+
+    private UUID validate(String messageId, LoadRequest loadRequest) {
+        UUID userId = requestsValidator.checkLoadRequestValidity(messageId, loadRequest);
+        requestsValidator.checkCurrencyMatch(accountMetadataCache.currencyOf(userId), loadRequest.getTransactionAmount().getCurrency());
+        return userId;
+    }
+
+    private LoadResponse getResponse(User user, LoadRequest loadRequest) {
+        Optional<LoadResponse> replay = idempotencyStore.findResponse(MessageType.LOAD, loadRequest.getMessageId(), loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), LoadResponse.class);
+        if (replay.isPresent())
+            return replay.get();
+        requestsValidator.checkCurrencyMatch(user, loadRequest.getTransactionAmount().getCurrency());
+        long transactionAmount = parseTransactionAmount(loadRequest);
+        long updatedBalance = transactionMetrics.time(MessageType.LOAD, TransactionStage.BALANCE_UPDATE, () -> updateUserBalance(user, transactionAmount));
+        transactionJournal.append(JournalRecordType.LOAD, loadRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance);
+        transactionMetrics.approved(MessageType.LOAD, user.getCurrency());
+        transactionEventLog.record(JournalRecordType.LOAD, loadRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance);
+        LoadResponse loadResponse = prepareLoadResponse(loadRequest, updatedBalance);
+        idempotencyStore.save(MessageType.LOAD, loadRequest.getMessageId(), loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), loadResponse);
+        return loadResponse;
+    }
+
+    private LoadResponse getConditionalResponse(UUID userId, LoadRequest loadRequest) {
+        String currency = loadRequest.getTransactionAmount().getCurrency();
+        long transactionAmount = parseTransactionAmount(loadRequest);
+        long updatedBalance = transactionMetrics.time(MessageType.LOAD, TransactionStage.BALANCE_UPDATE, () -> conditionalBalanceUpdates.credit(userId, currency, transactionAmount));
+        transactionJournal.append(JournalRecordType.LOAD, loadRequest.getMessageId(), userId, currency, transactionAmount, updatedBalance);
+        transactionMetrics.approved(MessageType.LOAD, currency);
+        transactionEventLog.record(JournalRecordType.LOAD, loadRequest.getMessageId(), userId, currency, transactionAmount, updatedBalance);
+        LoadResponse loadResponse = prepareLoadResponse(loadRequest, updatedBalance);
+        idempotencyStore.save(MessageType.LOAD, loadRequest.getMessageId(), loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), loadResponse);
+        return loadResponse;
     }
 
-    private double parseTransactionAmount(LoadRequest loadRequest) {
-        return Double.parseDouble(loadRequest.getTransactionAmount().getAmount());
+    private long parseTransactionAmount(LoadRequest loadRequest) {
+        return Money.parse(loadRequest.getTransactionAmount().getAmount());
     }
 
-    private double updateUserBalance(User user, double transactionAmount) {
-        double updatedBalance = user.getBalance() + transactionAmount;
+    private long updateUserBalance(User user, long transactionAmount) {
+        long updatedBalance = Math.addExact(user.getBalance(), transactionAmount);
         user.setBalance(updatedBalance);
-        userRepository.save(user);
+        userLocking.saveBalance(user);
         return updatedBalance;
     }
 
-    private LoadResponse prepareLoadResponse(LoadRequest loadRequest, double updatedBalance) {
+    private LoadResponse prepareLoadResponse(LoadRequest loadRequest, long updatedBalance) {
         return new LoadResponse(loadRequest.getUserId(),
                 loadRequest.getMessageId(),
-                new Amount(String.valueOf(updatedBalance),
+                new Amount(Money.format(updatedBalance),
                         loadRequest.getTransactionAmount().getCurrency(),
                         DebitCredit.CREDIT.toString()));
     }
@@ -0,0 +1,10 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveAuthorizeTransactionService {
+
+     Mono<AuthorizationResponse> authorizeTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest);
+}
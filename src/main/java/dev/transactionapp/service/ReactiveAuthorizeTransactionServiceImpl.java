@@ -0,0 +1,143 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.enums.TransactionStage;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.idempotency.ReactiveIdempotencyStore;
+import dev.transactionapp.journal.ReactiveJournalAppends;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.ReactiveAuthorizationResponseRepository;
+import dev.transactionapp.repository.ReactiveUserRepository;
+import dev.transactionapp.validator.ReactiveRequestsValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.UUID;
+
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class ReactiveAuthorizeTransactionServiceImpl implements ReactiveAuthorizeTransactionService {
+
+    @Autowired
+    private ReactiveUserRepository reactiveUserRepository;
+
+    @Autowired
+    private ReactiveAuthorizationResponseRepository reactiveAuthorizationResponseRepository;
+
+    @Autowired
+    private ReactiveRequestsValidator reactiveRequestsValidator;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ReactiveIdempotencyStore reactiveIdempotencyStore;
+
+    @Autowired
+    private TransactionJournal transactionJournal;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Autowired
+    private TransactionEventLog transactionEventLog;
+
+    @Autowired
+    private Scheduler reactiveDatabaseScheduler;
+
+    /**
+     * The reactive counterpart of `AuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse`, over R2DBC.
+     * Here's a breakdown of the steps involved:
+     *  1. Runs the stateless checks of the `AuthorizationRequest` with the `reactiveRequestsValidator`, before any connection is taken.
+     *  2. Opens a reactive transaction on the `reactiveDatabaseScheduler` and loads the user once with `SELECT ... FOR UPDATE`.
+     *     If the messageId was processed meanwhile (a concurrent retry holding the lock first), its stored response is returned as-is.
+     *  3. Checks the user's currency against the transaction currency on the loaded user.
+     *  4. **Approved:** writes the debited balance while the row is still locked.
+     *  5. **Declined:** inserts the `AuthorizationResponse` into `authorization_responses`, in the same transaction.
+     *  6. Appends the decision to the `transactionJournal`, pending until the transaction commits (the event log is
+     *     only written on commit), and saves the response to the `reactiveIdempotencyStore`,
+     *     so a retry of the message gets it replayed.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param authorizationRequest The object containing user and transaction details for authorization.
+     * @return A Mono of the `AuthorizationResponse`, or an error with the same exceptions as the servlet stack.
+     *
+     * **Lock Mechanism:**
+     *  - The row lock is held until the reactive transaction commits or rolls back, so requests for the same user are
+     *    applied one at a time, exactly like the JPA pessimistic lock.
+     *  - The embedded H2 driver runs every statement, lock waits included, on the subscribing thread: the transaction is
+     *    subscribed on the `reactiveDatabaseScheduler`, so a request waiting for a lock blocks one of its threads and
+     *    never Netty's event loop.
+     */
+    @Override
+    public Mono<AuthorizationResponse> authorizeTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest) {
+        log.debug("ReactiveAuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse() initiated for messageId {}", messageId);
+        return transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.VALIDATION, reactiveRequestsValidator.checkAuthorizationRequestValidity(messageId, authorizationRequest))
+                .flatMap(userId -> transactionalOperator.transactional(fetchUser(userId).flatMap(user -> getResponse(user, authorizationRequest))).subscribeOn(reactiveDatabaseScheduler))
+                // the same messageId was committed by a concurrent request for another user
+                .onErrorMap(DataIntegrityViolationException.class, ex -> new MessageIdAlreadyExistsException(String.format("message id: %s already exists", messageId)))
+                .doOnSuccess(authorizationResponse -> log.debug("ReactiveAuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse() completed for messageId {}", messageId));
+    }
+
+    private Mono<AuthorizationResponse> getResponse(User user, AuthorizationRequest authorizationRequest) {
+        return reactiveIdempotencyStore.findResponse(MessageType.AUTHORIZATION, authorizationRequest.getMessageId(), authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class)
+                .switchIfEmpty(Mono.defer(() -> reactiveRequestsValidator.checkCurrencyMatch(user, authorizationRequest.getTransactionAmount().getCurrency())
+                        .flatMap(checkedUser -> decide(checkedUser, authorizationRequest))));
+    }
+
+    private Mono<AuthorizationResponse> decide(User user, AuthorizationRequest authorizationRequest) {
+        long transactionAmount = Money.parse(authorizationRequest.getTransactionAmount().getAmount());
+        long currentBalance = user.getBalance();
+        boolean isAuthorized = currentBalance >= transactionAmount;
+        AuthorizationResponse authorizationResponse = prepareResponse(authorizationRequest, currentBalance, transactionAmount, isAuthorized);
+        Mono<Void> applied;
+        if (isAuthorized) {
+            long updatedBalance = currentBalance - transactionAmount;
+            applied = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.BALANCE_UPDATE, reactiveUserRepository.updateBalance(user.getId(), updatedBalance))
+                    .then(ReactiveJournalAppends.append(transactionJournal, JournalRecordType.APPROVED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance,
+                            () -> transactionEventLog.record(JournalRecordType.APPROVED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance)))
+                    .doOnSuccess(appended -> transactionMetrics.approved(MessageType.AUTHORIZATION, user.getCurrency()));
+        } else {
+            applied = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.DECLINE_PERSISTENCE, reactiveAuthorizationResponseRepository.insert(authorizationResponse))
+                    .then(ReactiveJournalAppends.append(transactionJournal, JournalRecordType.DECLINED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, currentBalance,
+                            () -> transactionEventLog.record(JournalRecordType.DECLINED, authorizationRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, currentBalance)))
+                    .doOnSuccess(appended -> transactionMetrics.declined(MessageType.AUTHORIZATION, user.getCurrency()));
+        }
+        return applied.then(reactiveIdempotencyStore.save(MessageType.AUTHORIZATION, authorizationRequest.getMessageId(), authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), authorizationResponse))
+                .thenReturn(authorizationResponse);
+    }
+
+    private Mono<User> fetchUser(UUID userId) {
+        return reactiveRequestsValidator.checkUserExists(userId,
+                transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.USER_LOCK, reactiveUserRepository.findByIdForUpdate(userId)));
+    }
+
+    private AuthorizationResponse prepareResponse(AuthorizationRequest authorizationRequest, long currentBalance, long transactionAmount, boolean isAuthorized) {
+        Amount balance = new Amount(Money.format(isAuthorized ? currentBalance - transactionAmount : transactionAmount),
+                authorizationRequest.getTransactionAmount().getCurrency(),
+                authorizationRequest.getTransactionAmount().getDebitOrCredit());
+
+        return new AuthorizationResponse(authorizationRequest.getMessageId(),
+                authorizationRequest.getUserId(),
+                isAuthorized ? ResponseCode.APPROVED.toString() : ResponseCode.DECLINED.toString(),
+                balance);
+    }
+}
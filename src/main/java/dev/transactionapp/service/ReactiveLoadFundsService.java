@@ -0,0 +1,10 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveLoadFundsService {
+
+    Mono<LoadResponse> loadFundsAndGetResponse(String messageId, LoadRequest loadRequest);
+}
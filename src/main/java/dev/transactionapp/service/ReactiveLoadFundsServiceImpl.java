@@ -0,0 +1,117 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.idempotency.ReactiveIdempotencyStore;
+import dev.transactionapp.journal.ReactiveJournalAppends;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.ReactiveUserRepository;
+import dev.transactionapp.validator.ReactiveRequestsValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.UUID;
+
+@Slf4j
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "jpa", matchIfMissing = true)
+public class ReactiveLoadFundsServiceImpl implements ReactiveLoadFundsService {
+
+    @Autowired
+    private ReactiveUserRepository reactiveUserRepository;
+
+    @Autowired
+    private ReactiveRequestsValidator reactiveRequestsValidator;
+
+    @Autowired
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ReactiveIdempotencyStore reactiveIdempotencyStore;
+
+    @Autowired
+    private TransactionJournal transactionJournal;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Autowired
+    private TransactionEventLog transactionEventLog;
+
+    @Autowired
+    private Scheduler reactiveDatabaseScheduler;
+
+    /**
+     * The reactive counterpart of `LoadFundsServiceImpl.loadFundsAndGetResponse`, over R2DBC.
+     * Here's a breakdown of the steps involved:
+     *  1. Runs the stateless checks of the `LoadRequest` with the `reactiveRequestsValidator`, before any connection is taken.
+     *  2. Opens a reactive transaction on the `reactiveDatabaseScheduler` (off the event loop, see
+     *     `ReactiveAuthorizeTransactionServiceImpl`) and loads the user once with `SELECT ... FOR UPDATE`.
+     *     If the messageId was processed meanwhile, its stored response is returned as-is.
+     *  3. Checks the user's currency against the transaction currency on the loaded user.
+     *  4. Writes the credited balance while the row is still locked.
+     *  5. Appends the load to the `transactionJournal`, pending until the transaction commits, and saves the response to the `reactiveIdempotencyStore`.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param loadRequest The object containing user and transaction details for loading funds.
+     * @return A Mono of the `LoadResponse`, or an error with the same exceptions as the servlet stack.
+     */
+    @Override
+    public Mono<LoadResponse> loadFundsAndGetResponse(String messageId, LoadRequest loadRequest) {
+        log.debug("ReactiveLoadFundsServiceImpl.loadFundsAndGetResponse() initiated for messageId {}", messageId);
+        return transactionMetrics.time(MessageType.LOAD, TransactionStage.VALIDATION, reactiveRequestsValidator.checkLoadRequestValidity(messageId, loadRequest))
+                .flatMap(userId -> transactionalOperator.transactional(fetchUser(userId).flatMap(user -> getResponse(user, loadRequest))).subscribeOn(reactiveDatabaseScheduler))
+                // the same messageId was committed by a concurrent request for another user
+                .onErrorMap(DataIntegrityViolationException.class, ex -> new MessageIdAlreadyExistsException(String.format("message id: %s already exists", messageId)))
+                .doOnSuccess(loadResponse -> log.debug("ReactiveLoadFundsServiceImpl.loadFundsAndGetResponse() completed for messageId {}", messageId));
+    }
+
+    private Mono<LoadResponse> getResponse(User user, LoadRequest loadRequest) {
+        return reactiveIdempotencyStore.findResponse(MessageType.LOAD, loadRequest.getMessageId(), loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), LoadResponse.class)
+                .switchIfEmpty(Mono.defer(() -> reactiveRequestsValidator.checkCurrencyMatch(user, loadRequest.getTransactionAmount().getCurrency())
+                        .flatMap(checkedUser -> load(checkedUser, loadRequest))));
+    }
+
+    private Mono<LoadResponse> load(User user, LoadRequest loadRequest) {
+        long transactionAmount = Money.parse(loadRequest.getTransactionAmount().getAmount());
+        long updatedBalance = Math.addExact(user.getBalance(), transactionAmount);
+        LoadResponse loadResponse = prepareLoadResponse(loadRequest, updatedBalance);
+        return transactionMetrics.time(MessageType.LOAD, TransactionStage.BALANCE_UPDATE, reactiveUserRepository.updateBalance(user.getId(), updatedBalance))
+                .then(ReactiveJournalAppends.append(transactionJournal, JournalRecordType.LOAD, loadRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance,
+                        () -> transactionEventLog.record(JournalRecordType.LOAD, loadRequest.getMessageId(), user.getId(), user.getCurrency(), transactionAmount, updatedBalance)))
+                .doOnSuccess(appended -> transactionMetrics.approved(MessageType.LOAD, user.getCurrency()))
+                .then(reactiveIdempotencyStore.save(MessageType.LOAD, loadRequest.getMessageId(), loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), loadResponse))
+                .thenReturn(loadResponse);
+    }
+
+    private Mono<User> fetchUser(UUID userId) {
+        return reactiveRequestsValidator.checkUserExists(userId,
+                transactionMetrics.time(MessageType.LOAD, TransactionStage.USER_LOCK, reactiveUserRepository.findByIdForUpdate(userId)));
+    }
+
+    private LoadResponse prepareLoadResponse(LoadRequest loadRequest, long updatedBalance) {
+        return new LoadResponse(loadRequest.getUserId(),
+                loadRequest.getMessageId(),
+                new Amount(Money.format(updatedBalance),
+                        loadRequest.getTransactionAmount().getCurrency(),
+                        DebitCredit.CREDIT.toString()));
+    }
+}
@@ -0,0 +1,172 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.engine.BalanceDecision;
+import dev.transactionapp.engine.BalancePersister;
+import dev.transactionapp.engine.ShardedBalanceEngine;
+import dev.transactionapp.entity.*;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.validator.ObjectsValidator;
+import dev.transactionapp.validator.Rejection;
+import dev.transactionapp.validator.RequestsValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "sharded")
+public class ShardedAuthorizeTransactionServiceImpl implements AuthorizeTransactionService{
+
+    @Autowired
+    private ShardedBalanceEngine shardedBalanceEngine;
+
+    @Autowired
+    private BalancePersister balancePersister;
+
+    @Autowired
+    private RequestsValidator requestsValidator;
+
+    @Autowired
+    private ObjectsValidator<AuthorizationRequest> authorizationRequestValidator;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Autowired
+    private TransactionEventLog transactionEventLog;
+
+    /**
+     * Processes a request to authorize a transaction on the sharded in-memory balance engine.
+     * Expects a DEBIT transaction type.
+     * Here's a breakdown of the steps involved:
+     *  1. Runs the stateless checks of the `AuthorizationRequest` using the `requestsValidator`.
+     *  2. Returns the stored response if the messageId was already processed, or waits for the original
+     *     if it's still being processed, using the `idempotencyStore`.
+     *  3. Hands the debit to the shard owning the user, which checks the currency and the balance and decides.
+     *  4. Prepares an `AuthorizationResponse` object based on the decision (approved/denied).
+     *  5. Remembers the response for replays and queues it (and a declined authorization) for asynchronous saving.
+     *
+     * **Lock Mechanism:**
+     *  - No database lock is taken, the owning shard is the only thread that ever changes the user's balance.
+     *  - The updated balance is persisted asynchronously by the `BalancePersister` after the decision.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param authorizationRequest The object containing user and transaction details for authorization.
+     * @return The `AuthorizationResponse` object containing the authorization decision and user balance (if applicable).
+     * @throws RuntimeException If any validation fails or unexpected error occurs during processing.
+     */
+    @Override
+    public AuthorizationResponse authorizeTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest) throws RuntimeException {
+        log.debug("ShardedAuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse() initiated for messageId {}", messageId);
+        UUID userId = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.VALIDATION, () -> requestsValidator.checkAuthorizationRequestValidity(messageId, authorizationRequest));
+        AuthorizationResponse authorizationResponse = authorize(messageId, authorizationRequest, userId);
+        log.debug("ShardedAuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse() completed for messageId {}", messageId);
+        return authorizationResponse;
+    }
+
+    /**
+     * Processes a request that passed `screen` like `authorizeTransactionAndGetResponse`, from step 2: `screen` already
+     * ran the stateless checks of step 1.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param authorizationRequest The object containing user and transaction details for authorization, accepted by `screen`.
+     * @return The `AuthorizationResponse` object containing the authorization decision and user balance (if applicable).
+     * @throws RuntimeException If the shard rejects the request or an unexpected error occurs during processing.
+     */
+    @Override
+    public AuthorizationResponse authorizeScreenedTransactionAndGetResponse(String messageId, AuthorizationRequest authorizationRequest) throws RuntimeException {
+        log.debug("ShardedAuthorizeTransactionServiceImpl.authorizeScreenedTransactionAndGetResponse() initiated for messageId {}", messageId);
+        AuthorizationResponse authorizationResponse = authorize(messageId, authorizationRequest, UUID.fromString(authorizationRequest.getUserId()));
+        log.debug("ShardedAuthorizeTransactionServiceImpl.authorizeScreenedTransactionAndGetResponse() completed for messageId {}", messageId);
+        return authorizationResponse;
+    }
+
+    private AuthorizationResponse authorize(String messageId, AuthorizationRequest authorizationRequest, UUID userId) {
+        return idempotencyStore.processOnce(MessageType.AUTHORIZATION, messageId, authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class,
+                () -> getResponse(userId, authorizationRequest));
+    }
+
+    /**
+     * Runs the stateless checks of `authorizeTransactionAndGetResponse` without throwing, see `RequestsValidator.screenAuthorizationRequest`.
+     * The user and the currency are checked by the owning shard, once the request is processed.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param authorizationRequest The object containing user and transaction details.
+     * @return Why the request is rejected, or null if it can be processed.
+     */
+    @Override
+    public Rejection screen(String messageId, AuthorizationRequest authorizationRequest) {
+        return transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.VALIDATION, () -> requestsValidator.screenAuthorizationRequest(messageId, authorizationRequest));
+    }
+
+    /**
+     * Processes a batch of authorizations on the sharded engine, reporting the outcome of every entry on its own.
+     * Entries go through `authorizeTransactionAndGetResponse` one after the other, so each user's entries are applied in the order they were sent.
+     * There's no database lock to amortize here, the batch only saves the HTTP round trips.
+     *
+     * @param authorizationRequests The entries of the batch.
+     * @return One result per entry, in the order of the batch: the response, or a `BatchItemError` if the entry failed.
+     */
+    @Override
+    public List<Object> authorizeTransactionsAndGetResponses(List<AuthorizationRequest> authorizationRequests) throws RuntimeException {
+        List<Object> results = new ArrayList<>(authorizationRequests.size());
+        for (AuthorizationRequest authorizationRequest : authorizationRequests) {
+            Set<String> violations = authorizationRequestValidator.validate(authorizationRequest);
+            if (!violations.isEmpty()) {
+                results.add(BatchResults.invalid(authorizationRequest.getMessageId(), violations.toString()));
+                continue;
+            }
+            try {
+                results.add(authorizeTransactionAndGetResponse(authorizationRequest.getMessageId(), authorizationRequest));
+            } catch (RuntimeException ex) {
+                results.add(BatchResults.error(authorizationRequest.getMessageId(), ex));
+            }
+        }
+        return results;
+    }
+
+    private AuthorizationResponse getResponse(UUID userId, AuthorizationRequest authorizationRequest) {
+        long transactionAmount = Money.parse(authorizationRequest.getTransactionAmount().getAmount());
+        BalanceDecision decision = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.BALANCE_UPDATE, () -> EngineResults.await(shardedBalanceEngine.debit(authorizationRequest.getMessageId(), userId, authorizationRequest.getTransactionAmount().getCurrency(), transactionAmount)));
+        AuthorizationResponse authorizationResponse = prepareResponse(authorizationRequest, decision, transactionAmount);
+        if (decision.isApproved()) {
+            transactionEventLog.record(JournalRecordType.APPROVED, authorizationRequest.getMessageId(), userId, authorizationRequest.getTransactionAmount().getCurrency(), transactionAmount, decision.getBalance());
+            transactionMetrics.approved(MessageType.AUTHORIZATION, authorizationRequest.getTransactionAmount().getCurrency());
+        }
+        else {
+            transactionEventLog.record(JournalRecordType.DECLINED, authorizationRequest.getMessageId(), userId, authorizationRequest.getTransactionAmount().getCurrency(), transactionAmount, decision.getBalance());
+            balancePersister.declined(authorizationResponse);
+            transactionMetrics.declined(MessageType.AUTHORIZATION, authorizationRequest.getTransactionAmount().getCurrency());
+        }
+        balancePersister.processed(idempotencyStore.remember(MessageType.AUTHORIZATION, authorizationRequest.getMessageId(), authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), authorizationResponse));
+        return authorizationResponse;
+    }
+
+    private AuthorizationResponse prepareResponse(AuthorizationRequest authorizationRequest, BalanceDecision decision, long transactionAmount) {
+        Amount balance = new Amount(Money.format(decision.isApproved() ? decision.getBalance() : transactionAmount),
+                authorizationRequest.getTransactionAmount().getCurrency(),
+                authorizationRequest.getTransactionAmount().getDebitOrCredit());
+
+        return new AuthorizationResponse(authorizationRequest.getMessageId(),
+                authorizationRequest.getUserId(),
+                decision.isApproved() ? ResponseCode.APPROVED.toString() : ResponseCode.DECLINED.toString(),
+                balance);
+    }
+
+}
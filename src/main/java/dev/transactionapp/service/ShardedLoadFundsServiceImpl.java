@@ -0,0 +1,156 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.engine.BalanceDecision;
+import dev.transactionapp.engine.BalancePersister;
+import dev.transactionapp.engine.ShardedBalanceEngine;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.validator.ObjectsValidator;
+import dev.transactionapp.validator.Rejection;
+import dev.transactionapp.validator.RequestsValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "transaction.engine.mode", havingValue = "sharded")
+public class ShardedLoadFundsServiceImpl implements LoadFundsService{
+
+    @Autowired
+    private ShardedBalanceEngine shardedBalanceEngine;
+
+    @Autowired
+    private BalancePersister balancePersister;
+
+    @Autowired
+    private RequestsValidator requestsValidator;
+
+    @Autowired
+    private ObjectsValidator<LoadRequest> loadRequestValidator;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private TransactionMetrics transactionMetrics;
+
+    @Autowired
+    private TransactionEventLog transactionEventLog;
+
+    /**
+     * Processes a request to load funds on the sharded in-memory balance engine.
+     * Expects a CREDIT transaction type.
+     * Here's a breakdown of the steps involved:
+     *  1. Runs the stateless checks of the `LoadRequest` using the `requestsValidator`.
+     *  2. Returns the stored response if the messageId was already processed, or waits for the original
+     *     if it's still being processed, using the `idempotencyStore`.
+     *  3. Hands the credit to the shard owning the user, which checks the currency and updates the balance.
+     *  4. Prepares and returns a `LoadResponse` object containing the updated user balance information,
+     *     remembered for replays and queued for asynchronous saving.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param loadRequest The object containing user and transaction details for loading funds.
+     * @return The `LoadResponse` object containing the user's updated balance after loading funds.
+     * @throws RuntimeException If any validation fails or unexpected error occurs during processing.
+     */
+    @Override
+    public LoadResponse loadFundsAndGetResponse(String messageId, LoadRequest loadRequest) throws RuntimeException {
+        log.debug("ShardedLoadFundsServiceImpl.loadFundsAndGetResponse() initiated for messageId {}", messageId);
+        UUID userId = transactionMetrics.time(MessageType.LOAD, TransactionStage.VALIDATION, () -> requestsValidator.checkLoadRequestValidity(messageId, loadRequest));
+        LoadResponse loadResponse = load(messageId, loadRequest, userId);
+        log.debug("ShardedLoadFundsServiceImpl.loadFundsAndGetResponse() completed for messageId {}", messageId);
+        return loadResponse;
+    }
+
+    /**
+     * Processes a request that passed `screen` like `loadFundsAndGetResponse`, from step 2: `screen` already ran the
+     * stateless checks of step 1.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param loadRequest The object containing user and transaction details for loading funds, accepted by `screen`.
+     * @return The `LoadResponse` object containing the user's updated balance after loading funds.
+     * @throws RuntimeException If the shard rejects the request or an unexpected error occurs during processing.
+     */
+    @Override
+    public LoadResponse loadScreenedFundsAndGetResponse(String messageId, LoadRequest loadRequest) throws RuntimeException {
+        log.debug("ShardedLoadFundsServiceImpl.loadScreenedFundsAndGetResponse() initiated for messageId {}", messageId);
+        LoadResponse loadResponse = load(messageId, loadRequest, UUID.fromString(loadRequest.getUserId()));
+        log.debug("ShardedLoadFundsServiceImpl.loadScreenedFundsAndGetResponse() completed for messageId {}", messageId);
+        return loadResponse;
+    }
+
+    private LoadResponse load(String messageId, LoadRequest loadRequest, UUID userId) {
+        return idempotencyStore.processOnce(MessageType.LOAD, messageId, loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), LoadResponse.class,
+                () -> getResponse(userId, loadRequest));
+    }
+
+    /**
+     * Runs the stateless checks of `loadFundsAndGetResponse` without throwing, see `RequestsValidator.screenLoadRequest`.
+     * The user and the currency are checked by the owning shard, once the request is processed.
+     *
+     * @param messageId The unique identifier of the message received.
+     * @param loadRequest The object containing user and transaction details.
+     * @return Why the request is rejected, or null if it can be processed.
+     */
+    @Override
+    public Rejection screen(String messageId, LoadRequest loadRequest) {
+        return transactionMetrics.time(MessageType.LOAD, TransactionStage.VALIDATION, () -> requestsValidator.screenLoadRequest(messageId, loadRequest));
+    }
+
+    /**
+     * Processes a batch of loads on the sharded engine, reporting the outcome of every entry on its own.
+     * Entries go through `loadFundsAndGetResponse` one after the other, so each user's entries are applied in the order they were sent.
+     * There's no database lock to amortize here, the batch only saves the HTTP round trips.
+     *
+     * @param loadRequests The entries of the batch.
+     * @return One result per entry, in the order of the batch: the response, or a `BatchItemError` if the entry failed.
+     */
+    @Override
+    public List<Object> loadFundsAndGetResponses(List<LoadRequest> loadRequests) throws RuntimeException {
+        List<Object> results = new ArrayList<>(loadRequests.size());
+        for (LoadRequest loadRequest : loadRequests) {
+            Set<String> violations = loadRequestValidator.validate(loadRequest);
+            if (!violations.isEmpty()) {
+                results.add(BatchResults.invalid(loadRequest.getMessageId(), violations.toString()));
+                continue;
+            }
+            try {
+                results.add(loadFundsAndGetResponse(loadRequest.getMessageId(), loadRequest));
+            } catch (RuntimeException ex) {
+                results.add(BatchResults.error(loadRequest.getMessageId(), ex));
+            }
+        }
+        return results;
+    }
+
+    private LoadResponse getResponse(UUID userId, LoadRequest loadRequest) {
+        long transactionAmount = Money.parse(loadRequest.getTransactionAmount().getAmount());
+        BalanceDecision decision = transactionMetrics.time(MessageType.LOAD, TransactionStage.BALANCE_UPDATE, () -> EngineResults.await(shardedBalanceEngine.credit(loadRequest.getMessageId(), userId, loadRequest.getTransactionAmount().getCurrency(), transactionAmount)));
+        transactionEventLog.record(JournalRecordType.LOAD, loadRequest.getMessageId(), userId, loadRequest.getTransactionAmount().getCurrency(), transactionAmount, decision.getBalance());
+        transactionMetrics.approved(MessageType.LOAD, loadRequest.getTransactionAmount().getCurrency());
+        LoadResponse loadResponse = new LoadResponse(loadRequest.getUserId(),
+                loadRequest.getMessageId(),
+                new Amount(Money.format(decision.getBalance()),
+                        loadRequest.getTransactionAmount().getCurrency(),
+                        DebitCredit.CREDIT.toString()));
+        balancePersister.processed(idempotencyStore.remember(MessageType.LOAD, loadRequest.getMessageId(), loadRequest.getUserId(), loadRequest.getTransactionAmount().getAmount(), loadResponse));
+        return loadResponse;
+    }
+
+}
@@ -1,29 +1,70 @@
 package dev.transactionapp.service;
 
 import dev.transactionapp.entity.User;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.money.Money;
 import dev.transactionapp.repository.UserRepository;
-import jakarta.annotation.PostConstruct;
+import dev.transactionapp.routing.UserRouter;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
+@Slf4j
 @Component
 public class StartupService {
 
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private UserRouter userRouter;
+
+    @Autowired
+    private TransactionJournal transactionJournal;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Value("${transaction.startup.exit-when-ready:false}")
+    private boolean exitWhenReady;
+
+    /**
+     * Runs once the application is ready, the web server already accepting requests, so nothing here is on the startup path:
+     * seeds the users with `init`, then stops the application if `transaction.startup.exit-when-ready` is set.
+     * The latter is for the training run of the fast-startup image, which only boots the application so the JVM dumps
+     * the classes it loaded into the AppCDS archive on exit (`-XX:ArchiveClassesAtExit`).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(){
+        init();
+        if (exitWhenReady) {
+            log.info("Startup completed, exiting (transaction.startup.exit-when-ready)");
+            System.exit(SpringApplication.exit(applicationContext));
+        }
+    }
+
     /**
-     * This method is automatically called by Spring after the bean is constructed.
-     * It creates two User objects with initial balances and currencies and saves them to the UserRepository.
+     * Creates two User objects with initial balances and currencies and saves them to the UserRepository.
+     * Their IDs are owned by this node, see `UserRouter.newUserId`, and their creation is appended to the `transactionJournal`.
      *
      * **Note:** Just for development purpose.
      */
-    @PostConstruct
     public void init(){
-        User user1 = new User("USD", Double.parseDouble("200"));
-        User user2 = new User("INR", Double.parseDouble("500"));
-        userRepository.save(user1);
-        userRepository.save(user2);
+        User user1 = new User("USD", Money.parse("200"));
+        User user2 = new User("INR", Money.parse("500"));
+        user1.setId(userRouter.newUserId());
+        user2.setId(userRouter.newUserId());
+        for (User user : List.of(user1, user2)) {
+            userRepository.save(user);
+            transactionJournal.appendCreated(user.getId(), user.getCurrency(), user.getBalance(), user.getCreatedAt());
+        }
     }
 
 }
@@ -0,0 +1,63 @@
+package dev.transactionapp.validator;
+
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.exception.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+/**
+ * The checks of the `RequestsValidator` for the reactive stack: a failed check is signalled as an error of the
+ * returned Mono (with the same exceptions and messages) instead of being thrown.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRequestsValidator {
+
+    @Autowired
+    private RequestsValidator requestsValidator;
+
+    /**
+     * Runs the stateless checks of `RequestsValidator.checkAuthorizationRequestValidity` on subscription.
+     *
+     * @return The parsed user ID, or an error if any check fails.
+     */
+    public Mono<UUID> checkAuthorizationRequestValidity(String messageId, AuthorizationRequest request) {
+        return Mono.fromCallable(() -> requestsValidator.checkAuthorizationRequestValidity(messageId, request));
+    }
+
+    /**
+     * Runs the stateless checks of `RequestsValidator.checkLoadRequestValidity` on subscription.
+     *
+     * @return The parsed user ID, or an error if any check fails.
+     */
+    public Mono<UUID> checkLoadRequestValidity(String messageId, LoadRequest request) {
+        return Mono.fromCallable(() -> requestsValidator.checkLoadRequestValidity(messageId, request));
+    }
+
+    /**
+     * Ensures the user was found.
+     *
+     * @return The user, or an error with `UserNotFoundException` if `user` is empty.
+     */
+    public Mono<User> checkUserExists(UUID userId, Mono<User> user) {
+        return user.switchIfEmpty(Mono.error(() -> new UserNotFoundException(String.format("User with ID: %s not found", userId))));
+    }
+
+    /**
+     * Ensures the user's currency matches the transaction currency, see `RequestsValidator.checkCurrencyMatch`.
+     *
+     * @return The user, or an error with `CurrencyNotMatchException`.
+     */
+    public Mono<User> checkCurrencyMatch(User user, String transactionCurrency) {
+        return Mono.fromCallable(() -> {
+            requestsValidator.checkCurrencyMatch(user, transactionCurrency);
+            return user;
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package dev.transactionapp.validator;
+
+import dev.transactionapp.codec.ErrorBody;
+import dev.transactionapp.exception.*;
+import org.springframework.http.HttpStatus;
+
+import java.util.function.Function;
+
+/**
+ * The outcome of a request failing a validation check, returned by the `screen*` methods of the `RequestsValidator`
+ * instead of thrown: a rejected request is an expected outcome, which the caller answers without unwinding the stack.
+ *
+ * Every reason carries the error body the `RestExceptionHandler` would write for its exception, pre-serialized by an
+ * `ErrorBody`, so `body()` returns the same bytes without building an `Error` or formatting its message.
+ * `toException()` gives the exception back, for the paths that report errors by throwing (batches, reactive stack).
+ */
+public final class Rejection {
+
+    public enum Reason {
+        MESSAGE_ID_MISMATCH(MessageIdNotMatchException.class, MessageIdNotMatchException::new,
+                "path variable message: %s doesn't match request body message: %s"),
+        INVALID_TRANSACTION_TYPE(InvalidTransactionTypeException.class, InvalidTransactionTypeException::new,
+                "Supported transaction type: %s"),
+        INVALID_USER_ID(InvalidUUIDException.class, InvalidUUIDException::new,
+                "userid provided: %s is not A valid UUID format"),
+        USER_NOT_FOUND(UserNotFoundException.class, UserNotFoundException::new,
+                "User with ID: %s not found"),
+        CURRENCY_MISMATCH(CurrencyNotMatchException.class, CurrencyNotMatchException::new,
+                "User currency: %s doesn't match with request body currency: %s");
+
+        private final Class<? extends RequestRejectedException> exceptionType;
+        private final Function<String, RequestRejectedException> exception;
+        private final String format;
+        private final ErrorBody body;
+
+        Reason(Class<? extends RequestRejectedException> exceptionType, Function<String, RequestRejectedException> exception, String format) {
+            this.exceptionType = exceptionType;
+            this.exception = exception;
+            this.format = format;
+            this.body = new ErrorBody(format, HttpStatus.BAD_REQUEST.toString());
+        }
+    }
+
+    private final Reason reason;
+    private final String[] values;
+
+    private Rejection(Reason reason, String[] values) {
+        this.reason = reason;
+        this.values = values;
+    }
+
+    /**
+     * @param reason Why the request is rejected.
+     * @param values The values of the reason's message, in order.
+     */
+    public static Rejection of(Reason reason, String... values) {
+        if (values.length != reason.body.placeholders())
+            throw new IllegalArgumentException(reason + " takes " + reason.body.placeholders() + " values");
+        return new Rejection(reason, values);
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * @return The exception the request would have been rejected with, e.g. to tag the `transaction.errors` metric alike.
+     */
+    public Class<? extends RequestRejectedException> exceptionType() {
+        return reason.exceptionType;
+    }
+
+    public HttpStatus status() {
+        return HttpStatus.BAD_REQUEST;
+    }
+
+    /**
+     * @return The message of the exception the request would have been rejected with.
+     */
+    public String message() {
+        return String.format(reason.format, (Object[]) values);
+    }
+
+    /**
+     * @return The JSON `Error` body, byte-for-byte what the `RestExceptionHandler` writes for `toException()`.
+     */
+    public byte[] body() {
+        return reason.body.render(values);
+    }
+
+    public RequestRejectedException toException() {
+        return reason.exception.apply(message());
+    }
+
+    @Override
+    public String toString() {
+        return reason + ": " + message();
+    }
+}
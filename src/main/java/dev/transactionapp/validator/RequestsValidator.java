@@ -5,10 +5,7 @@ import dev.transactionapp.entity.LoadRequest;
 import dev.transactionapp.entity.User;
 import dev.transactionapp.enums.DebitCredit;
 import dev.transactionapp.exception.*;
-import dev.transactionapp.repository.AuthorizationResponseRepository;
-import dev.transactionapp.repository.UserRepository;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.UUID;
@@ -17,90 +14,183 @@ import java.util.UUID;
 @Service
 public class RequestsValidator {
 
-    @Autowired
-    private UserRepository userRepository;
-
-    @Autowired
-    private AuthorizationResponseRepository authorizationResponseRepository;
-
     /**
-     * Validates the Authorization Request object.
+     * Validates the Authorization Request object without touching the database.
      * This method performs the following checks:
      *  - Checks if the messageId in the path variable matches the messageId in the request body.
-     *  - Checks if the messageId is unique (not already used).
      *  - Checks if the transaction type is 'DEBIT'.
      *  - Validates the user ID format (ensures it's a valid UUID).
-     *  - Verifies if the user with the provided ID exists.
-     *  - Ensures the user's currency matches the transaction currency.
+     *
+     * The stateful checks (user existence and currency match) are performed by the service
+     * against the single locked user load, see `checkCurrencyMatch`. Reused messageIds are handled by the `IdempotencyStore`.
      *
      * @param messageId The message ID from the path variable.
      * @param request The Authorization Request object to validate.
+     * @return The parsed user ID, so callers don't have to parse it again.
      * @throws RuntimeException if any validation check fails.
      */
-    public void checkAuthorizationRequestValidity(String messageId, AuthorizationRequest request)
+    public UUID checkAuthorizationRequestValidity(String messageId, AuthorizationRequest request)
             throws RuntimeException{
         log.debug("RequestsValidator.checkAuthorizationRequestValidity() initiated for messageId {}", messageId);
-        checkMessageIdMatch(messageId, request.getMessageId());
-        checkUniqueMessageId(messageId);
-        checkTransactionTypeMatch(request.getTransactionAmount().getDebitOrCredit(), DebitCredit.DEBIT.toString());
-        checkValidUUID(request.getUserId());
-        checkUserExists(request.getUserId());
-        checkCurrencyMatch(request.getUserId(), request.getTransactionAmount().getCurrency());
+        UUID userId = check(screen(messageId, request.getMessageId(), request.getTransactionAmount().getDebitOrCredit(), DebitCredit.DEBIT), request.getUserId());
         log.debug("RequestsValidator.checkAuthorizationRequestValidity() for messageId {} completed", messageId);
+        return userId;
     }
 
     /**
-     * Validates the Load Request object.
+     * Validates the Load Request object without touching the database.
      * This method performs similar checks as `checkAuthorizationRequestValidity` but ensures the transaction type is 'CREDIT'.
      *
      * @param messageId The message ID from the path variable.
      * @param request The Load Request object to validate.
+     * @return The parsed user ID, so callers don't have to parse it again.
      * @throws RuntimeException if any validation check fails.
      */
-    public void checkLoadRequestValidity(String messageId, LoadRequest request)
+    public UUID checkLoadRequestValidity(String messageId, LoadRequest request)
             throws RuntimeException{
         log.debug("RequestsValidator.checkLoadRequestValidity() initiated with messageId {}", messageId);
-        checkMessageIdMatch(messageId, request.getMessageId());
-        checkUniqueMessageId(messageId);
-        checkTransactionTypeMatch(request.getTransactionAmount().getDebitOrCredit(), DebitCredit.CREDIT.toString());
-        checkValidUUID(request.getUserId());
-        checkUserExists(request.getUserId());
-        checkCurrencyMatch(request.getUserId(), request.getTransactionAmount().getCurrency());
+        UUID userId = check(screen(messageId, request.getMessageId(), request.getTransactionAmount().getDebitOrCredit(), DebitCredit.CREDIT), request.getUserId());
         log.debug("RequestsValidator.checkLoadRequestValidity() with messageId {} completed", messageId);
+        return userId;
+    }
+
+    /**
+     * Runs the checks of `checkAuthorizationRequestValidity` without throwing, for the request paths that answer
+     * a rejection directly with its pre-built error body.
+     *
+     * @param messageId The message ID from the path variable.
+     * @param request The Authorization Request object to validate.
+     * @return The first check failed, or null if the request passes them all.
+     */
+    public Rejection screenAuthorizationRequest(String messageId, AuthorizationRequest request) {
+        Rejection rejection = screen(messageId, request.getMessageId(), request.getTransactionAmount().getDebitOrCredit(), DebitCredit.DEBIT);
+        return rejection != null ? rejection : screenUUID(request.getUserId());
     }
 
-    private void checkMessageIdMatch(String messageId, String requestBodyMessageId) throws MessageIdNotMatchException {
+    /**
+     * Runs the checks of `checkLoadRequestValidity` without throwing, see `screenAuthorizationRequest`.
+     *
+     * @param messageId The message ID from the path variable.
+     * @param request The Load Request object to validate.
+     * @return The first check failed, or null if the request passes them all.
+     */
+    public Rejection screenLoadRequest(String messageId, LoadRequest request) {
+        Rejection rejection = screen(messageId, request.getMessageId(), request.getTransactionAmount().getDebitOrCredit(), DebitCredit.CREDIT);
+        return rejection != null ? rejection : screenUUID(request.getUserId());
+    }
+
+    /**
+     * Ensures the user's currency matches the transaction currency.
+     * Expected to be called with the user already loaded (and locked) by the service.
+     *
+     * @param user The user the transaction applies to.
+     * @param transactionCurrency The currency from the request body.
+     * @throws CurrencyNotMatchException if the currencies don't match.
+     */
+    public void checkCurrencyMatch(User user, String transactionCurrency) throws CurrencyNotMatchException {
+        checkCurrencyMatch(user.getCurrency(), transactionCurrency);
+    }
+
+    /**
+     * Same as `checkCurrencyMatch(User, String)`, given the user's currency, e.g. from the `AccountMetadataCache`.
+     */
+    public void checkCurrencyMatch(String userCurrency, String transactionCurrency) throws CurrencyNotMatchException {
+        Rejection rejection = screenCurrencyMatch(userCurrency, transactionCurrency);
+        if (rejection != null)
+            throw rejection.toException();
+    }
+
+    /**
+     * Same as `checkCurrencyMatch(String, String)`, without throwing.
+     *
+     * @return The CURRENCY_MISMATCH rejection, or null if the currencies match.
+     */
+    public Rejection screenCurrencyMatch(String userCurrency, String transactionCurrency) {
+        if(!userCurrency.equals(transactionCurrency))
+            return Rejection.of(Rejection.Reason.CURRENCY_MISMATCH, userCurrency, transactionCurrency);
+        return null;
+    }
+
+    private Rejection screen(String messageId, String requestBodyMessageId, String transactionType, DebitCredit supportedTransactionType) {
         if(!messageId.equals(requestBodyMessageId))
-            throw new MessageIdNotMatchException(String.format("path variable message: %s doesn't match request body message: %s", messageId, requestBodyMessageId));
+            return Rejection.of(Rejection.Reason.MESSAGE_ID_MISMATCH, messageId, requestBodyMessageId);
+        if(!transactionType.equals(supportedTransactionType.toString()))
+            return Rejection.of(Rejection.Reason.INVALID_TRANSACTION_TYPE, supportedTransactionType.toString());
+        return null;
+    }
+
+    private Rejection screenUUID(String userId) {
+        return parseUUID(userId) == null ? invalidUUID(userId) : null;
     }
 
-    private void checkUniqueMessageId(String messageId) throws MessageIdAlreadyExistsException {
-        if(authorizationResponseRepository.existsById(messageId))
-            throw new MessageIdAlreadyExistsException(String.format("message id: %s already exists", messageId));
+    private UUID check(Rejection rejection, String userId) throws RequestRejectedException {
+        if (rejection != null)
+            throw rejection.toException();
+        UUID uuid = parseUUID(userId);
+        if (uuid == null)
+            throw invalidUUID(userId).toException();
+        return uuid;
     }
 
-    private void checkTransactionTypeMatch(String transactionType, String supportedTransactionType) throws InvalidTransactionTypeException {
-        if(!transactionType.equals(supportedTransactionType))
-            throw new InvalidTransactionTypeException(String.format("Supported transaction type: %s", supportedTransactionType));
+    private static Rejection invalidUUID(String userId) {
+        return Rejection.of(Rejection.Reason.INVALID_USER_ID, userId);
     }
 
-    private void checkValidUUID(String userId) throws InvalidUUIDException{
+    /**
+     * Parses a user ID like `UUID.fromString`, returning null instead of throwing when it isn't one.
+     * The canonical form, 32 hex digits in groups of 8-4-4-4-12, is parsed directly. Anything else with the four
+     * dashes of a UUID is left to `UUID.fromString`, which also takes lenient forms (e.g. "1-2-3-4-5"), so only such
+     * an ID can reach its exception.
+     */
+    static UUID parseUUID(String userId) {
+        int length = userId.length();
+        if (length == 36 && userId.charAt(8) == '-' && userId.charAt(13) == '-' && userId.charAt(18) == '-' && userId.charAt(23) == '-') {
+            UUID uuid = parseCanonicalUUID(userId);
+            if (uuid != null)
+                return uuid;
+        }
+        if (length > 36 || dashes(userId) != 4)
+            return null;
         try {
-            UUID.fromString(userId);
-        } catch (IllegalArgumentException ex){
-            throw new InvalidUUIDException(String.format("userid provided: %s is not A valid UUID format", userId));
+            return UUID.fromString(userId);
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static UUID parseCanonicalUUID(String userId) {
+        long mostSigBits = 0;
+        long leastSigBits = 0;
+        for (int i = 0; i < 36; i++) {
+            if (i == 8 || i == 13 || i == 18 || i == 23)
+                continue;
+            int digit = digit(userId.charAt(i));
+            if (digit < 0)
+                return null;
+            if (i < 18)
+                mostSigBits = mostSigBits << 4 | digit;
+            else
+                leastSigBits = leastSigBits << 4 | digit;
         }
+        return new UUID(mostSigBits, leastSigBits);
     }
 
-    private void checkUserExists(String userId) throws UserNotFoundException, CurrencyNotMatchException {
-        if(!userRepository.existsById(UUID.fromString(userId)))
-            throw new UserNotFoundException(String.format("User with ID: %s not found", userId));
+    private static int digit(char c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'f')
+            return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F')
+            return c - 'A' + 10;
+        return -1;
     }
 
-    private void checkCurrencyMatch(String userId, String transactionCurrency) {
-        User user = userRepository.findById(UUID.fromString(userId)).orElseThrow(() -> new UserNotFoundException(String.format("User with ID %s not found", userId)));
-        if(!user.getCurrency().equals(transactionCurrency))
-            throw new CurrencyNotMatchException(String.format("User currency: %s doesn't match with request body currency: %s", user.getCurrency(), transactionCurrency));
+    private static int dashes(String s) {
+        int count = 0;
+        for (int i = 0; i < s.length(); i++)
+            if (s.charAt(i) == '-')
+                count++;
+        return count;
     }
 
 }
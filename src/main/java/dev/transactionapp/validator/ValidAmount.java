@@ -0,0 +1,24 @@
+package dev.transactionapp.validator;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.*;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+@Target({METHOD, FIELD, ANNOTATION_TYPE, CONSTRUCTOR, PARAMETER, TYPE_USE})
+@Retention(RUNTIME)
+@Documented
+@Constraint(validatedBy = ValidAmountValidator.class)
+public @interface ValidAmount {
+    String message() default "Invalid amount";
+    String positiveMessage() default "Amount must be a positive number";
+    String formatMessage() default "Amount can have optional 2 decimal";
+    String maxMessage() default "Amount must be a less than 1 Billion";
+    Class<?>[] groups() default {};
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,98 @@
+package dev.transactionapp.validator;
+
+import dev.transactionapp.money.Money;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.math.BigDecimal;
+
+/**
+ * This class implements a custom constraint validator for the `@ValidAmount` annotation.
+ * It checks that the amount is a positive number with at most 2 decimals and less than 1 billion.
+ *
+ * Valid amounts are checked with a single `Money.tryParse` pass, no regex or BigDecimal is involved.
+ * Only rejected amounts are inspected further, to report every rule they break.
+ */
+public class ValidAmountValidator implements ConstraintValidator<ValidAmount, CharSequence> {
+
+    private String positiveMessage;
+    private String formatMessage;
+    private String maxMessage;
+
+    /**
+     * Initializes the validator with the messages of the provided annotation.
+     *
+     * @param annotation The `@ValidAmount` annotation.
+     */
+    @Override
+    public void initialize(ValidAmount annotation) {
+        positiveMessage = annotation.positiveMessage();
+        formatMessage = annotation.formatMessage();
+        maxMessage = annotation.maxMessage();
+    }
+
+    /**
+     * Checks if the provided amount is valid. Blank values are left to `@NotBlank`.
+     *
+     * @param value The amount to validate.
+     * @param context The ConstraintValidatorContext used to report one violation per broken rule.
+     * @return True if the amount is valid, false otherwise.
+     */
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        if (value == null || value.length() == 0)
+            return true;
+        long minor = Money.tryParse(value);
+        if (minor != Money.INVALID && minor > 0 && minor < Money.MAX_TRANSACTION_AMOUNT)
+            return true;
+
+        context.disableDefaultConstraintViolation();
+        if (minor != Money.INVALID) {
+            addViolation(context, minor > 0 ? maxMessage : positiveMessage);
+            return false;
+        }
+        BigDecimal number = toBigDecimal(value);
+        if (number == null || number.signum() <= 0)
+            addViolation(context, positiveMessage);
+        else if (number.compareTo(BigDecimal.valueOf(Money.MAX_TRANSACTION_AMOUNT, Money.SCALE)) >= 0)
+            addViolation(context, maxMessage);
+        if (!isWireFormat(value))
+            addViolation(context, formatMessage);
+        return false;
+    }
+
+    private static void addViolation(ConstraintValidatorContext context, String message) {
+        context.buildConstraintViolationWithTemplate(message).addConstraintViolation();
+    }
+
+    private static BigDecimal toBigDecimal(CharSequence value) {
+        try {
+            return new BigDecimal(value.toString());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    // digits with an optional fraction of 1 or 2 digits, whatever the number of integer digits
+    private static boolean isWireFormat(CharSequence value) {
+        int length = value.length();
+        int i = 0;
+        while (i < length && isDigit(value.charAt(i)))
+            i++;
+        if (i == 0)
+            return false;
+        if (i == length)
+            return true;
+        int fractionDigits = length - i - 1;
+        if (value.charAt(i) != '.' || fractionDigits < 1 || fractionDigits > Money.SCALE)
+            return false;
+        for (int j = i + 1; j < length; j++)
+            if (!isDigit(value.charAt(j)))
+                return false;
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -1,6 +1,7 @@
 package dev.transactionapp;
 
 import dev.transactionapp.entity.*;
+import dev.transactionapp.money.Money;
 import dev.transactionapp.repository.AuthorizationResponseRepository;
 import dev.transactionapp.repository.UserRepository;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,11 +9,18 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -41,12 +49,12 @@ public class ApplicationTest {
     void setUp(){
         baseUrl = baseUrl.concat(":").concat(String.valueOf(port));
         restTemplate = new RestTemplate();
-        dummyMessageId = "someMessageId";
+        dummyMessageId = UUID.randomUUID().toString(); // every test uses its own messageId, a reused one gets replayed
     }
 
     @Test
     public void addUserTest(){
-        User user = new User("USD", Double.parseDouble("20"));
+        User user = new User("USD", Money.parse("20"));
         String url = baseUrl.concat("/user");
         User addedUser = restTemplate.postForObject(url, user, User.class);
         assertEquals(user.getBalance(), addedUser.getBalance());
@@ -54,7 +62,7 @@ public class ApplicationTest {
 
 
     @Test
-    @Sql(statements = "Insert into users(id, currency, balance, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '20', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '2000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
     public void findAllUsersTest(){
         String url = baseUrl.concat("/user");
@@ -62,6 +70,19 @@ public class ApplicationTest {
         assertTrue(userRepository.existsById(UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8")));
     }
 
+    @Test
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '2000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    public void streamAllUsersTest(){
+        String url = baseUrl.concat("/user");
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(userRepository.count(), response.getBody().lines().count());
+        assertTrue(response.getBody().contains("\"id\":\"846eb86e-b3fa-4577-b9a8-aa56227459b8\""));
+    }
+
     @Test
     @Sql(statements = "Insert into authorization_responses(message_id, user_id, response_code, amount, currency, debit_or_credit) values ('messageId', '846eb86e-b3fa-4577-b9a8-aa56227459b8', 'DECLINED', '100', 'USD', 'DEBIT')", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     @Sql(statements = "Delete from authorization_responses where message_id = 'messageId'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
@@ -73,7 +94,7 @@ public class ApplicationTest {
 
 
     @Test
-    @Sql(statements = "Insert into users(id, currency, balance, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '20', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '2000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
     public void authorizeTransactionDeclinedTest(){
         dummyUserId = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
@@ -81,11 +102,12 @@ public class ApplicationTest {
         dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
         String url = baseUrl.concat("/authorization/{messageId}");
         restTemplate.put(url, dummyAuthorizationRequest, dummyMessageId);
-        assertTrue(authorizationResponseRepository.existsById(dummyMessageId));
+        // declines are saved behind the request by the AuthorizationResponseWriter
+        assertTrue(eventually(() -> authorizationResponseRepository.existsById(dummyMessageId)));
     }
 
     @Test
-    @Sql(statements = "Insert into users(id, currency, balance, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '500', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '50000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
     public void authorizeTransactionApprovedTest(){
         dummyUserId = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
@@ -97,7 +119,7 @@ public class ApplicationTest {
     }
 
     @Test
-    @Sql(statements = "Insert into users(id, currency, balance, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '20', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '2000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
     @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
     public void loadFundsTest(){
         dummyUserId = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
@@ -105,9 +127,67 @@ public class ApplicationTest {
         dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
         String url = baseUrl.concat("/load/{messageId}");
         restTemplate.put(url, dummyAuthorizationRequest, dummyMessageId);
-        assertEquals(Double.parseDouble("220"), userRepository.findById(UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8")).get().getBalance());
+        assertEquals(Money.parse("220"), userRepository.findById(UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8")).get().getBalance());
     }
 
+    @Test
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '2000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    public void loadFundsReplayTest(){
+        dummyUserId = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
+        dummyTransactionAmount = new Amount("200", "USD", "CREDIT");
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        String url = baseUrl.concat("/load/{messageId}");
+        ResponseEntity<String> original = restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(dummyAuthorizationRequest), String.class, dummyMessageId);
+        ResponseEntity<String> replay = restTemplate.exchange(url, HttpMethod.PUT, new HttpEntity<>(dummyAuthorizationRequest), String.class, dummyMessageId);
+        assertEquals(HttpStatus.CREATED, replay.getStatusCode());
+        assertEquals(original.getBody(), replay.getBody());
+        assertEquals(Money.parse("220"), userRepository.findById(UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8")).get().getBalance());
+    }
 
+    @Test
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '2000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    public void loadFundsBatchTest(){
+        dummyUserId = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
+        LoadRequest first = new LoadRequest(dummyUserId, dummyMessageId, new Amount("200", "USD", "CREDIT"));
+        LoadRequest second = new LoadRequest(dummyUserId, UUID.randomUUID().toString(), new Amount("100", "USD", "CREDIT"));
+        LoadRequest mismatch = new LoadRequest(dummyUserId, UUID.randomUUID().toString(), new Amount("100", "INR", "CREDIT"));
+        String url = baseUrl.concat("/load/batch");
+        List<?> results = restTemplate.postForObject(url, List.of(first, mismatch, second), List.class);
+        assertEquals(3, results.size());
+        assertEquals("400 BAD_REQUEST", ((java.util.Map<?, ?>) results.get(1)).get("code"));
+        assertEquals(Money.parse("320"), userRepository.findById(UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8")).get().getBalance());
+    }
+
+    @Test
+    @Sql(statements = "Insert into users(id, currency, balance_minor, created_at) values ('846eb86e-b3fa-4577-b9a8-aa56227459b8', 'USD', '2000', CURRENT_TIMESTAMP)", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+    @Sql(statements = "Delete from users where id = '846eb86e-b3fa-4577-b9a8-aa56227459b8'", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+    public void loadFundsBatchRetryReplaysTest(){
+        // a batch whose forward timed out may have been committed, its retry with the same messageIds must not apply it again
+        dummyUserId = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
+        LoadRequest first = new LoadRequest(dummyUserId, dummyMessageId, new Amount("200", "USD", "CREDIT"));
+        LoadRequest second = new LoadRequest(dummyUserId, UUID.randomUUID().toString(), new Amount("100", "USD", "CREDIT"));
+        String url = baseUrl.concat("/load/batch");
+        String original = restTemplate.postForObject(url, List.of(first, second), String.class);
+        String retry = restTemplate.postForObject(url, List.of(first, second), String.class);
+        assertEquals(original, retry);
+        assertEquals(Money.parse("320"), userRepository.findById(UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8")).get().getBalance());
+    }
+
+    private boolean eventually(BooleanSupplier condition){
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline)
+                return false;
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
 
-}
\ No newline at end of file
+}
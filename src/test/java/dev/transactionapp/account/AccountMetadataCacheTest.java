@@ -0,0 +1,91 @@
+package dev.transactionapp.account;
+
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AccountMetadataCacheTest {
+
+    private final UUID userId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+
+    @Mock
+    private UserRepository userRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AccountMetadataCache accountMetadataCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountMetadataCache = new AccountMetadataCache(userRepository, new TransactionMetrics(meterRegistry),
+                1000, Duration.ofHours(1), 1000, Duration.ofSeconds(10));
+    }
+
+    private double gets(String cache, String result) {
+        return meterRegistry.get("cache.gets").tag("cache", cache).tag("result", result).functionCounter().count();
+    }
+
+    @Test
+    void currencyIsReadOnceTest() {
+        when(userRepository.findCurrencyById(userId)).thenReturn(Optional.of("USD"));
+
+        assertEquals("USD", accountMetadataCache.currencyOf(userId));
+        assertEquals("USD", accountMetadataCache.currencyOf(userId));
+        verify(userRepository, times(1)).findCurrencyById(userId);
+        assertEquals(1, gets("account.metadata", "hit"));
+        assertEquals(1, gets("account.metadata", "miss"));
+    }
+
+    @Test
+    void unknownUserIsCachedTest() {
+        when(userRepository.findCurrencyById(userId)).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> accountMetadataCache.currencyOf(userId));
+        assertThrows(UserNotFoundException.class, () -> accountMetadataCache.currencyOf(userId));
+        assertNull(accountMetadataCache.findCurrency(userId));
+        verify(userRepository, times(1)).findCurrencyById(userId);
+        assertEquals(2, gets("account.unknown", "hit"));
+    }
+
+    @Test
+    void createdUserIsSeenAfterInvalidationTest() {
+        when(userRepository.findCurrencyById(userId)).thenReturn(Optional.empty(), Optional.of("EUR"));
+
+        assertThrows(UserNotFoundException.class, () -> accountMetadataCache.currencyOf(userId));
+        accountMetadataCache.invalidate(userId);
+        assertEquals("EUR", accountMetadataCache.currencyOf(userId));
+        verify(userRepository, times(2)).findCurrencyById(userId);
+    }
+
+    @Test
+    void leastRecentlyUsedAccountsAreEvictedTest() {
+        meterRegistry = new SimpleMeterRegistry();
+        accountMetadataCache = new AccountMetadataCache(userRepository, new TransactionMetrics(meterRegistry),
+                1, Duration.ofHours(1), 1000, Duration.ofSeconds(10));
+        UUID otherUserId = UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8");
+        when(userRepository.findCurrencyById(userId)).thenReturn(Optional.of("USD"));
+        when(userRepository.findCurrencyById(otherUserId)).thenReturn(Optional.of("EUR"));
+
+        accountMetadataCache.currencyOf(userId);
+        accountMetadataCache.currencyOf(otherUserId);
+        accountMetadataCache.currencyOf(userId);
+        verify(userRepository, times(2)).findCurrencyById(userId);
+        assertEquals(2, meterRegistry.get("cache.evictions").tag("cache", "account.metadata").functionCounter().count());
+    }
+}
@@ -0,0 +1,59 @@
+package dev.transactionapp.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import dev.transactionapp.entity.Error;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ErrorBodyTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule()).build();
+
+    @Test
+    void bodiesAreWrittenLikeJacksonTest() throws IOException {
+        Object[][] cases = {
+                {"Nothing to fill in", new String[0]},
+                {"User with ID: %s not found", new String[]{"f09752d7-c4e7-4491-98c8-36a9f5fc9f37"}},
+                {"%s", new String[]{"only a value"}},
+                {"path variable message: %s doesn't match request body message: %s", new String[]{"m\"1\n", "m\\2 \u0007 😀 \ud83d"}},
+                {"\"quoted\" %s and %s", new String[]{null, ""}},
+                {"%s%s", new String[]{"é", "€"}}
+        };
+
+        for (Object[] c : cases) {
+            String format = (String) c[0];
+            String[] values = (String[]) c[1];
+            Error error = new Error(String.format(format, (Object[]) values), "400 BAD_REQUEST");
+            byte[] expected = objectMapper.writeValueAsBytes(error);
+
+            ErrorBody body = new ErrorBody(format, "400 BAD_REQUEST");
+
+            assertEquals(values.length, body.placeholders());
+            assertArrayEquals(expected, body.render(values), new String(expected, StandardCharsets.UTF_8));
+            assertArrayEquals(TransactionJsonCodec.toBytes(error), body.render(values));
+        }
+    }
+
+    @Test
+    void renderedBodiesAreNotSharedTest() {
+        ErrorBody body = new ErrorBody("Supported transaction type: DEBIT", "400 BAD_REQUEST");
+
+        byte[] first = body.render();
+        first[0] = 'x';
+
+        assertEquals('{', body.render()[0]);
+    }
+
+    @Test
+    void wrongNumberOfValuesTest() {
+        ErrorBody body = new ErrorBody("User currency: %s doesn't match with request body currency: %s", "400 BAD_REQUEST");
+
+        assertThrows(IllegalArgumentException.class, () -> body.render("USD"));
+    }
+}
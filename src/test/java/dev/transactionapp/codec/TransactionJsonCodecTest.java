@@ -0,0 +1,123 @@
+package dev.transactionapp.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.Error;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionJsonCodecTest {
+
+    // configured like the application's: unknown properties ignored, constructor parameters bound by name
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule()).build();
+
+    @Test
+    void responsesAreWrittenLikeJacksonTest() throws IOException {
+        Object[] responses = {
+                new AuthorizationResponse("m1", "u1", "APPROVED", new Amount("9000.00", "USD", "DEBIT")),
+                new AuthorizationResponse("m2", "u1", "DECLINED", null),
+                new LoadResponse("u1", "m3", new Amount("10.5", "EUR", "CREDIT")),
+                new LoadResponse(null, null, new Amount()),
+                new Error("Quote \" backslash \\ tab \t newline \n bell \u0007 del \u007f", "400"),
+                new Error("é € 😀 lone \ud83d surrogate", null)
+        };
+
+        for (Object response : responses) {
+            byte[] expected = objectMapper.writeValueAsBytes(response);
+            assertArrayEquals(expected, TransactionJsonCodec.toBytes(response), new String(expected, StandardCharsets.UTF_8));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            TransactionJsonCodec.write(response, out);
+            assertArrayEquals(expected, out.toByteArray());
+        }
+    }
+
+    @Test
+    void largeResponseGrowsTheBufferTest() throws IOException {
+        Error error = new Error("x".repeat(TransactionJsonCodec.MAX_POOLED_BUFFER_SIZE * 2), "500");
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(error), TransactionJsonCodec.toBytes(error));
+    }
+
+    @Test
+    void requestsAreReadLikeJacksonTest() throws IOException {
+        String[] bodies = {
+                "{\"userId\":\"u1\",\"messageId\":\"m1\",\"transactionAmount\":{\"amount\":\"100.23\",\"currency\":\"USD\",\"debitOrCredit\":\"DEBIT\"}}",
+                " { \"transactionAmount\" : { \"debitOrCredit\" : \"CREDIT\" , \"amount\" : 10.50 } , \"userId\" : \"u1\" } ",
+                "{\"userId\":\"\\u00e9\\\"\\\\\\/\\n\",\"messageId\":\"m\\u20AC\",\"transactionAmount\":null}",
+                "{\"extra\":[1,{\"a\":[true,false,null]},\"s\"],\"userId\":\"u1\",\"nested\":{},\"messageId\":-1.5e3,\"transactionAmount\":{\"amount\":true}}",
+                "{\"userId\":null,\"messageId\":\"é 😀\",\"transactionAmount\":{}}",
+                "{}"
+        };
+
+        for (String body : bodies) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            assertEquals(objectMapper.readValue(bytes, AuthorizationRequest.class),
+                    TransactionJsonCodec.read(AuthorizationRequest.class, new ByteArrayInputStream(bytes)), body);
+            assertEquals(objectMapper.readValue(bytes, LoadRequest.class),
+                    TransactionJsonCodec.read(LoadRequest.class, new ByteArrayInputStream(bytes)), body);
+        }
+    }
+
+    @Test
+    void largeRequestGrowsTheBufferTest() throws IOException {
+        String messageId = "m".repeat(TransactionJsonCodec.INITIAL_BUFFER_SIZE * 3);
+        byte[] body = ("{\"userId\":\"u1\",\"messageId\":\"" + messageId + "\"}").getBytes(StandardCharsets.UTF_8);
+
+        LoadRequest request = TransactionJsonCodec.read(LoadRequest.class, new ByteArrayInputStream(body));
+
+        assertEquals(messageId, request.getMessageId());
+        assertNull(request.getTransactionAmount());
+    }
+
+    @Test
+    void malformedRequestsAreRejectedTest() {
+        String[] bodies = {
+                "",
+                "[]",
+                "{\"userId\":\"u1\"",
+                "{\"userId\":\"u1\",}",
+                "{\"userId\" \"u1\"}",
+                "{\"userId\":\"u1\" \"messageId\":\"m1\"}",
+                "{\"userId\":\"unterminated}",
+                "{\"userId\":\"tab\tinside\"}",
+                "{\"userId\":\"\\x\"}",
+                "{\"userId\":\"\\u12\"}",
+                "{\"userId\":01}",
+                "{\"userId\":1.}",
+                "{\"userId\":nul}",
+                "{\"userId\":{\"a\":1}}",
+                "{\"transactionAmount\":\"100\"}",
+                "{userId:\"u1\"}"
+        };
+
+        for (String body : bodies) {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            assertThrows(JsonReader.MalformedJsonException.class,
+                    () -> TransactionJsonCodec.read(AuthorizationRequest.class, new ByteArrayInputStream(bytes)), body);
+        }
+    }
+
+    @Test
+    void supportedTypesTest() {
+        assertTrue(TransactionJsonCodec.canRead(AuthorizationRequest.class));
+        assertTrue(TransactionJsonCodec.canRead(LoadRequest.class));
+        assertFalse(TransactionJsonCodec.canRead(AuthorizationResponse.class));
+        assertTrue(TransactionJsonCodec.canWrite(AuthorizationResponse.class));
+        assertTrue(TransactionJsonCodec.canWrite(LoadResponse.class));
+        assertTrue(TransactionJsonCodec.canWrite(Error.class));
+        assertFalse(TransactionJsonCodec.canWrite(Amount.class));
+    }
+}
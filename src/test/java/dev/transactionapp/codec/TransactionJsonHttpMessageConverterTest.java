@@ -0,0 +1,53 @@
+package dev.transactionapp.codec;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.LoadRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransactionJsonHttpMessageConverterTest {
+
+    private final TransactionJsonHttpMessageConverter converter = new TransactionJsonHttpMessageConverter();
+
+    @Test
+    void onlyTransactionTypesInUtf8AreSupportedTest() {
+        assertTrue(converter.canRead(AuthorizationRequest.class, MediaType.APPLICATION_JSON));
+        assertTrue(converter.canRead(LoadRequest.class, null));
+        assertTrue(converter.canWrite(AuthorizationResponse.class, new MediaType("application", "problem+json")));
+        assertFalse(converter.canRead(AuthorizationRequest.class, new MediaType("application", "json", StandardCharsets.ISO_8859_1)));
+        assertFalse(converter.canRead(AuthorizationRequest.class, MediaType.TEXT_PLAIN));
+        assertFalse(converter.canRead(AuthorizationResponse.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(Amount.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void readAndWriteTest() throws IOException {
+        MockHttpInputMessage input = new MockHttpInputMessage("{\"userId\":\"u1\",\"messageId\":\"m1\"}".getBytes(StandardCharsets.UTF_8));
+        input.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        AuthorizationResponse response = new AuthorizationResponse("m1", "u1", "APPROVED", new Amount("1.00", "USD", "DEBIT"));
+
+        assertEquals(new AuthorizationRequest("u1", "m1", null), converter.read(AuthorizationRequest.class, input));
+        converter.write(response, MediaType.APPLICATION_JSON, output);
+
+        assertArrayEquals(TransactionJsonCodec.toBytes(response), output.getBodyAsBytes());
+        assertEquals(MediaType.APPLICATION_JSON, output.getHeaders().getContentType());
+    }
+
+    @Test
+    void malformedBodyIsNotReadableTest() {
+        MockHttpInputMessage input = new MockHttpInputMessage("{\"userId\":".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(HttpMessageNotReadableException.class, () -> converter.read(LoadRequest.class, input));
+    }
+}
@@ -8,6 +8,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,4 +28,13 @@ public class TransactionalConfigurationTest {
         assertNotNull(transactionManager);
         assertTrue(transactionManager instanceof JpaTransactionManager);
     }
+
+    @Test
+    public void testTransactionTemplateBeanCreation() {
+
+        PlatformTransactionManager transactionManager = transactionalConfiguration.transactionManager(entityManagerFactory);
+        TransactionTemplate transactionTemplate = transactionalConfiguration.transactionTemplate(transactionManager);
+        assertNotNull(transactionTemplate);
+        assertSame(transactionManager, transactionTemplate.getTransactionManager());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,140 @@
+package dev.transactionapp.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.transactionapp.entity.*;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.idempotency.ReactiveIdempotencyStore;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.service.ReactiveAuthorizeTransactionService;
+import dev.transactionapp.service.ReactiveLoadFundsService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = ReactiveTransactionalController.class)
+public class ReactiveTransactionalControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private ReactiveAuthorizeTransactionService reactiveAuthorizeTransactionServiceImpl;
+
+    @MockBean
+    private ReactiveLoadFundsService reactiveLoadFundsServiceImpl;
+
+    @MockBean
+    private ReactiveIdempotencyStore reactiveIdempotencyStore;
+
+    @MockBean
+    private TransactionMetrics transactionMetrics;
+
+    private String dummyMessageId;
+    private String dummyUserId;
+    private AuthorizationRequest dummyAuthorizationRequest;
+    private AuthorizationResponse expectedAuthorizationResponse;
+    private LoadRequest dummyLoadRequest;
+    private LoadResponse expectedLoadResponse;
+
+    @BeforeEach
+    void setUp() {
+        dummyMessageId = "someMessageId";
+        dummyUserId = "f09752d7-c4e7-4491-98c8-36a9f5fc9f37"; // has to be UUID
+        Amount dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        expectedAuthorizationResponse = new AuthorizationResponse(dummyMessageId, dummyUserId, ResponseCode.APPROVED.toString(), dummyTransactionAmount);
+
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        expectedLoadResponse = new LoadResponse(dummyUserId, dummyMessageId, dummyTransactionAmount);
+
+        when(reactiveIdempotencyStore.findResponse(ArgumentMatchers.any(MessageType.class), ArgumentMatchers.anyString(), ArgumentMatchers.anyString(), ArgumentMatchers.anyString())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void pingTest() {
+        webTestClient.get().uri("/ping")
+                .exchange()
+                .expectStatus().isOk();
+    }
+
+    @Test
+    void authorizeTransactionTest() {
+        when(reactiveAuthorizeTransactionServiceImpl.authorizeTransactionAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(Mono.just(expectedAuthorizationResponse));
+        webTestClient.put().uri("/authorization/{messageId}", dummyMessageId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(dummyAuthorizationRequest)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.messageId").isEqualTo(dummyMessageId)
+                .jsonPath("$.userId").isEqualTo(dummyUserId);
+    }
+
+    @Test
+    void loadFundsTest() {
+        when(reactiveLoadFundsServiceImpl.loadFundsAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(Mono.just(expectedLoadResponse));
+        webTestClient.put().uri("/load/{messageId}", dummyMessageId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(dummyLoadRequest)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("$.messageId").isEqualTo(dummyMessageId)
+                .jsonPath("$.userId").isEqualTo(dummyUserId);
+    }
+
+    @Test
+    void authorizeTransactionReplayTest() throws Exception {
+        byte[] storedResponse = objectMapper.writeValueAsBytes(expectedAuthorizationResponse);
+        when(reactiveIdempotencyStore.findResponse(MessageType.AUTHORIZATION, dummyMessageId, dummyUserId, "20")).thenReturn(Mono.just(storedResponse));
+        webTestClient.put().uri("/authorization/{messageId}", dummyMessageId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(dummyAuthorizationRequest)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody(String.class).isEqualTo(new String(storedResponse, StandardCharsets.UTF_8));
+        verifyNoInteractions(reactiveAuthorizeTransactionServiceImpl);
+    }
+
+    @Test
+    void loadFundsReplayTest() throws Exception {
+        byte[] storedResponse = objectMapper.writeValueAsBytes(expectedLoadResponse);
+        when(reactiveIdempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20")).thenReturn(Mono.just(storedResponse));
+        webTestClient.put().uri("/load/{messageId}", dummyMessageId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(dummyLoadRequest)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(String.class).isEqualTo(new String(storedResponse, StandardCharsets.UTF_8));
+        verifyNoInteractions(reactiveLoadFundsServiceImpl);
+    }
+
+    @Test
+    void loadFundsInvalidAmountTest() {
+        LoadRequest invalidLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, new Amount("-20", "USD", "CREDIT"));
+        webTestClient.put().uri("/load/{messageId}", dummyMessageId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(invalidLoadRequest)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.code").isEqualTo("400 BAD_REQUEST");
+        verifyNoInteractions(reactiveLoadFundsServiceImpl);
+    }
+}
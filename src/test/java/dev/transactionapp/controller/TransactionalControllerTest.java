@@ -2,10 +2,22 @@ package dev.transactionapp.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dev.transactionapp.entity.*;
+import dev.transactionapp.enums.MessageType;
 import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.exception.MessageIdNotMatchException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.config.RoutingConfiguration;
+import dev.transactionapp.metrics.TransactionMetrics;
 import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.routing.ForwardSignature;
+import dev.transactionapp.routing.RequestForwarder;
+import dev.transactionapp.routing.UserRouter;
 import dev.transactionapp.service.AuthorizeTransactionService;
 import dev.transactionapp.service.LoadFundsService;
+import dev.transactionapp.validator.Rejection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -15,16 +27,26 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
-@WebMvcTest(controllers = TransactionalController.class)
+@WebMvcTest(controllers = TransactionalController.class, properties = "transaction.cluster.secret=test-secret")
+@Import({BatchRequestReader.class, RequestForwarder.class, RoutingConfiguration.class})
 public class TransactionalControllerTest {
 
     @Autowired
@@ -39,9 +61,21 @@ public class TransactionalControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private ForwardSignature forwardSignature;
+
     @MockBean
     private LoadFundsService loadFundsServiceImpl;
 
+    @MockBean
+    private IdempotencyStore idempotencyStore;
+
+    @MockBean
+    private TransactionMetrics transactionMetrics;
+
+    @MockBean
+    private UserRouter userRouter;
+
     private String dummyMessageId;
     private String dummyUserId;
     private Amount dummyTransactionAmount;
@@ -72,7 +106,7 @@ public class TransactionalControllerTest {
 
     @Test
     void authorizeTransactionTest() throws Exception {
-        when(authorizeTransactionServiceImpl.authorizeTransactionAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(expectedAuthorizationResponse);
+        when(authorizeTransactionServiceImpl.authorizeScreenedTransactionAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(expectedAuthorizationResponse);
         mockMvc.perform(MockMvcRequestBuilders.put("/authorization/{messageId}", dummyMessageId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .characterEncoding("utf-8")
@@ -85,7 +119,7 @@ public class TransactionalControllerTest {
 
     @Test
     void loadFundsTest() throws Exception {
-        when(loadFundsServiceImpl.loadFundsAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(expectedLoadResponse);
+        when(loadFundsServiceImpl.loadScreenedFundsAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(expectedLoadResponse);
         mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", dummyMessageId)
                         .contentType(MediaType.APPLICATION_JSON)
                         .characterEncoding("utf-8")
@@ -94,4 +128,194 @@ public class TransactionalControllerTest {
                 .andExpect(jsonPath("$.messageId", Matchers.equalTo(dummyMessageId)))
                 .andExpect(jsonPath("$.userId", Matchers.equalTo(dummyUserId)));
     }
-}
\ No newline at end of file
+
+    @Test
+    void loadFundsOfUserOwnedByUnavailableNodeTest() throws Exception {
+        when(userRouter.remoteOwner(dummyUserId)).thenReturn(Optional.of("http://localhost:1"));
+        when(userRouter.self()).thenReturn("http://localhost:8080");
+        when(transactionMetrics.forward("http://localhost:1")).thenReturn(new SimpleMeterRegistry().timer("transaction.routing.forward"));
+        mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", dummyMessageId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyLoadRequest)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.message", Matchers.containsString("http://localhost:1")));
+        verifyNoInteractions(loadFundsServiceImpl, idempotencyStore);
+    }
+
+    @Test
+    void forwardedLoadFundsIsProcessedLocallyTest() throws Exception {
+        when(userRouter.isMember("http://localhost:8081")).thenReturn(true);
+        when(loadFundsServiceImpl.loadScreenedFundsAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(expectedLoadResponse);
+        byte[] body = objectMapper.writeValueAsBytes(dummyLoadRequest);
+        long forwardedAt = forwardSignature.now();
+        mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", dummyMessageId)
+                        .header(RequestForwarder.FORWARDED_HEADER, "http://localhost:8081")
+                        .header(RequestForwarder.FORWARDED_AT_HEADER, forwardedAt)
+                        .header(RequestForwarder.SIGNATURE_HEADER, forwardSignature.sign("PUT", "/load/" + dummyMessageId, "http://localhost:8081", forwardedAt, body))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(body))
+                .andExpect(status().isCreated());
+        verify(userRouter, never()).remoteOwner(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    void loadFundsForgingMemberHeaderIsRoutedTest() throws Exception {
+        when(userRouter.isMember("http://localhost:8081")).thenReturn(true);
+        when(userRouter.remoteOwner(dummyUserId)).thenReturn(Optional.of("http://localhost:1"));
+        when(userRouter.self()).thenReturn("http://localhost:8080");
+        when(transactionMetrics.forward("http://localhost:1")).thenReturn(new SimpleMeterRegistry().timer("transaction.routing.forward"));
+        byte[] body = objectMapper.writeValueAsBytes(dummyLoadRequest);
+        long forwardedAt = forwardSignature.now();
+        // a member's URL, but signed over another request
+        mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", dummyMessageId)
+                        .header(RequestForwarder.FORWARDED_HEADER, "http://localhost:8081")
+                        .header(RequestForwarder.FORWARDED_AT_HEADER, forwardedAt)
+                        .header(RequestForwarder.SIGNATURE_HEADER, forwardSignature.sign("PUT", "/load/otherMessageId", "http://localhost:8081", forwardedAt, body))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(body))
+                .andExpect(status().isServiceUnavailable());
+        verifyNoInteractions(loadFundsServiceImpl, idempotencyStore);
+    }
+
+    @Test
+    void loadFundsForwardedByNonMemberIsRoutedTest() throws Exception {
+        when(userRouter.remoteOwner(dummyUserId)).thenReturn(Optional.of("http://localhost:1"));
+        when(userRouter.self()).thenReturn("http://localhost:8080");
+        when(transactionMetrics.forward("http://localhost:1")).thenReturn(new SimpleMeterRegistry().timer("transaction.routing.forward"));
+        mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", dummyMessageId)
+                        .header(RequestForwarder.FORWARDED_HEADER, "http://attacker.example")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyLoadRequest)))
+                .andExpect(status().isServiceUnavailable());
+        verifyNoInteractions(loadFundsServiceImpl, idempotencyStore);
+    }
+
+    @Test
+    void loadFundsBatchForgingMemberHeaderIsRoutedTest() throws Exception {
+        when(userRouter.isMember("http://localhost:8081")).thenReturn(true);
+        when(userRouter.remoteOwner(dummyUserId)).thenReturn(Optional.of("http://localhost:1"));
+        when(userRouter.self()).thenReturn("http://localhost:8080");
+        when(transactionMetrics.forward("http://localhost:1")).thenReturn(new SimpleMeterRegistry().timer("transaction.routing.forward"));
+        mockMvc.perform(MockMvcRequestBuilders.post("/load/batch")
+                        .header(RequestForwarder.FORWARDED_HEADER, "http://localhost:8081")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyLoadRequest) + "\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].code", Matchers.containsString("503")));
+        verify(loadFundsServiceImpl, never()).loadFundsAndGetResponses(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    void authorizeTransactionReplayTest() throws Exception {
+        byte[] storedResponse = objectMapper.writeValueAsBytes(expectedAuthorizationResponse);
+        when(idempotencyStore.findResponse(MessageType.AUTHORIZATION, dummyMessageId, dummyUserId, "20")).thenReturn(Optional.of(storedResponse));
+        mockMvc.perform(MockMvcRequestBuilders.put("/authorization/{messageId}", dummyMessageId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyAuthorizationRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(new String(storedResponse, StandardCharsets.UTF_8)));
+        verifyNoInteractions(authorizeTransactionServiceImpl);
+    }
+
+    @Test
+    void loadFundsReplayTest() throws Exception {
+        byte[] storedResponse = objectMapper.writeValueAsBytes(expectedLoadResponse);
+        when(idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20")).thenReturn(Optional.of(storedResponse));
+        mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", dummyMessageId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyLoadRequest)))
+                .andExpect(status().isCreated())
+                .andExpect(content().string(new String(storedResponse, StandardCharsets.UTF_8)));
+        verifyNoInteractions(loadFundsServiceImpl);
+    }
+
+    @Test
+    void loadFundsMessageIdReusedByOtherUserTest() throws Exception {
+        String otherUserId = "a3c0e4b8-12f4-4b5e-9a6d-2f1e0c9d8b7a";
+        dummyLoadRequest.setUserId(otherUserId);
+        when(idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, otherUserId, "20"))
+                .thenThrow(new MessageIdAlreadyExistsException(String.format("message id: %s already exists", dummyMessageId)));
+        mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", dummyMessageId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyLoadRequest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("message id: " + dummyMessageId + " already exists"));
+        verifyNoInteractions(loadFundsServiceImpl);
+    }
+
+    @Test
+    void rejectedAuthorizationGetsThePrebuiltErrorBodyTest() throws Exception {
+        Rejection rejection = Rejection.of(Rejection.Reason.USER_NOT_FOUND, dummyUserId);
+        when(authorizeTransactionServiceImpl.screen(ArgumentMatchers.eq(dummyMessageId), ArgumentMatchers.any())).thenReturn(rejection);
+        mockMvc.perform(MockMvcRequestBuilders.put("/authorization/{messageId}", dummyMessageId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyAuthorizationRequest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().json(objectMapper.writeValueAsString(new dev.transactionapp.entity.Error("User with ID: " + dummyUserId + " not found", "400 BAD_REQUEST")), true));
+        verify(transactionMetrics).error(UserNotFoundException.class);
+        verify(authorizeTransactionServiceImpl, never()).authorizeScreenedTransactionAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void rejectedLoadGetsThePrebuiltErrorBodyTest() throws Exception {
+        Rejection rejection = Rejection.of(Rejection.Reason.MESSAGE_ID_MISMATCH, "otherMessageId", dummyMessageId);
+        when(loadFundsServiceImpl.screen(ArgumentMatchers.eq("otherMessageId"), ArgumentMatchers.any())).thenReturn(rejection);
+        mockMvc.perform(MockMvcRequestBuilders.put("/load/{messageId}", "otherMessageId")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(dummyLoadRequest)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message", Matchers.equalTo("path variable message: otherMessageId doesn't match request body message: " + dummyMessageId)))
+                .andExpect(jsonPath("$.code", Matchers.equalTo("400 BAD_REQUEST")));
+        verify(transactionMetrics).error(MessageIdNotMatchException.class);
+        verify(loadFundsServiceImpl, never()).loadScreenedFundsAndGetResponse(ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void authorizeTransactionsJsonArrayTest() throws Exception {
+        BatchItemError error = new BatchItemError("otherMessageId", "some error", "400 BAD_REQUEST");
+        when(authorizeTransactionServiceImpl.authorizeTransactionsAndGetResponses(List.of(dummyAuthorizationRequest, dummyAuthorizationRequest))).thenReturn(List.of(expectedAuthorizationResponse, error));
+        mockMvc.perform(MockMvcRequestBuilders.post("/authorization/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content(objectMapper.writeValueAsString(List.of(dummyAuthorizationRequest, dummyAuthorizationRequest))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].responseCode", Matchers.equalTo(ResponseCode.APPROVED.toString())))
+                .andExpect(jsonPath("$[1].messageId", Matchers.equalTo("otherMessageId")))
+                .andExpect(jsonPath("$[1].code", Matchers.equalTo("400 BAD_REQUEST")));
+    }
+
+    @Test
+    void loadFundsNdjsonTest() throws Exception {
+        when(loadFundsServiceImpl.loadFundsAndGetResponses(List.of(dummyLoadRequest, dummyLoadRequest))).thenReturn(List.of(expectedLoadResponse, expectedLoadResponse));
+        String ndjson = objectMapper.writeValueAsString(dummyLoadRequest) + "\n" + objectMapper.writeValueAsString(dummyLoadRequest) + "\n";
+        mockMvc.perform(MockMvcRequestBuilders.post("/load/batch")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .characterEncoding("utf-8")
+                        .content(ndjson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()", Matchers.equalTo(2)))
+                .andExpect(jsonPath("$[1].messageId", Matchers.equalTo(dummyMessageId)));
+    }
+
+    @Test
+    void loadFundsInvalidBatchTest() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders.post("/load/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .characterEncoding("utf-8")
+                        .content("{not json"))
+                .andExpect(status().isBadRequest());
+        verifyNoInteractions(loadFundsServiceImpl);
+    }
+}
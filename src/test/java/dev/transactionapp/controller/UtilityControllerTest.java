@@ -1,13 +1,22 @@
 package dev.transactionapp.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.transactionapp.account.AccountMetadataCache;
 import dev.transactionapp.entity.Amount;
 import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.BulkUserError;
+import dev.transactionapp.entity.BulkUserSummary;
 import dev.transactionapp.entity.User;
 import dev.transactionapp.enums.DebitCredit;
 import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.persistence.TableStreamer;
+import dev.transactionapp.persistence.UserBulkLoader;
 import dev.transactionapp.repository.AuthorizationResponseRepository;
 import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.routing.UserRouter;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -17,16 +26,25 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
 
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(MockitoExtension.class)
 @WebMvcTest(controllers = UtilityController.class)
@@ -44,41 +62,137 @@ public class UtilityControllerTest {
     @MockBean
     private UserRepository userRepository;
 
+    @MockBean
+    private TableStreamer tableStreamer;
+
+    @MockBean
+    private UserBulkLoader userBulkLoader;
+
+    @MockBean
+    private AccountMetadataCache accountMetadataCache;
+
+    @MockBean
+    private TransactionMetrics transactionMetrics;
+
+    @MockBean
+    private UserRouter userRouter;
+
+    @MockBean
+    private TransactionJournal transactionJournal;
+
 
     private User dummyUser;
     private Amount transactionAmount;
     private AuthorizationResponse dummyAuthorizationResponse;
     @BeforeEach
     void setUp(){
-        dummyUser = new User("USD", Double.parseDouble("20"));
+        dummyUser = new User("USD", Money.parse("20"));
         transactionAmount = new Amount("50", "USD", DebitCredit.DEBIT.toString());
         dummyAuthorizationResponse = new AuthorizationResponse("messageId", "userId", ResponseCode.DECLINED.toString(), transactionAmount);
     }
 
     @Test
     void addUserTest() throws Exception {
-        when(userRepository.save(ArgumentMatchers.any())).thenReturn(dummyUser);
+        UUID ownedId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        when(userRouter.newUserId()).thenReturn(ownedId);
+        when(userRepository.save(ArgumentMatchers.argThat(user -> ownedId.equals(user.getId())))).thenReturn(dummyUser);
         mockMvc.perform(MockMvcRequestBuilders.post("/user")
                 .contentType(MediaType.APPLICATION_JSON)
                 .characterEncoding("utf-8")
                 .content(objectMapper.writeValueAsString(dummyUser)))
                 .andExpect(status().isCreated())
                 .andExpect(jsonPath("$.currency", Matchers.equalTo("USD")));
+        verify(accountMetadataCache).invalidate(dummyUser.getId());
+        verify(transactionJournal).appendCreated(dummyUser.getId(), dummyUser.getCurrency(), dummyUser.getBalance(), dummyUser.getCreatedAt());
     }
 
 
+    @Test
+    void addUsersFromCsvTest() throws Exception {
+        UUID batchId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        BulkUserSummary summary = new BulkUserSummary(batchId, 2, 1, 5, 400, "/user/bulk/" + batchId + "/ids",
+                List.of(new BulkUserError(3, "Unsupported currency: EUR")), null);
+        when(userBulkLoader.load(ArgumentMatchers.any(), ArgumentMatchers.eq(UserBulkLoader.Format.CSV))).thenReturn(summary);
+        mockMvc.perform(MockMvcRequestBuilders.post("/user/bulk")
+                .contentType("text/csv")
+                .content("USD,10\nINR,20\nEUR,30\n"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.created", Matchers.equalTo(2)))
+                .andExpect(jsonPath("$.ids", Matchers.equalTo("/user/bulk/" + batchId + "/ids")))
+                .andExpect(jsonPath("$.errors[0].line", Matchers.equalTo(3)));
+    }
+
+    @Test
+    void abortedBulkLoadTest() throws Exception {
+        BulkUserSummary summary = new BulkUserSummary(UUID.randomUUID(), 0, 0, 5, 0, "/user/bulk/x/ids", List.of(), "Failed to insert");
+        when(userBulkLoader.load(ArgumentMatchers.any(), ArgumentMatchers.eq(UserBulkLoader.Format.NDJSON))).thenReturn(summary);
+        mockMvc.perform(MockMvcRequestBuilders.post("/user/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"currency\":\"USD\",\"balance\":\"10\"}\n"))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.aborted", Matchers.equalTo("Failed to insert")));
+    }
+
+    @Test
+    void findBulkUserIdsTest() throws Exception {
+        UUID batchId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        Path idsFile = Files.createTempFile("bulk", ".ids");
+        Files.write(idsFile, new byte[]{1, 2, 3});
+        when(userBulkLoader.idsFile(batchId)).thenReturn(idsFile);
+        try {
+            mockMvc.perform(MockMvcRequestBuilders.get("/user/bulk/" + batchId + "/ids"))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_OCTET_STREAM))
+                    .andExpect(content().bytes(new byte[]{1, 2, 3}));
+            mockMvc.perform(MockMvcRequestBuilders.get("/user/bulk/" + UUID.randomUUID() + "/ids"))
+                    .andExpect(status().isNotFound());
+        } finally {
+            Files.delete(idsFile);
+        }
+    }
+
     @Test
     void findAllUsersTest() throws Exception {
-        when(userRepository.findAll()).thenReturn(new ArrayList<>(Arrays.asList(dummyUser)));
+        when(userRepository.findAllByOrderByIdAsc(PageRequest.ofSize(100))).thenReturn(new ArrayList<>(Arrays.asList(dummyUser)));
         mockMvc.perform(MockMvcRequestBuilders.get("/user"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].currency", Matchers.equalTo("USD")));
     }
 
+    @Test
+    void findAllUsersAfterTest() throws Exception {
+        UUID after = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        // the limit is capped at transaction.listing.max-limit
+        when(userRepository.findByIdGreaterThanOrderByIdAsc(after, PageRequest.ofSize(1000))).thenReturn(new ArrayList<>(Arrays.asList(dummyUser)));
+        mockMvc.perform(MockMvcRequestBuilders.get("/user")
+                .param("after", after.toString())
+                .param("limit", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].currency", Matchers.equalTo("USD")));
+    }
+
+    @Test
+    void streamAllUsersTest() throws Exception {
+        doAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write("{\"currency\":\"USD\"}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(tableStreamer).streamUsers(ArgumentMatchers.isNull(), ArgumentMatchers.any());
+        MvcResult mvcResult = mockMvc.perform(MockMvcRequestBuilders.get("/user")
+                .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"currency\":\"USD\"}\n"));
+    }
+
     @Test
     void findAllAuthorizationResponses() throws Exception {
-        when(authorizationResponseRepository.findAll()).thenReturn(new ArrayList<>(Arrays.asList(dummyAuthorizationResponse)));
-        mockMvc.perform(MockMvcRequestBuilders.get("/responses"))
+        when(authorizationResponseRepository.findByMessageIdGreaterThanOrderByMessageIdAsc("a", PageRequest.ofSize(2))).thenReturn(new ArrayList<>(Arrays.asList(dummyAuthorizationResponse)));
+        mockMvc.perform(MockMvcRequestBuilders.get("/responses")
+                .param("after", "a")
+                .param("limit", "2"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].messageId", Matchers.equalTo("messageId")));
     }
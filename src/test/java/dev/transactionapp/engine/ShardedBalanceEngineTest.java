@@ -0,0 +1,106 @@
+package dev.transactionapp.engine;
+
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.journal.TransactionJournal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ShardedBalanceEngineTest {
+
+    @Mock
+    private BalancePersister balancePersister;
+
+    @Mock
+    private TransactionJournal transactionJournal;
+
+    private ShardedBalanceEngine shardedBalanceEngine;
+    private UUID dummyUserId;
+    private ConcurrentMap<UUID, Integer> loads;
+
+    @BeforeEach
+    void setUp(){
+        dummyUserId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        loads = new ConcurrentHashMap<>();
+        // amounts are in minor units
+
+        shardedBalanceEngine = new ShardedBalanceEngine(4, userId -> {
+            loads.merge(userId, 1, Integer::sum);
+            return dummyUserId.equals(userId) ? Optional.of(new User("USD", 200)) : Optional.empty();
+        }, balancePersister, transactionJournal);
+        shardedBalanceEngine.start();
+    }
+
+    @AfterEach
+    void tearDown(){
+        shardedBalanceEngine.stop();
+    }
+
+    @Test
+    void debitApprovedTest(){
+        BalanceDecision decision = shardedBalanceEngine.debit("m1", dummyUserId, "USD", 20).join();
+        assertEquals(new BalanceDecision(true, 180), decision);
+        verify(balancePersister).balanceChanged(dummyUserId, 180);
+        verify(transactionJournal).append(JournalRecordType.APPROVED, "m1", dummyUserId, "USD", 20, 180);
+    }
+
+    @Test
+    void debitDeclinedTest(){
+        BalanceDecision decision = shardedBalanceEngine.debit("m1", dummyUserId, "USD", 210).join();
+        assertEquals(new BalanceDecision(false, 200), decision);
+        verify(balancePersister, never()).balanceChanged(ArgumentMatchers.any(), ArgumentMatchers.anyLong());
+        verify(transactionJournal).append(JournalRecordType.DECLINED, "m1", dummyUserId, "USD", 210, 200);
+    }
+
+    @Test
+    void creditTest(){
+        assertEquals(new BalanceDecision(true, 220), shardedBalanceEngine.credit("m1", dummyUserId, "USD", 20).join());
+        assertEquals(new BalanceDecision(true, 230), shardedBalanceEngine.credit("m2", dummyUserId, "USD", 10).join());
+        assertEquals(1, loads.get(dummyUserId));
+        verify(transactionJournal).append(JournalRecordType.LOAD, "m2", dummyUserId, "USD", 10, 230);
+    }
+
+    @Test
+    void userNotFoundTest(){
+        CompletionException ex = assertThrows(CompletionException.class, () -> shardedBalanceEngine.debit("m1", UUID.randomUUID(), "USD", 20).join());
+        assertTrue(ex.getCause() instanceof UserNotFoundException);
+    }
+
+    @Test
+    void currencyNotMatchTest(){
+        CompletionException ex = assertThrows(CompletionException.class, () -> shardedBalanceEngine.credit("m1", dummyUserId, "INR", 20).join());
+        assertTrue(ex.getCause() instanceof CurrencyNotMatchException);
+        verifyNoInteractions(transactionJournal);
+    }
+
+    @Test
+    void concurrentDebitsNeverOverdrawTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<BalanceDecision>> decisions = new ArrayList<>();
+        for (int i = 0; i < 400; i++)
+            decisions.add(executor.submit(() -> shardedBalanceEngine.debit("m1", dummyUserId, "USD", 1).join()));
+        int approved = 0;
+        for (Future<BalanceDecision> decision : decisions)
+            approved += decision.get(10, TimeUnit.SECONDS).isApproved() ? 1 : 0;
+        executor.shutdown();
+        assertEquals(200, approved);
+        assertEquals(new BalanceDecision(false, 0), shardedBalanceEngine.debit("m1", dummyUserId, "USD", 1).join());
+    }
+}
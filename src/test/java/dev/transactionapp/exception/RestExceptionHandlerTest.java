@@ -1,10 +1,13 @@
 package dev.transactionapp.exception;
 
 import dev.transactionapp.entity.Error;
+import dev.transactionapp.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -22,6 +25,9 @@ public class RestExceptionHandlerTest {
     @InjectMocks
     RestExceptionHandler handler;
 
+    @Spy
+    private TransactionMetrics transactionMetrics = new TransactionMetrics(new SimpleMeterRegistry());
+
     @Mock
     private MethodArgumentNotValidException methodArgumentNotValidException;
 
@@ -44,6 +50,24 @@ public class RestExceptionHandlerTest {
         assertEquals(expectedMessage, response.getBody().getMessage());
     }
 
+    @Test
+    void userLockTimeoutExceptionHandlerTest() {
+        String expectedMessage = "Timed out waiting for the lock of user";
+        UserLockTimeoutException ex = new UserLockTimeoutException(expectedMessage);
+        ResponseEntity<Error> response = handler.userLockTimeoutExceptionHandler(ex);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(expectedMessage, response.getBody().getMessage());
+    }
+
+    @Test
+    void nodeUnavailableExceptionHandlerTest() {
+        String expectedMessage = "Node http://localhost:8081 owning the user is unavailable";
+        NodeUnavailableException ex = new NodeUnavailableException(expectedMessage);
+        ResponseEntity<Error> response = handler.nodeUnavailableExceptionHandler(ex);
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals(expectedMessage, response.getBody().getMessage());
+    }
+
     @Test
     void userNotFoundExceptionHandlerTest() {
         String expectedMessage = "User doesn't exist";
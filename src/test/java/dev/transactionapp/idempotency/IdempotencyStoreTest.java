@@ -0,0 +1,117 @@
+package dev.transactionapp.idempotency;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.IdempotencyRecord;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class IdempotencyStoreTest {
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private ObjectMapper objectMapper;
+    private IdempotencyStore idempotencyStore;
+    private String dummyMessageId;
+    private String dummyUserId;
+    private LoadResponse dummyLoadResponse;
+
+    @BeforeEach
+    void setUp(){
+        objectMapper = new ObjectMapper();
+        idempotencyStore = new IdempotencyStore(idempotencyRecordRepository, objectMapper, 100, Duration.ofHours(24), true);
+        dummyMessageId = "someMessageId";
+        dummyUserId = "f09752d7-c4e7-4491-98c8-36a9f5fc9f37";
+        dummyLoadResponse = new LoadResponse(dummyUserId, dummyMessageId, new Amount("220.00", "USD", "CREDIT"));
+    }
+
+    @Test
+    void findResponseUnknownMessageIdTest() {
+        when(idempotencyRecordRepository.findById(dummyMessageId)).thenReturn(Optional.empty());
+        assertTrue(idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20").isEmpty());
+    }
+
+    @Test
+    void saveThenFindResponseFromMemoryTest() throws Exception {
+        idempotencyStore.save(MessageType.LOAD, dummyMessageId, dummyUserId, "20", dummyLoadResponse);
+
+        assertArrayEquals(objectMapper.writeValueAsBytes(dummyLoadResponse), idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20").get());
+        assertEquals(dummyLoadResponse, idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20", LoadResponse.class).get());
+        verify(idempotencyRecordRepository, times(1)).save(ArgumentMatchers.any(IdempotencyRecord.class));
+        verify(idempotencyRecordRepository, never()).findById(ArgumentMatchers.anyString());
+    }
+
+    @Test
+    void findResponseFromDatabaseTest() throws Exception {
+        byte[] storedResponse = objectMapper.writeValueAsBytes(dummyLoadResponse);
+        when(idempotencyRecordRepository.findById(dummyMessageId)).thenReturn(Optional.of(new IdempotencyRecord(dummyMessageId, MessageType.LOAD, dummyUserId, 2000, storedResponse)));
+
+        assertArrayEquals(storedResponse, idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20").get());
+        assertArrayEquals(storedResponse, idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20").get());
+        verify(idempotencyRecordRepository, times(1)).findById(dummyMessageId);
+    }
+
+    @Test
+    void findResponseOtherMessageTypeTest() {
+        idempotencyStore.save(MessageType.LOAD, dummyMessageId, dummyUserId, "20", dummyLoadResponse);
+        assertThrows(MessageIdAlreadyExistsException.class, () -> idempotencyStore.findResponse(MessageType.AUTHORIZATION, dummyMessageId, dummyUserId, "20"));
+    }
+
+    @Test
+    void findResponseOtherUserTest() {
+        idempotencyStore.save(MessageType.LOAD, dummyMessageId, dummyUserId, "20", dummyLoadResponse);
+        assertThrows(MessageIdAlreadyExistsException.class,
+                () -> idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, "a3c0e4b8-12f4-4b5e-9a6d-2f1e0c9d8b7a", "20"));
+    }
+
+    @Test
+    void findResponseOtherAmountTest() throws Exception {
+        byte[] storedResponse = objectMapper.writeValueAsBytes(dummyLoadResponse);
+        when(idempotencyRecordRepository.findById(dummyMessageId)).thenReturn(Optional.of(new IdempotencyRecord(dummyMessageId, MessageType.LOAD, dummyUserId, 2000, storedResponse)));
+
+        assertArrayEquals(storedResponse, idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId.toUpperCase(), "20.00").get());
+        assertThrows(MessageIdAlreadyExistsException.class, () -> idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "25"));
+    }
+
+    @Test
+    void processOnceTest() {
+        when(idempotencyRecordRepository.findById(dummyMessageId)).thenReturn(Optional.empty());
+        AtomicInteger calls = new AtomicInteger();
+        LoadResponse first = idempotencyStore.processOnce(MessageType.LOAD, dummyMessageId, dummyUserId, "20", LoadResponse.class, () -> {
+            calls.incrementAndGet();
+            idempotencyStore.remember(MessageType.LOAD, dummyMessageId, dummyUserId, "20", dummyLoadResponse);
+            return dummyLoadResponse;
+        });
+        LoadResponse second = idempotencyStore.processOnce(MessageType.LOAD, dummyMessageId, dummyUserId, "20", LoadResponse.class, () -> {
+            calls.incrementAndGet();
+            return dummyLoadResponse;
+        });
+
+        assertEquals(first, second);
+        assertEquals(1, calls.get());
+        verify(idempotencyRecordRepository, never()).save(ArgumentMatchers.any(IdempotencyRecord.class));
+    }
+
+    @Test
+    void purgeExpiredTest() {
+        idempotencyStore.purgeExpired();
+        verify(idempotencyRecordRepository, times(1)).deleteCreatedBefore(ArgumentMatchers.any());
+    }
+}
@@ -0,0 +1,89 @@
+package dev.transactionapp.ingress;
+
+import dev.transactionapp.enums.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryFramesTest {
+
+    private static final UUID USER_ID = UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8");
+
+    @Test
+    void requestRoundTripTest() throws ProtocolException {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFrames.MAX_FRAME_LENGTH);
+        BinaryRequest request = new BinaryRequest(7, MessageType.AUTHORIZATION, USER_ID, "message-é", 1234, "INR");
+
+        assertTrue(BinaryFrames.writeRequest(buffer, request));
+        buffer.flip();
+
+        assertTrue(BinaryFrames.hasFrame(buffer, BinaryFrames.REQUEST_FIXED_LENGTH));
+        assertEquals(request, BinaryFrames.readRequest(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void responseRoundTripTest() throws ProtocolException {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFrames.MAX_FRAME_LENGTH);
+        BinaryResponse approved = new BinaryResponse(1, BinaryStatus.APPROVED, 9000, "USD", null);
+        BinaryResponse error = BinaryResponse.error(2, BinaryStatus.BAD_REQUEST, "User with ID: x not found");
+
+        assertTrue(BinaryFrames.writeResponse(buffer, approved));
+        assertTrue(BinaryFrames.writeResponse(buffer, error));
+        buffer.flip();
+
+        assertEquals(approved, BinaryFrames.readResponse(buffer));
+        assertEquals(error, BinaryFrames.readResponse(buffer));
+    }
+
+    @Test
+    void partialFrameIsNotReadTest() throws ProtocolException {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFrames.MAX_FRAME_LENGTH);
+        BinaryFrames.writeRequest(buffer, new BinaryRequest(1, MessageType.LOAD, USER_ID, "m1", 100, "USD"));
+        buffer.flip().limit(buffer.limit() - 1);
+
+        assertFalse(BinaryFrames.hasFrame(buffer, BinaryFrames.REQUEST_FIXED_LENGTH));
+        assertFalse(BinaryFrames.hasFrame(ByteBuffer.allocate(2), BinaryFrames.REQUEST_FIXED_LENGTH));
+    }
+
+    @Test
+    void frameWithoutRoomIsNotWrittenTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFrames.REQUEST_FIXED_LENGTH);
+
+        assertFalse(BinaryFrames.writeRequest(buffer, new BinaryRequest(1, MessageType.LOAD, USER_ID, "m1", 100, "USD")));
+        assertEquals(0, buffer.position());
+    }
+
+    @Test
+    void unknownCodesAreDecodedAsNullTest() throws ProtocolException {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFrames.MAX_FRAME_LENGTH);
+        BinaryFrames.writeRequest(buffer, new BinaryRequest(1, MessageType.LOAD, USER_ID, "m1", 100, "USD"));
+        buffer.put(8, (byte) 9).put(9, (byte) 9).flip();
+
+        BinaryRequest request = BinaryFrames.readRequest(buffer);
+
+        assertNull(request.type());
+        assertNull(request.currency());
+    }
+
+    @Test
+    void invalidFrameLengthIsRejectedTest() {
+        ByteBuffer buffer = ByteBuffer.allocate(8).putInt(BinaryFrames.MAX_FRAME_LENGTH * 2).flip();
+
+        assertThrows(ProtocolException.class, () -> BinaryFrames.hasFrame(buffer, BinaryFrames.REQUEST_FIXED_LENGTH));
+    }
+
+    @Test
+    void longMessageIsTruncatedTest() throws ProtocolException {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFrames.MAX_FRAME_LENGTH);
+
+        BinaryFrames.writeResponse(buffer, BinaryResponse.error(1, BinaryStatus.BAD_REQUEST, "é".repeat(BinaryFrames.MAX_TEXT_LENGTH)));
+        buffer.flip();
+
+        assertEquals("é".repeat(BinaryFrames.MAX_TEXT_LENGTH / 2), BinaryFrames.readResponse(buffer).message());
+    }
+}
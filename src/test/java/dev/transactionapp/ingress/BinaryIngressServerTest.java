@@ -0,0 +1,142 @@
+package dev.transactionapp.ingress;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class BinaryIngressServerTest {
+
+    private static final UUID USER_ID = UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8");
+
+    @Mock
+    private BinaryRequestHandler binaryRequestHandler;
+
+    private BinaryIngressServer server;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = new BinaryIngressServer(binaryRequestHandler, new InetSocketAddress("localhost", 0), 4, 8, BinaryFrames.MAX_FRAME_LENGTH);
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        server.stop();
+    }
+
+    private static BinaryResponse echo(BinaryRequest request) {
+        return new BinaryResponse(request.correlationId(), BinaryStatus.APPROVED, request.amount(), request.currency(), request.messageId());
+    }
+
+    @Test
+    void pipelinedRequestsAreAnsweredTest() throws Exception {
+        when(binaryRequestHandler.handle(any())).thenAnswer(invocation -> echo(invocation.getArgument(0)));
+
+        try (BinaryTransactionClient client = BinaryTransactionClient.connect("localhost", server.getPort())) {
+            List<CompletableFuture<BinaryResponse>> responses = new ArrayList<>();
+            // more than max-in-flight and than fit in one buffer, so reading pauses and responses are written in several passes
+            for (int i = 0; i < 500; i++)
+                responses.add(i % 2 == 0 ? client.authorize(USER_ID, "m" + i, i, "USD") : client.load(USER_ID, "m" + i, i, "INR"));
+
+            for (int i = 0; i < responses.size(); i++) {
+                BinaryResponse response = responses.get(i).get(10, TimeUnit.SECONDS);
+                assertEquals("m" + i, response.message());
+                assertEquals(i, response.balance());
+                assertEquals(i % 2 == 0 ? "USD" : "INR", response.currency());
+            }
+            assertEquals(0, client.inFlight());
+        }
+    }
+
+    @Test
+    void requestsOfOneConnectionRunConcurrentlyTest() throws Exception {
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        when(binaryRequestHandler.handle(any())).thenAnswer(invocation -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(10, TimeUnit.SECONDS));
+            return echo(invocation.getArgument(0));
+        });
+
+        try (BinaryTransactionClient client = BinaryTransactionClient.connect("localhost", server.getPort())) {
+            CompletableFuture<BinaryResponse> first = client.authorize(USER_ID, "m1", 100, "USD");
+            CompletableFuture<BinaryResponse> second = client.authorize(USER_ID, "m2", 200, "USD");
+
+            assertEquals("m1", first.get(10, TimeUnit.SECONDS).message());
+            assertEquals("m2", second.get(10, TimeUnit.SECONDS).message());
+        }
+    }
+
+    @Test
+    void failedRequestsFreeTheirInFlightSlotTest() throws Exception {
+        when(binaryRequestHandler.handle(any())).thenAnswer(invocation -> {
+            BinaryRequest request = invocation.getArgument(0);
+            if (request.messageId().startsWith("fail"))
+                throw new StackOverflowError();
+            return echo(request);
+        });
+
+        try (BinaryTransactionClient client = BinaryTransactionClient.connect("localhost", server.getPort())) {
+            // more failures than max-in-flight: the connection would no longer be read if they kept their slots
+            List<CompletableFuture<BinaryResponse>> failures = new ArrayList<>();
+            for (int i = 0; i < 16; i++)
+                failures.add(client.authorize(USER_ID, "fail" + i, 100, "USD"));
+            for (CompletableFuture<BinaryResponse> failure : failures)
+                assertEquals(BinaryStatus.INTERNAL_ERROR, failure.get(10, TimeUnit.SECONDS).status());
+
+            assertEquals("m1", client.load(USER_ID, "m1", 100, "USD").get(10, TimeUnit.SECONDS).message());
+            assertEquals(0, client.inFlight());
+        }
+    }
+
+    @Test
+    void malformedFrameClosesOnlyItsConnectionTest() throws Exception {
+        when(binaryRequestHandler.handle(any())).thenAnswer(invocation -> echo(invocation.getArgument(0)));
+
+        try (Socket socket = new Socket("localhost", server.getPort());
+             BinaryTransactionClient client = BinaryTransactionClient.connect("localhost", server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(new byte[]{0x7f, 0, 0, 0});
+            out.flush();
+            assertEquals(-1, socket.getInputStream().read());
+
+            assertEquals(BinaryStatus.APPROVED, client.load(USER_ID, "m1", 100, "USD").get(10, TimeUnit.SECONDS).status());
+        }
+    }
+
+    @Test
+    void requestsInFlightFailWhenTheServerStopsTest() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        when(binaryRequestHandler.handle(any())).thenAnswer(invocation -> {
+            started.countDown();
+            Thread.sleep(1000);
+            return echo(invocation.getArgument(0));
+        });
+
+        try (BinaryTransactionClient client = BinaryTransactionClient.connect("localhost", server.getPort())) {
+            CompletableFuture<BinaryResponse> response = client.authorize(USER_ID, "m1", 100, "USD");
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            server.stop();
+
+            assertThrows(Exception.class, () -> response.get(10, TimeUnit.SECONDS));
+        }
+    }
+}
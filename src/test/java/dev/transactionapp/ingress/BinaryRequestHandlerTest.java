@@ -0,0 +1,129 @@
+package dev.transactionapp.ingress;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.exception.UserLockTimeoutException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.routing.UserRouter;
+import dev.transactionapp.service.AuthorizeTransactionService;
+import dev.transactionapp.service.LoadFundsService;
+import dev.transactionapp.validator.ObjectsValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BinaryRequestHandlerTest {
+
+    private static final UUID USER_ID = UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8");
+
+    @Mock
+    private AuthorizeTransactionService authorizeTransactionService;
+
+    @Mock
+    private LoadFundsService loadFundsService;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private UserRouter userRouter;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BinaryRequestHandler binaryRequestHandler;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        binaryRequestHandler = new BinaryRequestHandler(authorizeTransactionService, loadFundsService, idempotencyStore, userRouter,
+                new ObjectsValidator<>(), new ObjectsValidator<>(), new TransactionMetrics(meterRegistry));
+    }
+
+    private static BinaryRequest authorization(long amount) {
+        return new BinaryRequest(3, MessageType.AUTHORIZATION, USER_ID, "m1", amount, "USD");
+    }
+
+    @Test
+    void authorizationIsProcessedByTheServiceTest() {
+        when(userRouter.remoteOwner(USER_ID.toString())).thenReturn(Optional.empty());
+        when(idempotencyStore.findResponse(MessageType.AUTHORIZATION, "m1", USER_ID.toString(), "12.50", AuthorizationResponse.class)).thenReturn(Optional.empty());
+        when(authorizeTransactionService.authorizeTransactionAndGetResponse(eq("m1"), argThat((AuthorizationRequest request) ->
+                request.getUserId().equals(USER_ID.toString()) && request.getTransactionAmount().equals(new Amount("12.50", "USD", "DEBIT")))))
+                .thenReturn(new AuthorizationResponse("m1", USER_ID.toString(), "DECLINED", new Amount("10.00", "USD", "DEBIT")));
+
+        BinaryResponse response = binaryRequestHandler.handle(authorization(1250));
+
+        assertEquals(new BinaryResponse(3, BinaryStatus.DECLINED, 1000, "USD", null), response);
+    }
+
+    @Test
+    void retriedLoadIsReplayedTest() {
+        when(userRouter.remoteOwner(USER_ID.toString())).thenReturn(Optional.empty());
+        when(idempotencyStore.findResponse(MessageType.LOAD, "m1", USER_ID.toString(), "10.00", LoadResponse.class))
+                .thenReturn(Optional.of(new LoadResponse(USER_ID.toString(), "m1", new Amount("110.00", "USD", "CREDIT"))));
+
+        BinaryResponse response = binaryRequestHandler.handle(new BinaryRequest(4, MessageType.LOAD, USER_ID, "m1", 1000, "USD"));
+
+        assertEquals(new BinaryResponse(4, BinaryStatus.APPROVED, 11000, "USD", null), response);
+        verifyNoInteractions(loadFundsService);
+    }
+
+    @Test
+    void invalidAmountIsRejectedTest() {
+        BinaryResponse response = binaryRequestHandler.handle(authorization(0));
+
+        assertEquals(BinaryStatus.BAD_REQUEST, response.status());
+        assertEquals("[Amount must be a positive number]", response.message());
+        verifyNoInteractions(authorizeTransactionService, idempotencyStore);
+    }
+
+    @Test
+    void unknownTypeIsRejectedTest() {
+        BinaryResponse response = binaryRequestHandler.handle(new BinaryRequest(5, null, USER_ID, "m1", 100, "USD"));
+
+        assertEquals(BinaryResponse.error(5, BinaryStatus.BAD_REQUEST, "Unknown message type"), response);
+    }
+
+    @Test
+    void userOfAnotherNodeIsNotProcessedTest() {
+        when(userRouter.remoteOwner(USER_ID.toString())).thenReturn(Optional.of("http://node-2:8080"));
+
+        BinaryResponse response = binaryRequestHandler.handle(authorization(100));
+
+        assertEquals(BinaryResponse.error(3, BinaryStatus.NOT_OWNER, "http://node-2:8080"), response);
+        verifyNoInteractions(authorizeTransactionService, idempotencyStore);
+    }
+
+    @Test
+    void exceptionsAreMappedToStatusesTest() {
+        when(userRouter.remoteOwner(USER_ID.toString())).thenReturn(Optional.empty());
+        when(idempotencyStore.findResponse(eq(MessageType.AUTHORIZATION), eq("m1"), eq(USER_ID.toString()), any(), eq(AuthorizationResponse.class))).thenReturn(Optional.empty());
+        when(authorizeTransactionService.authorizeTransactionAndGetResponse(eq("m1"), any()))
+                .thenThrow(new UserNotFoundException("User with ID: x not found"))
+                .thenThrow(new UserLockTimeoutException("locked"))
+                .thenThrow(new IllegalStateException("boom"));
+
+        assertEquals(BinaryResponse.error(3, BinaryStatus.BAD_REQUEST, "User with ID: x not found"), binaryRequestHandler.handle(authorization(100)));
+        assertEquals(BinaryStatus.UNAVAILABLE, binaryRequestHandler.handle(authorization(100)).status());
+        assertEquals(BinaryStatus.INTERNAL_ERROR, binaryRequestHandler.handle(authorization(100)).status());
+        assertEquals(1, meterRegistry.get("transaction.errors").tag("exception", "UserNotFoundException").counter().count());
+    }
+}
@@ -0,0 +1,126 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalRecoveryTest {
+
+    @TempDir
+    Path directory;
+
+    private final UUID dummyUserId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+    private final UUID otherUserId = UUID.fromString("a3c0e4b8-12f4-4b5e-9a6d-2f1e0c9d8b7a");
+    private final LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30);
+
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private MappedTransactionJournal journal;
+
+    @BeforeEach
+    void setUp(){
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        jdbcTemplate.execute("CREATE TABLE users (id UUID PRIMARY KEY, currency VARCHAR(3) NOT NULL, balance_minor BIGINT NOT NULL, "
+                + "created_at TIMESTAMP NOT NULL, version BIGINT DEFAULT 0 NOT NULL)");
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown(){
+        journal.stop();
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    @Test
+    void emptyDatabaseIsRestoredWithCreationTimesTest(){
+        journal.appendCreated(dummyUserId, "USD", 20000, createdAt);
+        journal.appendCreated(otherUserId, "INR", 500, createdAt);
+        journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+
+        restore();
+
+        assertEquals(30000, balanceOf(dummyUserId));
+        assertEquals(500, balanceOf(otherUserId));
+        assertEquals(Timestamp.valueOf(createdAt), createdAtOf(otherUserId));
+    }
+
+    @Test
+    void balanceUpToTheCheckpointIsKeptTest(){
+        journal.appendCreated(dummyUserId, "USD", 20000, createdAt);
+        restore();
+        // the database moved on, e.g. the journal lost its unsynced tail in a crash
+        jdbcTemplate.update("UPDATE users SET balance_minor = 25000 WHERE id = ?", dummyUserId);
+
+        restore();
+
+        assertEquals(25000, balanceOf(dummyUserId));
+        assertEquals(Timestamp.valueOf(createdAt), createdAtOf(dummyUserId));
+    }
+
+    @Test
+    void balanceAfterTheCheckpointIsRestoredTest(){
+        journal.appendCreated(dummyUserId, "USD", 20000, createdAt);
+        journal.appendCreated(otherUserId, "INR", 500, createdAt);
+        restore();
+        // e.g. written behind the journal by the sharded engine, and lost with the process
+        journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+
+        restore();
+
+        assertEquals(30000, balanceOf(dummyUserId));
+        assertEquals(500, balanceOf(otherUserId));
+        assertEquals(Timestamp.valueOf(createdAt), createdAtOf(dummyUserId));
+    }
+
+    @Test
+    void snapshotMovesTheCheckpointTest(){
+        JournalRecovery journalRecovery = new JournalRecovery(journal, jdbcTemplate, transactionTemplate);
+        journalRecovery.restore();
+        journal.appendCreated(dummyUserId, "USD", 20000, createdAt);
+        jdbcTemplate.update("INSERT INTO users (id, currency, balance_minor, created_at) VALUES (?, 'USD', 20000, ?)", dummyUserId, Timestamp.valueOf(createdAt));
+        new BalanceSnapshotter(journal, journalRecovery).snapshot();
+        jdbcTemplate.update("UPDATE users SET balance_minor = 25000 WHERE id = ?", dummyUserId);
+
+        restore();
+
+        assertEquals(25000, balanceOf(dummyUserId));
+    }
+
+    /**
+     * Restarts the journal and restores it, like a restart of the application with the same database.
+     */
+    private void restore(){
+        journal.stop();
+        journal = open();
+        new JournalRecovery(journal, jdbcTemplate, transactionTemplate).restore();
+    }
+
+    private MappedTransactionJournal open(){
+        MappedTransactionJournal opened = new MappedTransactionJournal(directory, 64 * 1024, 0);
+        opened.start();
+        return opened;
+    }
+
+    private long balanceOf(UUID userId){
+        return jdbcTemplate.queryForObject("SELECT balance_minor FROM users WHERE id = ?", Long.class, userId);
+    }
+
+    private Timestamp createdAtOf(UUID userId){
+        return jdbcTemplate.queryForObject("SELECT created_at FROM users WHERE id = ?", Timestamp.class, userId);
+    }
+}
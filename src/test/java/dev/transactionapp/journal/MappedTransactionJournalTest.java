@@ -0,0 +1,220 @@
+package dev.transactionapp.journal;
+
+import dev.transactionapp.enums.JournalRecordType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappedTransactionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    private UUID dummyUserId;
+    private UUID otherUserId;
+
+    @BeforeEach
+    void setUp(){
+        dummyUserId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        otherUserId = UUID.fromString("a3c0e4b8-12f4-4b5e-9a6d-2f1e0c9d8b7a");
+    }
+
+    @Test
+    void recoversBalancesAfterRestartTest(){
+        MappedTransactionJournal journal = open(64 * 1024);
+        assertEquals(1, journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000));
+        assertEquals(2, journal.append(JournalRecordType.APPROVED, "m2", dummyUserId, "USD", 2000, 28000));
+        assertEquals(3, journal.append(JournalRecordType.DECLINED, "m3", otherUserId, "INR", 90000, 500));
+        journal.stop();
+
+        MappedTransactionJournal reopened = open(64 * 1024);
+        Map<UUID, JournalAccount> accounts = reopened.accounts();
+        assertBalance("USD", 28000, accounts.get(dummyUserId));
+        assertBalance("INR", 500, accounts.get(otherUserId));
+        assertEquals(4, reopened.append(JournalRecordType.LOAD, "m4", otherUserId, "INR", 100, 600));
+        reopened.stop();
+    }
+
+    @Test
+    void snapshotDeletesCoveredSegmentsTest() throws IOException {
+        // room for only a couple of records per segment
+        MappedTransactionJournal journal = open(200);
+        for (int i = 1; i <= 10; i++)
+            journal.append(JournalRecordType.LOAD, "m" + i, dummyUserId, "USD", 100, i * 100L);
+        assertTrue(files("journal-").size() > 2);
+
+        assertEquals(10, journal.snapshot());
+        assertEquals(1, files("journal-").size());
+        assertEquals(1, files("snapshot-").size());
+
+        journal.append(JournalRecordType.APPROVED, "m11", dummyUserId, "USD", 300, 700);
+        journal.stop();
+
+        MappedTransactionJournal reopened = open(200);
+        assertBalance("USD", 700, reopened.accounts().get(dummyUserId));
+        assertEquals(12, reopened.append(JournalRecordType.LOAD, "m12", dummyUserId, "USD", 100, 800));
+        reopened.stop();
+    }
+
+    @Test
+    void tornTailIsIgnoredTest() throws IOException {
+        MappedTransactionJournal journal = open(64 * 1024);
+        journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+        journal.append(JournalRecordType.APPROVED, "m2", dummyUserId, "USD", 2000, 28000);
+        journal.stop();
+
+        // corrupt the second record as if the process died while writing it
+        int secondRecord = JournalRecords.encodedSize(JournalRecords.messageIdBytes("m1"));
+        try (FileChannel channel = FileChannel.open(files("journal-").get(0), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{(byte) 0xFF, (byte) 0xFF}), secondRecord + 20);
+        }
+
+        MappedTransactionJournal reopened = open(64 * 1024);
+        assertBalance("USD", 30000, reopened.accounts().get(dummyUserId));
+        assertEquals(2, reopened.append(JournalRecordType.APPROVED, "m2", dummyUserId, "USD", 2000, 28000));
+        reopened.stop();
+    }
+
+    @Test
+    void rolledBackAppendIsNotRecoveredTest(){
+        MappedTransactionJournal journal = open(64 * 1024);
+        journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+        // e.g. the idempotency insert fails at commit after the debit was journaled
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            journal.append(JournalRecordType.APPROVED, "m2", dummyUserId, "USD", 2000, 28000);
+            throw new IllegalStateException("rollback");
+        }));
+        assertBalance("USD", 30000, journal.accounts().get(dummyUserId));
+        transactionTemplate.executeWithoutResult(status -> journal.append(JournalRecordType.APPROVED, "m3", dummyUserId, "USD", 5000, 25000));
+        assertBalance("USD", 25000, journal.accounts().get(dummyUserId));
+        journal.stop();
+
+        MappedTransactionJournal reopened = open(64 * 1024);
+        assertBalance("USD", 25000, reopened.accounts().get(dummyUserId));
+        reopened.stop();
+    }
+
+    @Test
+    void unsettledAppendIsNotRecoveredTest(){
+        MappedTransactionJournal journal = open(64 * 1024);
+        journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+        // the process dies before the transaction completes
+        journal.appendPending(JournalRecordType.APPROVED, "m2", dummyUserId, "USD", 2000, 28000);
+        assertBalance("USD", 30000, journal.accounts().get(dummyUserId));
+        journal.stop();
+
+        MappedTransactionJournal reopened = open(64 * 1024);
+        assertBalance("USD", 30000, reopened.accounts().get(dummyUserId));
+        reopened.stop();
+    }
+
+    @Test
+    void recordCommittedAfterSnapshotIsRecoveredTest(){
+        MappedTransactionJournal journal = open(64 * 1024);
+        journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+        long pending = journal.appendPending(JournalRecordType.APPROVED, "m2", dummyUserId, "USD", 2000, 28000);
+        journal.append(JournalRecordType.LOAD, "m3", otherUserId, "INR", 100, 600);
+
+        // the snapshot stops before the pending record, so its marker finds it on replay
+        assertEquals(pending - 1, journal.snapshot());
+        journal.settle(pending, true);
+        journal.stop();
+
+        MappedTransactionJournal reopened = open(64 * 1024);
+        assertBalance("USD", 28000, reopened.accounts().get(dummyUserId));
+        assertBalance("INR", 600, reopened.accounts().get(otherUserId));
+        reopened.stop();
+    }
+
+    @Test
+    void laterCommittedRecordWinsWhenSettledOutOfOrderTest(){
+        MappedTransactionJournal journal = open(64 * 1024);
+        long first = journal.appendPending(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+        long second = journal.appendPending(JournalRecordType.APPROVED, "m2", dummyUserId, "USD", 2000, 28000);
+        journal.settle(second, true);
+        journal.settle(first, true);
+        assertBalance("USD", 28000, journal.accounts().get(dummyUserId));
+        journal.stop();
+
+        MappedTransactionJournal reopened = open(64 * 1024);
+        assertBalance("USD", 28000, reopened.accounts().get(dummyUserId));
+        reopened.stop();
+    }
+
+    @Test
+    void createdUserIsRecoveredWithItsCreationTimeTest(){
+        MappedTransactionJournal journal = open(64 * 1024);
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30);
+        long createdAtMillis = createdAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        journal.appendCreated(dummyUserId, "USD", 20000, createdAt);
+        journal.appendCreated(otherUserId, "INR", 500, createdAt);
+        journal.snapshot();
+        journal.append(JournalRecordType.LOAD, "m1", dummyUserId, "USD", 10000, 30000);
+        journal.stop();
+
+        MappedTransactionJournal reopened = open(64 * 1024);
+        assertEquals(new JournalAccount("USD", 30000, createdAtMillis, 3), reopened.accounts().get(dummyUserId));
+        assertEquals(new JournalAccount("INR", 500, createdAtMillis, 2), reopened.accounts().get(otherUserId));
+        reopened.stop();
+    }
+
+    private static void assertBalance(String currency, long balance, JournalAccount account) {
+        assertEquals(currency, account.getCurrency());
+        assertEquals(balance, account.getBalance());
+    }
+
+    private MappedTransactionJournal open(int segmentSize) {
+        MappedTransactionJournal journal = new MappedTransactionJournal(directory, segmentSize, 0);
+        journal.start();
+        return journal;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().toList();
+        }
+    }
+
+    /**
+     * Drives the transaction synchronizations without any resource behind the transaction.
+     */
+    private static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
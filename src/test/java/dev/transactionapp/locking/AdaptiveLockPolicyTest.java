@@ -0,0 +1,96 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.enums.LockStrategy;
+import dev.transactionapp.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class AdaptiveLockPolicyTest {
+
+    private final UUID hotUserId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+    private final UUID quietUserId = UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8");
+
+    private AtomicLong now;
+    private SimpleMeterRegistry meterRegistry;
+    private AdaptiveLockPolicy adaptiveLockPolicy;
+
+    @BeforeEach
+    void setUp() {
+        now = new AtomicLong();
+        meterRegistry = new SimpleMeterRegistry();
+        adaptiveLockPolicy = new AdaptiveLockPolicy(new TransactionMetrics(meterRegistry), LockStrategy.OPTIMISTIC, 3,
+                Duration.ofSeconds(10), Duration.ofSeconds(30), 1000, now::get);
+    }
+
+    private void conflicts(UUID userId, int count) {
+        for (int i = 0; i < count; i++)
+            adaptiveLockPolicy.conflict(userId);
+    }
+
+    private double transitions(String strategy) {
+        return meterRegistry.get("transaction.lock.transitions").tag("strategy", strategy).counter().count();
+    }
+
+    @Test
+    void accountsStartOptimisticTest() {
+        assertEquals(LockStrategy.OPTIMISTIC, adaptiveLockPolicy.strategyFor(quietUserId));
+        conflicts(quietUserId, 2);
+        assertEquals(LockStrategy.OPTIMISTIC, adaptiveLockPolicy.strategyFor(quietUserId));
+    }
+
+    @Test
+    void promotedAfterThresholdConflictsTest() {
+        conflicts(hotUserId, 3);
+        assertEquals(LockStrategy.PESSIMISTIC, adaptiveLockPolicy.strategyFor(hotUserId));
+        assertEquals(LockStrategy.OPTIMISTIC, adaptiveLockPolicy.strategyFor(quietUserId));
+        assertEquals(1, adaptiveLockPolicy.pessimisticAccounts());
+        assertEquals(1, transitions("pessimistic"));
+        assertEquals(1, meterRegistry.get("transaction.lock.pessimistic.accounts").gauge().value());
+    }
+
+    @Test
+    void conflictsOutsideTheWindowAreNotAddedUpTest() {
+        conflicts(hotUserId, 2);
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+        conflicts(hotUserId, 2);
+        assertEquals(LockStrategy.OPTIMISTIC, adaptiveLockPolicy.strategyFor(hotUserId));
+    }
+
+    @Test
+    void demotedAfterCooldownTest() {
+        conflicts(hotUserId, 3);
+        now.addAndGet(Duration.ofSeconds(29).toNanos());
+        assertEquals(LockStrategy.PESSIMISTIC, adaptiveLockPolicy.strategyFor(hotUserId));
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        assertEquals(LockStrategy.OPTIMISTIC, adaptiveLockPolicy.strategyFor(hotUserId));
+        assertEquals(LockStrategy.OPTIMISTIC, adaptiveLockPolicy.strategyFor(hotUserId));
+        assertEquals(0, adaptiveLockPolicy.pessimisticAccounts());
+        assertEquals(1, transitions("optimistic"));
+
+        // still hot: promoted again after another threshold of conflicts
+        conflicts(hotUserId, 3);
+        assertEquals(LockStrategy.PESSIMISTIC, adaptiveLockPolicy.strategyFor(hotUserId));
+        assertEquals(2, transitions("pessimistic"));
+    }
+
+    @Test
+    void pessimisticStrategyLocksEveryAccountTest() {
+        adaptiveLockPolicy = new AdaptiveLockPolicy(new TransactionMetrics(new SimpleMeterRegistry()), "pessimistic", 3,
+                Duration.ofSeconds(10), Duration.ofSeconds(30), 1000);
+        assertEquals(LockStrategy.PESSIMISTIC, adaptiveLockPolicy.strategyFor(quietUserId));
+    }
+
+    @Test
+    void unknownStrategyIsRejectedTest() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveLockPolicy(new TransactionMetrics(new SimpleMeterRegistry()), "optimistic", 3,
+                Duration.ofSeconds(10), Duration.ofSeconds(30), 1000));
+    }
+}
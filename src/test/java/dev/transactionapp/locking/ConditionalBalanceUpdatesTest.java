@@ -0,0 +1,113 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.engine.BalanceDecision;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.service.AuthorizeTransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// an in-memory database of its own, as ApplicationTest may hold the file database in another fork
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:conditional-balance-updates",
+        "transaction.locking.conditional-sql=true"})
+public class ConditionalBalanceUpdatesTest {
+
+    @Autowired
+    private ConditionalBalanceUpdates conditionalBalanceUpdates;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AuthorizeTransactionService authorizeTransactionService;
+
+    private UUID userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userRepository.save(new User("USD", Money.parse("100"))).getId();
+    }
+
+    private User user() {
+        return userRepository.findById(userId).orElseThrow();
+    }
+
+    @Test
+    void debitAppliesWithEnoughFundsTest() {
+        assertEquals(new BalanceDecision(true, Money.parse("60")), conditionalBalanceUpdates.debit(userId, "USD", Money.parse("40")));
+        assertEquals(Money.parse("60"), user().getBalance());
+        assertEquals(1, user().getVersion());
+    }
+
+    @Test
+    void debitDeclinesWithoutEnoughFundsTest() {
+        assertEquals(new BalanceDecision(false, Money.parse("100")), conditionalBalanceUpdates.debit(userId, "USD", Money.parse("100.01")));
+        assertEquals(Money.parse("100"), user().getBalance());
+        // the decline claimed the row too
+        assertEquals(1, user().getVersion());
+    }
+
+    @Test
+    void debitFailuresAreReportedTest() {
+        assertThrows(CurrencyNotMatchException.class, () -> conditionalBalanceUpdates.inTransaction(() -> conditionalBalanceUpdates.debit(userId, "INR", Money.parse("1"))));
+        assertThrows(UserNotFoundException.class, () -> conditionalBalanceUpdates.inTransaction(() -> conditionalBalanceUpdates.debit(UUID.randomUUID(), "USD", Money.parse("1"))));
+        assertEquals(Money.parse("100"), user().getBalance());
+        assertEquals(0, user().getVersion());
+    }
+
+    @Test
+    void creditAppliesTest() {
+        assertEquals(Money.parse("110"), conditionalBalanceUpdates.credit(userId, "USD", Money.parse("10")));
+        assertEquals(Money.parse("110"), user().getBalance());
+        assertEquals(1, user().getVersion());
+    }
+
+    @Test
+    void creditFailuresAreReportedTest() {
+        assertThrows(CurrencyNotMatchException.class, () -> conditionalBalanceUpdates.inTransaction(() -> conditionalBalanceUpdates.credit(userId, "INR", Money.parse("10"))));
+        assertThrows(UserNotFoundException.class, () -> conditionalBalanceUpdates.inTransaction(() -> conditionalBalanceUpdates.credit(UUID.randomUUID(), "USD", Money.parse("10"))));
+        assertThrows(ArithmeticException.class, () -> conditionalBalanceUpdates.inTransaction(() -> conditionalBalanceUpdates.credit(userId, "USD", Long.MAX_VALUE)));
+        assertEquals(Money.parse("100"), user().getBalance());
+    }
+
+    @Test
+    void concurrentAuthorizationsNeverOverdrawTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<AuthorizationResponse>> authorizations = new ArrayList<>();
+        try {
+            for (int i = 0; i < 150; i++) {
+                String messageId = UUID.randomUUID().toString();
+                AuthorizationRequest authorizationRequest = new AuthorizationRequest(userId.toString(), messageId, new Amount("1.00", "USD", "DEBIT"));
+                authorizations.add(executor.submit(() -> authorizeTransactionService.authorizeTransactionAndGetResponse(messageId, authorizationRequest)));
+            }
+            int approved = 0;
+            for (Future<AuthorizationResponse> authorization : authorizations) {
+                if (authorization.get().getResponseCode().equals(ResponseCode.APPROVED.toString()))
+                    approved++;
+            }
+            assertEquals(100, approved);
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(0, user().getBalance());
+    }
+}
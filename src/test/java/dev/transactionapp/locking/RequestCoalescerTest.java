@@ -0,0 +1,247 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RequestCoalescerTest {
+
+    private final UUID userId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+
+    @Mock
+    private UserLocking userLocking;
+
+    private SimpleMeterRegistry meterRegistry;
+    private RequestCoalescer requestCoalescer;
+    private User user;
+    private List<String> applied;
+    private ExecutorService executor;
+    private List<Thread> callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        requestCoalescer = new RequestCoalescer(userLocking, new TransactionMetrics(meterRegistry), true, 100, Duration.ZERO);
+        user = new User("USD", Money.parse("100"));
+        user.setId(userId);
+        applied = Collections.synchronizedList(new ArrayList<>());
+        callers = Collections.synchronizedList(new ArrayList<>());
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable);
+            callers.add(thread);
+            return thread;
+        });
+    }
+
+    private Function<User, Long> load(String name, long amount) {
+        return loaded -> {
+            applied.add(name);
+            loaded.setBalance(loaded.getBalance() + amount);
+            return loaded.getBalance();
+        };
+    }
+
+    private void applyAlone() {
+        when(userLocking.inTransaction(ArgumentMatchers.any(), ArgumentMatchers.eq(userId), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(user));
+    }
+
+    private void applyTogether() {
+        doAnswer(invocation -> {
+            invocation.<Consumer<User>>getArgument(2).accept(user);
+            return null;
+        }).when(userLocking).inLockedTransaction(ArgumentMatchers.any(), ArgumentMatchers.eq(userId), ArgumentMatchers.any());
+    }
+
+    /**
+     * Submits a request from another thread and waits until it's queued behind the account's leader.
+     */
+    private Future<Long> submitBehindLeader(Function<User, Long> work) throws InterruptedException {
+        int started = callers.size();
+        Future<Long> future = executor.submit(() -> requestCoalescer.inTransaction(MessageType.LOAD, userId, work));
+        while (callers.size() == started || callers.get(started).getState() != Thread.State.WAITING)
+            Thread.sleep(1);
+        return future;
+    }
+
+    /**
+     * Starts a request whose transaction blocks until `release` is counted down, so the following requests queue up.
+     */
+    private Future<Long> startBlockingLeader(CountDownLatch release) throws InterruptedException {
+        CountDownLatch entered = new CountDownLatch(1);
+        when(userLocking.inTransaction(ArgumentMatchers.any(), ArgumentMatchers.eq(userId), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return invocation.<Function<User, ?>>getArgument(2).apply(user);
+        });
+        Future<Long> leader = executor.submit(() -> requestCoalescer.inTransaction(MessageType.LOAD, userId, load("leader", Money.parse("1"))));
+        entered.await();
+        return leader;
+    }
+
+    @Test
+    void singleRequestRunsInItsOwnTransactionTest() {
+        applyAlone();
+
+        assertEquals(Money.parse("110"), requestCoalescer.inTransaction(MessageType.LOAD, userId, load("only", Money.parse("10"))));
+        verify(userLocking, never()).inLockedTransaction(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.any());
+        assertEquals(1, meterRegistry.get("transaction.coalesced.requests").summary().count());
+    }
+
+    @Test
+    void concurrentRequestsAreAppliedTogetherInArrivalOrderTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Long> leader = startBlockingLeader(release);
+        applyTogether();
+        Future<Long> first = submitBehindLeader(load("first", Money.parse("10")));
+        Future<Long> second = submitBehindLeader(load("second", Money.parse("20")));
+        Future<Long> third = submitBehindLeader(load("third", Money.parse("30")));
+        release.countDown();
+
+        assertEquals(Money.parse("101"), leader.get());
+        assertEquals(Money.parse("111"), first.get());
+        assertEquals(Money.parse("131"), second.get());
+        assertEquals(Money.parse("161"), third.get());
+        assertEquals(List.of("leader", "first", "second", "third"), applied);
+        verify(userLocking, times(1)).inLockedTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(userId), ArgumentMatchers.any());
+        assertEquals(4, meterRegistry.get("transaction.coalesced.requests").summary().totalAmount());
+        assertEquals(2, meterRegistry.get("transaction.coalesced.requests").summary().count());
+    }
+
+    @Test
+    void batchesAreLimitedToTheMaxBatchSizeTest() throws Exception {
+        requestCoalescer = new RequestCoalescer(userLocking, new TransactionMetrics(meterRegistry), true, 2, Duration.ZERO);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Long> leader = startBlockingLeader(release);
+        applyTogether();
+        List<Future<Long>> queued = new ArrayList<>();
+        for (int i = 0; i < 5; i++)
+            queued.add(submitBehindLeader(load("queued" + i, Money.parse("1"))));
+        release.countDown();
+
+        leader.get();
+        for (Future<Long> request : queued)
+            request.get();
+        assertEquals(Money.parse("106"), user.getBalance());
+        assertEquals(List.of("leader", "queued0", "queued1", "queued2", "queued3", "queued4"), applied);
+        assertEquals(2, meterRegistry.get("transaction.coalesced.requests").summary().max());
+    }
+
+    @Test
+    void failedCheckOnlyFailsItsOwnRequestTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Long> leader = startBlockingLeader(release);
+        applyTogether();
+        Future<Long> mismatch = submitBehindLeader(loaded -> {
+            throw new CurrencyNotMatchException("Currency does not match");
+        });
+        Future<Long> match = submitBehindLeader(load("match", Money.parse("10")));
+        release.countDown();
+
+        leader.get();
+        Exception ex = assertThrows(Exception.class, mismatch::get);
+        assertInstanceOf(CurrencyNotMatchException.class, ex.getCause());
+        assertEquals(Money.parse("111"), match.get());
+    }
+
+    @Test
+    void failedTransactionIsRetriedRequestByRequestTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<Long> leader = startBlockingLeader(release);
+        doThrow(new IllegalStateException("commit failed"))
+                .when(userLocking).inLockedTransaction(ArgumentMatchers.any(), ArgumentMatchers.eq(userId), ArgumentMatchers.any());
+        Future<Long> first = submitBehindLeader(load("first", Money.parse("10")));
+        Future<Long> second = submitBehindLeader(load("second", Money.parse("20")));
+        release.countDown();
+
+        leader.get();
+        assertEquals(Money.parse("111"), first.get());
+        assertEquals(Money.parse("131"), second.get());
+        verify(userLocking, times(3)).inTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(userId), ArgumentMatchers.any());
+    }
+
+    @Test
+    void failedTransactionOnlyCountsTheCommittedOutcomesTest() throws Exception {
+        TransactionMetrics transactionMetrics = new TransactionMetrics(meterRegistry);
+        requestCoalescer = new RequestCoalescer(userLocking, transactionMetrics, true, 100, Duration.ZERO);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch entered = new CountDownLatch(1);
+        when(userLocking.inTransaction(ArgumentMatchers.any(), ArgumentMatchers.eq(userId), ArgumentMatchers.any())).thenAnswer(invocation -> {
+            entered.countDown();
+            release.await();
+            return inTransaction(() -> invocation.<Function<User, ?>>getArgument(2).apply(user), true);
+        });
+        doAnswer(invocation -> inTransaction(() -> {
+            invocation.<Consumer<User>>getArgument(2).accept(user);
+            throw new IllegalStateException("commit failed");
+        }, false)).when(userLocking).inLockedTransaction(ArgumentMatchers.any(), ArgumentMatchers.eq(userId), ArgumentMatchers.any());
+        Function<User, Long> approved = loaded -> {
+            transactionMetrics.approved(MessageType.LOAD, "USD");
+            return loaded.getBalance();
+        };
+        Future<Long> leader = executor.submit(() -> requestCoalescer.inTransaction(MessageType.LOAD, userId, approved));
+        entered.await();
+        Future<Long> first = submitBehindLeader(approved);
+        Future<Long> second = submitBehindLeader(approved);
+        release.countDown();
+
+        leader.get();
+        first.get();
+        second.get();
+        assertEquals(3, meterRegistry.get("transaction.outcomes").tags("type", "load", "outcome", "approved", "currency", "USD").counter().count());
+        assertEquals(3, meterRegistry.get("transaction.coalesced.requests").summary().count());
+        assertEquals(1, meterRegistry.get("transaction.coalesced.requests").summary().max());
+    }
+
+    /**
+     * Runs `work` with transaction synchronization active, like `UserLocking` does, then commits or rolls back.
+     */
+    private static Object inTransaction(Callable<?> work, boolean commit) throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            Object result = work.call();
+            if (commit)
+                TransactionSynchronizationUtils.triggerAfterCommit();
+            return result;
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void disabledCoalescingRunsEveryRequestAloneTest() {
+        requestCoalescer = new RequestCoalescer(userLocking, new TransactionMetrics(meterRegistry), false, 100, Duration.ZERO);
+        applyAlone();
+
+        assertEquals(Money.parse("110"), requestCoalescer.inTransaction(MessageType.LOAD, userId, load("only", Money.parse("10"))));
+        assertEquals(0, meterRegistry.get("transaction.coalesced.requests").summary().count());
+    }
+}
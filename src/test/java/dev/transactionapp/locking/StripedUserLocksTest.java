@@ -0,0 +1,98 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.exception.UserLockTimeoutException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StripedUserLocksTest {
+
+    private final UUID userId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+
+    private SimpleMeterRegistry meterRegistry;
+    private StripedUserLocks stripedUserLocks;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        stripedUserLocks = new StripedUserLocks(new TransactionMetrics(meterRegistry), 8, Duration.ofMillis(200));
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private double queued() {
+        return meterRegistry.get("transaction.lock.stripe.queue").tag("stripe", String.valueOf(stripedUserLocks.stripe(userId))).gauge().value();
+    }
+
+    /**
+     * Holds the user's stripe from another thread until `release` is counted down.
+     */
+    private Future<String> holdStripe(CountDownLatch release) throws InterruptedException {
+        CountDownLatch held = new CountDownLatch(1);
+        Future<String> holder = executor.submit(() -> stripedUserLocks.withLock(userId, () -> {
+            held.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+            return "holder";
+        }));
+        held.await();
+        return holder;
+    }
+
+    @Test
+    void sameUserWaitsForTheStripeTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = holdStripe(release);
+        Future<String> waiter = executor.submit(() -> stripedUserLocks.withLock(userId, () -> "waiter"));
+        while (queued() == 0)
+            Thread.sleep(1);
+        assertFalse(waiter.isDone());
+
+        release.countDown();
+        assertEquals("holder", holder.get());
+        assertEquals("waiter", waiter.get());
+        assertEquals(0, queued());
+        assertEquals(2, meterRegistry.get("transaction.lock.stripe.wait").tag("stripe", String.valueOf(stripedUserLocks.stripe(userId))).timer().count());
+    }
+
+    @Test
+    void waiterTimesOutTest() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Future<String> holder = holdStripe(release);
+
+        assertThrows(UserLockTimeoutException.class, () -> stripedUserLocks.withLock(userId, () -> "waiter"));
+        release.countDown();
+        assertEquals("holder", holder.get());
+    }
+
+    @Test
+    void stripeIsReentrantTest() {
+        assertEquals("inner", stripedUserLocks.withLock(userId, () -> stripedUserLocks.withLock(userId, () -> "inner")));
+    }
+
+    @Test
+    void everyStripeHasItsMetersTest() {
+        assertEquals(8, meterRegistry.find("transaction.lock.stripe.wait").timers().size());
+        assertEquals(8, meterRegistry.find("transaction.lock.stripe.queue").gauges().size());
+        assertTrue(stripedUserLocks.stripe(userId) >= 0 && stripedUserLocks.stripe(userId) < 8);
+    }
+}
@@ -0,0 +1,178 @@
+package dev.transactionapp.locking;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.LockStrategy;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.service.LoadFundsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// an in-memory database of its own, as ApplicationTest may hold the file database in another fork
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {"spring.datasource.url=jdbc:h2:mem:user-locking", "transaction.locking.strategy=adaptive"})
+public class UserLockingTest {
+
+    @Autowired
+    private UserLocking userLocking;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private AdaptiveLockPolicy adaptiveLockPolicy;
+
+    @Autowired
+    private LoadFundsService loadFundsService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private UUID userId;
+    private TransactionTemplate otherTransaction;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User("USD", Money.parse("100"));
+        user.setCreatedAt(LocalDateTime.now());
+        userId = userRepository.save(user).getId();
+        otherTransaction = new TransactionTemplate(transactionManager);
+        otherTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    private void creditInOtherTransaction(long amount) {
+        otherTransaction.executeWithoutResult(status -> {
+            User user = userRepository.findById(userId).orElseThrow();
+            user.setBalance(user.getBalance() + amount);
+        });
+    }
+
+    private double conflicts() {
+        return meterRegistry.get("transaction.lock.conflicts").tag("type", "load").counter().count();
+    }
+
+    @Test
+    void staleBalanceUpdateIsRetriedOnFreshReadTest() {
+        AtomicInteger attempts = new AtomicInteger();
+        double conflictsBefore = conflicts();
+        long balance = userLocking.inTransaction(MessageType.LOAD, userId, user -> {
+            if (attempts.incrementAndGet() == 1)
+                creditInOtherTransaction(Money.parse("5"));
+            user.setBalance(user.getBalance() + Money.parse("10"));
+            userRepository.saveAndFlush(user);
+            return user.getBalance();
+        });
+        assertEquals(2, attempts.get());
+        assertEquals(Money.parse("115"), balance);
+        assertEquals(Money.parse("115"), userRepository.findById(userId).orElseThrow().getBalance());
+        assertEquals(conflictsBefore + 1, conflicts());
+    }
+
+    @Test
+    void staleUnchangedUserIsDetectedTest() {
+        AtomicInteger attempts = new AtomicInteger();
+        userLocking.inTransaction(MessageType.LOAD, userId, user -> {
+            if (attempts.incrementAndGet() == 1)
+                creditInOtherTransaction(Money.parse("5"));
+            userLocking.confirmUnchanged(user);
+            return null;
+        });
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void lockedUserIsNotCheckedAgainTest() {
+        AtomicInteger attempts = new AtomicInteger();
+        userLocking.inLockedTransaction(MessageType.LOAD, userId, user -> {
+            attempts.incrementAndGet();
+            userLocking.confirmUnchanged(user);
+        });
+        assertEquals(1, attempts.get());
+        assertEquals(0, userRepository.findById(userId).orElseThrow().getVersion());
+    }
+
+    @Test
+    void lastAttemptTakesTheRowLockTest() {
+        AtomicInteger attempts = new AtomicInteger();
+        double conflictsBefore = conflicts();
+        long balance = userLocking.inTransaction(MessageType.LOAD, userId, user -> {
+            // every optimistic attempt loses against another update; the last one holds the row lock, so nothing can interleave
+            if (attempts.incrementAndGet() < 3)
+                creditInOtherTransaction(Money.parse("5"));
+            user.setBalance(user.getBalance() + Money.parse("10"));
+            userRepository.saveAndFlush(user);
+            return user.getBalance();
+        });
+        assertEquals(3, attempts.get());
+        assertEquals(Money.parse("120"), balance);
+        assertEquals(conflictsBefore + 2, conflicts());
+    }
+
+    @Test
+    void accountWrittenByAnotherNodeIsPromotedTest() {
+        // the striped lock is taken by every call; the conflicts come from the other transaction, as from another replica
+        for (int i = 0; i < 3; i++) {
+            AtomicInteger attempts = new AtomicInteger();
+            userLocking.inTransaction(MessageType.LOAD, userId, user -> {
+                if (attempts.incrementAndGet() < 3)
+                    creditInOtherTransaction(Money.parse("5"));
+                user.setBalance(user.getBalance() + Money.parse("10"));
+                userRepository.saveAndFlush(user);
+                return null;
+            });
+        }
+        assertEquals(LockStrategy.PESSIMISTIC, adaptiveLockPolicy.strategyFor(userId));
+
+        AtomicInteger attempts = new AtomicInteger();
+        double conflictsBefore = conflicts();
+        userLocking.inTransaction(MessageType.LOAD, userId, user -> {
+            attempts.incrementAndGet();
+            user.setBalance(user.getBalance() + Money.parse("10"));
+            userRepository.saveAndFlush(user);
+            return null;
+        });
+        assertEquals(1, attempts.get());
+        assertEquals(conflictsBefore, conflicts());
+        assertEquals(Money.parse("170"), userRepository.findById(userId).orElseThrow().getBalance());
+    }
+
+    @Test
+    void concurrentLoadsAreAllAppliedTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> loads = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                String messageId = UUID.randomUUID().toString();
+                LoadRequest loadRequest = new LoadRequest(userId.toString(), messageId, new Amount("1.00", "USD", "CREDIT"));
+                loads.add(executor.submit(() -> loadFundsService.loadFundsAndGetResponse(messageId, loadRequest)));
+            }
+            for (Future<?> load : loads)
+                load.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(Money.parse("300"), userRepository.findById(userId).orElseThrow().getBalance());
+    }
+}
@@ -0,0 +1,148 @@
+package dev.transactionapp.logging;
+
+import dev.transactionapp.enums.JournalRecordType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.slf4j.Logger;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TransactionEventLogTest {
+
+    private static final UUID USER_ID = UUID.fromString("846eb86e-b3fa-4577-b9a8-aa56227459b8");
+
+    @Mock
+    private Logger events;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(events.isInfoEnabled()).thenReturn(true);
+    }
+
+    @Test
+    void eventsAreWrittenInOrderAsJsonTest() {
+        TransactionEventLog eventLog = new TransactionEventLog(events, 16, 1, 0, 1);
+        eventLog.start();
+
+        eventLog.record(JournalRecordType.APPROVED, "m1", USER_ID, "USD", 2000, 18000);
+        eventLog.record(JournalRecordType.DECLINED, "m2", USER_ID, "USD", 21005, 18000);
+        eventLog.record(JournalRecordType.LOAD, "m\"3\n", USER_ID, "USD", 50, 18050);
+        eventLog.stop();
+
+        List<String> lines = writtenLines(3);
+        assertTrue(lines.get(0).matches("\\{\"ts\":\\d+,\"event\":\"APPROVED\",\"messageId\":\"m1\",\"userId\":\"" + USER_ID
+                + "\",\"currency\":\"USD\",\"amount\":\"20.00\",\"balance\":\"180.00\"}"), lines.get(0));
+        assertTrue(lines.get(1).contains("\"event\":\"DECLINED\",\"messageId\":\"m2\""), lines.get(1));
+        assertTrue(lines.get(1).endsWith("\"amount\":\"210.05\",\"balance\":\"180.00\"}"), lines.get(1));
+        assertTrue(lines.get(2).contains("\"event\":\"LOAD\",\"messageId\":\"m\\\"3\\u000A\""), lines.get(2));
+    }
+
+    @Test
+    void sampledOutApprovalsAreCountedAndDeclinesKeptTest() {
+        TransactionEventLog eventLog = new TransactionEventLog(events, 16, 0, 0, 1);
+        eventLog.start();
+
+        eventLog.record(JournalRecordType.APPROVED, "m1", USER_ID, "USD", 100, 900);
+        eventLog.record(JournalRecordType.LOAD, "m2", USER_ID, "USD", 100, 1000);
+        eventLog.record(JournalRecordType.DECLINED, "m3", USER_ID, "USD", 5000, 1000);
+        eventLog.stop();
+
+        List<String> lines = writtenLines(2);
+        assertTrue(lines.get(0).contains("\"event\":\"DECLINED\""), lines.get(0));
+        assertTrue(lines.get(1).endsWith("\"event\":\"SUPPRESSED\",\"sampledOut\":2,\"rateLimited\":0,\"dropped\":0}"), lines.get(1));
+    }
+
+    @Test
+    void approvalsAreRateLimitedTest() {
+        TransactionEventLog eventLog = new TransactionEventLog(events, 2048, 1, 2, 1);
+        eventLog.start();
+
+        for (int i = 0; i < 1000; i++)
+            eventLog.record(JournalRecordType.APPROVED, "m" + i, USER_ID, "USD", 100, 900);
+        eventLog.stop();
+
+        ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        verify(events, atLeast(3)).info(lines.capture());
+        long approved = lines.getAllValues().stream().filter(line -> line.contains("\"event\":\"APPROVED\"")).count();
+        // 2 per second, in at most two seconds
+        assertTrue(approved >= 2 && approved <= 4, "approved: " + approved);
+        assertTrue(lines.getAllValues().get(lines.getAllValues().size() - 1).contains("\"rateLimited\":" + (1000 - approved)));
+    }
+
+    @Test
+    void fullRingDropsApprovalsButNotDeclinesTest() {
+        TransactionEventLog eventLog = new TransactionEventLog(events, 3, 1, 0, 1);
+
+        // not started: nothing is taken off the ring of 4
+        for (int i = 0; i < 6; i++)
+            eventLog.record(JournalRecordType.APPROVED, "m" + i, USER_ID, "USD", 100, 900);
+        eventLog.record(JournalRecordType.DECLINED, "declined", USER_ID, "USD", 5000, 900);
+
+        List<String> lines = writtenLines(1);
+        assertTrue(lines.get(0).contains("\"event\":\"DECLINED\",\"messageId\":\"declined\""), lines.get(0));
+
+        eventLog.start();
+        eventLog.stop();
+
+        lines = writtenLines(6);
+        for (int i = 0; i < 4; i++)
+            assertTrue(lines.get(i + 1).contains("\"messageId\":\"m" + i + "\""), lines.get(i + 1));
+        assertTrue(lines.get(5).endsWith("\"sampledOut\":0,\"rateLimited\":0,\"dropped\":2}"), lines.get(5));
+    }
+
+    @Test
+    void nothingIsRecordedWhileTheLoggerIsDisabledTest() {
+        when(events.isInfoEnabled()).thenReturn(false);
+        TransactionEventLog eventLog = new TransactionEventLog(events, 16, 1, 0, 1);
+        eventLog.start();
+
+        eventLog.record(JournalRecordType.DECLINED, "m1", USER_ID, "USD", 5000, 900);
+        eventLog.stop();
+
+        verify(events, never()).info(anyString());
+    }
+
+    @Test
+    void eventsAreOnlyRecordedOnceTheirTransactionCommitsTest() {
+        TransactionEventLog eventLog = new TransactionEventLog(events, 16, 1, 0, 1);
+        eventLog.start();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            eventLog.record(JournalRecordType.APPROVED, "rolledBack", USER_ID, "USD", 100, 900);
+            TransactionSynchronizationUtils.invokeAfterCompletion(TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            eventLog.record(JournalRecordType.APPROVED, "committed", USER_ID, "USD", 100, 900);
+            verify(events, never()).info(anyString());
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        eventLog.stop();
+
+        List<String> lines = writtenLines(1);
+        assertTrue(lines.get(0).contains("\"messageId\":\"committed\""), lines.get(0));
+    }
+
+    private List<String> writtenLines(int count) {
+        ArgumentCaptor<String> lines = ArgumentCaptor.forClass(String.class);
+        verify(events, times(count)).info(lines.capture());
+        return lines.getAllValues();
+    }
+}
@@ -0,0 +1,78 @@
+package dev.transactionapp.metrics;
+
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.TransactionStage;
+import dev.transactionapp.exception.UserNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TransactionMetricsTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private TransactionMetrics transactionMetrics;
+
+    @BeforeEach
+    void setUp(){
+        meterRegistry = new SimpleMeterRegistry();
+        transactionMetrics = new TransactionMetrics(meterRegistry);
+    }
+
+    @Test
+    void timeRecordsStageTest(){
+        String result = transactionMetrics.time(MessageType.AUTHORIZATION, TransactionStage.USER_LOCK, () -> "user");
+
+        assertEquals("user", result);
+        assertEquals(1, meterRegistry.get("transaction.stage").tag("type", "authorization").tag("stage", "user_lock").timer().count());
+        assertEquals(0, meterRegistry.get("transaction.stage").tag("type", "load").tag("stage", "user_lock").timer().count());
+    }
+
+    @Test
+    void outcomesAreCountedByCurrencyTest(){
+        transactionMetrics.approved(MessageType.LOAD, "USD");
+        transactionMetrics.approved(MessageType.LOAD, "USD");
+        transactionMetrics.declined(MessageType.AUTHORIZATION, "EUR");
+        transactionMetrics.declined(MessageType.AUTHORIZATION, "XYZ");
+
+        assertEquals(2, meterRegistry.get("transaction.outcomes").tags("type", "load", "outcome", "approved", "currency", "USD").counter().count());
+        assertEquals(1, meterRegistry.get("transaction.outcomes").tags("type", "authorization", "outcome", "declined", "currency", "EUR").counter().count());
+        assertEquals(1, meterRegistry.get("transaction.outcomes").tags("type", "authorization", "outcome", "declined", "currency", "XYZ").counter().count());
+    }
+
+    @Test
+    void outcomesAreCountedOnCommitTest(){
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            transactionMetrics.approved(MessageType.AUTHORIZATION, "USD");
+            assertEquals(0, meterRegistry.get("transaction.outcomes").tags("type", "authorization", "outcome", "approved", "currency", "USD").counter().count());
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(1, meterRegistry.get("transaction.outcomes").tags("type", "authorization", "outcome", "approved", "currency", "USD").counter().count());
+    }
+
+    @Test
+    void rolledBackOutcomesAreNotCountedTest(){
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            transactionMetrics.declined(MessageType.AUTHORIZATION, "USD");
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(0, meterRegistry.get("transaction.outcomes").tags("type", "authorization", "outcome", "declined", "currency", "USD").counter().count());
+    }
+
+    @Test
+    void errorsAreCountedByExceptionTest(){
+        transactionMetrics.error(new UserNotFoundException("User with ID: id not found"));
+
+        assertEquals(1, meterRegistry.get("transaction.errors").tag("exception", "UserNotFoundException").counter().count());
+    }
+}
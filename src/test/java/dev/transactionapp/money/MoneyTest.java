@@ -0,0 +1,55 @@
+package dev.transactionapp.money;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MoneyTest {
+
+    @Test
+    void tryParseTest() {
+        assertEquals(2000, Money.tryParse("20"));
+        assertEquals(2050, Money.tryParse("20.5"));
+        assertEquals(2005, Money.tryParse("20.05"));
+        assertEquals(1, Money.tryParse("0.01"));
+        assertEquals(0, Money.tryParse("0"));
+        assertEquals(99999999999999999L, Money.tryParse("999999999999999.99"));
+    }
+
+    @Test
+    void tryParseInvalidTest() {
+        assertEquals(Money.INVALID, Money.tryParse(null));
+        assertEquals(Money.INVALID, Money.tryParse(""));
+        assertEquals(Money.INVALID, Money.tryParse("-20"));
+        assertEquals(Money.INVALID, Money.tryParse("20."));
+        assertEquals(Money.INVALID, Money.tryParse(".5"));
+        assertEquals(Money.INVALID, Money.tryParse("20.000"));
+        assertEquals(Money.INVALID, Money.tryParse("20.0a"));
+        assertEquals(Money.INVALID, Money.tryParse("1e5"));
+        assertEquals(Money.INVALID, Money.tryParse(" 20"));
+        assertEquals(Money.INVALID, Money.tryParse("12345678901234567"));
+    }
+
+    @Test
+    void parseTest() {
+        assertEquals(12345, Money.parse("123.45"));
+        assertThrows(NumberFormatException.class, () -> Money.parse("abc"));
+    }
+
+    @Test
+    void formatTest() {
+        assertEquals("0.00", Money.format(0));
+        assertEquals("0.05", Money.format(5));
+        assertEquals("20.50", Money.format(2050));
+        assertEquals("180.00", Money.format(18000));
+        assertEquals("-1.01", Money.format(-101));
+    }
+
+    @Test
+    void noDriftTest() {
+        long balance = 0;
+        for (int i = 0; i < 1_000_000; i++)
+            balance += Money.parse("0.10");
+        assertEquals("100000.00", Money.format(balance));
+    }
+}
@@ -0,0 +1,142 @@
+package dev.transactionapp.persistence;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class AuthorizationResponseWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @TempDir
+    Path directory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<Integer> batchSizes;
+    private AuthorizationResponseWriter authorizationResponseWriter;
+
+    @BeforeEach
+    void setUp(){
+        batchSizes = new CopyOnWriteArrayList<>();
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(ArgumentMatchers.any());
+        authorizationResponseWriter = writer(100);
+    }
+
+    private AuthorizationResponseWriter writer(int queueCapacity){
+        return new AuthorizationResponseWriter(jdbcTemplate, transactionTemplate, new TransactionMetrics(new SimpleMeterRegistry()), objectMapper,
+                queueCapacity, 10, 3, directory.resolve("dead-letter.jsonl"), Duration.ofMinutes(5));
+    }
+
+    private void countBatches(){
+        when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<Collection<AuthorizationResponse>>any(), ArgumentMatchers.anyInt(), ArgumentMatchers.<ParameterizedPreparedStatementSetter<AuthorizationResponse>>any()))
+                .thenAnswer(invocation -> {
+                    batchSizes.add(invocation.<Collection<?>>getArgument(1).size());
+                    return new int[0][];
+                });
+    }
+
+    private AuthorizationResponse decline(String messageId){
+        return new AuthorizationResponse(messageId, "f09752d7-c4e7-4491-98c8-36a9f5fc9f37", ResponseCode.DECLINED.toString(), new Amount("210.00", "USD", "DEBIT"));
+    }
+
+    @Test
+    void writeGroupsDeclinesIntoBatchesTest(){
+        countBatches();
+        for (int i = 0; i < 7; i++)
+            authorizationResponseWriter.write(decline("messageId" + i));
+
+        authorizationResponseWriter.start();
+        authorizationResponseWriter.stop();
+
+        assertEquals(List.of(3, 3, 1), batchSizes);
+    }
+
+    @Test
+    void writeFallsBackToSingleRowsTest() throws IOException {
+        when(jdbcTemplate.batchUpdate(ArgumentMatchers.anyString(), ArgumentMatchers.<Collection<AuthorizationResponse>>any(), ArgumentMatchers.anyInt(), ArgumentMatchers.<ParameterizedPreparedStatementSetter<AuthorizationResponse>>any()))
+                .thenAnswer(invocation -> {
+                    Collection<AuthorizationResponse> batch = invocation.getArgument(1);
+                    if (batch.contains(decline("duplicate")))
+                        throw new DuplicateKeyException("duplicate message id");
+                    batchSizes.add(batch.size());
+                    return new int[0][];
+                });
+        authorizationResponseWriter.write(decline("first"));
+        authorizationResponseWriter.write(decline("duplicate"));
+        authorizationResponseWriter.write(decline("second"));
+
+        authorizationResponseWriter.start();
+        authorizationResponseWriter.stop();
+
+        assertEquals(List.of(1, 1), batchSizes);
+        List<String> deadLetters = Files.readAllLines(directory.resolve("dead-letter.jsonl"));
+        assertEquals(1, deadLetters.size());
+        assertEquals(decline("duplicate"), objectMapper.readValue(deadLetters.get(0), AuthorizationResponse.class));
+    }
+
+    @Test
+    void writeSavesOnTheCommittingThreadWhenTheQueueIsFullTest(){
+        countBatches();
+        authorizationResponseWriter = writer(1);
+        authorizationResponseWriter.write(decline("queued"));
+        authorizationResponseWriter.write(decline("overflow"));
+
+        assertEquals(List.of(1), batchSizes);
+        authorizationResponseWriter.start();
+        authorizationResponseWriter.stop();
+        assertEquals(List.of(1, 1), batchSizes);
+    }
+
+    @Test
+    void startRecoversDeclinesLostWithTheQueueTest() throws IOException {
+        countBatches();
+        LocalDateTime newest = LocalDateTime.now();
+        AuthorizationResponse approval = new AuthorizationResponse("approved", "f09752d7-c4e7-4491-98c8-36a9f5fc9f37", ResponseCode.APPROVED.toString(), new Amount("10.00", "USD", "DEBIT"));
+        when(jdbcTemplate.queryForObject(ArgumentMatchers.anyString(), eq(LocalDateTime.class))).thenReturn(newest);
+        when(jdbcTemplate.queryForList(ArgumentMatchers.anyString(), eq(byte[].class), eq(newest.minusMinutes(5))))
+                .thenReturn(List.of(objectMapper.writeValueAsBytes(decline("lost")), objectMapper.writeValueAsBytes(approval)));
+
+        authorizationResponseWriter.start();
+        authorizationResponseWriter.stop();
+
+        assertEquals(List.of(1), batchSizes);
+        assertTrue(Files.notExists(directory.resolve("dead-letter.jsonl")));
+    }
+}
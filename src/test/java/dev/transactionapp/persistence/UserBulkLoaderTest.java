@@ -0,0 +1,159 @@
+package dev.transactionapp.persistence;
+
+import dev.transactionapp.entity.BulkUserSummary;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+// an in-memory database of its own, as ApplicationTest may hold the file database in another fork
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.datasource.url=jdbc:h2:mem:user-bulk-loader",
+        "transaction.provisioning.batch-size=3",
+        "transaction.provisioning.commit-interval=5",
+        "transaction.provisioning.max-reported-errors=2"})
+public class UserBulkLoaderTest {
+
+    @TempDir
+    static Path directory;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) {
+        registry.add("transaction.provisioning.directory", directory::toString);
+    }
+
+    @Autowired
+    private UserBulkLoader userBulkLoader;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @SpyBean
+    private TransactionJournal transactionJournal;
+
+    @Test
+    void csvRowsAreCreatedInChunksTest() throws IOException {
+        StringBuilder body = new StringBuilder("currency, balance\n");
+        for (int i = 0; i < 12; i++)
+            body.append(i % 2 == 0 ? "USD" : "\"INR\"").append(',').append(i).append(".5\n");
+
+        BulkUserSummary summary = userBulkLoader.load(body(body.toString()), UserBulkLoader.Format.CSV);
+
+        assertEquals(12, summary.getCreated());
+        assertEquals(0, summary.getRejected());
+        assertNull(summary.getAborted());
+        assertEquals("/user/bulk/" + summary.getBatchId() + "/ids", summary.getIds());
+        List<UUID> ids = readIds(summary.getBatchId());
+        assertEquals(12, ids.size());
+        for (int i = 0; i < 12; i++) {
+            User user = userRepository.findById(ids.get(i)).orElseThrow();
+            assertEquals(i % 2 == 0 ? "USD" : "INR", user.getCurrency());
+            assertEquals(Money.parse(i + ".5"), user.getBalance());
+            assertNotNull(user.getCreatedAt());
+            assertEquals(0, user.getVersion());
+            verify(transactionJournal).appendCreated(eq(ids.get(i)), eq(user.getCurrency()), eq(user.getBalance()), any());
+        }
+    }
+
+    @Test
+    void invalidRowsAreRejectedAndReportedTest() throws IOException {
+        String body = "USD,10\n"
+                + "EUR,10\n"
+                + "\n"
+                + "USD,-1\n"
+                + "USD,1,2\n"
+                + "INR,20.25\n";
+
+        BulkUserSummary summary = userBulkLoader.load(body(body), UserBulkLoader.Format.CSV);
+
+        assertEquals(2, summary.getCreated());
+        assertEquals(3, summary.getRejected());
+        assertEquals(2, summary.getErrors().size());
+        assertEquals(2, summary.getErrors().get(0).getLine());
+        assertEquals("Unsupported currency: EUR", summary.getErrors().get(0).getMessage());
+        assertEquals(4, summary.getErrors().get(1).getLine());
+        assertEquals("Invalid balance: -1", summary.getErrors().get(1).getMessage());
+        List<UUID> ids = readIds(summary.getBatchId());
+        assertEquals(Money.parse("10"), userRepository.findById(ids.get(0)).orElseThrow().getBalance());
+        assertEquals(Money.parse("20.25"), userRepository.findById(ids.get(1)).orElseThrow().getBalance());
+    }
+
+    @Test
+    void ndjsonRowsAreCreatedTest() throws IOException {
+        String body = "{\"currency\":\"INR\",\"balance\":\"500\"}\n"
+                + "{\"currency\":\"USD\",\"balance\":12.34,\"id\":\"f09752d7-c4e7-4491-98c8-36a9f5fc9f37\"}\n"
+                + "{\"currency\":\"usd\",\"balance\":\"1\"}\n"
+                + "not json\n";
+
+        BulkUserSummary summary = userBulkLoader.load(body(body), UserBulkLoader.Format.NDJSON);
+
+        assertEquals(2, summary.getCreated());
+        assertEquals(2, summary.getRejected());
+        assertEquals("Unsupported currency: usd", summary.getErrors().get(0).getMessage());
+        assertTrue(summary.getErrors().get(1).getMessage().startsWith("Not a JSON user"), summary.getErrors().get(1).getMessage());
+        List<UUID> ids = readIds(summary.getBatchId());
+        assertEquals("INR", userRepository.findById(ids.get(0)).orElseThrow().getCurrency());
+        // the ID is always picked by the node
+        assertNotEquals(UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37"), ids.get(1));
+        assertEquals(Money.parse("12.34"), userRepository.findById(ids.get(1)).orElseThrow().getBalance());
+    }
+
+    @Test
+    void expiredIdsFilesArePurgedTest() throws IOException {
+        Path expired = Files.createFile(directory.resolve(UUID.randomUUID() + ".ids"));
+        Files.setLastModifiedTime(expired, FileTime.from(Instant.now().minus(Duration.ofDays(8))));
+        Path recent = Files.createFile(directory.resolve(UUID.randomUUID() + ".ids"));
+
+        userBulkLoader.load(body("USD,1\n"), UserBulkLoader.Format.CSV);
+
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(recent));
+    }
+
+    @Test
+    void unknownBatchHasNoIdsFileTest() {
+        assertNull(userBulkLoader.idsFile(UUID.randomUUID()));
+    }
+
+    private static InputStream body(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<UUID> readIds(UUID batchId) throws IOException {
+        Path idsFile = userBulkLoader.idsFile(batchId);
+        assertNotNull(idsFile);
+        assertEquals(0, Files.size(idsFile) % 16);
+        List<UUID> ids = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(idsFile))) {
+            for (long i = Files.size(idsFile) / 16; i > 0; i--)
+                ids.add(new UUID(in.readLong(), in.readLong()));
+        }
+        return ids;
+    }
+}
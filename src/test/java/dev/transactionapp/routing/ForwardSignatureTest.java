@@ -0,0 +1,52 @@
+package dev.transactionapp.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ForwardSignatureTest {
+
+    private static final String NODE = "http://localhost:8081";
+    private static final byte[] BODY = "{\"messageId\":\"m1\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final ForwardSignature forwardSignature = new ForwardSignature("test-secret", Duration.ofSeconds(30), clock::get);
+
+    @Test
+    void signedRequestIsVerifiedTest() {
+        String signature = forwardSignature.sign("PUT", "/load/m1", NODE, clock.get(), BODY);
+        assertTrue(forwardSignature.verify("PUT", "/load/m1", NODE, Long.toString(clock.get()), BODY, signature));
+    }
+
+    @Test
+    void tamperedRequestIsRefusedTest() {
+        long now = clock.get();
+        String signature = forwardSignature.sign("PUT", "/load/m1", NODE, now, BODY);
+        assertFalse(forwardSignature.verify("PUT", "/load/m2", NODE, Long.toString(now), BODY, signature));
+        assertFalse(forwardSignature.verify("PUT", "/load/m1", "http://localhost:8082", Long.toString(now), BODY, signature));
+        assertFalse(forwardSignature.verify("PUT", "/load/m1", NODE, Long.toString(now), "{}".getBytes(StandardCharsets.UTF_8), signature));
+        assertFalse(forwardSignature.verify("PUT", "/load/m1", NODE, Long.toString(now), BODY, "not-hex"));
+        assertFalse(forwardSignature.verify("PUT", "/load/m1", NODE, Long.toString(now), BODY, null));
+        assertFalse(new ForwardSignature("other-secret", Duration.ofSeconds(30), clock::get)
+                .verify("PUT", "/load/m1", NODE, Long.toString(now), BODY, signature));
+    }
+
+    @Test
+    void staleSignatureIsRefusedTest() {
+        long sentAt = clock.get();
+        String signature = forwardSignature.sign("PUT", "/load/m1", NODE, sentAt, BODY);
+        clock.addAndGet(Duration.ofSeconds(31).toMillis());
+        assertFalse(forwardSignature.verify("PUT", "/load/m1", NODE, Long.toString(sentAt), BODY, signature));
+    }
+
+    @Test
+    void nothingIsVerifiedWithoutSecretTest() {
+        ForwardSignature disabled = new ForwardSignature("", Duration.ofSeconds(30), clock::get);
+        assertThrows(IllegalStateException.class, () -> disabled.sign("PUT", "/load/m1", NODE, clock.get(), BODY));
+        assertFalse(disabled.verify("PUT", "/load/m1", NODE, Long.toString(clock.get()), BODY, "00"));
+    }
+}
@@ -0,0 +1,65 @@
+package dev.transactionapp.routing;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HashRingTest {
+
+    private static final List<String> NODES = List.of("http://localhost:8080", "http://localhost:8081", "http://localhost:8082");
+    private static final int USERS = 30000;
+
+    private static UUID user(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+
+    @Test
+    void userIsAlwaysOwnedByTheSameNodeTest() {
+        UUID userId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        String owner = new HashRing(NODES, 160).ownerOf(userId);
+        assertTrue(NODES.contains(owner));
+        assertEquals(owner, new HashRing(List.of(NODES.get(2), NODES.get(0), NODES.get(1)), 160).ownerOf(userId));
+    }
+
+    @Test
+    void usersAreSpreadEvenlyTest() {
+        HashRing ring = new HashRing(NODES, 160);
+        Random random = new Random(42);
+        Map<String, Integer> owned = new HashMap<>();
+        for (int i = 0; i < USERS; i++)
+            owned.merge(ring.ownerOf(user(random)), 1, Integer::sum);
+        assertEquals(NODES.size(), owned.size());
+        for (int count : owned.values())
+            assertTrue(count > USERS / 4 && count < USERS * 5 / 12, "uneven share: " + owned);
+    }
+
+    @Test
+    void addedNodeOnlyTakesUsersOverTest() {
+        HashRing ring = new HashRing(NODES, 160);
+        String added = "http://localhost:8083";
+        HashRing grown = new HashRing(List.of(NODES.get(0), NODES.get(1), NODES.get(2), added), 160);
+        Random random = new Random(42);
+        int moved = 0;
+        for (int i = 0; i < USERS; i++) {
+            UUID userId = user(random);
+            String after = grown.ownerOf(userId);
+            if (!after.equals(ring.ownerOf(userId))) {
+                assertEquals(added, after);
+                moved++;
+            }
+        }
+        assertTrue(moved > USERS / 6 && moved < USERS / 3, "moved: " + moved);
+    }
+
+    @Test
+    void emptyRingIsRejectedTest() {
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(List.of(), 160));
+        assertThrows(IllegalArgumentException.class, () -> new HashRing(NODES, 0));
+    }
+}
@@ -0,0 +1,201 @@
+package dev.transactionapp.routing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.BatchItemError;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.exception.NodeUnavailableException;
+import dev.transactionapp.metrics.TransactionMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RequestForwarderTest {
+
+    private static final String SELF = "http://localhost:8080";
+    private static final String LOCAL_USER = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
+    private static final String REMOTE_USER = "f09752d7-c4e7-4491-98c8-36a9f5fc9f37";
+
+    @Mock
+    private UserRouter userRouter;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ForwardSignature forwardSignature = new ForwardSignature("test-secret", Duration.ofSeconds(30), System::currentTimeMillis);
+    private SimpleMeterRegistry meterRegistry;
+    private RequestForwarder requestForwarder;
+    private HttpServer owner;
+    private String ownerUrl;
+    private List<String> forwardedBy;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        requestForwarder = new RequestForwarder(userRouter, forwardSignature, objectMapper, new TransactionMetrics(meterRegistry), Duration.ofSeconds(1), Duration.ofSeconds(5));
+        forwardedBy = Collections.synchronizedList(new ArrayList<>());
+        owner = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        owner.start();
+        ownerUrl = "http://localhost:" + owner.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        owner.stop(0);
+    }
+
+    private void respond(String path, int status, String body) {
+        owner.createContext(path, exchange -> {
+            String node = exchange.getRequestHeaders().getFirst(RequestForwarder.FORWARDED_HEADER);
+            forwardedBy.add(node);
+            // the owner only trusts a forward signed with the cluster's secret
+            boolean signed = forwardSignature.verify(exchange.getRequestMethod(), exchange.getRequestURI().getRawPath(), node,
+                    exchange.getRequestHeaders().getFirst(RequestForwarder.FORWARDED_AT_HEADER), exchange.getRequestBody().readAllBytes(),
+                    exchange.getRequestHeaders().getFirst(RequestForwarder.SIGNATURE_HEADER));
+            send(exchange, signed ? status : 401, signed ? body : "{}");
+        });
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+
+    private static LoadRequest load(String userId, String messageId) {
+        return new LoadRequest(userId, messageId, new Amount("10.00", "USD", "CREDIT"));
+    }
+
+    private List<Object> processLocally(List<LoadRequest> loadRequests) {
+        return loadRequests.stream()
+                .<Object>map(loadRequest -> new LoadResponse(loadRequest.getUserId(), loadRequest.getMessageId(), new Amount("100.00", "USD", "CREDIT")))
+                .toList();
+    }
+
+    @Test
+    void ownerResponseIsRelayedTest() {
+        when(userRouter.self()).thenReturn(SELF);
+        String body = "{\"userId\":\"" + REMOTE_USER + "\",\"messageId\":\"m1\",\"balance\":{\"amount\":\"110.00\",\"currency\":\"USD\",\"debitOrCredit\":\"CREDIT\"}}";
+        respond("/load/m1", 201, body);
+
+        ResponseEntity<byte[]> response = requestForwarder.forward(ownerUrl, "/load/m1", load(REMOTE_USER, "m1"));
+
+        assertEquals(201, response.getStatusCode().value());
+        assertEquals(body, new String(response.getBody(), StandardCharsets.UTF_8));
+        assertEquals(List.of(SELF), forwardedBy);
+        assertEquals(1, meterRegistry.get("transaction.routing.forward").tag("node", ownerUrl).timer().count());
+    }
+
+    @Test
+    void unreachableOwnerFailsTheRequestTest() {
+        when(userRouter.self()).thenReturn(SELF);
+        owner.stop(0);
+        assertThrows(NodeUnavailableException.class, () -> requestForwarder.forward(ownerUrl, "/load/m1", load(REMOTE_USER, "m1")));
+    }
+
+    @Test
+    void batchResultsAreMergedInOrderTest() throws IOException {
+        when(userRouter.self()).thenReturn(SELF);
+        when(userRouter.remoteOwner(LOCAL_USER)).thenReturn(Optional.empty());
+        when(userRouter.remoteOwner(REMOTE_USER)).thenReturn(Optional.of(ownerUrl));
+        respond("/load/batch", 200, "[{\"messageId\":\"m2\",\"balance\":100.00},{\"messageId\":\"m4\",\"code\":\"400 BAD_REQUEST\"}]");
+
+        List<Object> results = requestForwarder.processBatch(
+                List.of(load(LOCAL_USER, "m1"), load(REMOTE_USER, "m2"), load(LOCAL_USER, "m3"), load(REMOTE_USER, "m4")),
+                LoadRequest::getUserId, LoadRequest::getMessageId, "/load/batch", this::processLocally);
+
+        assertEquals(4, results.size());
+        assertEquals("m1", ((LoadResponse) results.get(0)).getMessageId());
+        assertEquals("m3", ((LoadResponse) results.get(2)).getMessageId());
+        assertEquals("[{\"messageId\":\"m2\",\"balance\":100.00},{\"messageId\":\"m4\",\"code\":\"400 BAD_REQUEST\"}]",
+                objectMapper.writeValueAsString(List.of(results.get(1), results.get(3))));
+        assertEquals(List.of(SELF), forwardedBy);
+    }
+
+    @Test
+    void unreachableOwnerOnlyFailsItsEntriesTest() {
+        when(userRouter.self()).thenReturn(SELF);
+        when(userRouter.remoteOwner(LOCAL_USER)).thenReturn(Optional.empty());
+        when(userRouter.remoteOwner(REMOTE_USER)).thenReturn(Optional.of(ownerUrl));
+        owner.stop(0);
+
+        List<Object> results = requestForwarder.processBatch(List.of(load(REMOTE_USER, "m1"), load(LOCAL_USER, "m2")),
+                LoadRequest::getUserId, LoadRequest::getMessageId, "/load/batch", this::processLocally);
+
+        BatchItemError error = assertInstanceOf(BatchItemError.class, results.get(0));
+        assertEquals("m1", error.getMessageId());
+        assertEquals("503 SERVICE_UNAVAILABLE", error.getCode());
+        assertTrue(error.getMessage().contains("unavailable"));
+        assertEquals("m2", ((LoadResponse) results.get(1)).getMessageId());
+    }
+
+    @Test
+    void timedOutBatchHasAnUnknownOutcomeTest() {
+        requestForwarder = new RequestForwarder(userRouter, forwardSignature, objectMapper, new TransactionMetrics(meterRegistry), Duration.ofSeconds(10), Duration.ofSeconds(1));
+        when(userRouter.self()).thenReturn(SELF);
+        when(userRouter.remoteOwner(REMOTE_USER)).thenReturn(Optional.of(ownerUrl));
+        // the owner receives the batch (and may commit it) but answers too late
+        owner.createContext("/load/batch", exchange -> {
+            forwardedBy.add(exchange.getRequestHeaders().getFirst(RequestForwarder.FORWARDED_HEADER));
+            try {
+                Thread.sleep(3000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            send(exchange, 200, "[{\"messageId\":\"m1\",\"balance\":100.00}]");
+        });
+
+        List<Object> results = requestForwarder.processBatch(List.of(load(REMOTE_USER, "m1")),
+                LoadRequest::getUserId, LoadRequest::getMessageId, "/load/batch", this::processLocally);
+
+        BatchItemError error = assertInstanceOf(BatchItemError.class, results.get(0));
+        assertEquals("m1", error.getMessageId());
+        assertTrue(error.getMessage().contains("outcome is unknown: retry with the same messageId"), error.getMessage());
+        assertEquals(List.of(SELF), forwardedBy);
+    }
+
+    @Test
+    void unreadableBatchResultsHaveAnUnknownOutcomeTest() {
+        when(userRouter.self()).thenReturn(SELF);
+        when(userRouter.remoteOwner(REMOTE_USER)).thenReturn(Optional.of(ownerUrl));
+        respond("/load/batch", 200, "not json");
+
+        List<Object> results = requestForwarder.processBatch(List.of(load(REMOTE_USER, "m1")),
+                LoadRequest::getUserId, LoadRequest::getMessageId, "/load/batch", this::processLocally);
+
+        BatchItemError error = assertInstanceOf(BatchItemError.class, results.get(0));
+        assertTrue(error.getMessage().contains("outcome is unknown: retry with the same messageId"));
+    }
+
+    @Test
+    void localBatchIsNotForwardedTest() {
+        when(userRouter.remoteOwner(LOCAL_USER)).thenReturn(Optional.empty());
+
+        List<Object> results = requestForwarder.processBatch(List.of(load(LOCAL_USER, "m1")),
+                LoadRequest::getUserId, LoadRequest::getMessageId, "/load/batch", this::processLocally);
+
+        assertEquals(1, results.size());
+        assertTrue(forwardedBy.isEmpty());
+    }
+}
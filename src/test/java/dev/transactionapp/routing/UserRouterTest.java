@@ -0,0 +1,87 @@
+package dev.transactionapp.routing;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UserRouterTest {
+
+    private static final String SELF = "http://localhost:8080";
+    private static final String OTHER = "http://localhost:8081";
+
+    @TempDir
+    private Path directory;
+
+    private static UUID userOwnedBy(UserRouter userRouter, boolean local) {
+        UUID userId = UUID.randomUUID();
+        while (userRouter.remoteOwner(userId.toString()).isEmpty() != local)
+            userId = UUID.randomUUID();
+        return userId;
+    }
+
+    @Test
+    void disabledRouterOwnsEveryUserTest() {
+        UserRouter userRouter = new UserRouter(false, "", List.of(), "", 160);
+        assertEquals(Optional.empty(), userRouter.remoteOwner(UUID.randomUUID().toString()));
+        assertNotNull(userRouter.newUserId());
+    }
+
+    @Test
+    void usersOfOtherNodesAreRoutedToThemTest() {
+        UserRouter userRouter = new UserRouter(true, SELF + "/", List.of(SELF, OTHER), "", 160);
+        UUID remoteUser = userOwnedBy(userRouter, false);
+        assertEquals(Optional.of(OTHER), userRouter.remoteOwner(remoteUser.toString()));
+        assertEquals(Optional.empty(), userRouter.remoteOwner(userOwnedBy(userRouter, true).toString()));
+        assertEquals(Optional.empty(), userRouter.remoteOwner("not-a-uuid"));
+        assertEquals(Optional.empty(), userRouter.remoteOwner(null));
+    }
+
+    @Test
+    void onlyClusterNodesAreMembersTest() {
+        UserRouter userRouter = new UserRouter(true, SELF, List.of(SELF, OTHER), "", 160);
+        assertTrue(userRouter.isMember(OTHER + "/"));
+        assertFalse(userRouter.isMember("http://attacker.example"));
+        assertFalse(userRouter.isMember(null));
+        assertFalse(new UserRouter(false, "", List.of(), "", 160).isMember(OTHER));
+    }
+
+    @Test
+    void newUsersAreOwnedByThisNodeTest() {
+        UserRouter userRouter = new UserRouter(true, SELF, List.of(SELF, OTHER, "http://localhost:8082"), "", 160);
+        for (int i = 0; i < 100; i++)
+            assertEquals(Optional.empty(), userRouter.remoteOwner(userRouter.newUserId().toString()));
+    }
+
+    @Test
+    void selfMustBeAMemberTest() {
+        assertThrows(IllegalArgumentException.class, () -> new UserRouter(true, "http://localhost:9090", List.of(SELF, OTHER), "", 160));
+        assertThrows(IllegalArgumentException.class, () -> new UserRouter(true, SELF, List.of(), "", 160));
+    }
+
+    @Test
+    void membersFileChangeIsNotAppliedWhileRunningTest() throws IOException {
+        Path membersFile = directory.resolve("members");
+        Files.writeString(membersFile, "# two nodes\n" + SELF + "\n" + OTHER + "\n");
+        UserRouter userRouter = new UserRouter(true, SELF, List.of(), membersFile.toString(), 160);
+        UUID remoteUser = userOwnedBy(userRouter, false);
+
+        // the user's balance is still in the other node's database
+        Files.writeString(membersFile, SELF + "\n");
+        Files.setLastModifiedTime(membersFile, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        userRouter.checkMembership();
+        assertEquals(Optional.of(OTHER), userRouter.remoteOwner(remoteUser.toString()));
+
+        // applied on restart
+        UserRouter restarted = new UserRouter(true, SELF, List.of(), membersFile.toString(), 160);
+        assertEquals(Optional.empty(), restarted.remoteOwner(remoteUser.toString()));
+    }
+}
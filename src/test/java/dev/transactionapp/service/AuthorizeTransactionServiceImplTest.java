@@ -1,18 +1,39 @@
 package dev.transactionapp.service;
 
+import dev.transactionapp.account.AccountMetadataCache;
+import dev.transactionapp.engine.BalanceDecision;
 import dev.transactionapp.entity.*;
 import dev.transactionapp.enums.DebitCredit;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
 import dev.transactionapp.enums.ResponseCode;
-import dev.transactionapp.repository.AuthorizationResponseRepository;
-import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.locking.ConditionalBalanceUpdates;
+import dev.transactionapp.locking.RequestCoalescer;
+import dev.transactionapp.locking.UserLocking;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.persistence.AuthorizationResponseWriter;
+import dev.transactionapp.validator.ObjectsValidator;
 import dev.transactionapp.validator.RequestsValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.*;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -26,13 +47,37 @@ public class AuthorizeTransactionServiceImplTest {
     private AuthorizeTransactionServiceImpl authorizeTransactionService;
 
     @Mock
-    private UserRepository userRepository;
+    private AuthorizationResponseWriter authorizationResponseWriter;
 
     @Mock
-    private AuthorizationResponseRepository authorizationResponseRepository;
+    private RequestsValidator requestsValidator;
 
     @Mock
-    private RequestsValidator requestsValidator;
+    private UserLocking userLocking;
+
+    @Mock
+    private RequestCoalescer requestCoalescer;
+
+    @Mock
+    private ConditionalBalanceUpdates conditionalBalanceUpdates;
+
+    @Mock
+    private AccountMetadataCache accountMetadataCache;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private TransactionJournal transactionJournal;
+
+    @Mock
+    private TransactionEventLog transactionEventLog;
+
+    @Spy
+    private TransactionMetrics transactionMetrics = new TransactionMetrics(new SimpleMeterRegistry());
+
+    @Mock
+    private ObjectsValidator<AuthorizationRequest> authorizationRequestValidator;
 
 
     private Amount dummyTransactionAmount;
@@ -46,7 +91,7 @@ public class AuthorizeTransactionServiceImplTest {
     void setUp(){
         dummyMessageId = "someMessageId";
         dummyUserId = "f09752d7-c4e7-4491-98c8-36a9f5fc9f37"; // has to be UUID
-        dummyUser = new User("USD", Double.parseDouble("200"));
+        dummyUser = new User("USD", Money.parse("200"));
     }
 
     @Test
@@ -54,17 +99,36 @@ public class AuthorizeTransactionServiceImplTest {
         dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
         dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
 
-        expectedTransactionAmount = new Amount("180.0", "USD", DebitCredit.DEBIT.toString());
+        expectedTransactionAmount = new Amount("180.00", "USD", DebitCredit.DEBIT.toString());
         expectedAuthorizationResponse = new AuthorizationResponse(dummyMessageId, dummyUserId, ResponseCode.APPROVED.toString(), expectedTransactionAmount);
 
-        doNothing().when(requestsValidator).checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest);
-
-        when(userRepository.findById(UUID.fromString(dummyUserId))).thenReturn(java.util.Optional.ofNullable(dummyUser));
-        when(userRepository.save(ArgumentMatchers.any())).thenReturn(dummyUser);
+        when(requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(accountMetadataCache.currencyOf(UUID.fromString(dummyUserId))).thenReturn("USD");
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(dummyUser));
 
         AuthorizationResponse authorizationResponse = authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest);
         System.out.println(authorizationResponse);
         assertEquals(expectedAuthorizationResponse, authorizationResponse);
+        verify(requestCoalescer, times(1)).inTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any());
+        verify(requestsValidator, times(1)).checkCurrencyMatch("USD", "USD");
+        verify(userLocking, times(1)).saveBalance(dummyUser);
+        verify(idempotencyStore, times(1)).save(MessageType.AUTHORIZATION, dummyMessageId, dummyUserId, "20", authorizationResponse);
+        verify(transactionJournal, times(1)).append(JournalRecordType.APPROVED, dummyMessageId, dummyUser.getId(), "USD", Money.parse("20"), Money.parse("180"));
+        verify(transactionEventLog, times(1)).record(JournalRecordType.APPROVED, dummyMessageId, dummyUser.getId(), "USD", Money.parse("20"), Money.parse("180"));
+    }
+
+    @Test
+    void authorizeScreenedTransactionAndGetResponseIsNotValidatedAgainTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        expectedAuthorizationResponse = new AuthorizationResponse(dummyMessageId, dummyUserId, ResponseCode.APPROVED.toString(), new Amount("180.00", "USD", DebitCredit.DEBIT.toString()));
+
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(dummyUser));
+
+        assertEquals(expectedAuthorizationResponse, authorizeTransactionService.authorizeScreenedTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+        verify(requestsValidator, never()).checkAuthorizationRequestValidity(ArgumentMatchers.anyString(), ArgumentMatchers.any());
+        verify(requestsValidator, never()).checkCurrencyMatch(ArgumentMatchers.anyString(), ArgumentMatchers.anyString());
+        verifyNoInteractions(accountMetadataCache);
     }
 
     @Test
@@ -72,26 +136,141 @@ public class AuthorizeTransactionServiceImplTest {
         dummyTransactionAmount = new Amount("210", "USD", "DEBIT");
         dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
 
-        expectedTransactionAmount = new Amount("210.0", "USD", "DEBIT");
+        expectedTransactionAmount = new Amount("210.00", "USD", "DEBIT");
         expectedAuthorizationResponse = new AuthorizationResponse(dummyMessageId, dummyUserId, ResponseCode.DECLINED.toString(), expectedTransactionAmount);
 
-        doNothing().when(requestsValidator).checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest);
-
-        when(userRepository.findById(UUID.fromString(dummyUserId))).thenReturn(java.util.Optional.ofNullable(dummyUser));
-
-        when(authorizationResponseRepository.save(ArgumentMatchers.any())).thenReturn(expectedAuthorizationResponse);
+        when(requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(dummyUser));
 
         AuthorizationResponse authorizationResponse = authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest);
         assertEquals(expectedAuthorizationResponse, authorizationResponse);
+        verify(authorizationResponseWriter, times(1)).write(expectedAuthorizationResponse);
+        verify(userLocking, times(1)).confirmUnchanged(dummyUser);
+        verify(transactionJournal, times(1)).append(JournalRecordType.DECLINED, dummyMessageId, dummyUser.getId(), "USD", Money.parse("210"), Money.parse("200"));
+        verify(transactionEventLog, times(1)).record(JournalRecordType.DECLINED, dummyMessageId, dummyUser.getId(), "USD", Money.parse("210"), Money.parse("200"));
     }
 
 
+    private void conditionalSql() {
+        when(requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(accountMetadataCache.currencyOf(UUID.fromString(dummyUserId))).thenReturn("USD");
+        when(conditionalBalanceUpdates.isEnabled()).thenReturn(true);
+        when(idempotencyStore.processOnce(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(dummyMessageId), ArgumentMatchers.eq(dummyUserId), ArgumentMatchers.any(), ArgumentMatchers.eq(AuthorizationResponse.class), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(5).get());
+        when(conditionalBalanceUpdates.inTransaction(ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+    }
+
+    @Test
+    void authorizeTransactionAndGetResponseApprovedWithConditionalSqlTest(){
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, new Amount("20", "USD", "DEBIT"));
+        expectedAuthorizationResponse = new AuthorizationResponse(dummyMessageId, dummyUserId, ResponseCode.APPROVED.toString(), new Amount("180.00", "USD", "DEBIT"));
+        UUID userId = UUID.fromString(dummyUserId);
+        conditionalSql();
+        when(conditionalBalanceUpdates.debit(userId, "USD", Money.parse("20"))).thenReturn(new BalanceDecision(true, Money.parse("180")));
+
+        assertEquals(expectedAuthorizationResponse, authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+        verify(idempotencyStore, times(1)).save(MessageType.AUTHORIZATION, dummyMessageId, dummyUserId, "20", expectedAuthorizationResponse);
+        verify(transactionJournal, times(1)).append(JournalRecordType.APPROVED, dummyMessageId, userId, "USD", Money.parse("20"), Money.parse("180"));
+        verify(transactionEventLog, times(1)).record(JournalRecordType.APPROVED, dummyMessageId, userId, "USD", Money.parse("20"), Money.parse("180"));
+        verifyNoInteractions(requestCoalescer, userLocking);
+    }
+
+    @Test
+    void authorizeTransactionAndGetResponseDeclinedWithConditionalSqlTest(){
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, new Amount("210", "USD", "DEBIT"));
+        expectedAuthorizationResponse = new AuthorizationResponse(dummyMessageId, dummyUserId, ResponseCode.DECLINED.toString(), new Amount("210.00", "USD", "DEBIT"));
+        UUID userId = UUID.fromString(dummyUserId);
+        conditionalSql();
+        when(conditionalBalanceUpdates.debit(userId, "USD", Money.parse("210"))).thenReturn(new BalanceDecision(false, Money.parse("200")));
+
+        assertEquals(expectedAuthorizationResponse, authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+        verify(conditionalBalanceUpdates, times(1)).debit(userId, "USD", Money.parse("210"));
+        verify(authorizationResponseWriter, times(1)).write(expectedAuthorizationResponse);
+        verify(transactionJournal, times(1)).append(JournalRecordType.DECLINED, dummyMessageId, userId, "USD", Money.parse("210"), Money.parse("200"));
+        verify(transactionEventLog, times(1)).record(JournalRecordType.DECLINED, dummyMessageId, userId, "USD", Money.parse("210"), Money.parse("200"));
+    }
+
+    @Test
+    void authorizeTransactionAndGetResponseUnknownUserRejectedBeforeTransactionTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+
+        when(requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(accountMetadataCache.currencyOf(UUID.fromString(dummyUserId))).thenThrow(new UserNotFoundException(String.format("User with ID: %s not found", dummyUserId)));
+
+        assertThrows(UserNotFoundException.class, () -> authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+        verifyNoInteractions(requestCoalescer, userLocking, idempotencyStore);
+    }
+
     @Test
     void authorizeTransactionAndGetResponseExceptionTest(){
         dummyTransactionAmount = new Amount("210", "USD", "DEBIT");
         dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
         doThrow(new RuntimeException("Some runtime exception")).when(requestsValidator).checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest);
         assertThrows(RuntimeException.class, () -> authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+        verifyNoInteractions(requestCoalescer, userLocking);
+    }
+
+    @Test
+    void authorizeTransactionAndGetResponseCurrencyNotMatchTest(){
+        dummyTransactionAmount = new Amount("20", "INR", "DEBIT");
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+
+        when(requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(accountMetadataCache.currencyOf(UUID.fromString(dummyUserId))).thenReturn("USD");
+        doThrow(new CurrencyNotMatchException("currency doesn't match")).when(requestsValidator).checkCurrencyMatch("USD", "INR");
+
+        assertThrows(CurrencyNotMatchException.class, () -> authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+        verifyNoInteractions(requestCoalescer, userLocking);
+    }
+
+    @Test
+    void authorizeTransactionAndGetResponseUserNotFoundTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+
+        when(requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenThrow(new UserNotFoundException(String.format("User with ID: %s not found", dummyUserId)));
+
+        assertThrows(UserNotFoundException.class, () -> authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+    }
+
+    @Test
+    void authorizeTransactionAndGetResponseReplayedAfterLockTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        expectedAuthorizationResponse = new AuthorizationResponse(dummyMessageId, dummyUserId, ResponseCode.APPROVED.toString(), new Amount("180.00", "USD", "DEBIT"));
+
+        when(requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(dummyUser));
+        when(idempotencyStore.findResponse(MessageType.AUTHORIZATION, dummyMessageId, dummyUserId, "20", AuthorizationResponse.class)).thenReturn(java.util.Optional.of(expectedAuthorizationResponse));
+
+        assertEquals(expectedAuthorizationResponse, authorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, dummyAuthorizationRequest));
+        assertEquals(Money.parse("200"), dummyUser.getBalance());
+        verify(userLocking, never()).saveBalance(ArgumentMatchers.any());
+        verify(idempotencyStore, never()).save(ArgumentMatchers.any(), ArgumentMatchers.anyString(), ArgumentMatchers.anyString(), ArgumentMatchers.anyString(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void authorizeTransactionsAndGetResponsesTest(){
+        AuthorizationRequest first = new AuthorizationRequest(dummyUserId, "firstMessageId", new Amount("120", "USD", "DEBIT"));
+        AuthorizationRequest invalid = new AuthorizationRequest(dummyUserId, "invalidMessageId", new Amount("-1", "USD", "DEBIT"));
+        AuthorizationRequest second = new AuthorizationRequest(dummyUserId, "secondMessageId", new Amount("120", "USD", "DEBIT"));
+
+        when(authorizationRequestValidator.validate(ArgumentMatchers.any())).thenAnswer(invocation ->
+                invocation.getArgument(0) == invalid ? Set.of("Amount must be a positive number") : Set.of());
+        when(requestsValidator.checkAuthorizationRequestValidity(ArgumentMatchers.anyString(), ArgumentMatchers.any())).thenReturn(UUID.fromString(dummyUserId));
+        doAnswer(invocation -> {
+            invocation.<Consumer<User>>getArgument(2).accept(dummyUser);
+            return null;
+        }).when(userLocking).inLockedTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any());
+
+        List<Object> results = authorizeTransactionService.authorizeTransactionsAndGetResponses(List.of(first, invalid, second));
+
+        assertEquals(new AuthorizationResponse("firstMessageId", dummyUserId, ResponseCode.APPROVED.toString(), new Amount("80.00", "USD", "DEBIT")), results.get(0));
+        assertEquals(new BatchItemError("invalidMessageId", "[Amount must be a positive number]", "400 BAD_REQUEST"), results.get(1));
+        assertEquals(new AuthorizationResponse("secondMessageId", dummyUserId, ResponseCode.DECLINED.toString(), new Amount("120.00", "USD", "DEBIT")), results.get(2));
+        verify(userLocking, times(1)).inLockedTransaction(ArgumentMatchers.eq(MessageType.AUTHORIZATION), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any());
     }
 
     @Test
@@ -1,18 +1,39 @@
 package dev.transactionapp.service;
 
+import dev.transactionapp.account.AccountMetadataCache;
 import dev.transactionapp.entity.*;
 import dev.transactionapp.enums.DebitCredit;
-import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.idempotency.IdempotencyStore;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.locking.ConditionalBalanceUpdates;
+import dev.transactionapp.locking.RequestCoalescer;
+import dev.transactionapp.locking.UserLocking;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.validator.ObjectsValidator;
 import dev.transactionapp.validator.RequestsValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -25,10 +46,34 @@ class LoadFundsServiceImplTest {
     private LoadFundsServiceImpl loadFundsService;
 
     @Mock
-    private UserRepository userRepository;
+    private RequestsValidator requestsValidator;
 
     @Mock
-    private RequestsValidator requestsValidator;
+    private UserLocking userLocking;
+
+    @Mock
+    private RequestCoalescer requestCoalescer;
+
+    @Mock
+    private ConditionalBalanceUpdates conditionalBalanceUpdates;
+
+    @Mock
+    private AccountMetadataCache accountMetadataCache;
+
+    @Mock
+    private IdempotencyStore idempotencyStore;
+
+    @Mock
+    private TransactionJournal transactionJournal;
+
+    @Mock
+    private TransactionEventLog transactionEventLog;
+
+    @Spy
+    private TransactionMetrics transactionMetrics = new TransactionMetrics(new SimpleMeterRegistry());
+
+    @Mock
+    private ObjectsValidator<LoadRequest> loadRequestValidator;
 
 
     private Amount dummyTransactionAmount;
@@ -42,7 +87,7 @@ class LoadFundsServiceImplTest {
     void setUp(){
         dummyMessageId = "someMessageId";
         dummyUserId = "f09752d7-c4e7-4491-98c8-36a9f5fc9f37"; // has to be UUID
-        dummyUser = new User("USD", Double.parseDouble("200"));
+        dummyUser = new User("USD", Money.parse("200"));
     }
 
     @Test
@@ -50,19 +95,97 @@ class LoadFundsServiceImplTest {
         dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
         dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
 
-        expectedTransactionAmount = new Amount("220.0", "USD", DebitCredit.CREDIT.toString());
+        expectedTransactionAmount = new Amount("220.00", "USD", DebitCredit.CREDIT.toString());
         expectedLoadResponse = new LoadResponse(dummyUserId, dummyMessageId, expectedTransactionAmount);
 
-        doNothing().when(requestsValidator).checkLoadRequestValidity(dummyMessageId, dummyLoadRequest);
-
-        when(userRepository.findById(UUID.fromString(dummyUserId))).thenReturn(java.util.Optional.ofNullable(dummyUser));
-        when(userRepository.save(ArgumentMatchers.any())).thenReturn(dummyUser);
+        when(requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(accountMetadataCache.currencyOf(UUID.fromString(dummyUserId))).thenReturn("USD");
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(dummyUser));
 
         LoadResponse loadResponse = loadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest);
         assertEquals(loadResponse, expectedLoadResponse);
+        verify(requestCoalescer, times(1)).inTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any());
+        verify(requestsValidator, times(1)).checkCurrencyMatch("USD", "USD");
+        verify(userLocking, times(1)).saveBalance(dummyUser);
+        verify(idempotencyStore, times(1)).save(MessageType.LOAD, dummyMessageId, dummyUserId, "20", loadResponse);
+        verify(transactionJournal, times(1)).append(ArgumentMatchers.eq(JournalRecordType.LOAD), ArgumentMatchers.eq(dummyMessageId), ArgumentMatchers.any(), ArgumentMatchers.eq("USD"), ArgumentMatchers.anyLong(), ArgumentMatchers.eq(dummyUser.getBalance()));
+        verify(transactionEventLog, times(1)).record(ArgumentMatchers.eq(JournalRecordType.LOAD), ArgumentMatchers.eq(dummyMessageId), ArgumentMatchers.any(), ArgumentMatchers.eq("USD"), ArgumentMatchers.anyLong(), ArgumentMatchers.eq(dummyUser.getBalance()));
+    }
+
+    @Test
+    void loadScreenedFundsAndGetResponseIsNotValidatedAgainTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        expectedLoadResponse = new LoadResponse(dummyUserId, dummyMessageId, new Amount("220.00", "USD", DebitCredit.CREDIT.toString()));
+
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(dummyUser));
+
+        assertEquals(expectedLoadResponse, loadFundsService.loadScreenedFundsAndGetResponse(dummyMessageId, dummyLoadRequest));
+        verify(requestsValidator, never()).checkLoadRequestValidity(ArgumentMatchers.anyString(), ArgumentMatchers.any());
+        verify(requestsValidator, never()).checkCurrencyMatch(ArgumentMatchers.anyString(), ArgumentMatchers.anyString());
+        verifyNoInteractions(accountMetadataCache);
+    }
 
+    @Test
+    void loadFundsAndGetResponseWithConditionalSqlTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        expectedLoadResponse = new LoadResponse(dummyUserId, dummyMessageId, new Amount("220.00", "USD", DebitCredit.CREDIT.toString()));
+        UUID userId = UUID.fromString(dummyUserId);
+
+        when(requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest)).thenReturn(userId);
+        when(accountMetadataCache.currencyOf(userId)).thenReturn("USD");
+        when(conditionalBalanceUpdates.isEnabled()).thenReturn(true);
+        when(idempotencyStore.processOnce(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(dummyMessageId), ArgumentMatchers.eq(dummyUserId), ArgumentMatchers.eq("20"), ArgumentMatchers.eq(LoadResponse.class), ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(5).get());
+        when(conditionalBalanceUpdates.inTransaction(ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        when(conditionalBalanceUpdates.credit(userId, "USD", Money.parse("20"))).thenReturn(Money.parse("220"));
+
+        assertEquals(expectedLoadResponse, loadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest));
+        verify(idempotencyStore, times(1)).save(MessageType.LOAD, dummyMessageId, dummyUserId, "20", expectedLoadResponse);
+        verify(transactionJournal, times(1)).append(JournalRecordType.LOAD, dummyMessageId, userId, "USD", Money.parse("20"), Money.parse("220"));
+        verify(transactionEventLog, times(1)).record(JournalRecordType.LOAD, dummyMessageId, userId, "USD", Money.parse("20"), Money.parse("220"));
+        verifyNoInteractions(requestCoalescer, userLocking);
     }
 
+    @Test
+    void loadFundsAndGetResponseReplayedAfterLockTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        expectedLoadResponse = new LoadResponse(dummyUserId, dummyMessageId, new Amount("220.00", "USD", "CREDIT"));
+
+        when(requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenAnswer(invocation -> invocation.<Function<User, ?>>getArgument(2).apply(dummyUser));
+        when(idempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId, "20", LoadResponse.class)).thenReturn(java.util.Optional.of(expectedLoadResponse));
+
+        assertEquals(expectedLoadResponse, loadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest));
+        assertEquals(Money.parse("200"), dummyUser.getBalance());
+        verify(userLocking, never()).saveBalance(ArgumentMatchers.any());
+    }
+
+    @Test
+    void loadFundsAndGetResponseConcurrentDuplicateTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+
+        when(requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(requestCoalescer.inTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertThrows(MessageIdAlreadyExistsException.class, () -> loadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest));
+    }
+
+
+    @Test
+    void loadFundsAndGetResponseUnknownUserRejectedBeforeTransactionTest(){
+        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+
+        when(requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest)).thenReturn(UUID.fromString(dummyUserId));
+        when(accountMetadataCache.currencyOf(UUID.fromString(dummyUserId))).thenThrow(new UserNotFoundException(String.format("User with ID: %s not found", dummyUserId)));
+
+        assertThrows(UserNotFoundException.class, () -> loadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest));
+        verifyNoInteractions(requestCoalescer, userLocking, idempotencyStore);
+    }
 
     @Test
     void loadFundsAndGetResponseExceptionTest(){
@@ -70,5 +193,27 @@ class LoadFundsServiceImplTest {
         dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
         doThrow(new RuntimeException("Some runtime exception")).when(requestsValidator).checkLoadRequestValidity(dummyMessageId, dummyLoadRequest);
         assertThrows(RuntimeException.class, () -> loadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest));
+        verifyNoInteractions(requestCoalescer, userLocking);
+    }
+
+    @Test
+    void loadFundsAndGetResponsesUserNotFoundTest(){
+        String unknownUserId = "846eb86e-b3fa-4577-b9a8-aa56227459b8";
+        LoadRequest known = new LoadRequest(dummyUserId, "knownMessageId", new Amount("20", "USD", "CREDIT"));
+        LoadRequest unknown = new LoadRequest(unknownUserId, "unknownMessageId", new Amount("20", "USD", "CREDIT"));
+
+        when(requestsValidator.checkLoadRequestValidity("knownMessageId", known)).thenReturn(UUID.fromString(dummyUserId));
+        when(requestsValidator.checkLoadRequestValidity("unknownMessageId", unknown)).thenReturn(UUID.fromString(unknownUserId));
+        doAnswer(invocation -> {
+            invocation.<Consumer<User>>getArgument(2).accept(dummyUser);
+            return null;
+        }).when(userLocking).inLockedTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(UUID.fromString(dummyUserId)), ArgumentMatchers.any());
+        doThrow(new UserNotFoundException(String.format("User with ID: %s not found", unknownUserId)))
+                .when(userLocking).inLockedTransaction(ArgumentMatchers.eq(MessageType.LOAD), ArgumentMatchers.eq(UUID.fromString(unknownUserId)), ArgumentMatchers.any());
+
+        List<Object> results = loadFundsService.loadFundsAndGetResponses(List.of(known, unknown));
+
+        assertEquals(new LoadResponse(dummyUserId, "knownMessageId", new Amount("220.00", "USD", "CREDIT")), results.get(0));
+        assertEquals(new BatchItemError("unknownMessageId", String.format("User with ID: %s not found", unknownUserId), "400 BAD_REQUEST"), results.get(1));
     }
-}
\ No newline at end of file
+}
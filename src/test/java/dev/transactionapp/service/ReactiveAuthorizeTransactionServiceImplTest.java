@@ -0,0 +1,165 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.AuthorizationRequest;
+import dev.transactionapp.entity.AuthorizationResponse;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.enums.ResponseCode;
+import dev.transactionapp.exception.CurrencyNotMatchException;
+import dev.transactionapp.exception.MessageIdAlreadyExistsException;
+import dev.transactionapp.idempotency.ReactiveIdempotencyStore;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.ReactiveAuthorizationResponseRepository;
+import dev.transactionapp.repository.ReactiveUserRepository;
+import dev.transactionapp.validator.ReactiveRequestsValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveAuthorizeTransactionServiceImplTest {
+
+    @InjectMocks
+    private ReactiveAuthorizeTransactionServiceImpl reactiveAuthorizeTransactionService;
+
+    @Mock
+    private ReactiveUserRepository reactiveUserRepository;
+
+    @Mock
+    private ReactiveAuthorizationResponseRepository reactiveAuthorizationResponseRepository;
+
+    @Mock
+    private ReactiveRequestsValidator reactiveRequestsValidator;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private ReactiveIdempotencyStore reactiveIdempotencyStore;
+
+    @Mock
+    private TransactionJournal transactionJournal;
+
+    @Mock
+    private TransactionEventLog transactionEventLog;
+
+    @Spy
+    private TransactionMetrics transactionMetrics = new TransactionMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private Scheduler reactiveDatabaseScheduler = Schedulers.immediate();
+
+    private String dummyMessageId;
+    private UUID dummyUserId;
+    private User dummyUser;
+
+    @BeforeEach
+    void setUp() {
+        dummyMessageId = "someMessageId";
+        dummyUserId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        dummyUser = new User("USD", Money.parse("200"));
+        dummyUser.setId(dummyUserId);
+        when(transactionalOperator.transactional(ArgumentMatchers.<Mono<AuthorizationResponse>>any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(reactiveRequestsValidator.checkUserExists(eq(dummyUserId), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(reactiveUserRepository.findByIdForUpdate(dummyUserId)).thenReturn(Mono.just(dummyUser));
+    }
+
+    private AuthorizationRequest authorizationRequest(String amount, String currency) {
+        AuthorizationRequest authorizationRequest = new AuthorizationRequest(dummyUserId.toString(), dummyMessageId, new Amount(amount, currency, "DEBIT"));
+        when(reactiveRequestsValidator.checkAuthorizationRequestValidity(dummyMessageId, authorizationRequest)).thenReturn(Mono.just(dummyUserId));
+        when(reactiveIdempotencyStore.findResponse(MessageType.AUTHORIZATION, dummyMessageId, authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class)).thenReturn(Mono.empty());
+        return authorizationRequest;
+    }
+
+    @Test
+    void authorizeTransactionApprovedTest() {
+        AuthorizationRequest authorizationRequest = authorizationRequest("50", "USD");
+        when(reactiveRequestsValidator.checkCurrencyMatch(dummyUser, "USD")).thenReturn(Mono.just(dummyUser));
+        when(reactiveUserRepository.updateBalance(dummyUserId, Money.parse("150"))).thenReturn(Mono.just(1));
+        when(reactiveIdempotencyStore.save(eq(MessageType.AUTHORIZATION), eq(dummyMessageId), anyString(), anyString(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveAuthorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, authorizationRequest))
+                .assertNext(authorizationResponse -> {
+                    assertEquals(ResponseCode.APPROVED.toString(), authorizationResponse.getResponseCode());
+                    assertEquals("150.00", authorizationResponse.getBalance().getAmount());
+                })
+                .verifyComplete();
+        verify(transactionJournal).append(JournalRecordType.APPROVED, dummyMessageId, dummyUserId, "USD", Money.parse("50"), Money.parse("150"));
+        verify(transactionEventLog).record(JournalRecordType.APPROVED, dummyMessageId, dummyUserId, "USD", Money.parse("50"), Money.parse("150"));
+        verifyNoInteractions(reactiveAuthorizationResponseRepository);
+        verify(reactiveDatabaseScheduler).createWorker();
+    }
+
+    @Test
+    void authorizeTransactionDeclinedTest() {
+        AuthorizationRequest authorizationRequest = authorizationRequest("250", "USD");
+        when(reactiveRequestsValidator.checkCurrencyMatch(dummyUser, "USD")).thenReturn(Mono.just(dummyUser));
+        when(reactiveAuthorizationResponseRepository.insert(any(AuthorizationResponse.class))).thenReturn(Mono.just(1));
+        when(reactiveIdempotencyStore.save(eq(MessageType.AUTHORIZATION), eq(dummyMessageId), anyString(), anyString(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveAuthorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, authorizationRequest))
+                .assertNext(authorizationResponse -> assertEquals(ResponseCode.DECLINED.toString(), authorizationResponse.getResponseCode()))
+                .verifyComplete();
+        verify(transactionJournal).append(JournalRecordType.DECLINED, dummyMessageId, dummyUserId, "USD", Money.parse("250"), Money.parse("200"));
+        verify(transactionEventLog).record(JournalRecordType.DECLINED, dummyMessageId, dummyUserId, "USD", Money.parse("250"), Money.parse("200"));
+        verify(reactiveUserRepository, never()).updateBalance(any(), anyLong());
+    }
+
+    @Test
+    void authorizeTransactionReplayedUnderLockTest() {
+        AuthorizationRequest authorizationRequest = authorizationRequest("50", "USD");
+        AuthorizationResponse storedResponse = new AuthorizationResponse(dummyMessageId, dummyUserId.toString(), ResponseCode.APPROVED.toString(), new Amount("150.00", "USD", "DEBIT"));
+        when(reactiveIdempotencyStore.findResponse(MessageType.AUTHORIZATION, dummyMessageId, authorizationRequest.getUserId(), authorizationRequest.getTransactionAmount().getAmount(), AuthorizationResponse.class)).thenReturn(Mono.just(storedResponse));
+
+        StepVerifier.create(reactiveAuthorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, authorizationRequest))
+                .expectNext(storedResponse)
+                .verifyComplete();
+        verify(reactiveUserRepository, never()).updateBalance(any(), anyLong());
+        verifyNoInteractions(transactionJournal);
+    }
+
+    @Test
+    void authorizeTransactionCurrencyMismatchTest() {
+        AuthorizationRequest authorizationRequest = authorizationRequest("50", "INR");
+        when(reactiveRequestsValidator.checkCurrencyMatch(dummyUser, "INR")).thenReturn(Mono.error(new CurrencyNotMatchException("User currency: USD doesn't match with request body currency: INR")));
+
+        StepVerifier.create(reactiveAuthorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, authorizationRequest))
+                .expectError(CurrencyNotMatchException.class)
+                .verify();
+        verifyNoInteractions(transactionJournal);
+    }
+
+    @Test
+    void authorizeTransactionConcurrentMessageIdTest() {
+        AuthorizationRequest authorizationRequest = authorizationRequest("50", "USD");
+        when(reactiveRequestsValidator.checkCurrencyMatch(dummyUser, "USD")).thenReturn(Mono.just(dummyUser));
+        when(reactiveUserRepository.updateBalance(dummyUserId, Money.parse("150"))).thenReturn(Mono.just(1));
+        when(reactiveIdempotencyStore.save(eq(MessageType.AUTHORIZATION), eq(dummyMessageId), anyString(), anyString(), any())).thenReturn(Mono.error(new DataIntegrityViolationException("duplicate key")));
+
+        StepVerifier.create(reactiveAuthorizeTransactionService.authorizeTransactionAndGetResponse(dummyMessageId, authorizationRequest))
+                .expectError(MessageIdAlreadyExistsException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,114 @@
+package dev.transactionapp.service;
+
+import dev.transactionapp.entity.Amount;
+import dev.transactionapp.entity.LoadRequest;
+import dev.transactionapp.entity.LoadResponse;
+import dev.transactionapp.entity.User;
+import dev.transactionapp.enums.JournalRecordType;
+import dev.transactionapp.enums.MessageType;
+import dev.transactionapp.exception.UserNotFoundException;
+import dev.transactionapp.idempotency.ReactiveIdempotencyStore;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.logging.TransactionEventLog;
+import dev.transactionapp.metrics.TransactionMetrics;
+import dev.transactionapp.money.Money;
+import dev.transactionapp.repository.ReactiveUserRepository;
+import dev.transactionapp.validator.ReactiveRequestsValidator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveLoadFundsServiceImplTest {
+
+    @InjectMocks
+    private ReactiveLoadFundsServiceImpl reactiveLoadFundsService;
+
+    @Mock
+    private ReactiveUserRepository reactiveUserRepository;
+
+    @Mock
+    private ReactiveRequestsValidator reactiveRequestsValidator;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private ReactiveIdempotencyStore reactiveIdempotencyStore;
+
+    @Mock
+    private TransactionJournal transactionJournal;
+
+    @Mock
+    private TransactionEventLog transactionEventLog;
+
+    @Spy
+    private TransactionMetrics transactionMetrics = new TransactionMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private Scheduler reactiveDatabaseScheduler = Schedulers.immediate();
+
+    private String dummyMessageId;
+    private UUID dummyUserId;
+    private User dummyUser;
+    private LoadRequest dummyLoadRequest;
+
+    @BeforeEach
+    void setUp() {
+        dummyMessageId = "someMessageId";
+        dummyUserId = UUID.fromString("f09752d7-c4e7-4491-98c8-36a9f5fc9f37");
+        dummyUser = new User("USD", Money.parse("200"));
+        dummyUser.setId(dummyUserId);
+        dummyLoadRequest = new LoadRequest(dummyUserId.toString(), dummyMessageId, new Amount("50", "USD", "CREDIT"));
+        when(reactiveRequestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest)).thenReturn(Mono.just(dummyUserId));
+        when(transactionalOperator.transactional(ArgumentMatchers.<Mono<LoadResponse>>any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void loadFundsTest() {
+        when(reactiveUserRepository.findByIdForUpdate(dummyUserId)).thenReturn(Mono.just(dummyUser));
+        when(reactiveRequestsValidator.checkUserExists(eq(dummyUserId), any())).thenAnswer(invocation -> invocation.getArgument(1));
+        when(reactiveIdempotencyStore.findResponse(MessageType.LOAD, dummyMessageId, dummyUserId.toString(), "50", LoadResponse.class)).thenReturn(Mono.empty());
+        when(reactiveRequestsValidator.checkCurrencyMatch(dummyUser, "USD")).thenReturn(Mono.just(dummyUser));
+        when(reactiveUserRepository.updateBalance(dummyUserId, Money.parse("250"))).thenReturn(Mono.just(1));
+        when(reactiveIdempotencyStore.save(eq(MessageType.LOAD), eq(dummyMessageId), anyString(), anyString(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(reactiveLoadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest))
+                .assertNext(loadResponse -> {
+                    assertEquals("250.00", loadResponse.getBalance().getAmount());
+                    assertEquals("CREDIT", loadResponse.getBalance().getDebitOrCredit());
+                })
+                .verifyComplete();
+        verify(transactionJournal).append(JournalRecordType.LOAD, dummyMessageId, dummyUserId, "USD", Money.parse("50"), Money.parse("250"));
+        verify(transactionEventLog).record(JournalRecordType.LOAD, dummyMessageId, dummyUserId, "USD", Money.parse("50"), Money.parse("250"));
+        verify(reactiveDatabaseScheduler).createWorker();
+    }
+
+    @Test
+    void loadFundsUserNotFoundTest() {
+        when(reactiveUserRepository.findByIdForUpdate(dummyUserId)).thenReturn(Mono.empty());
+        when(reactiveRequestsValidator.checkUserExists(eq(dummyUserId), any())).thenReturn(Mono.error(new UserNotFoundException("User with ID: " + dummyUserId + " not found")));
+
+        StepVerifier.create(reactiveLoadFundsService.loadFundsAndGetResponse(dummyMessageId, dummyLoadRequest))
+                .expectError(UserNotFoundException.class)
+                .verify();
+        verify(reactiveUserRepository, never()).updateBalance(any(), anyLong());
+        verifyNoInteractions(reactiveIdempotencyStore, transactionJournal);
+    }
+}
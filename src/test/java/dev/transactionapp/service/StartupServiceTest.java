@@ -1,7 +1,10 @@
 package dev.transactionapp.service;
 
 import dev.transactionapp.entity.User;
+import dev.transactionapp.journal.TransactionJournal;
+import dev.transactionapp.money.Money;
 import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.routing.UserRouter;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
@@ -9,6 +12,10 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.UUID;
+
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -20,13 +27,29 @@ public class StartupServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UserRouter userRouter;
+
+    @Mock
+    private TransactionJournal transactionJournal;
+
     @Test
     void init(){
-        User user1 = new User("USD", Double.parseDouble("200"));
-        User user2 = new User("INR", Double.parseDouble("500"));
+        User user1 = new User("USD", Money.parse("200"));
+        User user2 = new User("INR", Money.parse("500"));
         when(userRepository.save(ArgumentMatchers.any())).thenReturn(user1);
         when(userRepository.save(ArgumentMatchers.any())).thenReturn(user2);
         startupService.init();
     }
 
-}
\ No newline at end of file
+    @Test
+    void usersAreSeededOnceTheApplicationIsReadyTest(){
+        when(userRouter.newUserId()).thenReturn(UUID.randomUUID());
+
+        startupService.onApplicationReady();
+
+        verify(userRepository, times(2)).save(ArgumentMatchers.any());
+        verify(transactionJournal, times(2)).appendCreated(ArgumentMatchers.any(), ArgumentMatchers.any(), ArgumentMatchers.anyLong(), ArgumentMatchers.any());
+    }
+
+}
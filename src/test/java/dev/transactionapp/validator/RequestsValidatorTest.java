@@ -2,12 +2,10 @@ package dev.transactionapp.validator;
 
 import dev.transactionapp.entity.*;
 import dev.transactionapp.exception.*;
-import dev.transactionapp.repository.AuthorizationResponseRepository;
-import dev.transactionapp.repository.UserRepository;
+import dev.transactionapp.money.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -15,7 +13,6 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 public class RequestsValidatorTest {
@@ -23,12 +20,6 @@ public class RequestsValidatorTest {
     @InjectMocks
     private RequestsValidator requestsValidator;
 
-    @Mock
-    private UserRepository userRepository;
-
-    @Mock
-    private AuthorizationResponseRepository authorizationResponseRepository;
-
     private String dummyUserId;
     private String dummyMessageId;
     private User dummyUser;
@@ -41,7 +32,7 @@ public class RequestsValidatorTest {
     void setUp(){
         dummyMessageId = "someMessageId";
         dummyUserId = "f09752d7-c4e7-4491-98c8-36a9f5fc9f37"; // has to be UUID
-        dummyUser = new User("USD", Double.parseDouble("200"));
+        dummyUser = new User("USD", Money.parse("200"));
         dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
         dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
     }
@@ -49,25 +40,21 @@ public class RequestsValidatorTest {
     // Authorization Request
 
     @Test
-    void authorizationRequestCheckCheckMessageIdMatchTest() {
-        dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
-        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, "some other messageId", dummyTransactionAmount);
-        assertThrows(MessageIdNotMatchException.class, () -> requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
+    void authorizationRequestValidTest() {
+        assertEquals(UUID.fromString(dummyUserId), requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
     }
 
     @Test
-    void authorizationRequestCheckCheckUniqueMessageIdTest() {
+    void authorizationRequestCheckCheckMessageIdMatchTest() {
         dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
-        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(true);
-        assertThrows(MessageIdAlreadyExistsException.class, () -> requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, "some other messageId", dummyTransactionAmount);
+        assertThrows(MessageIdNotMatchException.class, () -> requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
     }
 
     @Test
     void authorizationRequestCheckTransactionTypeMatchTest() {
         dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
         dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
         assertThrows(InvalidTransactionTypeException.class, () -> requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
     }
 
@@ -75,34 +62,19 @@ public class RequestsValidatorTest {
     void authorizationRequestCheckValidUUIDTest() {
         dummyTransactionAmount = new Amount("20", "INR", "DEBIT");
         dummyAuthorizationRequest = new AuthorizationRequest("some invalid UUID", dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
         assertThrows(InvalidUUIDException.class, () -> requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
     }
 
 
-    @Test
-    void authorizationRequestCheckUserExistsTest() {
-        dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
-        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
-        when(userRepository.existsById(UUID.fromString(dummyUserId))).thenReturn(false);
-        assertThrows(UserNotFoundException.class, () -> requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
-    }
+    // Load Request
 
     @Test
-    void authorizationRequestCheckCurrencyMatchTest() {
-        dummyTransactionAmount = new Amount("20", "INR", "DEBIT");
-        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
-        when(userRepository.existsById(UUID.fromString(dummyUserId))).thenReturn(true);
-        when(userRepository.findById(UUID.fromString(dummyUserId))).thenReturn(java.util.Optional.ofNullable(dummyUser));
-        assertThrows(CurrencyNotMatchException.class, () -> requestsValidator.checkAuthorizationRequestValidity(dummyMessageId, dummyAuthorizationRequest));
+    void loadRequestValidTest() {
+        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
+        assertEquals(UUID.fromString(dummyUserId), requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest));
     }
 
-
-
-    // Load Request
-
     @Test
     void loadRequestCheckCheckMessageIdMatchTest() {
         dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
@@ -110,19 +82,10 @@ public class RequestsValidatorTest {
         assertThrows(MessageIdNotMatchException.class, () -> requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest));
     }
 
-    @Test
-    void loadRequestCheckCheckUniqueMessageIdTest() {
-        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
-        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(true);
-        assertThrows(MessageIdAlreadyExistsException.class, () -> requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest));
-    }
-
     @Test
     void loadRequestCheckTransactionTypeMatchTest() {
         dummyTransactionAmount = new Amount("20", "USD", "DEBIT");
         dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
         assertThrows(InvalidTransactionTypeException.class, () -> requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest));
     }
 
@@ -130,27 +93,89 @@ public class RequestsValidatorTest {
     void loadRequestCheckValidUUIDMatchTest() {
         dummyTransactionAmount = new Amount("20", "INR", "CREDIT");
         dummyLoadRequest = new LoadRequest("some invalid UUID", dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
         assertThrows(InvalidUUIDException.class, () -> requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest));
     }
 
+
+    // Stateful checks
+
     @Test
-    void loadRequestCheckUserExistsTest() {
-        dummyTransactionAmount = new Amount("20", "USD", "CREDIT");
-        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
-        when(userRepository.existsById(UUID.fromString(dummyUserId))).thenReturn(false);
-        assertThrows(UserNotFoundException.class, () -> requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest));
+    void checkCurrencyMatchTest() {
+        assertThrows(CurrencyNotMatchException.class, () -> requestsValidator.checkCurrencyMatch(dummyUser, "INR"));
+        assertDoesNotThrow(() -> requestsValidator.checkCurrencyMatch(dummyUser, "USD"));
     }
 
+
+    // Screening, without throwing
+
     @Test
-    void loadRequestCheckCurrencyMatchTest() {
-        dummyTransactionAmount = new Amount("20", "INR", "CREDIT");
+    void screenAuthorizationRequestTest() {
+        assertNull(requestsValidator.screenAuthorizationRequest(dummyMessageId, dummyAuthorizationRequest));
+
+        Rejection rejection = requestsValidator.screenAuthorizationRequest("some other messageId", dummyAuthorizationRequest);
+        assertEquals(Rejection.Reason.MESSAGE_ID_MISMATCH, rejection.getReason());
+        assertEquals("path variable message: some other messageId doesn't match request body message: someMessageId", rejection.message());
+        assertEquals(MessageIdNotMatchException.class, rejection.exceptionType());
+
+        dummyAuthorizationRequest = new AuthorizationRequest(dummyUserId, dummyMessageId, new Amount("20", "USD", "CREDIT"));
+        rejection = requestsValidator.screenAuthorizationRequest(dummyMessageId, dummyAuthorizationRequest);
+        assertEquals(Rejection.Reason.INVALID_TRANSACTION_TYPE, rejection.getReason());
+        assertEquals("Supported transaction type: DEBIT", rejection.message());
+
+        dummyAuthorizationRequest = new AuthorizationRequest("some invalid UUID", dummyMessageId, dummyTransactionAmount);
+        rejection = requestsValidator.screenAuthorizationRequest(dummyMessageId, dummyAuthorizationRequest);
+        assertEquals(Rejection.Reason.INVALID_USER_ID, rejection.getReason());
+        assertInstanceOf(InvalidUUIDException.class, rejection.toException());
+        assertEquals("userid provided: some invalid UUID is not A valid UUID format", rejection.toException().getMessage());
+    }
+
+    @Test
+    void screenLoadRequestTest() {
+        dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, new Amount("20", "USD", "CREDIT"));
+        assertNull(requestsValidator.screenLoadRequest(dummyMessageId, dummyLoadRequest));
+
         dummyLoadRequest = new LoadRequest(dummyUserId, dummyMessageId, dummyTransactionAmount);
-        when(authorizationResponseRepository.existsById(ArgumentMatchers.anyString())).thenReturn(false);
-        when(userRepository.existsById(UUID.fromString(dummyUserId))).thenReturn(true);
-        when(userRepository.findById(UUID.fromString(dummyUserId))).thenReturn(java.util.Optional.ofNullable(dummyUser));
-        assertThrows(CurrencyNotMatchException.class, () ->requestsValidator.checkLoadRequestValidity(dummyMessageId, dummyLoadRequest));
+        assertEquals(Rejection.Reason.INVALID_TRANSACTION_TYPE, requestsValidator.screenLoadRequest(dummyMessageId, dummyLoadRequest).getReason());
+    }
+
+    @Test
+    void screenCurrencyMatchTest() {
+        assertNull(requestsValidator.screenCurrencyMatch("USD", "USD"));
+
+        Rejection rejection = requestsValidator.screenCurrencyMatch("USD", "INR");
+        assertEquals("User currency: USD doesn't match with request body currency: INR", rejection.message());
+        assertThrows(CurrencyNotMatchException.class, () -> { throw rejection.toException(); });
+    }
+
+    @Test
+    void userIdsAreParsedLikeUUIDFromStringTest() {
+        String[] userIds = {
+                dummyUserId,
+                dummyUserId.toUpperCase(),
+                "ffffffff-ffff-ffff-ffff-ffffffffffff",
+                "00000000-0000-0000-0000-000000000000",
+                "1-2-3-4-5",
+                "0f09752d7-c4e7-4491-98c8-36a9f5fc9f3",
+                "f09752d7-c4e7-4491-98c8-36a9f5fc9f3g",
+                "f09752d7-c4e7-4491-98c8-36a9f5fc9f3\uff11",
+                "f09752d7-c4e7-4491-98c8-36a9f5fc9f377",
+                "f09752d7+c4e7-4491-98c8-36a9f5fc9f37",
+                "f09752d7-c4e7-4491-98c8",
+                "1-2-3-4-5-6",
+                "-----",
+                "",
+                "not-a-uuid"
+        };
+
+        for (String userId : userIds) {
+            UUID expected;
+            try {
+                expected = UUID.fromString(userId);
+            } catch (IllegalArgumentException ex) {
+                expected = null;
+            }
+            assertEquals(expected, RequestsValidator.parseUUID(userId), userId);
+        }
     }
 
-}
\ No newline at end of file
+}